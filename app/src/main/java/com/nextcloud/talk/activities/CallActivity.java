@@ -28,95 +28,61 @@ import android.Manifest;
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.annotation.SuppressLint;
-import android.content.BroadcastReceiver;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
+import android.content.ServiceConnection;
 import android.content.res.Configuration;
-import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.IBinder;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
-import android.text.TextUtils;
 import android.util.Log;
+import android.view.GestureDetector;
 import android.view.MotionEvent;
+import android.view.SurfaceView;
 import android.view.View;
 import android.view.Window;
 import android.view.WindowManager;
+import android.widget.FrameLayout;
 import android.widget.ImageButton;
 import android.widget.ImageView;
-import android.widget.LinearLayout;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 
-import com.bluelinelabs.logansquare.LoganSquare;
-import com.evernote.android.job.JobRequest;
-import com.evernote.android.job.util.Device;
 import com.nextcloud.talk.R;
 import com.nextcloud.talk.api.NcApi;
 import com.nextcloud.talk.api.helpers.api.ApiHelper;
-import com.nextcloud.talk.api.models.json.call.CallOverall;
-import com.nextcloud.talk.api.models.json.generic.GenericOverall;
 import com.nextcloud.talk.api.models.json.rooms.Room;
 import com.nextcloud.talk.api.models.json.rooms.RoomsOverall;
-import com.nextcloud.talk.api.models.json.signaling.DataChannelMessage;
-import com.nextcloud.talk.api.models.json.signaling.NCIceCandidate;
-import com.nextcloud.talk.api.models.json.signaling.NCMessagePayload;
-import com.nextcloud.talk.api.models.json.signaling.NCMessageWrapper;
-import com.nextcloud.talk.api.models.json.signaling.NCSignalingMessage;
-import com.nextcloud.talk.api.models.json.signaling.Signaling;
-import com.nextcloud.talk.api.models.json.signaling.SignalingOverall;
-import com.nextcloud.talk.api.models.json.signaling.settings.IceServer;
-import com.nextcloud.talk.api.models.json.signaling.settings.SignalingSettingsOverall;
 import com.nextcloud.talk.application.NextcloudTalkApplication;
-import com.nextcloud.talk.events.MediaStreamEvent;
-import com.nextcloud.talk.events.PeerConnectionEvent;
-import com.nextcloud.talk.events.SessionDescriptionSendEvent;
 import com.nextcloud.talk.persistence.entities.UserEntity;
+import com.nextcloud.talk.services.CallService;
 import com.nextcloud.talk.utils.animations.PulseAnimation;
 import com.nextcloud.talk.utils.bundle.BundleKeys;
 import com.nextcloud.talk.utils.database.user.UserUtils;
-import com.nextcloud.talk.webrtc.MagicAudioManager;
-import com.nextcloud.talk.webrtc.MagicPeerConnectionWrapper;
-import com.nextcloud.talk.webrtc.MagicWebRTCUtils;
-import com.nextcloud.talk.webrtc.MagicWebRtcLists;
-
-import org.apache.commons.lang3.StringEscapeUtils;
-import org.greenrobot.eventbus.EventBus;
-import org.greenrobot.eventbus.Subscribe;
-import org.greenrobot.eventbus.ThreadMode;
+import com.nextcloud.talk.utils.schedulers.AppSchedulers;
+import com.nextcloud.talk.webrtc.CallModePolicy;
+import com.nextcloud.talk.webrtc.CallPeer;
+import com.nextcloud.talk.webrtc.ParticipantPager;
+import com.nextcloud.talk.webrtc.RemoteRenderer;
+import com.nextcloud.talk.webrtc.RendererPool;
+import com.nextcloud.talk.webrtc.compositor.CompositingRenderer;
+import com.nextcloud.talk.webrtc.compositor.CompositorLayout;
+import com.nextcloud.talk.webrtc.stats.CallStats;
+import com.nextcloud.talk.webrtc.stats.PeerStats;
+
 import org.parceler.Parcels;
-import org.webrtc.AudioSource;
-import org.webrtc.AudioTrack;
-import org.webrtc.Camera1Enumerator;
-import org.webrtc.Camera2Enumerator;
-import org.webrtc.CameraEnumerator;
-import org.webrtc.CameraVideoCapturer;
-import org.webrtc.EglBase;
-import org.webrtc.IceCandidate;
-import org.webrtc.Logging;
-import org.webrtc.MediaConstraints;
-import org.webrtc.MediaStream;
-import org.webrtc.PeerConnection;
-import org.webrtc.PeerConnectionFactory;
 import org.webrtc.RendererCommon;
-import org.webrtc.SessionDescription;
 import org.webrtc.SurfaceViewRenderer;
-import org.webrtc.VideoCapturer;
-import org.webrtc.VideoRenderer;
-import org.webrtc.VideoSource;
 import org.webrtc.VideoTrack;
 
-import java.io.IOException;
 import java.net.CookieManager;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import java.util.Locale;
+import java.util.Map;
 
 import javax.inject.Inject;
 
@@ -128,7 +94,6 @@ import butterknife.OnLongClick;
 import io.reactivex.Observer;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
-import io.reactivex.schedulers.Schedulers;
 import me.zhanghai.android.effortlesspermissions.AfterPermissionDenied;
 import me.zhanghai.android.effortlesspermissions.EffortlessPermissions;
 import me.zhanghai.android.effortlesspermissions.OpenAppDetailsDialogFragment;
@@ -154,9 +119,15 @@ public class CallActivity extends AppCompatActivity {
     SurfaceViewRenderer pipVideoView;
     @BindView(R.id.relative_layout)
     RelativeLayout relativeLayout;
+    @BindView(R.id.remote_video_surface_view)
+    SurfaceView remoteVideoSurfaceView;
     @BindView(R.id.remote_renderers_layout)
-    LinearLayout remoteRenderersLayout;
+    FrameLayout remoteRenderersLayout;
+    @BindView(R.id.participant_page_indicator)
+    TextView participantPageIndicator;
 
+    @BindView(R.id.call_stats_overlay)
+    TextView callStatsOverlay;
     @BindView(R.id.call_controls)
     RelativeLayout callControls;
     @BindView(R.id.call_control_microphone)
@@ -168,48 +139,36 @@ public class CallActivity extends AppCompatActivity {
 
     @Inject
     NcApi ncApi;
+
     @Inject
-    EventBus eventBus;
+    AppSchedulers appSchedulers;
     @Inject
     UserUtils userUtils;
     @Inject
     CookieManager cookieManager;
 
-    PeerConnectionFactory peerConnectionFactory;
-    MediaConstraints audioConstraints;
-    MediaConstraints videoConstraints;
-    MediaConstraints sdpConstraints;
-    MagicAudioManager audioManager;
-    VideoSource videoSource;
-    VideoTrack localVideoTrack;
-    AudioSource audioSource;
-    AudioTrack localAudioTrack;
-    VideoCapturer videoCapturer;
-    VideoRenderer localRenderer;
-    EglBase rootEglBase;
-    boolean leavingCall = false;
-    boolean inCall = false;
-    Disposable signalingDisposable;
-    Disposable pingDisposable;
-    List<PeerConnection.IceServer> iceServers;
-    private CameraEnumerator cameraEnumerator;
     private String roomToken;
     private UserEntity userEntity;
-    private String callSession;
-    private MediaStream localMediaStream;
+    private String callSessionId;
     private String credentials;
-    private List<MagicPeerConnectionWrapper> magicPeerConnectionWrapperList = new ArrayList<>();
+    // owns the call, the activity only shows it; null until the service is connected
+    private CallService callService;
+    private ServiceConnection callServiceConnection;
 
     private boolean videoOn = false;
     private boolean audioOn = false;
-
-    private BroadcastReceiver networkBroadcastReceier;
+    // a voice call has no camera, no local video and asks for the microphone only
+    private boolean audioOnly;
 
     private Handler handler = new Handler();
 
     private boolean isPTTActive = false;
     private PulseAnimation pulseAnimation;
     private View.OnClickListener videoOnClickListener;
+    private CompositingRenderer compositingRenderer;
+    private RendererPool<RemoteRenderer> rendererPool;
+    private ParticipantPager participantPager;
+    private GestureDetector pageGestureDetector;
 
     private static int getSystemUiVisibility() {
         int flags = View.SYSTEM_UI_FLAG_HIDE_NAVIGATION | View.SYSTEM_UI_FLAG_FULLSCREEN;
@@ -235,6 +194,18 @@ public class CallActivity extends AppCompatActivity {
 
         microphoneControlButton.setOnTouchListener(new microphoneButtonTouchListener());
         videoOnClickListener = new videoClickListener();
+        rendererPool = new RendererPool<>(new remoteRendererAllocator());
+        Configuration configuration = getResources().getConfiguration();
+        participantPager = new ParticipantPager(ParticipantPager.getTilesPerPage(configuration.screenWidthDp,
+                configuration.screenHeightDp));
+        pageGestureDetector = new GestureDetector(this, new pageGestureListener());
+        remoteRenderersLayout.addOnLayoutChangeListener((v, left, top, right, bottom, oldLeft, oldTop, oldRight,
+                                                         oldBottom) -> {
+            if (right - left != oldRight - oldLeft || bottom - top != oldBottom - oldTop) {
+                // the tiles follow the size of the screen, once this layout pass is done
+                remoteRenderersLayout.post(this::updateRemoteRenderers);
+            }
+        });
 
         pulseAnimation = PulseAnimation.create().with(microphoneControlButton)
                 .setDuration(310)
@@ -243,26 +214,32 @@ public class CallActivity extends AppCompatActivity {
 
         roomToken = getIntent().getExtras().getString("roomToken", "");
         userEntity = Parcels.unwrap(getIntent().getExtras().getParcelable("userEntity"));
-        callSession = getIntent().getExtras().getString(BundleKeys.KEY_CALL_SESSION, "0");
+        callSessionId = getIntent().getExtras().getString(BundleKeys.KEY_CALL_SESSION, "0");
+        if (getIntent().getExtras().containsKey(BundleKeys.KEY_CALL_AUDIO_ONLY)) {
+            audioOnly = getIntent().getExtras().getBoolean(BundleKeys.KEY_CALL_AUDIO_ONLY);
+        } else {
+            audioOnly = CallModePolicy.isAudioOnlyPreferred(this);
+        }
         credentials = ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken());
 
-        networkBroadcastReceier = new BroadcastReceiver() {
-            @Override
-            public void onReceive(Context context, Intent intent) {
-                if ("android.net.conn.CONNECTIVITY_CHANGE".equals(intent.getAction())) {
-                    if (!Device.getNetworkType(context).equals(JobRequest.NetworkType.ANY)) {
-                        startPullingSignalingMessages(true);
-                    } else {
-                        //hangup(true);
-                    }
-                }
-            }
-        };
-
         callControls.setZ(100.0f);
-        basicInitialization();
 
-        if (!userEntity.getCurrent()) {
+        callServiceConnection = new callServiceConnection();
+        bindService(new Intent(this, CallService.class), callServiceConnection, Context.BIND_AUTO_CREATE);
+    }
+
+    private void onCallServiceConnected() {
+        // a call that is already going on survived the previous activity, it only needs to be shown again
+        boolean attaching = callService.isPrepared();
+        callService.prepare(userEntity, audioOnly);
+        // a call that is already going on keeps the mode it was started in
+        audioOnly = callService.isAudioOnly();
+        initRenderers();
+        callService.setCallListener(new callServiceListener());
+
+        if (attaching) {
+            restoreCall();
+        } else if (!userEntity.getCurrent()) {
             userUtils.createOrUpdateUser(null,
                     null, null, null,
                     null, true, null, userEntity.getId())
@@ -303,17 +280,41 @@ public class CallActivity extends AppCompatActivity {
         }
     }
 
-    private void performIceRestart() {
-        for (int i = 0; i < magicPeerConnectionWrapperList.size(); i++) {
-            sdpConstraints.optional.add(new MediaConstraints.KeyValuePair("IceRestart", "true"));
-            PeerConnection.RTCConfiguration rtcConfiguration = new PeerConnection.RTCConfiguration(iceServers);
-            magicPeerConnectionWrapperList.get(i).getPeerConnection().setConfiguration(rtcConfiguration);
+    /**
+     * Shows the call the service already has: our own media, the participants and who is speaking.
+     */
+    private void restoreCall() {
+        initViews();
+
+        videoOn = callService.isVideoOn();
+        audioOn = callService.isAudioOn();
+        cameraControlButton.setImageResource(videoOn ? R.drawable.ic_videocam_white_24px :
+                R.drawable.ic_videocam_off_white_24px);
+        microphoneControlButton.setImageResource(audioOn ? R.drawable.ic_mic_white_24px :
+                R.drawable.ic_mic_off_white_24px);
+        showLocalMedia(videoOn, true);
+        showLocalMedia(audioOn, false);
+        if (videoOn && EffortlessPermissions.hasPermissions(this, PERMISSIONS_CAMERA)) {
+            callService.startVideoCapture();
+        }
+
+        for (String sessionId : callService.getRemoteVideoTracks().keySet()) {
+            participantPager.add(sessionId);
+        }
+        String activeSpeakerSessionId = callService.getActiveSpeakerSessionId();
+        if (activeSpeakerSessionId != null) {
+            participantPager.setActiveSpeaker(activeSpeakerSessionId);
+        }
+        updateRemoteRenderers();
+
+        if (!isPTTActive) {
+            animateCallControls(false, 7500);
         }
     }
 
     private void handleFromNotification() {
         ncApi.getRooms(credentials, ApiHelper.getUrlForGetRooms(userEntity.getBaseUrl()))
-                .subscribeOn(Schedulers.newThread())
+                .subscribeOn(appSchedulers.rest())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(new Observer<RoomsOverall>() {
                     @Override
@@ -348,52 +349,62 @@ public class CallActivity extends AppCompatActivity {
 
 
     private void toggleMedia(boolean enable, boolean video) {
-        String message;
-        if (video) {
-            message = "videoOff";
-            if (enable) {
-                cameraControlButton.setAlpha(1.0f);
-                message = "videoOn";
-                startVideoCapture();
-            } else {
-                cameraControlButton.setAlpha(0.7f);
-                if (videoCapturer != null) {
-                    try {
-                        videoCapturer.stopCapture();
-                    } catch (InterruptedException e) {
-                        Log.d(TAG, "Failed to stop capturing video while sensor is near the ear");
-                    }
-                }
-            }
+        showLocalMedia(enable, video);
 
-            if (localMediaStream != null && localMediaStream.videoTracks.size() > 0) {
-                localMediaStream.videoTracks.get(0).setEnabled(enable);
-            }
-
-            if (enable) {
-                pipVideoView.setVisibility(View.VISIBLE);
+        if (callService != null) {
+            if (video) {
+                callService.setVideoOn(enable);
             } else {
-                pipVideoView.setVisibility(View.INVISIBLE);
+                callService.setAudioOn(enable);
             }
+        }
+    }
+
+    private void showLocalMedia(boolean enable, boolean video) {
+        if (video) {
+            cameraControlButton.setAlpha(enable ? 1.0f : 0.7f);
+            pipVideoView.setVisibility(enable ? View.VISIBLE : View.INVISIBLE);
         } else {
-            message = "audioOff";
-            if (enable) {
-                message = "audioOn";
-                microphoneControlButton.setAlpha(1.0f);
-            } else {
-                microphoneControlButton.setAlpha(0.7f);
-            }
+            microphoneControlButton.setAlpha(enable ? 1.0f : 0.7f);
+        }
+    }
+
+    @OnLongClick(R.id.remote_renderers_layout)
+    public boolean toggleCallStatsOverlay() {
+        callStatsOverlay.setVisibility(callStatsOverlay.getVisibility() == View.VISIBLE ? View.GONE : View.VISIBLE);
+        return true;
+    }
+
+    private String formatCallStats(CallStats callStats) {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append(String.format(Locale.US, "%d peers, rtt %d/%d ms, loss %.1f/%.1f %%, up %d kbit/s, " +
+                        "down %d kbit/s", callStats.getPeerCount(), callStats.getAverageRttMs(),
+                callStats.getMaxRttMs(), callStats.getAveragePacketsLostPercent(),
+                callStats.getMaxPacketsLostPercent(), callStats.getSendBitrateBps() / 1000,
+                callStats.getReceiveBitrateBps() / 1000));
 
-            if (localMediaStream != null && localMediaStream.audioTracks.size() > 0) {
-                localMediaStream.audioTracks.get(0).setEnabled(enable);
+        for (PeerStats peerStats : callStats.getPeers()) {
+            stringBuilder.append(String.format(Locale.US, "\n%.6s: rtt %d ms, loss %.1f %%, up %d, down %d, " +
+                            "%s/%s %s, %s %dx%d@%d", peerStats.getSessionId(), peerStats.getRttMs(),
+                    peerStats.getPacketsLostPercent(), peerStats.getSendBitrateBps() / 1000,
+                    peerStats.getReceiveBitrateBps() / 1000, peerStats.getLocalCandidateType(),
+                    peerStats.getRemoteCandidateType(), peerStats.getTransportType(), peerStats.getVideoCodec(),
+                    peerStats.getFrameWidthSent(), peerStats.getFrameHeightSent(), peerStats.getFramerateSent()));
+            if (peerStats.getAvailableReceiveBandwidthBps() > 0) {
+                stringBuilder.append(String.format(Locale.US, ", bwe down %d",
+                        peerStats.getAvailableReceiveBandwidthBps() / 1000));
+            }
+            if (peerStats.isRemoteVideoPaused()) {
+                stringBuilder.append(", video paused");
             }
         }
 
-        if (inCall) {
-            for (int i = 0; i < magicPeerConnectionWrapperList.size(); i++) {
-                magicPeerConnectionWrapperList.get(i).sendChannelData(new DataChannelMessage(message));
-            }
+        String lastHandover = callService != null ? callService.getLastHandover() : null;
+        if (lastHandover != null) {
+            stringBuilder.append('\n').append(lastHandover);
         }
+
+        return stringBuilder.toString();
     }
 
     @OnLongClick(R.id.call_control_microphone)
@@ -440,7 +451,7 @@ public class CallActivity extends AppCompatActivity {
 
     @OnClick(R.id.call_control_hangup)
     public void onHangupClick() {
-        hangup(false);
+        hangup();
     }
 
     @OnClick(R.id.call_control_camera)
@@ -470,83 +481,56 @@ public class CallActivity extends AppCompatActivity {
 
     @OnClick(R.id.call_control_switch_camera)
     public void switchCamera() {
-        CameraVideoCapturer cameraVideoCapturer = (CameraVideoCapturer) videoCapturer;
-        if (cameraVideoCapturer != null) {
-            cameraVideoCapturer.switchCamera(null);
+        if (callService != null) {
+            callService.switchCamera();
         }
     }
 
-    private void createCameraEnumerator() {
-        boolean camera2EnumeratorIsSupported = false;
-        try {
-            camera2EnumeratorIsSupported = Camera2Enumerator.isSupported(this);
-        } catch (final Throwable throwable) {
-            Log.w(TAG, "Camera2Enumator threw an error");
+    public void initViews() {
+        if (callService.getCameraCount() < 2) {
+            cameraSwitchButton.setVisibility(View.GONE);
         }
 
-        if (camera2EnumeratorIsSupported) {
-            cameraEnumerator = new Camera2Enumerator(this);
-        } else {
-            cameraEnumerator = new Camera1Enumerator(!MagicWebRtcLists.HARDWARE_ACCELERATION_VENDOR_BLACKLIST.contains(Build
-                    .MANUFACTURER.toLowerCase()));
+        if (audioOnly) {
+            cameraControlButton.setVisibility(View.GONE);
+            pipVideoView.setVisibility(View.GONE);
         }
     }
 
-    private VideoCapturer createCameraCapturer(CameraEnumerator enumerator) {
-        final String[] deviceNames = enumerator.getDeviceNames();
-
-        // First, try to find front facing camera
-        Logging.d(TAG, "Looking for front facing cameras.");
-        for (String deviceName : deviceNames) {
-            if (enumerator.isFrontFacing(deviceName)) {
-                Logging.d(TAG, "Creating front facing camera capturer.");
-                VideoCapturer videoCapturer = enumerator.createCapturer(deviceName, null);
-
-                if (videoCapturer != null) {
-                    return videoCapturer;
-                }
-            }
-        }
-
-        // Front facing camera not found, try something else
-        Logging.d(TAG, "Looking for other cameras.");
-        for (String deviceName : deviceNames) {
-            if (!enumerator.isFrontFacing(deviceName)) {
-                Logging.d(TAG, "Creating other camera capturer.");
-                VideoCapturer videoCapturer = enumerator.createCapturer(deviceName, null);
-
-                if (videoCapturer != null) {
-                    return videoCapturer;
-                }
-            }
-        }
-
-        return null;
-    }
+    /**
+     * Both renderers share the EGL context of the service, which outlives them.
+     */
+    private void initRenderers() {
+        compositingRenderer = new CompositingRenderer(callService.getEglBaseContext());
+        compositingRenderer.init(remoteVideoSurfaceView.getHolder());
 
-    public void initViews() {
-        if (cameraEnumerator.getDeviceNames().length < 2) {
-            cameraSwitchButton.setVisibility(View.GONE);
+        if (audioOnly) {
+            return;
         }
 
         // setting this to true because it's not shown by default
         pipVideoView.setMirror(true);
-        pipVideoView.init(rootEglBase.getEglBaseContext(), null);
+        pipVideoView.init(callService.getEglBaseContext(), null);
         pipVideoView.setZOrderMediaOverlay(true);
         // disabled because it causes some devices to crash
         pipVideoView.setEnableHardwareScaler(false);
         pipVideoView.setScalingType(RendererCommon.ScalingType.SCALE_ASPECT_FIT);
+        callService.setLocalRenderer(pipVideoView);
+    }
+
+    private String[] getCallPermissions() {
+        return audioOnly ? PERMISSIONS_MICROPHONE : PERMISSIONS_CALL;
     }
 
     private void checkPermissions() {
         EffortlessPermissions.requestPermissions(this, R.string.nc_permissions,
-                100, PERMISSIONS_CALL);
+                100, getCallPermissions());
     }
 
     @AfterPermissionGranted(100)
     private void onPermissionsGranted() {
-        if (EffortlessPermissions.hasPermissions(this, PERMISSIONS_CALL)) {
-            if (!videoOn) {
+        if (EffortlessPermissions.hasPermissions(this, getCallPermissions())) {
+            if (!videoOn && !audioOnly) {
                 onCameraClick();
             }
 
@@ -554,34 +538,34 @@ public class CallActivity extends AppCompatActivity {
                 onMicrophoneClick();
             }
 
-            if (cameraEnumerator.getDeviceNames().length == 0) {
+            if (callService.getCameraCount() == 0) {
                 cameraControlButton.setVisibility(View.GONE);
             }
 
-            if (cameraSwitchButton != null && cameraEnumerator.getDeviceNames().length > 1) {
+            if (cameraSwitchButton != null && callService.getCameraCount() > 1) {
                 cameraSwitchButton.setVisibility(View.VISIBLE);
             }
 
-            if (!inCall) {
+            if (!isInCall()) {
                 startCall();
             }
         } else if (EffortlessPermissions.somePermissionPermanentlyDenied(this,
-                PERMISSIONS_CALL)) {
+                getCallPermissions())) {
             checkIfSomeAreApproved();
         }
     }
 
     private void checkIfSomeAreApproved() {
-        if (cameraEnumerator.getDeviceNames().length == 0) {
+        if (callService.getCameraCount() == 0) {
             cameraControlButton.setVisibility(View.GONE);
         }
 
-        if (cameraSwitchButton != null && cameraEnumerator.getDeviceNames().length > 1) {
+        if (cameraSwitchButton != null && callService.getCameraCount() > 1) {
             cameraSwitchButton.setVisibility(View.VISIBLE);
         }
 
         if (EffortlessPermissions.hasPermissions(this, PERMISSIONS_CAMERA)) {
-            if (!videoOn) {
+            if (!videoOn && !audioOnly) {
                 onCameraClick();
             }
         } else {
@@ -599,16 +583,16 @@ public class CallActivity extends AppCompatActivity {
             microphoneControlButton.setImageResource(R.drawable.ic_mic_off_white_24px);
         }
 
-        if (!inCall) {
+        if (!isInCall()) {
             startCall();
         }
     }
 
     @AfterPermissionDenied(100)
     private void onPermissionsDenied() {
-        if (cameraEnumerator.getDeviceNames().length == 0) {
+        if (callService.getCameraCount() == 0) {
             cameraControlButton.setVisibility(View.GONE);
-        } else if (cameraEnumerator.getDeviceNames().length == 1) {
+        } else if (callService.getCameraCount() == 1) {
             cameraSwitchButton.setVisibility(View.GONE);
         }
 
@@ -618,530 +602,30 @@ public class CallActivity extends AppCompatActivity {
         }
     }
 
-    private void basicInitialization() {
-        rootEglBase = EglBase.create();
-        createCameraEnumerator();
-
-        //Create a new PeerConnectionFactory instance.
-        PeerConnectionFactory.Options options = new PeerConnectionFactory.Options();
-        peerConnectionFactory = new PeerConnectionFactory(options);
-
-        peerConnectionFactory.setVideoHwAccelerationOptions(rootEglBase.getEglBaseContext(),
-                rootEglBase.getEglBaseContext());
-
-        //Create MediaConstraints - Will be useful for specifying video and audio constraints.
-        audioConstraints = new MediaConstraints();
-        videoConstraints = new MediaConstraints();
-
-        localMediaStream = peerConnectionFactory.createLocalMediaStream("NCMS");
-
-        // Create and audio manager that will take care of audio routing,
-        // audio modes, audio device enumeration etc.
-        audioManager = MagicAudioManager.create(getApplicationContext());
-        // Store existing audio settings and change audio mode to
-        // MODE_IN_COMMUNICATION for best possible VoIP performance.
-        Log.d(TAG, "Starting the audio manager...");
-        audioManager.start(new MagicAudioManager.AudioManagerEvents() {
-            @Override
-            public void onAudioDeviceChanged(MagicAudioManager.AudioDevice selectedAudioDevice,
-                                             Set<MagicAudioManager.AudioDevice> availableAudioDevices) {
-                onAudioManagerDevicesChanged(selectedAudioDevice, availableAudioDevices);
-            }
-        });
-
-        iceServers = new ArrayList<>();
-
-        //create sdpConstraints
-        sdpConstraints = new MediaConstraints();
-        sdpConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveAudio", "true"));
-        sdpConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveVideo", "true"));
-        sdpConstraints.optional.add(new MediaConstraints.KeyValuePair("internalSctpDataChannels", "true"));
-        sdpConstraints.optional.add(new MediaConstraints.KeyValuePair("DtlsSrtpKeyAgreement", "true"));
-
-        cameraInitialization();
-        microphoneInitialization();
-    }
-
-    private void cameraInitialization() {
-        videoCapturer = createCameraCapturer(cameraEnumerator);
-
-        //Create a VideoSource instance
-        if (videoCapturer != null) {
-            videoSource = peerConnectionFactory.createVideoSource(videoCapturer);
-            localVideoTrack = peerConnectionFactory.createVideoTrack("NCv0", videoSource);
-            localMediaStream.addTrack(localVideoTrack);
-            localVideoTrack.setEnabled(false);
-
-            //create a videoRenderer based on SurfaceViewRenderer instance
-            localRenderer = new VideoRenderer(pipVideoView);
-            // And finally, with our VideoRenderer ready, we
-            // can add our renderer to the VideoTrack.
-            localVideoTrack.addRenderer(localRenderer);
-        }
-
-    }
-
-    private void microphoneInitialization() {
-        //create an AudioSource instance
-        audioSource = peerConnectionFactory.createAudioSource(audioConstraints);
-        localAudioTrack = peerConnectionFactory.createAudioTrack("NCa0", audioSource);
-        localAudioTrack.setEnabled(false);
-        localMediaStream.addTrack(localAudioTrack);
-    }
-
     private void startCall() {
         if (!isPTTActive) {
             animateCallControls(false, 7500);
         }
-        startPullingSignalingMessages(false);
-        //registerNetworkReceiver();
-    }
-
-    @OnClick({R.id.pip_video_view, R.id.remote_renderers_layout})
-    public void showCallControls() {
-        animateCallControls(true, 0);
-    }
-
-    public void startPullingSignalingMessages(boolean restart) {
-
-        if (restart) {
-            dispose(null);
-            //hangupNetworkCalls();
-        }
-
-        leavingCall = false;
-
-        ncApi.getSignalingSettings(ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken()),
-                ApiHelper.getUrlForSignalingSettings(userEntity.getBaseUrl()))
-                .subscribeOn(Schedulers.newThread())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(new Observer<SignalingSettingsOverall>() {
-                    @Override
-                    public void onSubscribe(Disposable d) {
-
-                    }
-
-                    @Override
-                    public void onNext(SignalingSettingsOverall signalingSettingsOverall) {
-                        IceServer iceServer;
-                        for (int i = 0; i < signalingSettingsOverall.getOcs().getSettings().getStunServers().size();
-                             i++) {
-                            iceServer = signalingSettingsOverall.getOcs().getSettings().getStunServers().get(i);
-                            if (TextUtils.isEmpty(iceServer.getUsername()) || TextUtils.isEmpty(iceServer
-                                    .getCredential())) {
-                                iceServers.add(new PeerConnection.IceServer(iceServer.getUrl()));
-                            } else {
-                                iceServers.add(new PeerConnection.IceServer(iceServer.getUrl(),
-                                        iceServer.getUsername(), iceServer.getCredential()));
-                            }
-                        }
-
-                        for (int i = 0; i < signalingSettingsOverall.getOcs().getSettings().getTurnServers().size();
-                             i++) {
-                            iceServer = signalingSettingsOverall.getOcs().getSettings().getTurnServers().get(i);
-                            for (int j = 0; j < iceServer.getUrls().size(); j++) {
-                                if (TextUtils.isEmpty(iceServer.getUsername()) || TextUtils.isEmpty(iceServer
-                                        .getCredential())) {
-                                    iceServers.add(new PeerConnection.IceServer(iceServer.getUrls().get(j)));
-                                } else {
-                                    iceServers.add(new PeerConnection.IceServer(iceServer.getUrls().get(j),
-                                            iceServer.getUsername(), iceServer.getCredential()));
-                                }
-                            }
-                        }
-
-                        if (restart) {
-                            performIceRestart();
-                        } else {
-                            joinRoomAndCall();
-                        }
-                    }
-
-                    @Override
-                    public void onError(Throwable e) {
-                    }
-
-                    @Override
-                    public void onComplete() {
-
-                    }
-                });
-    }
-
-    private void startVideoCapture() {
-        if (videoCapturer != null) {
-            videoCapturer.startCapture(1280, 720, 30);
-        }
-    }
 
-    private void joinRoomAndCall() {
-        if (callSession.equals("0")) {
-            ncApi.joinRoom(credentials, ApiHelper.getUrlForRoomParticipants(userEntity.getBaseUrl(), roomToken), null)
-                    .subscribeOn(Schedulers.newThread())
-                    .observeOn(AndroidSchedulers.mainThread())
-                    .retry(3)
-                    .subscribe(new Observer<CallOverall>() {
-                        @Override
-                        public void onSubscribe(Disposable d) {
-
-                        }
-
-                        @Override
-                        public void onNext(CallOverall callOverall) {
-                            performCall(callOverall.getOcs().getData().getSessionId());
-                        }
-
-                        @Override
-                        public void onError(Throwable e) {
-
-                        }
-
-                        @Override
-                        public void onComplete() {
-
-                        }
-                    });
-        } else {
-            performCall(null);
-        }
+        callService.startCall(roomToken, callSessionId);
     }
 
-    private void performCall(@Nullable String callSessionId) {
-        ncApi.joinCall(credentials,
-                ApiHelper.getUrlForCall(userEntity.getBaseUrl(), roomToken))
-                .subscribeOn(Schedulers.newThread())
-                .retry(3)
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(new Observer<GenericOverall>() {
-                    @Override
-                    public void onSubscribe(Disposable d) {
-
-                    }
-
-                    @Override
-                    public void onNext(GenericOverall genericOverall) {
-                        inCall = true;
-                        if (callSessionId != null) {
-                            callSession = callSessionId;
-                        }
-
-                        // start pinging the call
-                        ncApi.pingCall(ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken()),
-                                ApiHelper.getUrlForCallPing(userEntity.getBaseUrl(), roomToken))
-                                .subscribeOn(Schedulers.newThread())
-                                .observeOn(AndroidSchedulers.mainThread())
-                                .repeatWhen(observable -> observable.delay(5000, TimeUnit.MILLISECONDS))
-                                .takeWhile(observable -> inCall)
-                                .retry(3, observable -> inCall)
-                                .subscribe(new Observer<GenericOverall>() {
-                                    @Override
-                                    public void onSubscribe(Disposable d) {
-                                        pingDisposable = d;
-                                    }
-
-                                    @Override
-                                    public void onNext(GenericOverall genericOverall) {
-
-                                    }
-
-                                    @Override
-                                    public void onError(Throwable e) {
-                                        dispose(pingDisposable);
-                                    }
-
-                                    @Override
-                                    public void onComplete() {
-                                        dispose(pingDisposable);
-                                    }
-                                });
-
-                        // Start pulling signaling messages
-                        ncApi.pullSignalingMessages(ApiHelper.getCredentials(userEntity.getUsername(),
-                                userEntity.getToken()), ApiHelper.getUrlForSignaling(userEntity.getBaseUrl()))
-                                .subscribeOn(Schedulers.newThread())
-                                .observeOn(AndroidSchedulers.mainThread())
-                                .repeatWhen(observable -> observable)
-                                .takeWhile(observable -> inCall)
-                                .retry(3, observable -> inCall)
-                                .subscribe(new Observer<SignalingOverall>() {
-                                    @Override
-                                    public void onSubscribe(Disposable d) {
-                                        signalingDisposable = d;
-                                    }
-
-                                    @Override
-                                    public void onNext(SignalingOverall signalingOverall) {
-                                        if (signalingOverall.getOcs().getSignalings() != null) {
-                                            for (int i = 0; i < signalingOverall.getOcs().getSignalings().size(); i++) {
-                                                try {
-                                                    receivedSignalingMessage(signalingOverall.getOcs().getSignalings().get(i));
-                                                } catch (IOException e) {
-                                                    Log.e(TAG, "Failed to process received signaling" +
-                                                            " message");
-                                                }
-                                            }
-                                        }
-                                    }
-
-                                    @Override
-                                    public void onError(Throwable e) {
-                                        dispose(signalingDisposable);
-                                    }
-
-                                    @Override
-                                    public void onComplete() {
-                                        dispose(signalingDisposable);
-                                    }
-                                });
-
-
-                    }
-
-                    @Override
-                    public void onError(Throwable e) {
-                    }
-
-                    @Override
-                    public void onComplete() {
-
-                    }
-                });
-    }
-
-    private void receivedSignalingMessage(Signaling signaling) throws IOException {
-        String messageType = signaling.getType();
-
-        if (leavingCall) {
-            return;
-        }
-
-        if ("usersInRoom".equals(messageType)) {
-            processUsersInRoom((List<HashMap<String, String>>) signaling.getMessageWrapper());
-        } else if ("message".equals(messageType)) {
-            NCSignalingMessage ncSignalingMessage = LoganSquare.parse(signaling.getMessageWrapper().toString(),
-                    NCSignalingMessage.class);
-            if (ncSignalingMessage.getRoomType().equals("video")) {
-                MagicPeerConnectionWrapper magicPeerConnectionWrapper = alwaysGetPeerConnectionWrapperForSessionId
-                        (ncSignalingMessage.getFrom());
-
-                String type = null;
-                if (ncSignalingMessage.getPayload() != null && ncSignalingMessage.getPayload().getType() !=
-                        null) {
-                    type = ncSignalingMessage.getPayload().getType();
-                } else if (ncSignalingMessage.getType() != null) {
-                    type = ncSignalingMessage.getType();
-                }
-
-                if (type != null) {
-                    switch (type) {
-                        case "offer":
-                        case "answer":
-                            magicPeerConnectionWrapper.setNick(ncSignalingMessage.getPayload().getNick());
-                            String sessionDescriptionStringWithPreferredCodec = MagicWebRTCUtils.preferCodec
-                                    (ncSignalingMessage.getPayload().getSdp(),
-                                            "VP8", false);
-
-                            SessionDescription sessionDescriptionWithPreferredCodec = new SessionDescription(
-                                    SessionDescription.Type.fromCanonicalForm(type),
-                                    sessionDescriptionStringWithPreferredCodec);
-
-                            if (magicPeerConnectionWrapper.getPeerConnection() != null) {
-                                magicPeerConnectionWrapper.getPeerConnection().setRemoteDescription(magicPeerConnectionWrapper
-                                        .getMagicSdpObserver(), sessionDescriptionWithPreferredCodec);
-                            }
-                            break;
-                        case "candidate":
-                            NCIceCandidate ncIceCandidate = ncSignalingMessage.getPayload().getIceCandidate();
-                            IceCandidate iceCandidate = new IceCandidate(ncIceCandidate.getSdpMid(),
-                                    ncIceCandidate.getSdpMLineIndex(), ncIceCandidate.getCandidate());
-                            magicPeerConnectionWrapper.addCandidate(iceCandidate);
-                            break;
-                        case "endOfCandidates":
-                            magicPeerConnectionWrapper.drainIceCandidates();
-                            break;
-                        default:
-                            break;
-                    }
-                }
-            } else {
-                Log.d(TAG, "Something went very very wrong");
-            }
-        } else {
-            Log.d(TAG, "Something went very very wrong");
-        }
-    }
-
-    // This method is called when the audio manager reports audio device change,
-    // e.g. from wired headset to speakerphone.
-    private void onAudioManagerDevicesChanged(
-            final MagicAudioManager.AudioDevice device, final Set<MagicAudioManager.AudioDevice> availableDevices) {
-        Log.d(TAG, "onAudioManagerDevicesChanged: " + availableDevices + ", "
-                + "selected: " + device);
-    }
-
-    private void processUsersInRoom(List<HashMap<String, String>> users) {
-        List<String> newSessions = new ArrayList<>();
-        Set<String> oldSesssions = new HashSet<>();
-
-        for (HashMap<String, String> participant : users) {
-            if (!participant.get("sessionId").equals(callSession) && !participant.get("userId").equals(userEntity
-                    .getUserId())) {
-                Object inCallObject = participant.get("inCall");
-                if ((boolean) inCallObject) {
-                    newSessions.add(participant.get("sessionId"));
-                } else {
-                    oldSesssions.add(participant.get("sessionId"));
-                }
-            }
-        }
-
-        for (MagicPeerConnectionWrapper magicPeerConnectionWrapper : magicPeerConnectionWrapperList) {
-            oldSesssions.add(magicPeerConnectionWrapper.getSessionId());
-        }
-
-        // Calculate sessions that left the call
-        oldSesssions.removeAll(newSessions);
-
-        // Calculate sessions that join the call
-        newSessions.removeAll(oldSesssions);
-
-        if (leavingCall) {
-            return;
-        }
-
-        for (String sessionId : newSessions) {
-            alwaysGetPeerConnectionWrapperForSessionId(sessionId);
-        }
-
-        for (String sessionId : oldSesssions) {
-            endPeerConnection(sessionId);
-        }
+    private boolean isInCall() {
+        return callService != null && callService.isInCall();
     }
 
-
-    private void deleteMagicPeerConnection(MagicPeerConnectionWrapper magicPeerConnectionWrapper) {
-        magicPeerConnectionWrapper.removePeerConnection();
-        magicPeerConnectionWrapperList.remove(magicPeerConnectionWrapper);
+    @OnClick({R.id.pip_video_view, R.id.remote_renderers_layout})
+    public void showCallControls() {
+        animateCallControls(true, 0);
     }
 
-    private MagicPeerConnectionWrapper alwaysGetPeerConnectionWrapperForSessionId(String sessionId) {
-        MagicPeerConnectionWrapper magicPeerConnectionWrapper;
-        if ((magicPeerConnectionWrapper = getPeerConnectionWrapperForSessionId(sessionId)) != null) {
-            return magicPeerConnectionWrapper;
+    private void hangup() {
+        if (callService != null) {
+            // the tiles go away along with the activity once the service says the call has ended
+            callService.hangup();
         } else {
-            magicPeerConnectionWrapper = new MagicPeerConnectionWrapper(peerConnectionFactory,
-                    iceServers, sdpConstraints, sessionId, callSession, localMediaStream);
-            magicPeerConnectionWrapperList.add(magicPeerConnectionWrapper);
-            return magicPeerConnectionWrapper;
-        }
-    }
-
-    private MagicPeerConnectionWrapper getPeerConnectionWrapperForSessionId(String sessionId) {
-        for (MagicPeerConnectionWrapper magicPeerConnectionWrapper : magicPeerConnectionWrapperList) {
-            if (magicPeerConnectionWrapper.getSessionId().equals(sessionId)) {
-                return magicPeerConnectionWrapper;
-            }
-        }
-        return null;
-    }
-
-    private void hangup(boolean dueToNetworkChange) {
-
-        leavingCall = true;
-        inCall = false;
-
-        if (videoCapturer != null) {
-            try {
-                videoCapturer.stopCapture();
-            } catch (InterruptedException e) {
-                Log.e(TAG, "Failed to stop capturing while hanging up");
-            }
-            videoCapturer.dispose();
-            videoCapturer = null;
-        }
-
-        for (int i = 0; i < magicPeerConnectionWrapperList.size(); i++) {
-            endPeerConnection(magicPeerConnectionWrapperList.get(i).getSessionId());
-
+            finish();
         }
-
-        pipVideoView.release();
-
-        if (audioSource != null) {
-            audioSource.dispose();
-            audioSource = null;
-        }
-
-        if (audioManager != null) {
-            audioManager.stop();
-            audioManager = null;
-        }
-
-        if (videoSource != null) {
-            videoSource = null;
-        }
-
-        if (peerConnectionFactory != null) {
-            peerConnectionFactory = null;
-        }
-
-        localMediaStream = null;
-        localAudioTrack = null;
-        localVideoTrack = null;
-
-        hangupNetworkCalls();
-    }
-
-    private void hangupNetworkCalls() {
-        String credentials = ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken());
-        ncApi.leaveCall(credentials, ApiHelper.getUrlForCall(userEntity.getBaseUrl(), roomToken))
-                .subscribeOn(Schedulers.newThread())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(new Observer<GenericOverall>() {
-                    @Override
-                    public void onSubscribe(Disposable d) {
-
-                    }
-
-                    @Override
-                    public void onNext(GenericOverall genericOverall) {
-                        ncApi.leaveRoom(credentials, ApiHelper.getUrlForRoomParticipants(userEntity.getBaseUrl(), roomToken))
-                                .subscribeOn(Schedulers.newThread())
-                                .observeOn(AndroidSchedulers.mainThread())
-                                .subscribe(new Observer<GenericOverall>() {
-                                    @Override
-                                    public void onSubscribe(Disposable d) {
-
-                                    }
-
-                                    @Override
-                                    public void onNext(GenericOverall genericOverall) {
-                                        finish();
-                                    }
-
-                                    @Override
-                                    public void onError(Throwable e) {
-
-                                    }
-
-                                    @Override
-                                    public void onComplete() {
-
-                                    }
-                                });
-
-                    }
-
-                    @Override
-                    public void onError(Throwable e) {
-
-                    }
-
-                    @Override
-                    public void onComplete() {
-
-                    }
-                });
     }
 
     private void gotNick(String sessionId, String nick) {
@@ -1170,233 +654,163 @@ public class CallActivity extends AppCompatActivity {
         }
     }
 
-    private void gotRemoteStream(MediaStream stream, String session) {
-        removeMediaStream(session);
+    private void gotRemoteVideoTrack(String sessionId, @Nullable VideoTrack videoTrack) {
+        // participants of a voice call have no video but still get a tile
+        if (callService != null && callService.getRemoteVideoTracks().containsKey(sessionId)) {
+            // a renegotiated stream of the same peer keeps its tile, only the track is swapped
+            participantPager.add(sessionId);
+            updateRemoteRenderers();
+        } else {
+            removeMediaStream(sessionId);
+        }
+
+        callControls.setZ(100.0f);
+    }
+
+    /**
+     * Shows the participants of the current page. Everybody else has no renderer and their video track
+     * is disabled, so their video is neither drawn nor handed to a renderer.
+     */
+    private void updateRemoteRenderers() {
+        if (callService == null) {
+            return;
+        }
+
+        Map<String, VideoTrack> remoteVideoTracks = callService.getRemoteVideoTracks();
+        List<String> visibleSessionIds = participantPager.getVisibleSessionIds();
 
-        if (stream.videoTracks.size() == 1) {
-            VideoTrack videoTrack = stream.videoTracks.get(0);
+        for (String sessionId : rendererPool.getSessionIds()) {
+            if (!visibleSessionIds.contains(sessionId)) {
+                rendererPool.recycle(sessionId);
+            }
+        }
+
+        for (Map.Entry<String, VideoTrack> entry : remoteVideoTracks.entrySet()) {
+            if (entry.getValue() != null) {
+                entry.getValue().setEnabled(visibleSessionIds.contains(entry.getKey()) &&
+                        !callService.isRemoteVideoPaused(entry.getKey()));
+            }
+        }
+
+        boolean landscape = getResources().getConfiguration().orientation == Configuration.ORIENTATION_LANDSCAPE;
+        List<CompositorLayout.Tile> tiles = CompositorLayout.layout(visibleSessionIds,
+                participantPager.hasActiveSpeakerTile(), landscape, remoteRenderersLayout.getWidth(),
+                remoteRenderersLayout.getHeight());
+
+        for (CompositorLayout.Tile tile : tiles) {
+            String sessionId = tile.getSessionId();
             try {
-                RelativeLayout relativeLayout = (RelativeLayout)
-                        getLayoutInflater().inflate(R.layout.surface_renderer, remoteRenderersLayout,
-                                false);
-                relativeLayout.setTag(session);
-                SurfaceViewRenderer surfaceViewRenderer = relativeLayout.findViewById(R.id
-                        .surface_view);
-                surfaceViewRenderer.setMirror(false);
-                surfaceViewRenderer.init(rootEglBase.getEglBaseContext(), null);
-                surfaceViewRenderer.setZOrderMediaOverlay(false);
-                // disabled because it causes some devices to crash
-                surfaceViewRenderer.setEnableHardwareScaler(false);
-                surfaceViewRenderer.setScalingType(RendererCommon.ScalingType.SCALE_ASPECT_FIT);
-                surfaceViewRenderer.setOnClickListener(videoOnClickListener);
-                VideoRenderer remoteRenderer = new VideoRenderer(surfaceViewRenderer);
-                videoTrack.addRenderer(remoteRenderer);
-                remoteRenderersLayout.addView(relativeLayout);
-                gotNick(session, getPeerConnectionWrapperForSessionId(session).getNick());
+                RemoteRenderer remoteRenderer = rendererPool.acquire(sessionId);
+                View layout = remoteRenderer.getLayout();
+                layout.setTag(sessionId);
+                remoteRenderer.attach(sessionId, remoteVideoTracks.get(sessionId));
+
+                // the video itself is drawn underneath by the compositing renderer
+                FrameLayout.LayoutParams layoutParams = new FrameLayout.LayoutParams(tile.getWidth(),
+                        tile.getHeight());
+                layoutParams.leftMargin = tile.getLeft();
+                layoutParams.topMargin = tile.getTop();
+                if (layout.getParent() == null) {
+                    remoteRenderersLayout.addView(layout, layoutParams);
+                } else {
+                    layout.setLayoutParams(layoutParams);
+                }
+
+                CallPeer callPeer = callService.getPeer(sessionId);
+                if (callPeer != null) {
+                    gotNick(sessionId, callPeer.getNick());
+                }
+                gotAudioOrVideoChange(true, sessionId, callService.isRemoteMediaOn(sessionId, true));
+                gotAudioOrVideoChange(false, sessionId, callService.isRemoteMediaOn(sessionId, false));
             } catch (Exception e) {
                 Log.d(TAG, "Failed to create a new video view");
             }
         }
+        compositingRenderer.setTiles(tiles);
 
-        callControls.setZ(100.0f);
+        int pageCount = participantPager.getPageCount();
+        if (pageCount > 1) {
+            participantPageIndicator.setText(String.format(Locale.getDefault(), "%d / %d",
+                    participantPager.getCurrentPage() + 1, pageCount));
+            participantPageIndicator.setVisibility(View.VISIBLE);
+        } else {
+            participantPageIndicator.setVisibility(View.GONE);
+        }
     }
 
     @Override
-    public void onDestroy() {
-        if (inCall) {
-            hangup(false);
-        }
-        //this.unregisterReceiver(networkBroadcastReceier);
-        rootEglBase.release();
-        super.onDestroy();
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        // the tiles handle clicks themselves, so horizontal swipes are picked up before they get them
+        pageGestureDetector.onTouchEvent(event);
+        return super.dispatchTouchEvent(event);
     }
 
-    private void dispose(@Nullable Disposable disposable) {
-        if (disposable != null && !disposable.isDisposed()) {
-            disposable.dispose();
-        } else if (disposable == null) {
-
-            if (pingDisposable != null && !pingDisposable.isDisposed()) {
-                pingDisposable.dispose();
-                pingDisposable = null;
+    @Override
+    public void onDestroy() {
+        if (callService != null) {
+            callService.setCallListener(null);
+            if (isFinishing() && callService.isPrepared()) {
+                callService.hangup();
             }
 
-            if (signalingDisposable != null && !signalingDisposable.isDisposed()) {
-                signalingDisposable.dispose();
-                signalingDisposable = null;
+            // the call itself goes on in the service, only the renderers go away
+            callService.setLocalRenderer(null);
+            rendererPool.clear();
+            compositingRenderer.release();
+            if (!audioOnly) {
+                pipVideoView.release();
             }
+            callService = null;
         }
+        unbindService(callServiceConnection);
+        super.onDestroy();
     }
 
     @Override
     public void onStart() {
         super.onStart();
-        eventBus.register(this);
-        if (videoOn && EffortlessPermissions.hasPermissions(this, PERMISSIONS_CAMERA)) {
-            startVideoCapture();
+        if (callService != null && videoOn && EffortlessPermissions.hasPermissions(this, PERMISSIONS_CAMERA)) {
+            callService.startVideoCapture();
         }
     }
 
     @Override
     public void onStop() {
         super.onStop();
-        eventBus.unregister(this);
-        if (videoCapturer != null && EffortlessPermissions.hasPermissions(this, PERMISSIONS_CAMERA)) {
-            try {
-                videoCapturer.stopCapture();
-            } catch (InterruptedException e) {
-                Log.e(TAG, "Failed to stop the capturing process");
-            }
-        }
-    }
-
-    @Subscribe(threadMode = ThreadMode.BACKGROUND)
-    public void onMessageEvent(PeerConnectionEvent peerConnectionEvent) {
-        if (peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent.PeerConnectionEventType
-                .CLOSE_PEER)) {
-            endPeerConnection(peerConnectionEvent.getSessionId());
-        } else if (peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent
-                .PeerConnectionEventType.SENSOR_FAR) ||
-                peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent
-                        .PeerConnectionEventType.SENSOR_NEAR)) {
-            boolean enableVideo = peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent
-                    .PeerConnectionEventType.SENSOR_FAR) && videoOn;
-            if (EffortlessPermissions.hasPermissions(this, PERMISSIONS_CAMERA) && inCall && videoOn
-                    && enableVideo != localVideoTrack.enabled()) {
-                runOnUiThread(() -> toggleMedia(enableVideo, true));
-            }
-        } else if (peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent
-                .PeerConnectionEventType.NICK_CHANGE)) {
-            runOnUiThread(() -> gotNick(peerConnectionEvent.getSessionId(), peerConnectionEvent.getNick()));
-        } else if (peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent
-                .PeerConnectionEventType.VIDEO_CHANGE)) {
-            runOnUiThread(() -> gotAudioOrVideoChange(true, peerConnectionEvent.getSessionId(),
-                    peerConnectionEvent.getChangeValue()));
-        } else if (peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent
-                .PeerConnectionEventType.AUDIO_CHANGE)) {
-            runOnUiThread(() -> gotAudioOrVideoChange(false, peerConnectionEvent.getSessionId(),
-                    peerConnectionEvent.getChangeValue()));
+        // the camera can't be used in the background, the rest of the call goes on
+        if (callService != null) {
+            callService.stopVideoCapture();
         }
     }
 
-    private void endPeerConnection(String sessionId) {
-        MagicPeerConnectionWrapper magicPeerConnectionWrapper;
-        if ((magicPeerConnectionWrapper = getPeerConnectionWrapperForSessionId(sessionId)) != null) {
-            runOnUiThread(() -> removeMediaStream(sessionId));
-            deleteMagicPeerConnection(magicPeerConnectionWrapper);
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            // renderers in use are kept, only the spare ones are released
+            rendererPool.trim();
         }
     }
 
     private void removeMediaStream(String sessionId) {
-        if (remoteRenderersLayout.getChildCount() > 0) {
-            RelativeLayout relativeLayout = remoteRenderersLayout.findViewWithTag(sessionId);
-            if (relativeLayout != null) {
-                SurfaceViewRenderer surfaceViewRenderer = relativeLayout.findViewById(R.id.surface_view);
-                surfaceViewRenderer.release();
-                remoteRenderersLayout.removeView(relativeLayout);
-                remoteRenderersLayout.invalidate();
-            }
-        }
+        participantPager.remove(sessionId);
+        rendererPool.recycle(sessionId);
+        // somebody from the next page may move up
+        updateRemoteRenderers();
 
         callControls.setZ(100.0f);
     }
 
-    @Subscribe(threadMode = ThreadMode.MAIN)
-    public void onMessageEvent(MediaStreamEvent mediaStreamEvent) {
-        if (mediaStreamEvent.getMediaStream() != null) {
-            gotRemoteStream(mediaStreamEvent.getMediaStream(), mediaStreamEvent.getSession());
-        } else {
-            removeMediaStream(mediaStreamEvent.getSession());
-        }
-    }
-
-    @Subscribe(threadMode = ThreadMode.BACKGROUND)
-    public void onMessageEvent(SessionDescriptionSendEvent sessionDescriptionSend) throws IOException {
-        String credentials = ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken());
-        NCMessageWrapper ncMessageWrapper = new NCMessageWrapper();
-        ncMessageWrapper.setEv("message");
-        ncMessageWrapper.setSessionId(callSession);
-        NCSignalingMessage ncSignalingMessage = new NCSignalingMessage();
-        ncSignalingMessage.setTo(sessionDescriptionSend.getPeerId());
-        ncSignalingMessage.setRoomType("video");
-        ncSignalingMessage.setType(sessionDescriptionSend.getType());
-        NCMessagePayload ncMessagePayload = new NCMessagePayload();
-        ncMessagePayload.setType(sessionDescriptionSend.getType());
-
-        if (!"candidate".equals(sessionDescriptionSend.getType())) {
-            ncMessagePayload.setSdp(sessionDescriptionSend.getSessionDescription().description);
-            ncMessagePayload.setNick(userEntity.getDisplayName());
-        } else {
-            ncMessagePayload.setIceCandidate(sessionDescriptionSend.getNcIceCandidate());
-        }
-
-
-        // Set all we need
-        ncSignalingMessage.setPayload(ncMessagePayload);
-        ncMessageWrapper.setSignalingMessage(ncSignalingMessage);
-
-
-        StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append("{");
-        stringBuilder.append("\"fn\":\"");
-        stringBuilder.append(StringEscapeUtils.escapeJson(LoganSquare.serialize(ncMessageWrapper
-                .getSignalingMessage()))).append("\"");
-        stringBuilder.append(",");
-        stringBuilder.append("\"sessionId\":");
-        stringBuilder.append("\"").append(StringEscapeUtils.escapeJson(callSession)).append("\"");
-        stringBuilder.append(",");
-        stringBuilder.append("\"ev\":\"message\"");
-        stringBuilder.append("}");
-
-        List<String> strings = new ArrayList<>();
-        String stringToSend = stringBuilder.toString();
-        strings.add(stringToSend);
-
-        ncApi.sendSignalingMessages(credentials, ApiHelper.getUrlForSignaling(userEntity.getBaseUrl()),
-                strings.toString())
-                .retry(3)
-                .subscribeOn(Schedulers.newThread())
-                .subscribe(new Observer<SignalingOverall>() {
-                    @Override
-                    public void onSubscribe(Disposable d) {
-
-                    }
-
-                    @Override
-                    public void onNext(SignalingOverall signalingOverall) {
-                        if (signalingOverall.getOcs().getSignalings() != null) {
-                            for (int i = 0; i < signalingOverall.getOcs().getSignalings().size(); i++) {
-                                try {
-                                    receivedSignalingMessage(signalingOverall.getOcs().getSignalings().get(i));
-                                } catch (IOException e) {
-                                    e.printStackTrace();
-                                }
-                            }
-                        }
-                    }
-
-                    @Override
-                    public void onError(Throwable e) {
-                    }
-
-                    @Override
-                    public void onComplete() {
-
-                    }
-                });
-    }
-
     @Override
     public void onConfigurationChanged(Configuration newConfig) {
 
-        // Checks the orientation of the screen
-        if (newConfig.orientation == Configuration.ORIENTATION_LANDSCAPE) {
-            remoteRenderersLayout.setOrientation(LinearLayout.HORIZONTAL);
-        } else if (newConfig.orientation == Configuration.ORIENTATION_PORTRAIT) {
-            remoteRenderersLayout.setOrientation(LinearLayout.VERTICAL);
-        }
+        participantPager.setTilesPerPage(ParticipantPager.getTilesPerPage(newConfig.screenWidthDp,
+                newConfig.screenHeightDp));
 
         super.onConfigurationChanged(newConfig);
+
+        // the grid follows the orientation of the screen
+        updateRemoteRenderers();
     }
 
     @Override
@@ -1408,14 +822,6 @@ public class CallActivity extends AppCompatActivity {
                 this);
     }
 
-    private void registerNetworkReceiver() {
-        IntentFilter intentFilter = new IntentFilter();
-        intentFilter.addAction("android.net.conn.CONNECTIVITY_CHANxGE");
-        intentFilter.addAction("android.net.wifi.STATE_CHANGE");
-
-        this.registerReceiver(networkBroadcastReceier, intentFilter);
-    }
-
     private void animateCallControls(boolean show, long startDelay) {
         if (!isPTTActive) {
             float alpha;
@@ -1470,7 +876,7 @@ public class CallActivity extends AppCompatActivity {
 
     @Override
     public void onBackPressed() {
-        hangup(false);
+        hangup();
     }
 
     private class microphoneButtonTouchListener implements View.OnTouchListener {
@@ -1497,4 +903,112 @@ public class CallActivity extends AppCompatActivity {
             showCallControls();
         }
     }
+
+    private class remoteRendererAllocator implements RendererPool.Allocator<RemoteRenderer> {
+
+        @Override
+        public RemoteRenderer create() {
+            RelativeLayout relativeLayout = (RelativeLayout)
+                    getLayoutInflater().inflate(R.layout.surface_renderer, remoteRenderersLayout, false);
+            relativeLayout.setOnClickListener(videoOnClickListener);
+            return new RemoteRenderer(relativeLayout, compositingRenderer);
+        }
+
+        @Override
+        public void recycle(RemoteRenderer remoteRenderer) {
+            remoteRenderer.detach();
+            remoteRenderer.removeFromParent();
+
+            View layout = remoteRenderer.getLayout();
+            layout.setTag(null);
+            layout.findViewById(R.id.remote_video_off).setVisibility(View.INVISIBLE);
+            layout.findViewById(R.id.remote_audio_off).setVisibility(View.INVISIBLE);
+            ((TextView) layout.findViewById(R.id.peer_nick_text_view)).setText(null);
+        }
+
+        @Override
+        public void release(RemoteRenderer remoteRenderer) {
+            // only views, the video of all tiles belongs to the compositing renderer
+        }
+    }
+
+    private class pageGestureListener extends GestureDetector.SimpleOnGestureListener {
+
+        @Override
+        public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+            if (Math.abs(velocityX) <= Math.abs(velocityY)) {
+                return false;
+            }
+
+            boolean pageChanged = velocityX < 0 ? participantPager.nextPage() : participantPager.previousPage();
+            if (pageChanged) {
+                updateRemoteRenderers();
+            }
+            return pageChanged;
+        }
+    }
+
+    private class callServiceConnection implements ServiceConnection {
+
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            callService = ((CallService.CallBinder) service).getService();
+            onCallServiceConnected();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            // only happens when the process of the service is gone, and the call with it
+            callService = null;
+            finish();
+        }
+    }
+
+    private class callServiceListener implements CallService.CallListener {
+
+        @Override
+        public void onRemoteVideoTrackChanged(String sessionId, @Nullable VideoTrack videoTrack) {
+            gotRemoteVideoTrack(sessionId, videoTrack);
+        }
+
+        @Override
+        public void onRemoteMediaChanged(String sessionId, boolean video, boolean on) {
+            gotAudioOrVideoChange(video, sessionId, on);
+        }
+
+        @Override
+        public void onNickChanged(String sessionId, String nick) {
+            gotNick(sessionId, nick);
+        }
+
+        @Override
+        public void onLocalVideoChanged(boolean enabled) {
+            showLocalMedia(enabled, true);
+        }
+
+        @Override
+        public void onActiveSpeakerChanged(String sessionId) {
+            if (participantPager.setActiveSpeaker(sessionId)) {
+                updateRemoteRenderers();
+            }
+        }
+
+        @Override
+        public void onRemoteVideoPaused(String sessionId, boolean paused) {
+            // enables or disables the track and shows whether the video is off
+            updateRemoteRenderers();
+        }
+
+        @Override
+        public void onCallStats(CallStats callStats) {
+            if (callStatsOverlay.getVisibility() == View.VISIBLE) {
+                callStatsOverlay.setText(formatCallStats(callStats));
+            }
+        }
+
+        @Override
+        public void onCallEnded() {
+            finish();
+        }
+    }
 }
@@ -0,0 +1,51 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.api;
+
+import com.nextcloud.talk.api.models.json.call.CallOverall;
+import com.nextcloud.talk.api.models.json.generic.GenericOverall;
+import com.nextcloud.talk.api.models.json.signaling.settings.SignalingSettingsOverall;
+
+import io.reactivex.Observable;
+
+/**
+ * The requests a call needs, already bound to one account and one room.
+ * NcCallApi implements it on top of NcApi; tests can replace it without a server.
+ */
+public interface CallApi {
+
+    /**
+     * May answer from a cache; use refreshSignalingSettings() when the cached settings must not be used.
+     */
+    Observable<SignalingSettingsOverall> getSignalingSettings();
+
+    Observable<SignalingSettingsOverall> refreshSignalingSettings();
+
+    Observable<CallOverall> joinRoom();
+
+    Observable<GenericOverall> leaveRoom();
+
+    Observable<GenericOverall> joinCall();
+
+    Observable<GenericOverall> leaveCall();
+
+    Observable<GenericOverall> pingCall();
+}
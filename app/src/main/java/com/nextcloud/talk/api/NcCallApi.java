@@ -0,0 +1,91 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.api;
+
+import com.nextcloud.talk.api.helpers.api.ApiHelper;
+import com.nextcloud.talk.api.models.json.call.CallOverall;
+import com.nextcloud.talk.api.models.json.generic.GenericOverall;
+import com.nextcloud.talk.api.models.json.signaling.settings.SignalingSettingsOverall;
+import com.nextcloud.talk.persistence.entities.UserEntity;
+
+import io.reactivex.Observable;
+
+public class NcCallApi implements CallApi {
+    private final NcApi ncApi;
+    private final SignalingSettingsCache signalingSettingsCache;
+    private final String accountKey;
+    private final String credentials;
+    private final String baseUrl;
+    private final String roomToken;
+
+    public NcCallApi(NcApi ncApi, SignalingSettingsCache signalingSettingsCache, UserEntity userEntity,
+                     String roomToken) {
+        this.ncApi = ncApi;
+        this.signalingSettingsCache = signalingSettingsCache;
+        this.accountKey = getAccountKey(userEntity);
+        this.credentials = ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken());
+        this.baseUrl = userEntity.getBaseUrl();
+        this.roomToken = roomToken;
+    }
+
+    public static String getAccountKey(UserEntity userEntity) {
+        return userEntity.getUsername() + "@" + userEntity.getBaseUrl();
+    }
+
+    @Override
+    public Observable<SignalingSettingsOverall> getSignalingSettings() {
+        return signalingSettingsCache.get(accountKey, fetchSignalingSettings());
+    }
+
+    @Override
+    public Observable<SignalingSettingsOverall> refreshSignalingSettings() {
+        return signalingSettingsCache.refresh(accountKey, fetchSignalingSettings());
+    }
+
+    @Override
+    public Observable<CallOverall> joinRoom() {
+        return ncApi.joinRoom(credentials, ApiHelper.getUrlForRoomParticipants(baseUrl, roomToken), null);
+    }
+
+    @Override
+    public Observable<GenericOverall> leaveRoom() {
+        return ncApi.leaveRoom(credentials, ApiHelper.getUrlForRoomParticipants(baseUrl, roomToken));
+    }
+
+    @Override
+    public Observable<GenericOverall> joinCall() {
+        return ncApi.joinCall(credentials, ApiHelper.getUrlForCall(baseUrl, roomToken));
+    }
+
+    @Override
+    public Observable<GenericOverall> leaveCall() {
+        return ncApi.leaveCall(credentials, ApiHelper.getUrlForCall(baseUrl, roomToken));
+    }
+
+    @Override
+    public Observable<GenericOverall> pingCall() {
+        return ncApi.pingCall(credentials, ApiHelper.getUrlForCallPing(baseUrl, roomToken));
+    }
+
+    private Observable<SignalingSettingsOverall> fetchSignalingSettings() {
+        return ncApi.getSignalingSettings(credentials, ApiHelper.getUrlForSignalingSettings(baseUrl));
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.api;
+
+import com.nextcloud.talk.api.models.json.signaling.settings.SignalingSettingsOverall;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Keeps the signaling settings (STUN/TURN servers and the TURN credentials) of every account for a while,
+ * so that starting a call doesn't have to wait for them. The server hands out TURN credentials that are
+ * valid for a day, the TTL stays well below that.
+ * Concurrent requests for the same account share one network request.
+ */
+public class SignalingSettingsCache {
+    public static final long DEFAULT_TTL_MS = TimeUnit.MINUTES.toMillis(15);
+
+    private final long ttlMs;
+    // only used as a clock, so tests can move time forward with a TestScheduler
+    private final Scheduler clock;
+
+    private final Map<String, CachedSettings> cachedSettings = new HashMap<>();
+    private final Map<String, Observable<SignalingSettingsOverall>> inFlightRequests = new HashMap<>();
+
+    private long hits;
+    private long misses;
+
+    public SignalingSettingsCache() {
+        this(DEFAULT_TTL_MS, Schedulers.computation());
+    }
+
+    public SignalingSettingsCache(long ttlMs, Scheduler clock) {
+        this.ttlMs = ttlMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Emits the cached settings of the account if they are still fresh, otherwise subscribes to the
+     * given request (or joins the one already running) and caches what it returns.
+     */
+    public Observable<SignalingSettingsOverall> get(String accountKey, Observable<SignalingSettingsOverall> request) {
+        return Observable.defer(() -> {
+            SignalingSettingsOverall signalingSettingsOverall = getIfFresh(accountKey);
+            if (signalingSettingsOverall != null) {
+                return Observable.just(signalingSettingsOverall);
+            }
+
+            return fetch(accountKey, request);
+        });
+    }
+
+    /**
+     * Ignores the cached settings and fetches them again, e.g. when TURN credentials might have expired.
+     */
+    public Observable<SignalingSettingsOverall> refresh(String accountKey,
+                                                         Observable<SignalingSettingsOverall> request) {
+        return Observable.defer(() -> {
+            invalidate(accountKey);
+            return fetch(accountKey, request);
+        });
+    }
+
+    public synchronized void invalidate(String accountKey) {
+        cachedSettings.remove(accountKey);
+    }
+
+    public synchronized void clear() {
+        cachedSettings.clear();
+    }
+
+    public synchronized boolean isFresh(String accountKey) {
+        CachedSettings cached = cachedSettings.get(accountKey);
+        return cached != null && now() - cached.fetchedAtMs < ttlMs;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private synchronized SignalingSettingsOverall getIfFresh(String accountKey) {
+        if (!isFresh(accountKey)) {
+            return null;
+        }
+
+        hits++;
+        return cachedSettings.get(accountKey).signalingSettingsOverall;
+    }
+
+    private synchronized Observable<SignalingSettingsOverall> fetch(String accountKey,
+                                                                   Observable<SignalingSettingsOverall> request) {
+        Observable<SignalingSettingsOverall> inFlightRequest = inFlightRequests.get(accountKey);
+        if (inFlightRequest != null) {
+            return inFlightRequest;
+        }
+
+        misses++;
+        // cache() keeps the request running even if the first subscriber goes away, so a prefetch
+        // still fills the cache
+        inFlightRequest = request
+                .doOnNext(signalingSettingsOverall -> put(accountKey, signalingSettingsOverall))
+                .doOnTerminate(() -> requestFinished(accountKey))
+                .cache();
+        inFlightRequests.put(accountKey, inFlightRequest);
+        return inFlightRequest;
+    }
+
+    private synchronized void put(String accountKey, SignalingSettingsOverall signalingSettingsOverall) {
+        cachedSettings.put(accountKey, new CachedSettings(signalingSettingsOverall, now()));
+    }
+
+    private synchronized void requestFinished(String accountKey) {
+        inFlightRequests.remove(accountKey);
+    }
+
+    private long now() {
+        return clock.now(TimeUnit.MILLISECONDS);
+    }
+
+    private static class CachedSettings {
+        final SignalingSettingsOverall signalingSettingsOverall;
+        final long fetchedAtMs;
+
+        CachedSettings(SignalingSettingsOverall signalingSettingsOverall, long fetchedAtMs) {
+            this.signalingSettingsOverall = signalingSettingsOverall;
+            this.fetchedAtMs = fetchedAtMs;
+        }
+    }
+}
@@ -121,6 +121,29 @@ public class ApiHelper {
         return getUrlForSignaling(baseUrl) + "/settings";
     }
 
+    public static String getUrlForSignalingBackend(String baseUrl) {
+        return getUrlForSignaling(baseUrl) + "/backend";
+    }
+
+    public static String getUrlForExternalSignalingServer(String server) {
+        String url = server;
+        if (url.startsWith("https://")) {
+            url = "wss://" + url.substring("https://".length());
+        } else if (url.startsWith("http://")) {
+            url = "ws://" + url.substring("http://".length());
+        }
+
+        if (url.endsWith("/")) {
+            url = url.substring(0, url.length() - 1);
+        }
+
+        if (!url.endsWith("/spreed")) {
+            url += "/spreed";
+        }
+
+        return url;
+    }
+
 
     public static String getUrlForUserProfile(String baseUrl) {
         return baseUrl + ocsApiVersion + "/cloud/user";
@@ -0,0 +1,162 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.api.models.json.converters;
+
+import com.bluelinelabs.logansquare.JsonMapper;
+import com.bluelinelabs.logansquare.LoganSquare;
+import com.bluelinelabs.logansquare.typeconverters.TypeConverter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.nextcloud.talk.api.models.json.participants.Participant;
+import com.nextcloud.talk.api.models.json.signaling.NCSignalingMessage;
+import com.nextcloud.talk.api.models.json.signaling.Signaling;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes the "data" array of a signaling response straight into typed Signaling objects.
+ * The "type" of every entry decides what its "data" is: "usersInRoom" is a list of participants,
+ * "message" is the signaling message (sent by the server as a JSON encoded string). Should "data"
+ * ever come before "type", the kind of the JSON token is used to tell them apart instead. Entries of
+ * any other type are skipped.
+ */
+public class SignalingListConverter implements TypeConverter<List<Signaling>> {
+    public static final String TYPE_USERS_IN_ROOM = "usersInRoom";
+    public static final String TYPE_MESSAGE = "message";
+
+    private static JsonMapper<Participant> participantMapper;
+    private static JsonMapper<NCSignalingMessage> signalingMessageMapper;
+
+    private static JsonMapper<Participant> getParticipantMapper() {
+        if (participantMapper == null) {
+            participantMapper = LoganSquare.mapperFor(Participant.class);
+        }
+        return participantMapper;
+    }
+
+    private static JsonMapper<NCSignalingMessage> getSignalingMessageMapper() {
+        if (signalingMessageMapper == null) {
+            signalingMessageMapper = LoganSquare.mapperFor(NCSignalingMessage.class);
+        }
+        return signalingMessageMapper;
+    }
+
+    @Override
+    public List<Signaling> parse(JsonParser jsonParser) throws IOException {
+        if (jsonParser.getCurrentToken() == null) {
+            jsonParser.nextToken();
+        }
+
+        if (jsonParser.getCurrentToken() != JsonToken.START_ARRAY) {
+            jsonParser.skipChildren();
+            return null;
+        }
+
+        List<Signaling> signalings = new ArrayList<>();
+        while (jsonParser.nextToken() != JsonToken.END_ARRAY) {
+            Signaling signaling = parseSignaling(jsonParser);
+            // unknown types have nothing we could use
+            if (signaling != null && (signaling.getUsersInRoom() != null || signaling.getSignalingMessage() != null)) {
+                signalings.add(signaling);
+            }
+        }
+
+        return signalings;
+    }
+
+    private Signaling parseSignaling(JsonParser jsonParser) throws IOException {
+        if (jsonParser.getCurrentToken() != JsonToken.START_OBJECT) {
+            jsonParser.skipChildren();
+            return null;
+        }
+
+        Signaling signaling = new Signaling();
+        while (jsonParser.nextToken() != JsonToken.END_OBJECT) {
+            String fieldName = jsonParser.getCurrentName();
+            jsonParser.nextToken();
+
+            if ("type".equals(fieldName)) {
+                signaling.setType(jsonParser.getValueAsString());
+            } else if ("data".equals(fieldName)) {
+                parseData(signaling, jsonParser);
+            } else {
+                jsonParser.skipChildren();
+            }
+        }
+
+        return signaling;
+    }
+
+    private void parseData(Signaling signaling, JsonParser jsonParser) throws IOException {
+        JsonToken token = jsonParser.getCurrentToken();
+        String type = signaling.getType();
+
+        if ((TYPE_USERS_IN_ROOM.equals(type) || type == null) && token == JsonToken.START_ARRAY) {
+            signaling.setUsersInRoom(getParticipantMapper().parseList(jsonParser));
+            if (type == null) {
+                signaling.setType(TYPE_USERS_IN_ROOM);
+            }
+        } else if ((TYPE_MESSAGE.equals(type) || type == null) && token == JsonToken.VALUE_STRING) {
+            signaling.setSignalingMessage(getSignalingMessageMapper().parse(jsonParser.getText()));
+            if (type == null) {
+                signaling.setType(TYPE_MESSAGE);
+            }
+        } else if ((TYPE_MESSAGE.equals(type) || type == null) && token == JsonToken.START_OBJECT) {
+            signaling.setSignalingMessage(getSignalingMessageMapper().parse(jsonParser));
+            if (type == null) {
+                signaling.setType(TYPE_MESSAGE);
+            }
+        } else {
+            jsonParser.skipChildren();
+        }
+    }
+
+    @Override
+    public void serialize(List<Signaling> signalings, String fieldName, boolean writeFieldNameForObject,
+                          JsonGenerator jsonGenerator) throws IOException {
+        if (fieldName != null) {
+            jsonGenerator.writeFieldName(fieldName);
+        }
+
+        if (signalings == null) {
+            jsonGenerator.writeNull();
+            return;
+        }
+
+        jsonGenerator.writeStartArray();
+        for (Signaling signaling : signalings) {
+            jsonGenerator.writeStartObject();
+            jsonGenerator.writeStringField("type", signaling.getType());
+            if (signaling.getUsersInRoom() != null) {
+                jsonGenerator.writeFieldName("data");
+                getParticipantMapper().serialize(signaling.getUsersInRoom(), jsonGenerator);
+            } else if (signaling.getSignalingMessage() != null) {
+                jsonGenerator.writeStringField("data",
+                        getSignalingMessageMapper().serialize(signaling.getSignalingMessage()));
+            }
+            jsonGenerator.writeEndObject();
+        }
+        jsonGenerator.writeEndArray();
+    }
+}
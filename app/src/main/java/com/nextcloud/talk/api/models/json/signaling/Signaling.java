@@ -20,8 +20,9 @@
 
 package com.nextcloud.talk.api.models.json.signaling;
 
-import com.bluelinelabs.logansquare.annotation.JsonField;
-import com.bluelinelabs.logansquare.annotation.JsonObject;
+import com.nextcloud.talk.api.models.json.participants.Participant;
+
+import java.util.List;
 
 import lombok.Data;
 
@@ -30,11 +31,9 @@ import lombok.Data;
  */
 
 @Data
-@JsonObject
 public class Signaling {
-    @JsonField(name = "type")
     String type;
-    //can be NCMessageWrapper or List<HashMap<String,String>>
-    @JsonField(name = "data")
-    Object messageWrapper;
+    // decoded by SignalingListConverter, only the one matching the type is set
+    NCSignalingMessage signalingMessage;
+    List<Participant> usersInRoom;
 }
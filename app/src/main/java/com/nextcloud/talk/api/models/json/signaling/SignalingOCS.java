@@ -22,6 +22,7 @@ package com.nextcloud.talk.api.models.json.signaling;
 
 import com.bluelinelabs.logansquare.annotation.JsonField;
 import com.bluelinelabs.logansquare.annotation.JsonObject;
+import com.nextcloud.talk.api.models.json.converters.SignalingListConverter;
 import com.nextcloud.talk.api.models.json.generic.GenericOCS;
 
 import java.util.List;
@@ -31,6 +32,6 @@ import lombok.Data;
 @Data
 @JsonObject
 public class SignalingOCS extends GenericOCS {
-    @JsonField(name = "data")
+    @JsonField(name = "data", typeConverter = SignalingListConverter.class)
     List<Signaling> signalings;
 }
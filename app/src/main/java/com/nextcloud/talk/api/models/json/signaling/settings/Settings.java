@@ -35,4 +35,11 @@ public class Settings {
 
     @JsonField(name = "turnservers")
     List<IceServer> turnServers;
+
+    // empty unless the server is configured to use an external (standalone) signaling server
+    @JsonField(name = "server")
+    String externalSignalingServer;
+
+    @JsonField(name = "ticket")
+    String externalSignalingTicket;
 }
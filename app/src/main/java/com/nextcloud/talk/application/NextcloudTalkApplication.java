@@ -36,11 +36,13 @@ import com.nextcloud.talk.dagger.modules.BusModule;
 import com.nextcloud.talk.dagger.modules.ContextModule;
 import com.nextcloud.talk.dagger.modules.DatabaseModule;
 import com.nextcloud.talk.dagger.modules.RestModule;
+import com.nextcloud.talk.dagger.modules.WebRtcModule;
 import com.nextcloud.talk.jobs.AccountRemovalJob;
 import com.nextcloud.talk.jobs.PushRegistrationJob;
 import com.nextcloud.talk.jobs.creator.MagicJobCreator;
 import com.nextcloud.talk.utils.database.user.UserModule;
 import com.nextcloud.talk.webrtc.MagicWebRtcLists;
+import com.nextcloud.talk.webrtc.WebRtcRuntime;
 import com.squareup.leakcanary.LeakCanary;
 import com.squareup.leakcanary.RefWatcher;
 
@@ -53,6 +55,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.security.GeneralSecurityException;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import autodagger.AutoComponent;
@@ -65,6 +68,7 @@ import autodagger.AutoInjector;
                 DatabaseModule.class,
                 RestModule.class,
                 UserModule.class,
+                WebRtcModule.class,
         }
 )
 
@@ -83,6 +87,9 @@ public class NextcloudTalkApplication extends MultiDexApplication {
     protected NextcloudTalkApplicationComponent componentApplication;
     //endregion
 
+    @Inject
+    WebRtcRuntime webRtcRuntime;
+
     public static NextcloudTalkApplication getSharedApplication() {
         return sharedApplication;
     }
@@ -113,6 +120,9 @@ public class NextcloudTalkApplication extends MultiDexApplication {
     }
 
     private void initializeWebRtc() {
+        boolean hardwareAccelerationEnabled = !MagicWebRtcLists.HARDWARE_ACCELERATION_VENDOR_BLACKLIST.contains(Build
+                .MANUFACTURER.toLowerCase());
+
         try {
             if (MagicWebRtcLists.HARDWARE_AEC_BLACKLIST.contains(Build.MODEL)) {
                 WebRtcAudioUtils.setWebRtcBasedAcousticEchoCanceler(true);
@@ -123,8 +133,7 @@ public class NextcloudTalkApplication extends MultiDexApplication {
             }
 
             PeerConnectionFactory.initialize(PeerConnectionFactory.InitializationOptions.builder(this)
-                    .setEnableVideoHwAcceleration(!MagicWebRtcLists.HARDWARE_ACCELERATION_VENDOR_BLACKLIST.contains(Build
-                            .MANUFACTURER.toLowerCase()))
+                    .setEnableVideoHwAcceleration(hardwareAccelerationEnabled)
                     .createInitializationOptions());
         } catch (UnsatisfiedLinkError e) {
             Log.w(TAG, e);
@@ -163,6 +172,14 @@ public class NextcloudTalkApplication extends MultiDexApplication {
     }
 
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (webRtcRuntime != null) {
+            webRtcRuntime.onTrimMemory(level);
+        }
+    }
+
     @Override
     public void onTerminate() {
         super.onTerminate();
@@ -184,6 +201,7 @@ public class NextcloudTalkApplication extends MultiDexApplication {
                 .databaseModule(new DatabaseModule())
                 .restModule(new RestModule())
                 .userModule(new UserModule())
+                .webRtcModule(new WebRtcModule())
                 .build();
     }
 
@@ -43,6 +43,7 @@ import com.nextcloud.talk.jobs.PushRegistrationJob;
 import com.nextcloud.talk.utils.ErrorMessageHolder;
 import com.nextcloud.talk.utils.bundle.BundleKeys;
 import com.nextcloud.talk.utils.database.user.UserUtils;
+import com.nextcloud.talk.utils.schedulers.AppSchedulers;
 
 import java.net.CookieManager;
 
@@ -53,7 +54,6 @@ import butterknife.BindView;
 import io.reactivex.CompletableObserver;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
-import io.reactivex.schedulers.Schedulers;
 
 
 @AutoInjector(NextcloudTalkApplication.class)
@@ -64,6 +64,9 @@ public class AccountVerificationController extends BaseController {
     @Inject
     NcApi ncApi;
 
+    @Inject
+    AppSchedulers appSchedulers;
+
     @Inject
     UserUtils userUtils;
 
@@ -142,7 +145,7 @@ public class AccountVerificationController extends BaseController {
         }
 
         statusQueryDisposable = ncApi.getServerStatus(queryUrl)
-                .subscribeOn(Schedulers.newThread())
+                .subscribeOn(appSchedulers.rest())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(status -> {
                     if (checkForcedHttps) {
@@ -168,7 +171,7 @@ public class AccountVerificationController extends BaseController {
         cookieManager.getCookieStore().removeAll();
 
         roomsQueryDisposable = ncApi.getRooms(credentials, ApiHelper.getUrlForGetRooms(baseUrl))
-                .subscribeOn(Schedulers.newThread())
+                .subscribeOn(appSchedulers.rest())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(roomsOverall -> {
                     progressText.setText(String.format(getResources().getString(
@@ -176,7 +179,7 @@ public class AccountVerificationController extends BaseController {
 
                     profileQueryDisposable = ncApi.getUserProfile(credentials,
                             ApiHelper.getUrlForUserProfile(baseUrl))
-                            .subscribeOn(Schedulers.newThread())
+                            .subscribeOn(appSchedulers.rest())
                             .observeOn(AndroidSchedulers.mainThread())
                             .subscribe(userProfileOverall -> {
                                 progressText.setText(progressText.getText().toString() + "\n" +
@@ -197,7 +200,7 @@ public class AccountVerificationController extends BaseController {
                                     dbQueryDisposable = userUtils.createOrUpdateUser(username, token,
                                             baseUrl, displayName, null, true,
                                             userProfileOverall.getOcs().getData().getUserId(), null)
-                                            .subscribeOn(Schedulers.newThread())
+                                            .subscribeOn(appSchedulers.db())
                                             .observeOn(AndroidSchedulers.mainThread())
                                             .subscribe(userEntity -> {
                                                         progressText.setText(progressText.getText().toString()
@@ -68,6 +68,8 @@ import com.nextcloud.talk.persistence.entities.UserEntity;
 import com.nextcloud.talk.utils.bundle.BundleBuilder;
 import com.nextcloud.talk.utils.bundle.BundleKeys;
 import com.nextcloud.talk.utils.database.user.UserUtils;
+import com.nextcloud.talk.utils.schedulers.AppSchedulers;
+import com.nextcloud.talk.webrtc.WebRtcRuntime;
 
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
@@ -86,7 +88,6 @@ import eu.davidea.flexibleadapter.FlexibleAdapter;
 import eu.davidea.flexibleadapter.common.SmoothScrollLinearLayoutManager;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
-import io.reactivex.schedulers.Schedulers;
 import retrofit2.HttpException;
 
 @AutoInjector(NextcloudTalkApplication.class)
@@ -105,6 +106,12 @@ public class CallsListController extends BaseController implements SearchView.On
 
     @Inject
     NcApi ncApi;
+
+    @Inject
+    AppSchedulers appSchedulers;
+
+    @Inject
+    WebRtcRuntime webRtcRuntime;
     @BindView(R.id.recycler_view)
     RecyclerView recyclerView;
 
@@ -142,6 +149,11 @@ public class CallsListController extends BaseController implements SearchView.On
 
         userEntity = userUtils.getCurrentUser();
 
+        if (userEntity != null) {
+            // a call is usually started from here
+            webRtcRuntime.warmUp();
+        }
+
         if (userEntity == null) {
             if (getParentController() != null && getParentController().getRouter() != null) {
                 getParentController().getRouter().setRoot((RouterTransaction.with(new ServerSelectionController())
@@ -248,7 +260,7 @@ public class CallsListController extends BaseController implements SearchView.On
 
         roomsQueryDisposable = ncApi.getRooms(ApiHelper.getCredentials(userEntity.getUsername(),
                 userEntity.getToken()), ApiHelper.getUrlForGetRooms(userEntity.getBaseUrl()))
-                .subscribeOn(Schedulers.newThread())
+                .subscribeOn(appSchedulers.rest())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(roomsOverall -> {
 
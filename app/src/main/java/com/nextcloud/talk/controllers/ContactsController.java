@@ -64,6 +64,7 @@ import com.nextcloud.talk.models.RetrofitBucket;
 import com.nextcloud.talk.persistence.entities.UserEntity;
 import com.nextcloud.talk.utils.bundle.BundleBuilder;
 import com.nextcloud.talk.utils.database.user.UserUtils;
+import com.nextcloud.talk.utils.schedulers.AppSchedulers;
 
 import org.parceler.Parcels;
 
@@ -83,7 +84,6 @@ import eu.davidea.flexibleadapter.common.SmoothScrollLinearLayoutManager;
 import io.reactivex.Observer;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
-import io.reactivex.schedulers.Schedulers;
 import retrofit2.HttpException;
 
 @AutoInjector(NextcloudTalkApplication.class)
@@ -99,6 +99,9 @@ public class ContactsController extends BaseController implements SearchView.OnQ
 
     @Inject
     NcApi ncApi;
+
+    @Inject
+    AppSchedulers appSchedulers;
     @BindView(R.id.recycler_view)
     RecyclerView recyclerView;
 
@@ -232,7 +235,7 @@ public class ContactsController extends BaseController implements SearchView.OnQ
         contactsQueryDisposable = ncApi.getContactsWithSearchParam(
                 ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken()),
                 retrofitBucket.getUrl(), retrofitBucket.getQueryMap())
-                .subscribeOn(Schedulers.newThread())
+                .subscribeOn(appSchedulers.rest())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(shareesOverall -> {
                             if (shareesOverall != null) {
@@ -444,7 +447,7 @@ public class ContactsController extends BaseController implements SearchView.OnQ
                 userItem.getModel().getUserId());
         ncApi.createRoom(ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken()),
                 retrofitBucket.getUrl(), retrofitBucket.getQueryMap())
-                .subscribeOn(Schedulers.newThread())
+                .subscribeOn(appSchedulers.rest())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(new Observer<RoomOverall>() {
                     @Override
@@ -46,6 +46,7 @@ import com.nextcloud.talk.utils.AccountUtils;
 import com.nextcloud.talk.utils.ErrorMessageHolder;
 import com.nextcloud.talk.utils.bundle.BundleKeys;
 import com.nextcloud.talk.utils.database.user.UserUtils;
+import com.nextcloud.talk.utils.schedulers.AppSchedulers;
 
 import java.security.cert.CertificateException;
 
@@ -55,7 +56,6 @@ import autodagger.AutoInjector;
 import butterknife.BindView;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
-import io.reactivex.schedulers.Schedulers;
 import studio.carbonylgroup.textfieldboxes.ExtendedEditText;
 import studio.carbonylgroup.textfieldboxes.TextFieldBoxes;
 
@@ -76,6 +76,9 @@ public class ServerSelectionController extends BaseController {
     @Inject
     NcApi ncApi;
 
+    @Inject
+    AppSchedulers appSchedulers;
+
     @Inject
     UserUtils userUtils;
 
@@ -223,7 +226,7 @@ public class ServerSelectionController extends BaseController {
 
     private void checkServer(String queryUrl, boolean checkForcedHttps) {
         statusQueryDisposable = ncApi.getServerStatus(queryUrl)
-                .subscribeOn(Schedulers.newThread())
+                .subscribeOn(appSchedulers.rest())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(status -> {
                     String productName = getResources().getString(R.string.nc_server_product_name);
@@ -26,6 +26,7 @@ import android.content.Intent;
 import android.net.Uri;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v4.content.FileProvider;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -53,6 +54,8 @@ import com.nextcloud.talk.utils.database.user.UserUtils;
 import com.nextcloud.talk.utils.glide.GlideApp;
 import com.nextcloud.talk.utils.preferences.AppPreferences;
 import com.nextcloud.talk.utils.preferences.MagicUserInputModule;
+import com.nextcloud.talk.utils.schedulers.AppSchedulers;
+import com.nextcloud.talk.webrtc.stats.CallStatsExporter;
 import com.yarolegovich.mp.MaterialChoicePreference;
 import com.yarolegovich.mp.MaterialEditTextPreference;
 import com.yarolegovich.mp.MaterialPreferenceCategory;
@@ -63,6 +66,7 @@ import net.orange_box.storebox.listeners.OnPreferenceValueChangedListener;
 
 import org.greenrobot.eventbus.EventBus;
 
+import java.io.File;
 import java.net.CookieManager;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -74,7 +78,6 @@ import autodagger.AutoInjector;
 import butterknife.BindView;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
-import io.reactivex.schedulers.Schedulers;
 
 @AutoInjector(NextcloudTalkApplication.class)
 public class SettingsController extends BaseController {
@@ -102,6 +105,9 @@ public class SettingsController extends BaseController {
     @BindView(R.id.settings_version)
     MaterialStandardPreference versionInfo;
 
+    @BindView(R.id.settings_call_stats_share)
+    MaterialStandardPreference shareCallStatsButton;
+
     @BindView(R.id.avatar_image)
     ImageView avatarImageView;
 
@@ -138,6 +144,9 @@ public class SettingsController extends BaseController {
     @Inject
     NcApi ncApi;
 
+    @Inject
+    AppSchedulers appSchedulers;
+
     @Inject
     UserUtils userUtils;
 
@@ -215,6 +224,8 @@ public class SettingsController extends BaseController {
 
         versionInfo.setSummary("v" + BuildConfig.VERSION_NAME);
 
+        shareCallStatsButton.addPreferenceClickListener(view17 -> shareCallStats());
+
 
         addAccountButton.addPreferenceClickListener(view15 -> {
             addAccountButton.setEnabled(false);
@@ -276,7 +287,7 @@ public class SettingsController extends BaseController {
             profileQueryDisposable = ncApi.getUserProfile(ApiHelper.getCredentials(userEntity.getUsername(),
                     userEntity.getToken()),
                     ApiHelper.getUrlForUserProfile(userEntity.getBaseUrl()))
-                    .subscribeOn(Schedulers.newThread())
+                    .subscribeOn(appSchedulers.rest())
                     .observeOn(AndroidSchedulers.mainThread())
                     .subscribe(userProfileOverall -> {
 
@@ -301,7 +312,7 @@ public class SettingsController extends BaseController {
                                     null,
                                     null, displayName, null, true,
                                     userProfileOverall.getOcs().getData().getUserId(), userEntity.getId())
-                                    .subscribeOn(Schedulers.newThread())
+                                    .subscribeOn(appSchedulers.db())
                                     .observeOn(AndroidSchedulers.mainThread())
                                     .subscribe(userEntityResult -> {
                                                 displayNameTextView.setText(userEntityResult.getDisplayName());
@@ -356,6 +367,12 @@ public class SettingsController extends BaseController {
 
         addAccountButton.setEnabled(true);
 
+        if (getCallStatsExporter().getFiles().isEmpty()) {
+            shareCallStatsButton.setVisibility(View.GONE);
+        } else {
+            shareCallStatsButton.setVisibility(View.VISIBLE);
+        }
+
         if (ErrorMessageHolder.getInstance().getMessageType() != null) {
             switch (ErrorMessageHolder.getInstance().getMessageType()) {
                 case ACCOUNT_UPDATED_NOT_ADDED:
@@ -431,6 +448,29 @@ public class SettingsController extends BaseController {
                 .into(avatarImageView);
     }
 
+    private CallStatsExporter getCallStatsExporter() {
+        return new CallStatsExporter(new File(NextcloudTalkApplication.getSharedApplication().getFilesDir(),
+                CallStatsExporter.DIRECTORY_NAME));
+    }
+
+    private void shareCallStats() {
+        if (getActivity() == null) {
+            return;
+        }
+
+        ArrayList<Uri> uris = new ArrayList<>();
+        for (File file : getCallStatsExporter().getFiles()) {
+            uris.add(FileProvider.getUriForFile(getActivity(), BuildConfig.APPLICATION_ID + ".fileprovider", file));
+        }
+
+        Intent shareIntent = new Intent(Intent.ACTION_SEND_MULTIPLE);
+        shareIntent.setType("text/plain");
+        shareIntent.putParcelableArrayListExtra(Intent.EXTRA_STREAM, uris);
+        shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        startActivity(Intent.createChooser(shareIntent,
+                getResources().getString(R.string.nc_settings_call_stats_share)));
+    }
+
     @Override
     public void onDestroy() {
         appPreferences.unregisterProxyTypeListener(proxyTypeChangeListener);
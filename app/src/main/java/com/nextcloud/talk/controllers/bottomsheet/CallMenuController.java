@@ -34,13 +34,17 @@ import android.view.ViewGroup;
 import com.bluelinelabs.conductor.RouterTransaction;
 import com.kennyc.bottomsheet.adapters.AppAdapter;
 import com.nextcloud.talk.R;
+import com.nextcloud.talk.activities.CallActivity;
 import com.nextcloud.talk.adapters.items.AppItem;
 import com.nextcloud.talk.adapters.items.MenuItem;
+import com.nextcloud.talk.api.models.json.participants.Participant;
 import com.nextcloud.talk.api.models.json.rooms.Room;
 import com.nextcloud.talk.application.NextcloudTalkApplication;
 import com.nextcloud.talk.controllers.base.BaseController;
 import com.nextcloud.talk.events.BottomSheetLockEvent;
+import com.nextcloud.talk.persistence.entities.UserEntity;
 import com.nextcloud.talk.utils.ShareUtils;
+import com.nextcloud.talk.utils.bundle.BundleBuilder;
 import com.nextcloud.talk.utils.bundle.BundleKeys;
 import com.nextcloud.talk.utils.database.user.UserUtils;
 
@@ -127,6 +131,9 @@ public class CallMenuController extends BaseController implements FlexibleAdapte
         if (!isShare) {
             menuItems.add(new MenuItem(getResources().getString(R.string.nc_what), 0));
 
+            menuItems.add(new MenuItem(getResources().getString(R.string.nc_start_voice_call), 10));
+            menuItems.add(new MenuItem(getResources().getString(R.string.nc_start_video_call), 11));
+
             menuItems.add(new MenuItem(getResources().getString(R.string.nc_leave), 1));
 
             if (room.isNameEditable()) {
@@ -184,7 +191,9 @@ public class CallMenuController extends BaseController implements FlexibleAdapte
                     room.setPassword("");
                 }
 
-                if (tag > 0 && tag < 10) {
+                if (tag == 10 || tag == 11) {
+                    startCall(tag == 10);
+                } else if (tag > 0 && tag < 10) {
                     bundle.putInt(BundleKeys.KEY_OPERATION_CODE, tag);
                     if (tag != 2 && tag != 4 && tag != 6 && tag != 7) {
                         eventBus.post(new BottomSheetLockEvent(false, 0, false, false));
@@ -221,4 +230,29 @@ public class CallMenuController extends BaseController implements FlexibleAdapte
 
         return true;
     }
+
+    private void startCall(boolean audioOnly) {
+        UserEntity userEntity = userUtils.getCurrentUser();
+        if (userEntity == null || getActivity() == null) {
+            return;
+        }
+
+        if (room.hasPassword && (room.participantType.equals(Participant.ParticipantType.GUEST) ||
+                room.participantType.equals(Participant.ParticipantType.USER_FOLLOWING_LINK))) {
+            Bundle bundle = new Bundle();
+            bundle.putParcelable(BundleKeys.KEY_ROOM, Parcels.wrap(room));
+            bundle.putInt(BundleKeys.KEY_OPERATION_CODE, 99);
+            bundle.putBoolean(BundleKeys.KEY_CALL_AUDIO_ONLY, audioOnly);
+            getRouter().pushController(RouterTransaction.with(new EntryMenuController(bundle)));
+        } else {
+            BundleBuilder bundleBuilder = new BundleBuilder(new Bundle());
+            bundleBuilder.putString("roomToken", room.getToken());
+            bundleBuilder.putParcelable("userEntity", Parcels.wrap(userEntity));
+            bundleBuilder.putBoolean(BundleKeys.KEY_CALL_AUDIO_ONLY, audioOnly);
+            eventBus.post(new BottomSheetLockEvent(true, 0, false, true));
+            Intent callIntent = new Intent(getActivity(), CallActivity.class);
+            callIntent.putExtras(bundleBuilder.build());
+            startActivity(callIntent);
+        }
+    }
 }
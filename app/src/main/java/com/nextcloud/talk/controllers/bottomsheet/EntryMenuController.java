@@ -125,6 +125,10 @@ public class EntryMenuController extends BaseController {
                 bundle.putParcelable(BundleKeys.KEY_ROOM, Parcels.wrap(room));
                 bundle.putParcelable("userEntity", Parcels.wrap(userEntity));
                 bundle.putString(BundleKeys.KEY_CALL_PASSWORD, editText.getText().toString());
+                if (getArgs().containsKey(BundleKeys.KEY_CALL_AUDIO_ONLY)) {
+                    bundle.putBoolean(BundleKeys.KEY_CALL_AUDIO_ONLY,
+                            getArgs().getBoolean(BundleKeys.KEY_CALL_AUDIO_ONLY));
+                }
                 getRouter().pushController(RouterTransaction.with(new OperationsMenuController(bundle)));
             }
 
@@ -47,6 +47,7 @@ import com.nextcloud.talk.utils.ErrorMessageHolder;
 import com.nextcloud.talk.utils.bundle.BundleBuilder;
 import com.nextcloud.talk.utils.bundle.BundleKeys;
 import com.nextcloud.talk.utils.database.user.UserUtils;
+import com.nextcloud.talk.utils.schedulers.AppSchedulers;
 
 import org.greenrobot.eventbus.EventBus;
 import org.parceler.Parcels;
@@ -58,7 +59,6 @@ import butterknife.BindView;
 import io.reactivex.Observer;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
-import io.reactivex.schedulers.Schedulers;
 import retrofit2.HttpException;
 
 @AutoInjector(NextcloudTalkApplication.class)
@@ -80,6 +80,9 @@ public class OperationsMenuController extends BaseController {
     @Inject
     NcApi ncApi;
 
+    @Inject
+    AppSchedulers appSchedulers;
+
     @Inject
     UserUtils userUtils;
 
@@ -130,7 +133,7 @@ public class OperationsMenuController extends BaseController {
                 case 1:
                     ncApi.removeSelfFromRoom(credentials, ApiHelper.getUrlForRemoveSelfFromRoom(userEntity.getBaseUrl
                             (), room.getToken()))
-                            .subscribeOn(Schedulers.newThread())
+                            .subscribeOn(appSchedulers.rest())
                             .observeOn(AndroidSchedulers.mainThread())
                             .retry(1)
                             .subscribe(operationsObserver);
@@ -138,7 +141,7 @@ public class OperationsMenuController extends BaseController {
                 case 2:
                     ncApi.renameRoom(credentials, ApiHelper.getRoom(userEntity.getBaseUrl(), room.getToken()),
                             room.getName())
-                            .subscribeOn(Schedulers.newThread())
+                            .subscribeOn(appSchedulers.rest())
                             .observeOn(AndroidSchedulers.mainThread())
                             .retry(1)
                             .subscribe(operationsObserver);
@@ -146,7 +149,7 @@ public class OperationsMenuController extends BaseController {
                 case 3:
                     ncApi.makeRoomPublic(credentials, ApiHelper.getUrlForRoomVisibility(userEntity.getBaseUrl(), room
                             .getToken()))
-                            .subscribeOn(Schedulers.newThread())
+                            .subscribeOn(appSchedulers.rest())
                             .observeOn(AndroidSchedulers.mainThread())
                             .retry(1)
                             .subscribe(operationsObserver);
@@ -160,7 +163,7 @@ public class OperationsMenuController extends BaseController {
                     }
                     ncApi.setPassword(credentials, ApiHelper.getUrlForPassword(userEntity.getBaseUrl(),
                             room.getToken()), pass)
-                            .subscribeOn(Schedulers.newThread())
+                            .subscribeOn(appSchedulers.rest())
                             .observeOn(AndroidSchedulers.mainThread())
                             .retry(1)
                             .subscribe(operationsObserver);
@@ -171,21 +174,21 @@ public class OperationsMenuController extends BaseController {
                 case 8:
                     ncApi.makeRoomPrivate(credentials, ApiHelper.getUrlForRoomVisibility(userEntity.getBaseUrl(), room
                             .getToken()))
-                            .subscribeOn(Schedulers.newThread())
+                            .subscribeOn(appSchedulers.rest())
                             .observeOn(AndroidSchedulers.mainThread())
                             .retry(1)
                             .subscribe(operationsObserver);
                     break;
                 case 9:
                     ncApi.deleteRoom(credentials, ApiHelper.getUrlForRoomParticipants(userEntity.getBaseUrl(), room.getToken()))
-                            .subscribeOn(Schedulers.newThread())
+                            .subscribeOn(appSchedulers.rest())
                             .observeOn(AndroidSchedulers.mainThread())
                             .retry(1)
                             .subscribe(operationsObserver);
                 case 99:
                     ncApi.joinRoom(credentials, ApiHelper.getUrlForRoomParticipants(userEntity.getBaseUrl(), room.getToken()),
                             callPassword)
-                            .subscribeOn(Schedulers.newThread())
+                            .subscribeOn(appSchedulers.rest())
                             .observeOn(AndroidSchedulers.mainThread())
                             .retry(1)
                             .subscribe(operationsObserver);
@@ -259,6 +262,10 @@ public class OperationsMenuController extends BaseController {
                 bundleBuilder.putString("roomToken", room.getToken());
                 bundleBuilder.putParcelable("userEntity", Parcels.wrap(userEntity));
                 bundleBuilder.putString(BundleKeys.KEY_CALL_SESSION, ((CallOverall) o).getOcs().getData().getSessionId());
+                if (getArgs().containsKey(BundleKeys.KEY_CALL_AUDIO_ONLY)) {
+                    bundleBuilder.putBoolean(BundleKeys.KEY_CALL_AUDIO_ONLY,
+                            getArgs().getBoolean(BundleKeys.KEY_CALL_AUDIO_ONLY));
+                }
                 overridePushHandler(new NoOpControllerChangeHandler());
                 overridePopHandler(new NoOpControllerChangeHandler());
                 Intent callIntent = new Intent(getActivity(), CallActivity.class);
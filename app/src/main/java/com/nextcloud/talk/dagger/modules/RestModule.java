@@ -28,9 +28,11 @@ import android.util.Log;
 import com.github.aurae.retrofit2.LoganSquareConverterFactory;
 import com.nextcloud.talk.BuildConfig;
 import com.nextcloud.talk.api.NcApi;
+import com.nextcloud.talk.api.SignalingSettingsCache;
 import com.nextcloud.talk.api.helpers.api.ApiHelper;
 import com.nextcloud.talk.application.NextcloudTalkApplication;
 import com.nextcloud.talk.utils.preferences.AppPreferences;
+import com.nextcloud.talk.utils.schedulers.AppSchedulers;
 import com.nextcloud.talk.utils.ssl.MagicTrustManager;
 import com.nextcloud.talk.utils.ssl.SSLSocketFactoryCompat;
 
@@ -44,7 +46,6 @@ import javax.inject.Singleton;
 
 import dagger.Module;
 import dagger.Provides;
-import io.reactivex.schedulers.Schedulers;
 import okhttp3.Authenticator;
 import okhttp3.Cache;
 import okhttp3.Credentials;
@@ -70,6 +71,18 @@ public class RestModule {
         return retrofit.create(NcApi.class);
     }
 
+    @Provides
+    @Singleton
+    AppSchedulers provideAppSchedulers() {
+        return new AppSchedulers();
+    }
+
+    @Provides
+    @Singleton
+    SignalingSettingsCache provideSignalingSettingsCache() {
+        return new SignalingSettingsCache();
+    }
+
     @Provides
     @Singleton
     Proxy provideProxy(AppPreferences appPreferences) {
@@ -96,7 +109,7 @@ public class RestModule {
         Retrofit.Builder retrofitBuilder = new Retrofit.Builder()
                 .client(httpClient)
                 .baseUrl("https://nextcloud.com")
-                .addCallAdapterFactory(RxJava2CallAdapterFactory.createWithScheduler(Schedulers.io()))
+                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
                 .addConverterFactory(LoganSquareConverterFactory.create());
 
         return retrofitBuilder.build();
@@ -0,0 +1,45 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.dagger.modules;
+
+import android.os.Build;
+
+import com.nextcloud.talk.webrtc.MagicWebRtcLists;
+import com.nextcloud.talk.webrtc.WebRtcRuntime;
+
+import javax.inject.Singleton;
+
+import dagger.Module;
+import dagger.Provides;
+import io.reactivex.schedulers.Schedulers;
+
+@Module
+public class WebRtcModule {
+
+    @Provides
+    @Singleton
+    WebRtcRuntime provideWebRtcRuntime() {
+        boolean hardwareAccelerationEnabled = !MagicWebRtcLists.HARDWARE_ACCELERATION_VENDOR_BLACKLIST.contains(Build
+                .MANUFACTURER.toLowerCase()) &&
+                !MagicWebRtcLists.HARDWARE_ACCELERATION_DEVICE_BLACKLIST.contains(Build.MODEL);
+        return new WebRtcRuntime(Schedulers.io(), hardwareAccelerationEnabled);
+    }
+}
@@ -0,0 +1,985 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.services;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.nextcloud.talk.BuildConfig;
+import com.nextcloud.talk.R;
+import com.nextcloud.talk.activities.CallActivity;
+import com.nextcloud.talk.api.NcApi;
+import com.nextcloud.talk.api.NcCallApi;
+import com.nextcloud.talk.api.SignalingSettingsCache;
+import com.nextcloud.talk.api.helpers.api.ApiHelper;
+import com.nextcloud.talk.api.models.json.signaling.settings.Settings;
+import com.nextcloud.talk.application.NextcloudTalkApplication;
+import com.nextcloud.talk.events.MediaStreamEvent;
+import com.nextcloud.talk.events.PeerConnectionEvent;
+import com.nextcloud.talk.events.SessionDescriptionSendEvent;
+import com.nextcloud.talk.persistence.entities.UserEntity;
+import com.nextcloud.talk.utils.NotificationUtils;
+import com.nextcloud.talk.utils.bundle.BundleBuilder;
+import com.nextcloud.talk.utils.bundle.BundleKeys;
+import com.nextcloud.talk.utils.preferences.AppPreferences;
+import com.nextcloud.talk.utils.schedulers.AppSchedulers;
+import com.nextcloud.talk.webrtc.BandwidthAllocator;
+import com.nextcloud.talk.webrtc.CallEventDispatcher;
+import com.nextcloud.talk.webrtc.CallPeer;
+import com.nextcloud.talk.webrtc.CallSession;
+import com.nextcloud.talk.webrtc.CaptureQualityController;
+import com.nextcloud.talk.webrtc.ConnectivityMonitor;
+import com.nextcloud.talk.webrtc.ConnectivityNetworkSource;
+import com.nextcloud.talk.webrtc.HttpSignalingTransport;
+import com.nextcloud.talk.webrtc.MagicAudioManager;
+import com.nextcloud.talk.webrtc.MagicCallPeerFactory;
+import com.nextcloud.talk.webrtc.MagicWebRtcLists;
+import com.nextcloud.talk.webrtc.SdpRewriter;
+import com.nextcloud.talk.webrtc.SignalingTransport;
+import com.nextcloud.talk.webrtc.VideoCodecCapabilities;
+import com.nextcloud.talk.webrtc.WebRtcRuntime;
+import com.nextcloud.talk.webrtc.WebSocketSignalingTransport;
+import com.nextcloud.talk.webrtc.stats.ActiveSpeakerDetector;
+import com.nextcloud.talk.webrtc.stats.CallStats;
+import com.nextcloud.talk.webrtc.stats.CallStatsCollector;
+import com.nextcloud.talk.webrtc.stats.CallStatsExporter;
+import com.nextcloud.talk.webrtc.stats.EncoderLoadSignal;
+import com.nextcloud.talk.webrtc.stats.RemoteVideoPolicy;
+
+import org.parceler.Parcels;
+import org.webrtc.AudioSource;
+import org.webrtc.AudioTrack;
+import org.webrtc.Camera1Enumerator;
+import org.webrtc.Camera2Enumerator;
+import org.webrtc.CameraEnumerator;
+import org.webrtc.CameraVideoCapturer;
+import org.webrtc.EglBase;
+import org.webrtc.Logging;
+import org.webrtc.MediaConstraints;
+import org.webrtc.MediaStream;
+import org.webrtc.PeerConnectionFactory;
+import org.webrtc.VideoCapturer;
+import org.webrtc.VideoRenderer;
+import org.webrtc.VideoSource;
+import org.webrtc.VideoTrack;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import autodagger.AutoInjector;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.OkHttpClient;
+
+/**
+ * Owns a call and everything it needs that isn't a view: the peer connections through the CallSession,
+ * the capturer and the local tracks. The PeerConnectionFactory and the EGL context come from the shared
+ * WebRtcRuntime, which is held on to while the service is around. CallActivity binds to it
+ * and only attaches its renderers, so the call goes on while the activity is recreated or in the
+ * background, and the peers don't have to be negotiated again when it comes back.
+ * The service starts itself in the foreground along with the call and stops itself once the call has ended.
+ */
+@AutoInjector(NextcloudTalkApplication.class)
+public class CallService extends Service {
+    private static final String TAG = "CallService";
+    private static final int NOTIFICATION_ID = 1;
+
+    @Inject
+    NcApi ncApi;
+    @Inject
+    AppSchedulers appSchedulers;
+    @Inject
+    OkHttpClient okHttpClient;
+    @Inject
+    SignalingSettingsCache signalingSettingsCache;
+    @Inject
+    WebRtcRuntime webRtcRuntime;
+    @Inject
+    AppPreferences appPreferences;
+
+    private final IBinder callBinder = new CallBinder();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private UserEntity userEntity;
+    private String roomToken;
+    private String callSessionId;
+    private String credentials;
+
+    private PeerConnectionFactory peerConnectionFactory;
+    private MediaConstraints sdpConstraints;
+    // created along with the first video call, an audio-only call never touches the camera stack
+    private CameraEnumerator cameraEnumerator;
+    private boolean audioOnly;
+    private MediaStream localMediaStream;
+    private VideoCapturer videoCapturer;
+    private VideoSource videoSource;
+    private VideoTrack localVideoTrack;
+    private AudioSource audioSource;
+    private AudioTrack localAudioTrack;
+    private VideoRenderer localRenderer;
+    private boolean videoCapturing;
+    // what the user asked for, the proximity sensor turns the video off for a while without changing it
+    private boolean videoOn;
+
+    private MagicAudioManager audioManager;
+    private CallEventDispatcher callEventDispatcher;
+    private volatile CallSession callSession;
+    // both created for every call, so that a call doesn't start with the load and the mesh of the one before
+    private volatile EncoderLoadSignal encoderLoadSignal;
+    private volatile CaptureQualityController captureQualityController;
+    private CallStatsCollector callStatsCollector;
+    private CallStatsExporter callStatsExporter;
+    private ActiveSpeakerDetector activeSpeakerDetector;
+    private ConnectivityMonitor connectivityMonitor;
+    private RemoteVideoPolicy remoteVideoPolicy;
+
+    // the state of the remote participants, so that a new activity can show it right away
+    private final Map<String, VideoTrack> remoteVideoTracks = new LinkedHashMap<>();
+    private final Set<String> remoteVideoOff = new HashSet<>();
+    private final Set<String> remoteAudioOff = new HashSet<>();
+    // participants whose video we asked to pause because our downlink to them is too poor
+    private final Set<String> remoteVideoPaused = new HashSet<>();
+    private String activeSpeakerSessionId;
+    // how the call recovered from the last network handover, for the stats overlay
+    private volatile String lastHandover;
+
+    @Nullable
+    private CallListener callListener;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        NextcloudTalkApplication.getSharedApplication().getComponentApplication().inject(this);
+
+        webRtcRuntime.acquire();
+        peerConnectionFactory = webRtcRuntime.getPeerConnectionFactory();
+
+        callEventDispatcher = new CallEventDispatcher();
+        // closing a peer must not happen on the WebRTC thread that reports it, so these run in the background,
+        // on one thread, so that e.g. the offer and the candidates of a peer are sent in the order they came
+        callEventDispatcher.register(CallEventDispatcher.PEER_CONNECTION, appSchedulers.getPeerLane(),
+                this::onPeerConnectionEvent);
+        callEventDispatcher.register(CallEventDispatcher.SESSION_DESCRIPTION_SEND, appSchedulers.getPeerLane(),
+                this::onSessionDescriptionSendEvent);
+        callEventDispatcher.register(CallEventDispatcher.MEDIA_STREAM, handler::post, this::onMediaStreamEvent);
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // without the activity nobody could set up a call again, so don't come back after being killed
+        return START_NOT_STICKY;
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return callBinder;
+    }
+
+    @Override
+    public void onDestroy() {
+        if (isPrepared()) {
+            hangup();
+        }
+
+        callEventDispatcher.clear();
+        // the runtime stays warm for the next call; it is let go of on the peer lane, after the local media
+        appSchedulers.getPeerLane().execute(webRtcRuntime::release);
+        super.onDestroy();
+    }
+
+    /**
+     * Whether there's a call (being set up) that an activity can attach to.
+     */
+    public boolean isPrepared() {
+        return localMediaStream != null;
+    }
+
+    /**
+     * Creates the local tracks for a call of the given user, the call itself is started with startCall()
+     * once the permissions have been granted.
+     *
+     * @param audioOnly leaves out the camera and the video pipeline, and neither sends nor receives video
+     */
+    public void prepare(UserEntity userEntity, boolean audioOnly) {
+        if (isPrepared()) {
+            return;
+        }
+
+        checkReleased();
+
+        this.userEntity = userEntity;
+        this.audioOnly = audioOnly;
+        encoderLoadSignal = new EncoderLoadSignal();
+        captureQualityController = new CaptureQualityController(encoderLoadSignal, this::onCaptureFormatChanged);
+        sdpConstraints = createSdpConstraints(audioOnly);
+        credentials = ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken());
+        prefetchSignalingSettings();
+
+        localMediaStream = peerConnectionFactory.createLocalMediaStream("NCMS");
+
+        // Create and audio manager that will take care of audio routing,
+        // audio modes, audio device enumeration etc.
+        audioManager = MagicAudioManager.create(getApplicationContext(), callEventDispatcher);
+        // Store existing audio settings and change audio mode to
+        // MODE_IN_COMMUNICATION for best possible VoIP performance.
+        Log.d(TAG, "Starting the audio manager...");
+        audioManager.start(new MagicAudioManager.AudioManagerEvents() {
+            @Override
+            public void onAudioDeviceChanged(MagicAudioManager.AudioDevice selectedAudioDevice,
+                                             Set<MagicAudioManager.AudioDevice> availableAudioDevices) {
+                onAudioManagerDevicesChanged(selectedAudioDevice, availableAudioDevices);
+            }
+        });
+
+        if (!audioOnly) {
+            cameraInitialization();
+        }
+        microphoneInitialization();
+    }
+
+    /**
+     * @param callSessionId our Nextcloud session if we're already in the room, "0" to join it first
+     */
+    public void startCall(String roomToken, String callSessionId) {
+        if (!isPrepared() || callSession != null) {
+            return;
+        }
+
+        this.roomToken = roomToken;
+        this.callSessionId = callSessionId;
+
+        callSession = new CallSession(new NcCallApi(ncApi, signalingSettingsCache, userEntity, roomToken),
+                new MagicCallPeerFactory(peerConnectionFactory, sdpConstraints, createSdpRewriter(),
+                        localMediaStream, callEventDispatcher),
+                this::createSignalingTransport, userEntity.getUserId(), userEntity.getDisplayName(),
+                callSessionId, appSchedulers.rest(), AndroidSchedulers.mainThread(), new callSessionListener());
+        // only kept when asked for in the settings, to be shared from there
+        callStatsExporter = appPreferences.getCallStatsExport() ?
+                new CallStatsExporter(new File(getFilesDir(), CallStatsExporter.DIRECTORY_NAME)) : null;
+        callStatsCollector = new CallStatsCollector(callSession::getPeers, CallStatsCollector.DEFAULT_INTERVAL_MS,
+                Schedulers.io(), this::onCallStats);
+        remoteVideoPolicy = new RemoteVideoPolicy(this::onRemoteVideoPaused);
+        activeSpeakerDetector = new ActiveSpeakerDetector(callSession::getPeers, Schedulers.io(),
+                this::onActiveSpeakerChanged);
+        CallSession startedCallSession = callSession;
+        connectivityMonitor = new ConnectivityMonitor(new ConnectivityNetworkSource(this),
+                AndroidSchedulers.mainThread(), networkId -> startedCallSession.restart());
+
+        // keeps the process, and with it the peers, alive while the activity is in the background
+        startService(new Intent(this, CallService.class));
+        startForeground(NOTIFICATION_ID, createNotification());
+
+        callSession.start();
+        if (!audioOnly) {
+            captureQualityController.start(Schedulers.computation());
+        }
+        callStatsCollector.start();
+        activeSpeakerDetector.start();
+        connectivityMonitor.start();
+    }
+
+    /**
+     * Closes the peers and the local media. The listener gets onCallEnded() once the server has been told,
+     * right away if the call never started.
+     */
+    public void hangup() {
+        if (captureQualityController != null) {
+            captureQualityController.stop();
+        }
+        if (callStatsCollector != null) {
+            callStatsCollector.stop();
+        }
+        if (activeSpeakerDetector != null) {
+            activeSpeakerDetector.stop();
+        }
+        if (connectivityMonitor != null) {
+            connectivityMonitor.stop();
+        }
+
+        CallSession endingCallSession = callSession;
+        // a new call in the same service starts from scratch
+        callSession = null;
+        if (endingCallSession != null) {
+            // closes the peers right away, leaving the call and the room happens in the background
+            endingCallSession.hangup();
+        }
+
+        // only once no peer sends the local media anymore
+        releaseLocalMedia();
+        appSchedulers.logStatistics();
+
+        if (endingCallSession == null) {
+            onCallEnded();
+        }
+    }
+
+    public boolean isInCall() {
+        return callSession != null && callSession.isInCall();
+    }
+
+    public EglBase.Context getEglBaseContext() {
+        return webRtcRuntime.getEglBaseContext();
+    }
+
+    /**
+     * Whether the call was prepared without video, the activity then has no camera to offer.
+     */
+    public boolean isAudioOnly() {
+        return audioOnly;
+    }
+
+    public int getCameraCount() {
+        return cameraEnumerator != null ? cameraEnumerator.getDeviceNames().length : 0;
+    }
+
+    public void setCallListener(@Nullable CallListener callListener) {
+        this.callListener = callListener;
+    }
+
+    /**
+     * Shows our own video on the given renderer, null to stop showing it.
+     */
+    public void setLocalRenderer(@Nullable VideoRenderer.Callbacks callbacks) {
+        if (localVideoTrack == null) {
+            return;
+        }
+
+        if (localRenderer != null) {
+            localVideoTrack.removeRenderer(localRenderer);
+            localRenderer = null;
+        }
+
+        if (callbacks != null) {
+            localRenderer = new VideoRenderer(callbacks);
+            localVideoTrack.addRenderer(localRenderer);
+        }
+    }
+
+    public boolean isVideoOn() {
+        return videoOn;
+    }
+
+    public boolean isAudioOn() {
+        return localAudioTrack != null && localAudioTrack.enabled();
+    }
+
+    /**
+     * Turns our camera on or off as the user asked and tells the other participants about it.
+     */
+    public void setVideoOn(boolean videoOn) {
+        this.videoOn = videoOn;
+        setVideoEnabled(videoOn);
+    }
+
+    /**
+     * Turns our microphone on or off, e.g. while push to talk is held, and tells the other participants.
+     */
+    public void setAudioOn(boolean audioOn) {
+        if (localAudioTrack != null) {
+            localAudioTrack.setEnabled(audioOn);
+        }
+
+        if (callSession != null) {
+            callSession.sendAudioStatus(audioOn);
+        }
+    }
+
+    public void switchCamera() {
+        CameraVideoCapturer cameraVideoCapturer = (CameraVideoCapturer) videoCapturer;
+        if (cameraVideoCapturer != null) {
+            cameraVideoCapturer.switchCamera(null);
+        }
+    }
+
+    /**
+     * The camera can't be used in the background, so the activity stops capturing while it's stopped.
+     */
+    public void startVideoCapture() {
+        if (videoCapturer != null && !videoCapturing) {
+            CaptureQualityController.CaptureFormat captureFormat = captureQualityController.getCaptureFormat();
+            videoCapturer.startCapture(captureFormat.getWidth(), captureFormat.getHeight(),
+                    captureFormat.getFramerate());
+            videoCapturing = true;
+        }
+    }
+
+    public void stopVideoCapture() {
+        if (videoCapturer != null && videoCapturing) {
+            videoCapturing = false;
+            try {
+                videoCapturer.stopCapture();
+            } catch (InterruptedException e) {
+                Log.e(TAG, "Failed to stop the capturing process");
+            }
+        }
+    }
+
+    @Nullable
+    public CallPeer getPeer(String sessionId) {
+        return callSession != null ? callSession.getPeer(sessionId) : null;
+    }
+
+    /**
+     * The video tracks of all remote participants, in the order they joined. In an audio-only call the
+     * participants are there without a track.
+     */
+    public Map<String, VideoTrack> getRemoteVideoTracks() {
+        return Collections.unmodifiableMap(remoteVideoTracks);
+    }
+
+    /**
+     * Whether the participant sends us audio or video, a paused video counts as off.
+     */
+    public boolean isRemoteMediaOn(String sessionId, boolean video) {
+        if (video && remoteVideoPaused.contains(sessionId)) {
+            return false;
+        }
+
+        return !(video ? remoteVideoOff : remoteAudioOff).contains(sessionId);
+    }
+
+    /**
+     * Whether the video of the participant is paused because our downlink to it is too poor. Its track
+     * must stay disabled until it is resumed.
+     */
+    public boolean isRemoteVideoPaused(String sessionId) {
+        return remoteVideoPaused.contains(sessionId);
+    }
+
+    @Nullable
+    public String getActiveSpeakerSessionId() {
+        return activeSpeakerSessionId;
+    }
+
+    @Nullable
+    public String getLastHandover() {
+        return lastHandover;
+    }
+
+    private void setVideoEnabled(boolean enable) {
+        if (enable) {
+            startVideoCapture();
+        } else {
+            stopVideoCapture();
+        }
+
+        if (localVideoTrack != null) {
+            localVideoTrack.setEnabled(enable);
+        }
+
+        if (callSession != null) {
+            callSession.sendVideoStatus(enable);
+        }
+    }
+
+    private MediaConstraints createSdpConstraints(boolean audioOnly) {
+        MediaConstraints sdpConstraints = new MediaConstraints();
+        sdpConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveAudio", "true"));
+        // without a local video track either, the offers carry no video m-line at all
+        sdpConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveVideo",
+                Boolean.toString(!audioOnly)));
+        sdpConstraints.optional.add(new MediaConstraints.KeyValuePair("internalSctpDataChannels", "true"));
+        sdpConstraints.optional.add(new MediaConstraints.KeyValuePair("DtlsSrtpKeyAgreement", "true"));
+        return sdpConstraints;
+    }
+
+    private void createCameraEnumerator() {
+        boolean camera2EnumeratorIsSupported = false;
+        try {
+            camera2EnumeratorIsSupported = Camera2Enumerator.isSupported(this);
+        } catch (final Throwable throwable) {
+            Log.w(TAG, "Camera2Enumator threw an error");
+        }
+
+        if (camera2EnumeratorIsSupported) {
+            cameraEnumerator = new Camera2Enumerator(this);
+        } else {
+            cameraEnumerator = new Camera1Enumerator(!MagicWebRtcLists.HARDWARE_ACCELERATION_VENDOR_BLACKLIST.contains(Build
+                    .MANUFACTURER.toLowerCase()));
+        }
+    }
+
+    private VideoCapturer createCameraCapturer(CameraEnumerator enumerator) {
+        final String[] deviceNames = enumerator.getDeviceNames();
+
+        // First, try to find front facing camera
+        Logging.d(TAG, "Looking for front facing cameras.");
+        for (String deviceName : deviceNames) {
+            if (enumerator.isFrontFacing(deviceName)) {
+                Logging.d(TAG, "Creating front facing camera capturer.");
+                VideoCapturer videoCapturer = enumerator.createCapturer(deviceName, null);
+
+                if (videoCapturer != null) {
+                    return videoCapturer;
+                }
+            }
+        }
+
+        // Front facing camera not found, try something else
+        Logging.d(TAG, "Looking for other cameras.");
+        for (String deviceName : deviceNames) {
+            if (!enumerator.isFrontFacing(deviceName)) {
+                Logging.d(TAG, "Creating other camera capturer.");
+                VideoCapturer videoCapturer = enumerator.createCapturer(deviceName, null);
+
+                if (videoCapturer != null) {
+                    return videoCapturer;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private void cameraInitialization() {
+        if (cameraEnumerator == null) {
+            createCameraEnumerator();
+        }
+
+        videoCapturer = createCameraCapturer(cameraEnumerator);
+
+        //Create a VideoSource instance
+        if (videoCapturer != null) {
+            videoSource = peerConnectionFactory.createVideoSource(videoCapturer);
+            localVideoTrack = peerConnectionFactory.createVideoTrack("NCv0", videoSource);
+            localMediaStream.addTrack(localVideoTrack);
+            localVideoTrack.setEnabled(false);
+        }
+    }
+
+    private void microphoneInitialization() {
+        //create an AudioSource instance
+        audioSource = peerConnectionFactory.createAudioSource(new MediaConstraints());
+        localAudioTrack = peerConnectionFactory.createAudioTrack("NCa0", audioSource);
+        localAudioTrack.setEnabled(false);
+        localMediaStream.addTrack(localAudioTrack);
+    }
+
+    private SdpRewriter createSdpRewriter() {
+        VideoCodecCapabilities videoCodecCapabilities = webRtcRuntime.getVideoCodecCapabilities();
+        return new SdpRewriter(Collections.singletonList(SdpRewriter.OPUS),
+                videoCodecCapabilities.getPreferredVideoCodecs());
+    }
+
+    /**
+     * Starts fetching STUN/TURN servers while the user is still looking at permission dialogs,
+     * CallSession.start() then usually finds them in the cache.
+     */
+    private void prefetchSignalingSettings() {
+        // the settings belong to the account, the room doesn't matter for them
+        new NcCallApi(ncApi, signalingSettingsCache, userEntity, null).getSignalingSettings()
+                .subscribeOn(appSchedulers.rest())
+                .subscribe(signalingSettingsOverall -> {
+                }, throwable -> Log.d(TAG, "Failed to prefetch signaling settings"));
+    }
+
+    private SignalingTransport createSignalingTransport(Settings settings) {
+        if (!TextUtils.isEmpty(settings.getExternalSignalingServer())) {
+            return new WebSocketSignalingTransport(okHttpClient,
+                    ApiHelper.getUrlForExternalSignalingServer(settings.getExternalSignalingServer()),
+                    ApiHelper.getUrlForSignalingBackend(userEntity.getBaseUrl()), userEntity.getUserId(),
+                    settings.getExternalSignalingTicket(), roomToken, appSchedulers.signaling(),
+                    AndroidSchedulers.mainThread());
+        }
+
+        return new HttpSignalingTransport(ncApi, credentials, ApiHelper.getUrlForSignaling(userEntity.getBaseUrl()),
+                appSchedulers.signaling(), AndroidSchedulers.mainThread());
+    }
+
+    private Notification createNotification() {
+        Intent intent = new Intent(this, CallActivity.class);
+        BundleBuilder bundleBuilder = new BundleBuilder(new Bundle());
+        bundleBuilder.putString("roomToken", roomToken);
+        bundleBuilder.putParcelable("userEntity", Parcels.wrap(userEntity));
+        bundleBuilder.putString(BundleKeys.KEY_CALL_SESSION, callSessionId);
+        intent.putExtras(bundleBuilder.build());
+        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT);
+
+        Notification.Builder notificationBuilder = new Notification.Builder(this)
+                .setSmallIcon(R.drawable.ic_call_black_24dp)
+                .setCategory(Notification.CATEGORY_CALL)
+                .setContentTitle(getString(R.string.nc_call_ongoing))
+                .setSubText(userEntity.getDisplayName())
+                .setOngoing(true)
+                .setContentIntent(pendingIntent);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager notificationManager =
+                    (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+            NotificationUtils.createNotificationChannel(notificationManager,
+                    NotificationUtils.NOTIFICATION_CHANNEL_ONGOING_CALLS, getString(R.string
+                            .nc_notification_channel_ongoing_calls), getString(R.string
+                            .nc_notification_channel_ongoing_calls_description), false,
+                    NotificationManager.IMPORTANCE_LOW, null);
+            notificationBuilder.setChannelId(NotificationUtils.NOTIFICATION_CHANNEL_ONGOING_CALLS);
+        }
+
+        return notificationBuilder.build();
+    }
+
+    private void onCaptureFormatChanged(CaptureQualityController.CaptureFormat captureFormat) {
+        // the capturer is started, stopped and released on the main thread, the changes come from any thread
+        handler.post(() -> {
+            // changing the format of a stopped capturer would start it, after hangup() there's no capturer, and
+            // a change that is no longer the current format has been overtaken by one that is still to come
+            if (videoCapturer != null && videoCapturing &&
+                    captureFormat.equals(captureQualityController.getCaptureFormat())) {
+                videoCapturer.changeCaptureFormat(captureFormat.getWidth(), captureFormat.getHeight(),
+                        captureFormat.getFramerate());
+            }
+        });
+    }
+
+    // This method is called when the audio manager reports audio device change,
+    // e.g. from wired headset to speakerphone.
+    private void onAudioManagerDevicesChanged(
+            final MagicAudioManager.AudioDevice device, final Set<MagicAudioManager.AudioDevice> availableDevices) {
+        Log.d(TAG, "onAudioManagerDevicesChanged: " + availableDevices + ", "
+                + "selected: " + device);
+    }
+
+    private void onCallStats(CallStats callStats) {
+        // no video to pause or encode in an audio-only call
+        if (!audioOnly) {
+            remoteVideoPolicy.update(callStats);
+            encoderLoadSignal.update(callStats);
+        }
+        CallStatsExporter currentCallStatsExporter = callStatsExporter;
+        if (currentCallStatsExporter != null) {
+            currentCallStatsExporter.export(callStats);
+        }
+        handler.post(() -> {
+            if (callListener != null) {
+                callListener.onCallStats(callStats);
+            }
+        });
+    }
+
+    private void onRemoteVideoPaused(String sessionId, boolean paused) {
+        CallSession currentCallSession = callSession;
+        CallPeer callPeer = currentCallSession != null ? currentCallSession.getPeer(sessionId) : null;
+        if (callPeer != null) {
+            // stops the peer from sending what we would only throw away
+            callPeer.requestVideoPaused(paused);
+        }
+
+        handler.post(() -> {
+            if (callSession == null) {
+                // the call ended in the meantime
+                return;
+            }
+
+            if (paused) {
+                remoteVideoPaused.add(sessionId);
+                VideoTrack videoTrack = remoteVideoTracks.get(sessionId);
+                if (videoTrack != null) {
+                    videoTrack.setEnabled(false);
+                }
+            } else {
+                remoteVideoPaused.remove(sessionId);
+            }
+
+            if (callListener != null) {
+                callListener.onRemoteVideoPaused(sessionId, paused);
+            }
+        });
+    }
+
+    private void onActiveSpeakerChanged(String sessionId) {
+        boolean local = ActiveSpeakerDetector.LOCAL_SESSION_ID.equals(sessionId);
+        captureQualityController.setActiveSpeaker(local);
+
+        if (!local) {
+            // while we speak ourselves, the last remote speaker keeps the large tile
+            handler.post(() -> {
+                if (callSession == null) {
+                    return;
+                }
+
+                activeSpeakerSessionId = sessionId;
+                if (callListener != null) {
+                    callListener.onActiveSpeakerChanged(sessionId);
+                }
+            });
+        }
+    }
+
+    private void onPeerConnectionEvent(PeerConnectionEvent peerConnectionEvent) {
+        PeerConnectionEvent.PeerConnectionEventType type = peerConnectionEvent.getPeerConnectionEventType();
+        String sessionId = peerConnectionEvent.getSessionId();
+
+        if (type.equals(PeerConnectionEvent.PeerConnectionEventType.CLOSE_PEER)) {
+            if (callSession != null) {
+                callSession.endPeer(sessionId);
+            }
+        } else if (type.equals(PeerConnectionEvent.PeerConnectionEventType.SENSOR_FAR) ||
+                type.equals(PeerConnectionEvent.PeerConnectionEventType.SENSOR_NEAR)) {
+            handler.post(() -> {
+                boolean enableVideo = type.equals(PeerConnectionEvent.PeerConnectionEventType.SENSOR_FAR);
+                if (isInCall() && videoOn && localVideoTrack != null && enableVideo != localVideoTrack.enabled()) {
+                    setVideoEnabled(enableVideo);
+                    if (callListener != null) {
+                        callListener.onLocalVideoChanged(enableVideo);
+                    }
+                }
+            });
+        } else if (type.equals(PeerConnectionEvent.PeerConnectionEventType.NICK_CHANGE)) {
+            handler.post(() -> {
+                if (callListener != null) {
+                    callListener.onNickChanged(sessionId, peerConnectionEvent.getNick());
+                }
+            });
+        } else if (type.equals(PeerConnectionEvent.PeerConnectionEventType.VIDEO_CHANGE) ||
+                type.equals(PeerConnectionEvent.PeerConnectionEventType.AUDIO_CHANGE)) {
+            boolean video = type.equals(PeerConnectionEvent.PeerConnectionEventType.VIDEO_CHANGE);
+            boolean on = peerConnectionEvent.getChangeValue();
+            handler.post(() -> {
+                // remembered for when the participant's tile is shown again
+                Set<String> offSessionIds = video ? remoteVideoOff : remoteAudioOff;
+                if (on) {
+                    offSessionIds.remove(sessionId);
+                } else {
+                    offSessionIds.add(sessionId);
+                }
+
+                if (callListener != null) {
+                    // a paused video stays off for now
+                    callListener.onRemoteMediaChanged(sessionId, video, isRemoteMediaOn(sessionId, video));
+                }
+            });
+        }
+    }
+
+    private void onMediaStreamEvent(MediaStreamEvent mediaStreamEvent) {
+        String sessionId = mediaStreamEvent.getSession();
+        MediaStream mediaStream = mediaStreamEvent.getMediaStream();
+
+        if (callSession == null) {
+            // a peer of a call that has ended, its stream must not show up in the next one
+            return;
+        }
+
+        if (mediaStream != null && mediaStream.videoTracks.size() == 1) {
+            // a renegotiated stream of the same peer keeps its place, only the track is swapped
+            remoteVideoTracks.put(sessionId, mediaStream.videoTracks.get(0));
+            if (callListener != null) {
+                callListener.onRemoteVideoTrackChanged(sessionId, mediaStream.videoTracks.get(0));
+            }
+        } else if (mediaStream != null && audioOnly && !mediaStream.audioTracks.isEmpty()) {
+            // nobody sends us video, the participant is shown without it
+            remoteVideoTracks.put(sessionId, null);
+            if (callListener != null) {
+                callListener.onRemoteVideoTrackChanged(sessionId, null);
+            }
+        } else {
+            removeRemoteVideoTrack(sessionId);
+        }
+    }
+
+    private void removeRemoteVideoTrack(String sessionId) {
+        remoteVideoTracks.remove(sessionId);
+        if (callListener != null) {
+            callListener.onRemoteVideoTrackChanged(sessionId, null);
+        }
+    }
+
+    private void onSessionDescriptionSendEvent(SessionDescriptionSendEvent sessionDescriptionSend) {
+        if (callSession == null) {
+            return;
+        }
+
+        String sdp = null;
+        if (sessionDescriptionSend.getSessionDescription() != null) {
+            sdp = sessionDescriptionSend.getSessionDescription().description;
+        }
+
+        callSession.sendSignalingMessage(sessionDescriptionSend.getPeerId(), sessionDescriptionSend.getType(), sdp,
+                sessionDescriptionSend.getNcIceCandidate());
+    }
+
+    private void onCallEnded() {
+        if (callListener != null) {
+            callListener.onCallEnded();
+        }
+
+        stopForeground(true);
+        stopSelf();
+    }
+
+    private void releaseLocalMedia() {
+        stopVideoCapture();
+        setLocalRenderer(null);
+
+        if (videoCapturer != null) {
+            videoCapturer.dispose();
+            videoCapturer = null;
+        }
+
+        MediaStream releasedMediaStream = localMediaStream;
+        VideoSource releasedVideoSource = videoSource;
+        AudioSource releasedAudioSource = audioSource;
+        // a peer that ended by itself may still be closing on the peer lane, which closes them one at a time
+        appSchedulers.getPeerLane().execute(() -> {
+            if (releasedMediaStream != null) {
+                // also disposes the tracks, which have to go before their sources
+                releasedMediaStream.dispose();
+            }
+            if (releasedVideoSource != null) {
+                releasedVideoSource.dispose();
+            }
+            if (releasedAudioSource != null) {
+                releasedAudioSource.dispose();
+            }
+        });
+
+        if (audioManager != null) {
+            audioManager.stop();
+            audioManager = null;
+        }
+
+        remoteVideoTracks.clear();
+        remoteVideoOff.clear();
+        remoteAudioOff.clear();
+        remoteVideoPaused.clear();
+        activeSpeakerSessionId = null;
+        lastHandover = null;
+        videoOn = false;
+        videoSource = null;
+        audioSource = null;
+        localMediaStream = null;
+        localAudioTrack = null;
+        localVideoTrack = null;
+    }
+
+    /**
+     * A second call in the same service has to start like the first one, hangup() must not have left any
+     * media or call state behind.
+     */
+    private void checkReleased() {
+        if (callSession == null && videoCapturer == null && videoSource == null && audioSource == null &&
+                audioManager == null && remoteVideoTracks.isEmpty() && remoteVideoOff.isEmpty() &&
+                remoteAudioOff.isEmpty() && remoteVideoPaused.isEmpty() && activeSpeakerSessionId == null) {
+            return;
+        }
+
+        String message = "The previous call wasn't released";
+        if (BuildConfig.DEBUG) {
+            throw new IllegalStateException(message);
+        }
+        Log.e(TAG, message);
+    }
+
+    public class CallBinder extends Binder {
+        public CallService getService() {
+            return CallService.this;
+        }
+    }
+
+    /**
+     * What the attached activity gets to know about the call, always on the main thread.
+     */
+    public interface CallListener {
+        /**
+         * The participant is gone if it isn't in getRemoteVideoTracks() anymore, the track is null in an
+         * audio-only call as well.
+         */
+        void onRemoteVideoTrackChanged(String sessionId, @Nullable VideoTrack videoTrack);
+
+        void onRemoteMediaChanged(String sessionId, boolean video, boolean on);
+
+        void onNickChanged(String sessionId, String nick);
+
+        /**
+         * The proximity sensor turned our video off or back on.
+         */
+        void onLocalVideoChanged(boolean enabled);
+
+        void onActiveSpeakerChanged(String sessionId);
+
+        void onCallStats(CallStats callStats);
+
+        /**
+         * The participant's video was paused or resumed depending on our downlink to it, the track has to be
+         * enabled again once it is resumed and visible.
+         */
+        void onRemoteVideoPaused(String sessionId, boolean paused);
+
+        void onCallEnded();
+    }
+
+    private class callSessionListener implements CallSession.CallSessionListener {
+
+        @Override
+        public void onCallStateChanged(CallSession.CallState callState) {
+            if (callState == CallSession.CallState.ENDED) {
+                onCallEnded();
+            }
+        }
+
+        @Override
+        public void onPeerAdded(CallPeer callPeer) {
+        }
+
+        @Override
+        public void onPeerRemoved(String sessionId) {
+            handler.post(() -> {
+                remoteVideoOff.remove(sessionId);
+                remoteAudioOff.remove(sessionId);
+                remoteVideoPaused.remove(sessionId);
+                removeRemoteVideoTrack(sessionId);
+            });
+        }
+
+        @Override
+        public void onBandwidthAllocationChanged(BandwidthAllocator.Allocation allocation) {
+            captureQualityController.setPeerCount(allocation.getPeerCount());
+            captureQualityController.setMaxFramerate(allocation.getMaxFramerate());
+        }
+
+        @Override
+        public void onHandoverFinished(boolean recovered, long elapsedMs) {
+            lastHandover = String.format(Locale.US, "network handover: %s after %d ms",
+                    recovered ? "recovered" : "gave up", elapsedMs);
+        }
+    }
+}
@@ -42,10 +42,12 @@ import com.nextcloud.talk.R;
 import com.nextcloud.talk.activities.CallActivity;
 import com.nextcloud.talk.api.models.json.push.DecryptedPushMessage;
 import com.nextcloud.talk.api.models.json.push.PushMessage;
+import com.nextcloud.talk.application.NextcloudTalkApplication;
 import com.nextcloud.talk.models.SignatureVerification;
 import com.nextcloud.talk.utils.NotificationUtils;
 import com.nextcloud.talk.utils.PushUtils;
 import com.nextcloud.talk.utils.bundle.BundleBuilder;
+import com.nextcloud.talk.webrtc.WebRtcRuntime;
 
 import org.parceler.Parcels;
 
@@ -57,10 +59,23 @@ import java.util.zip.CRC32;
 
 import javax.crypto.Cipher;
 import javax.crypto.NoSuchPaddingException;
+import javax.inject.Inject;
 
+import autodagger.AutoInjector;
+
+@AutoInjector(NextcloudTalkApplication.class)
 public class MagicFirebaseMessagingService extends FirebaseMessagingService {
     private static final String TAG = "MagicFirebaseMessagingService";
 
+    @Inject
+    WebRtcRuntime webRtcRuntime;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        NextcloudTalkApplication.getSharedApplication().getComponentApplication().inject(this);
+    }
+
     @SuppressLint("LongLogTag")
     @Override
     public void onMessageReceived(RemoteMessage remoteMessage) {
@@ -109,6 +124,8 @@ public class MagicFirebaseMessagingService extends FirebaseMessagingService {
 
                             switch (decryptedPushMessage.getType()) {
                                 case "call":
+                                    // the user is likely to answer, have the call start faster when they do
+                                    webRtcRuntime.warmUp();
                                     smallIcon = R.drawable.ic_call_black_24dp;
                                     category = Notification.CATEGORY_CALL;
                                     priority = Notification.PRIORITY_HIGH;
@@ -32,6 +32,7 @@ import android.os.Build;
 public class NotificationUtils {
     public static final String NOTIFICATION_CHANNEL_CALLS = "NOTIFICATION_CHANNEL_CALLS";
     public static final String NOTIFICATION_CHANNEL_MESSAGES = "NOTIFICATION_CHANNEL_MESSAGES";
+    public static final String NOTIFICATION_CHANNEL_ONGOING_CALLS = "NOTIFICATION_CHANNEL_ONGOING_CALLS";
     private static final String TAG = "NotificationUtils";
 
     @TargetApi(Build.VERSION_CODES.O)
@@ -35,6 +35,7 @@ import com.nextcloud.talk.models.SignatureVerification;
 import com.nextcloud.talk.persistence.entities.UserEntity;
 import com.nextcloud.talk.utils.database.user.UserUtils;
 import com.nextcloud.talk.utils.preferences.AppPreferences;
+import com.nextcloud.talk.utils.schedulers.AppSchedulers;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -63,7 +64,6 @@ import javax.inject.Inject;
 
 import autodagger.AutoInjector;
 import io.reactivex.functions.Consumer;
-import io.reactivex.schedulers.Schedulers;
 import okhttp3.JavaNetCookieJar;
 import okhttp3.OkHttpClient;
 import retrofit2.Retrofit;
@@ -84,6 +84,9 @@ public class PushUtils {
     @Inject
     Retrofit retrofit;
 
+    @Inject
+    AppSchedulers appSchedulers;
+
     NcApi ncApi;
 
     private File keysFile;
@@ -267,7 +270,7 @@ public class PushUtils {
                             ncApi.registerDeviceForNotificationsWithNextcloud(
                                     ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken()),
                                     ApiHelper.getUrlNextcloudPush(userEntity.getBaseUrl()), queryMap)
-                                    .subscribeOn(Schedulers.newThread())
+                                    .subscribeOn(appSchedulers.rest())
                                     .subscribe(pushRegistrationOverall -> {
                                         Map<String, String> proxyMap = new HashMap<>();
                                         proxyMap.put("pushToken", token);
@@ -282,7 +285,7 @@ public class PushUtils {
                                         ncApi.registerDeviceForNotificationsWithProxy(ApiHelper.getCredentials
                                                         (userEntity.getUsername(), userEntity.getToken()),
                                                 ApiHelper.getUrlPushProxy(), proxyMap)
-                                                .subscribeOn(Schedulers.newThread())
+                                                .subscribeOn(appSchedulers.rest())
                                                 .subscribe(new Consumer<Void>() {
                                                     @Override
                                                     public void accept(Void aVoid) throws Exception {
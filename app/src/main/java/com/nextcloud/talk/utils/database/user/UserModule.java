@@ -21,6 +21,7 @@ package com.nextcloud.talk.utils.database.user;
 
 import com.nextcloud.talk.application.NextcloudTalkApplication;
 import com.nextcloud.talk.dagger.modules.DatabaseModule;
+import com.nextcloud.talk.utils.schedulers.AppSchedulers;
 
 import javax.inject.Inject;
 
@@ -39,7 +40,7 @@ public class UserModule {
     }
 
     @Provides
-    public UserUtils provideUserUtils(ReactiveEntityStore<Persistable> dataStore) {
-        return new UserUtils(dataStore);
+    public UserUtils provideUserUtils(ReactiveEntityStore<Persistable> dataStore, AppSchedulers appSchedulers) {
+        return new UserUtils(dataStore, appSchedulers);
     }
 }
@@ -25,13 +25,13 @@ import android.text.TextUtils;
 
 import com.nextcloud.talk.persistence.entities.User;
 import com.nextcloud.talk.persistence.entities.UserEntity;
+import com.nextcloud.talk.utils.schedulers.AppSchedulers;
 
 import java.util.List;
 
 import io.reactivex.Completable;
 import io.reactivex.Observable;
 import io.reactivex.android.schedulers.AndroidSchedulers;
-import io.reactivex.schedulers.Schedulers;
 import io.requery.Persistable;
 import io.requery.query.Result;
 import io.requery.reactivex.ReactiveEntityStore;
@@ -39,9 +39,11 @@ import io.requery.reactivex.ReactiveEntityStore;
 public class UserUtils {
     private static final String TAG = "UserUtils";
     private ReactiveEntityStore<Persistable> dataStore;
+    private AppSchedulers appSchedulers;
 
-    UserUtils(ReactiveEntityStore<Persistable> dataStore) {
+    UserUtils(ReactiveEntityStore<Persistable> dataStore, AppSchedulers appSchedulers) {
         this.dataStore = dataStore;
+        this.appSchedulers = appSchedulers;
 
     }
 
@@ -96,7 +98,7 @@ public class UserUtils {
         UserEntity user = (UserEntity) findUserQueryResult.firstOrNull();
 
         return dataStore.delete(user)
-                .subscribeOn(Schedulers.newThread())
+                .subscribeOn(appSchedulers.db())
                 .observeOn(AndroidSchedulers.mainThread());
 
     }
@@ -210,7 +212,7 @@ public class UserUtils {
 
         return dataStore.upsert(user)
                 .toObservable()
-                .subscribeOn(Schedulers.newThread())
+                .subscribeOn(appSchedulers.db())
                 .observeOn(AndroidSchedulers.mainThread());
     }
 
@@ -108,6 +108,12 @@ public interface AppPreferences {
     @RemoveMethod
     void removeProxyPassword();
 
+    @KeyByString("call_stats_export")
+    boolean getCallStatsExport();
+
+    @KeyByString("call_stats_export")
+    void setCallStatsExport(boolean callStatsExport);
+
     @KeyByString("push_token")
     String getPushToken();
 
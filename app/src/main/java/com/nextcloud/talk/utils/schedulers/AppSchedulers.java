@@ -0,0 +1,218 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.utils.schedulers;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Shared, bounded thread pools used instead of Schedulers.newThread() for network and database work.
+ * - signaling: pulling and sending signaling messages; one thread is usually parked in the long-poll
+ * - rest: every other OCS request (rooms, contacts, join/leave, ping)
+ * - db: requery operations, single threaded so writes never race each other
+ * - peer: the events WebRTC reports about the peers of a call, single threaded so they are handled in order
+ */
+public class AppSchedulers {
+    private static final String TAG = "AppSchedulers";
+
+    private static final int SIGNALING_THREADS = 3;
+    private static final int REST_THREADS = 4;
+    private static final int DB_THREADS = 1;
+    private static final int PEER_THREADS = 1;
+
+    private final Lane signalingLane;
+    private final Lane restLane;
+    private final Lane dbLane;
+    private final Lane peerLane;
+
+    public AppSchedulers() {
+        signalingLane = new Lane("signaling", SIGNALING_THREADS);
+        restLane = new Lane("rest", REST_THREADS);
+        dbLane = new Lane("db", DB_THREADS);
+        peerLane = new Lane("peer", PEER_THREADS);
+    }
+
+    public Scheduler signaling() {
+        return signalingLane.getScheduler();
+    }
+
+    public Scheduler rest() {
+        return restLane.getScheduler();
+    }
+
+    public Scheduler db() {
+        return dbLane.getScheduler();
+    }
+
+    public Scheduler peer() {
+        return peerLane.getScheduler();
+    }
+
+    public Lane getSignalingLane() {
+        return signalingLane;
+    }
+
+    public Lane getRestLane() {
+        return restLane;
+    }
+
+    public Lane getDbLane() {
+        return dbLane;
+    }
+
+    public Lane getPeerLane() {
+        return peerLane;
+    }
+
+    public void logStatistics() {
+        Log.d(TAG, signalingLane.toString());
+        Log.d(TAG, restLane.toString());
+        Log.d(TAG, dbLane.toString());
+        Log.d(TAG, peerLane.toString());
+    }
+
+    /**
+     * A fixed size pool that measures how long tasks wait in the queue and how long they take in total.
+     * Idle threads are released after a while so that an idle app doesn't keep them around.
+     */
+    public static class Lane extends ThreadPoolExecutor {
+        private final String name;
+        private final Scheduler scheduler;
+
+        private final AtomicLong completedTasks = new AtomicLong();
+        private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+        private final AtomicLong totalLatencyNanos = new AtomicLong();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+        Lane(String name, int threads) {
+            super(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    new NamedThreadFactory("nc-" + name));
+            allowCoreThreadTimeOut(true);
+            this.name = name;
+            this.scheduler = Schedulers.from(this);
+        }
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            super.execute(new TimedRunnable(command));
+        }
+
+        public Scheduler getScheduler() {
+            return scheduler;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getQueueDepth() {
+            return getQueue().size();
+        }
+
+        public long getCompletedTasks() {
+            return completedTasks.get();
+        }
+
+        public long getAverageQueueWaitMs() {
+            long completed = completedTasks.get();
+            return completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalQueueWaitNanos.get() / completed);
+        }
+
+        public long getAverageLatencyMs() {
+            long completed = completedTasks.get();
+            return completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get() / completed);
+        }
+
+        public long getMaxLatencyMs() {
+            return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+        }
+
+        @Override
+        public String toString() {
+            return "Lane{" + name +
+                    ", active=" + getActiveCount() +
+                    ", queueDepth=" + getQueueDepth() +
+                    ", completed=" + getCompletedTasks() +
+                    ", avgQueueWaitMs=" + getAverageQueueWaitMs() +
+                    ", avgLatencyMs=" + getAverageLatencyMs() +
+                    ", maxLatencyMs=" + getMaxLatencyMs() + "}";
+        }
+
+        private void taskFinished(long queueWaitNanos, long latencyNanos) {
+            completedTasks.incrementAndGet();
+            totalQueueWaitNanos.addAndGet(queueWaitNanos);
+            totalLatencyNanos.addAndGet(latencyNanos);
+
+            long currentMax;
+            while (latencyNanos > (currentMax = maxLatencyNanos.get())) {
+                if (maxLatencyNanos.compareAndSet(currentMax, latencyNanos)) {
+                    break;
+                }
+            }
+        }
+
+        private class TimedRunnable implements Runnable {
+            private final Runnable runnable;
+            private final long enqueuedAt;
+
+            TimedRunnable(Runnable runnable) {
+                this.runnable = runnable;
+                this.enqueuedAt = System.nanoTime();
+            }
+
+            @Override
+            public void run() {
+                long startedAt = System.nanoTime();
+                try {
+                    runnable.run();
+                } finally {
+                    taskFinished(startedAt - enqueuedAt, System.nanoTime() - enqueuedAt);
+                }
+            }
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
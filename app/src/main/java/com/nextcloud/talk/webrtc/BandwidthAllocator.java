@@ -0,0 +1,183 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+/**
+ * Splits the uplink between the peers of a mesh call. Every peer gets its own copy of our audio and video,
+ * so with N peers we send N streams. Audio keeps a fixed share per peer, the rest of the usable uplink is
+ * divided evenly as the video send bitrate, and the frame rate goes down together with the bitrate so that
+ * the encoder doesn't spend the few bits it has on motion instead of detail.
+ * Until the peer connections report a send bandwidth estimate, DEFAULT_UPLINK_BPS is assumed. The
+ * estimates can't go above the bitrate we allow, so while they keep up with the allocation the uplink is
+ * raised step by step; once they fall behind, their sum becomes the uplink.
+ */
+public class BandwidthAllocator {
+    public static final int AUDIO_BITRATE_BPS = 40000;
+    public static final int MIN_VIDEO_BITRATE_BPS = 100000;
+    public static final int MAX_VIDEO_BITRATE_BPS = 1500000;
+    public static final long DEFAULT_UPLINK_BPS = 2000000;
+
+    // leave room for RTCP, retransmissions and signaling
+    static final float USABLE_UPLINK_SHARE = 0.85f;
+    // smaller changes than this are not worth renegotiating the encoder
+    static final float MIN_CHANGE = 0.1f;
+    // how much the uplink is raised every time the estimates show that the allocation isn't limiting
+    static final float UPLINK_INCREASE = 1.1f;
+    // estimates below this share of what a peer is allowed to send mean the uplink is congested
+    static final float CONGESTED_SHARE = 0.75f;
+
+    private static final int HIGH_FRAMERATE_BITRATE_BPS = 500000;
+    private static final int MEDIUM_FRAMERATE_BITRATE_BPS = 250000;
+
+    private int peerCount;
+    private long uplinkEstimateBps = DEFAULT_UPLINK_BPS;
+    private Allocation allocation = compute(0, DEFAULT_UPLINK_BPS);
+
+    /**
+     * @return the new allocation, or null if it didn't change enough to be applied
+     */
+    public synchronized Allocation setPeerCount(int peerCount) {
+        if (this.peerCount == peerCount) {
+            return null;
+        }
+
+        this.peerCount = peerCount;
+        return reallocate(true);
+    }
+
+    /**
+     * @param totalEstimateBps sum of the send bandwidth estimates of the peers that reported one
+     * @param reportingPeers   how many peers reported an estimate
+     * @return the new allocation, or null if it didn't change enough to be applied
+     */
+    public synchronized Allocation setSendBandwidthEstimate(long totalEstimateBps, int reportingPeers) {
+        if (totalEstimateBps <= 0 || reportingPeers <= 0) {
+            return null;
+        }
+
+        long allowedBps = (long) reportingPeers * (allocation.videoBitrateBps + AUDIO_BITRATE_BPS);
+        if (totalEstimateBps < allowedBps * CONGESTED_SHARE) {
+            uplinkEstimateBps = totalEstimateBps * Math.max(peerCount, reportingPeers) / reportingPeers;
+        } else {
+            // enough for every peer to get the maximum; rounded up so that the division in compute() gets there
+            long maxUplinkBps = (long) Math.ceil(Math.max(peerCount, 1) *
+                    (double) (MAX_VIDEO_BITRATE_BPS + AUDIO_BITRATE_BPS) / USABLE_UPLINK_SHARE) + 1;
+            uplinkEstimateBps = Math.max(uplinkEstimateBps, Math.min(maxUplinkBps,
+                    (long) (uplinkEstimateBps * UPLINK_INCREASE)));
+        }
+
+        return reallocate(false);
+    }
+
+    public synchronized Allocation getAllocation() {
+        return allocation;
+    }
+
+    public synchronized long getUplinkEstimateBps() {
+        return uplinkEstimateBps;
+    }
+
+    private Allocation reallocate(boolean force) {
+        Allocation newAllocation = compute(peerCount, uplinkEstimateBps);
+        if (!force && !differsEnough(allocation, newAllocation)) {
+            return null;
+        }
+
+        allocation = newAllocation;
+        return allocation;
+    }
+
+    static Allocation compute(int peerCount, long uplinkEstimateBps) {
+        if (peerCount <= 0) {
+            return new Allocation(0, MAX_VIDEO_BITRATE_BPS, framerateFor(MAX_VIDEO_BITRATE_BPS));
+        }
+
+        long usableBps = (long) (uplinkEstimateBps * USABLE_UPLINK_SHARE);
+        long videoBps = usableBps / peerCount - AUDIO_BITRATE_BPS;
+        int videoBitrateBps = (int) Math.max(MIN_VIDEO_BITRATE_BPS, Math.min(MAX_VIDEO_BITRATE_BPS, videoBps));
+
+        return new Allocation(peerCount, videoBitrateBps, framerateFor(videoBitrateBps));
+    }
+
+    private static int framerateFor(int videoBitrateBps) {
+        if (videoBitrateBps >= HIGH_FRAMERATE_BITRATE_BPS) {
+            return 30;
+        } else if (videoBitrateBps >= MEDIUM_FRAMERATE_BITRATE_BPS) {
+            return 20;
+        }
+
+        return 15;
+    }
+
+    private static boolean differsEnough(Allocation current, Allocation next) {
+        if (current.maxFramerate != next.maxFramerate) {
+            return true;
+        }
+
+        // always go all the way to a limit, small steps towards it would otherwise never arrive
+        if (next.videoBitrateBps != current.videoBitrateBps && (next.videoBitrateBps == MAX_VIDEO_BITRATE_BPS ||
+                next.videoBitrateBps == MIN_VIDEO_BITRATE_BPS)) {
+            return true;
+        }
+
+        int difference = Math.abs(next.videoBitrateBps - current.videoBitrateBps);
+        return difference > current.videoBitrateBps * MIN_CHANGE;
+    }
+
+    public static class Allocation {
+        private final int peerCount;
+        private final int videoBitrateBps;
+        private final int maxFramerate;
+
+        Allocation(int peerCount, int videoBitrateBps, int maxFramerate) {
+            this.peerCount = peerCount;
+            this.videoBitrateBps = videoBitrateBps;
+            this.maxFramerate = maxFramerate;
+        }
+
+        public int getPeerCount() {
+            return peerCount;
+        }
+
+        /**
+         * Video send bitrate for each peer.
+         */
+        public int getVideoBitrateBps() {
+            return videoBitrateBps;
+        }
+
+        public int getAudioBitrateBps() {
+            return AUDIO_BITRATE_BPS;
+        }
+
+        public int getMaxFramerate() {
+            return maxFramerate;
+        }
+
+        @Override
+        public String toString() {
+            return "Allocation{peers=" + peerCount +
+                    ", videoBitrateBps=" + videoBitrateBps +
+                    ", audioBitrateBps=" + AUDIO_BITRATE_BPS +
+                    ", maxFramerate=" + maxFramerate + "}";
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.util.Log;
+
+import com.nextcloud.talk.events.MediaStreamEvent;
+import com.nextcloud.talk.events.PeerConnectionEvent;
+import com.nextcloud.talk.events.SessionDescriptionSendEvent;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hands the events of one call (peers, streams, outgoing SDP and candidates, the proximity sensor)
+ * straight to the listeners registered for their type, instead of going through the global EventBus.
+ * Every listener has its own queue and is called on the executor it was registered with, one event at a
+ * time and in the order they were posted. A slow listener therefore neither holds up the WebRTC thread
+ * that posts nor the listeners of other types. Posting takes no locks.
+ */
+public class CallEventDispatcher {
+    private static final String TAG = "CallEventDispatcher";
+
+    public static final EventType<PeerConnectionEvent> PEER_CONNECTION = new EventType<>("PeerConnectionEvent");
+    public static final EventType<MediaStreamEvent> MEDIA_STREAM = new EventType<>("MediaStreamEvent");
+    public static final EventType<SessionDescriptionSendEvent> SESSION_DESCRIPTION_SEND =
+            new EventType<>("SessionDescriptionSendEvent");
+
+    private final ConcurrentHashMap<EventType<?>, List<Subscription<?>>> subscriptions = new ConcurrentHashMap<>();
+
+    public <E> void register(EventType<E> eventType, Executor executor, Listener<? super E> listener) {
+        List<Subscription<?>> typeSubscriptions = subscriptions.get(eventType);
+        if (typeSubscriptions == null) {
+            subscriptions.putIfAbsent(eventType, new CopyOnWriteArrayList<>());
+            typeSubscriptions = subscriptions.get(eventType);
+        }
+
+        typeSubscriptions.add(new Subscription<>(executor, listener));
+    }
+
+    /**
+     * Events that are still queued for the listener are dropped.
+     */
+    public <E> void unregister(EventType<E> eventType, Listener<? super E> listener) {
+        List<Subscription<?>> typeSubscriptions = subscriptions.get(eventType);
+        if (typeSubscriptions == null) {
+            return;
+        }
+
+        for (Subscription<?> subscription : typeSubscriptions) {
+            if (subscription.listener == listener) {
+                typeSubscriptions.remove(subscription);
+                subscription.cancel();
+            }
+        }
+    }
+
+    /**
+     * Unregisters every listener, e.g. once the call is over.
+     */
+    public void clear() {
+        for (List<Subscription<?>> typeSubscriptions : subscriptions.values()) {
+            for (Subscription<?> subscription : typeSubscriptions) {
+                subscription.cancel();
+            }
+            typeSubscriptions.clear();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <E> void post(EventType<E> eventType, E event) {
+        List<Subscription<?>> typeSubscriptions = subscriptions.get(eventType);
+        if (typeSubscriptions == null) {
+            return;
+        }
+
+        for (Subscription<?> subscription : typeSubscriptions) {
+            // registered for this type, so it takes the event
+            ((Subscription<E>) subscription).offer(event);
+        }
+    }
+
+    /**
+     * The kind of an event, and the class it comes as.
+     */
+    public static final class EventType<E> {
+        private final String name;
+
+        private EventType(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public interface Listener<E> {
+        void onEvent(E event);
+    }
+
+    private static class Subscription<E> implements Runnable {
+        private final Executor executor;
+        private final Listener<? super E> listener;
+        private final Queue<E> queue = new ConcurrentLinkedQueue<>();
+        // whether a run() is pending or running on the executor
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean cancelled;
+
+        Subscription(Executor executor, Listener<? super E> listener) {
+            this.executor = executor;
+            this.listener = listener;
+        }
+
+        void offer(E event) {
+            if (cancelled) {
+                return;
+            }
+
+            queue.offer(event);
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            queue.clear();
+        }
+
+        @Override
+        public void run() {
+            do {
+                E event;
+                while (!cancelled && (event = queue.poll()) != null) {
+                    try {
+                        listener.onEvent(event);
+                    } catch (RuntimeException e) {
+                        Log.e(TAG, "Listener failed on " + event, e);
+                    }
+                }
+
+                scheduled.set(false);
+                // an event offered after the last poll but before the flag was cleared has to be picked up here
+            } while (!cancelled && !queue.isEmpty() && scheduled.compareAndSet(false, true));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.PowerManager;
+
+/**
+ * Decides whether a call that the user didn't explicitly start as a voice or video call is started
+ * audio-only. Video is left out only in battery saver mode and when the battery is low, where the camera
+ * and the video pipeline would drain what is left. A metered network alone doesn't count, the user picks
+ * "Start voice call" for that.
+ */
+public class CallModePolicy {
+    static final int LOW_BATTERY_PERCENT = 15;
+
+    private CallModePolicy() {
+    }
+
+    public static boolean isAudioOnlyPreferred(Context context) {
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        boolean powerSaving = powerManager != null && powerManager.isPowerSaveMode();
+
+        // the battery broadcast is sticky, so this only reads its last value
+        Intent batteryStatus = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        int batteryPercent = 100;
+        boolean charging = false;
+        if (batteryStatus != null) {
+            int level = batteryStatus.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+            int scale = batteryStatus.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+            if (level >= 0 && scale > 0) {
+                batteryPercent = level * 100 / scale;
+            }
+            charging = batteryStatus.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        }
+
+        return isAudioOnlyPreferred(powerSaving, batteryPercent, charging);
+    }
+
+    static boolean isAudioOnlyPreferred(boolean powerSaving, int batteryPercent, boolean charging) {
+        if (powerSaving) {
+            return true;
+        }
+
+        return !charging && batteryPercent <= LOW_BATTERY_PERCENT;
+    }
+}
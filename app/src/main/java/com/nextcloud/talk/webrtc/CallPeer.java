@@ -0,0 +1,112 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.support.annotation.Nullable;
+
+import com.nextcloud.talk.api.models.json.signaling.DataChannelMessage;
+import com.nextcloud.talk.api.models.json.signaling.NCIceCandidate;
+import com.nextcloud.talk.api.models.json.signaling.settings.IceServer;
+
+import org.webrtc.StatsObserver;
+
+import java.util.List;
+
+/**
+ * The connection to one remote participant, as far as CallSession is concerned.
+ * MagicPeerConnectionWrapper implements it with a WebRTC peer connection.
+ */
+public interface CallPeer {
+
+    String getSessionId();
+
+    String getNick();
+
+    void setNick(String nick);
+
+    /**
+     * The video codec that was negotiated with this peer, null until an answer has been exchanged.
+     */
+    @Nullable
+    String getVideoCodec();
+
+    /**
+     * @param type "offer" or "answer"
+     */
+    void setRemoteDescription(String type, String sdp);
+
+    void addCandidate(NCIceCandidate ncIceCandidate);
+
+    void drainIceCandidates();
+
+    void sendChannelData(DataChannelMessage dataChannelMessage);
+
+    /**
+     * Sends an audio or video status over the data channel, unless the peer already has it.
+     */
+    void sendStatus(DataChannelCodec.MessageType messageType);
+
+    /**
+     * Asks the peer over the data channel to stop or resume sending its video to us. The request is
+     * repeated when the data channel is opened again.
+     */
+    void requestVideoPaused(boolean paused);
+
+    /**
+     * Switches to the given servers and renegotiates with fresh ICE credentials, keeping the streams and
+     * the data channel.
+     */
+    void restartIce(List<IceServer> iceServers);
+
+    /**
+     * Whether ICE is connected, i.e. media can flow.
+     */
+    boolean isConnected();
+
+    /**
+     * Caps what we send to this peer. Kept until the connection has been negotiated if necessary.
+     */
+    void setSendBitrates(int videoBitrateBps, int audioBitrateBps);
+
+    /**
+     * The last send bandwidth estimate of the connection in bits per second, 0 if there is none yet.
+     */
+    long getSendBandwidthEstimateBps();
+
+    /**
+     * Called by CallStatsCollector with the estimate of every new stats sample.
+     */
+    void setSendBandwidthEstimateBps(long sendBandwidthEstimateBps);
+
+    /**
+     * Asks the connection for its stats. The observer is called on a WebRTC thread, or not at all once
+     * the peer has been closed.
+     */
+    void getStats(StatsObserver statsObserver);
+
+    /**
+     * Like getStats(), but only with the reports of one audio track: the one the peer sends us, or our
+     * microphone as sent to the peer if local is true. Not called at all if there is no such track.
+     */
+    void getAudioStats(boolean local, StatsObserver statsObserver);
+
+    void close();
+}
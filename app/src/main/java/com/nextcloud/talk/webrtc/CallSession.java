@@ -0,0 +1,713 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.nextcloud.talk.api.CallApi;
+import com.nextcloud.talk.api.models.json.converters.SignalingListConverter;
+import com.nextcloud.talk.api.models.json.participants.Participant;
+import com.nextcloud.talk.api.models.json.signaling.DataChannelMessage;
+import com.nextcloud.talk.api.models.json.signaling.NCIceCandidate;
+import com.nextcloud.talk.api.models.json.signaling.NCMessagePayload;
+import com.nextcloud.talk.api.models.json.signaling.NCSignalingMessage;
+import com.nextcloud.talk.api.models.json.signaling.Signaling;
+import com.nextcloud.talk.api.models.json.signaling.settings.IceServer;
+import com.nextcloud.talk.api.models.json.signaling.settings.Settings;
+import com.nextcloud.talk.api.models.json.signaling.settings.SignalingSettingsOverall;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Runs one call without any UI: joins the room and the call, keeps the call alive with pings, moves
+ * signaling messages through a SignalingTransport and creates or closes a CallPeer per remote
+ * participant. The UI only gets to know about it through the CallSessionListener.
+ * Network requests run on the given scheduler, everything that comes back is handled on the delivery
+ * scheduler (the main thread in the app).
+ */
+public class CallSession {
+    private static final String TAG = "CallSession";
+
+    static final long PING_INTERVAL_MS = 5000;
+    static final long BANDWIDTH_INTERVAL_MS = 5000;
+    static final long RECOVERY_CHECK_MS = 250;
+    static final long RECOVERY_TIMEOUT_MS = 30000;
+    static final String NO_CALL_SESSION = "0";
+
+    private final CallApi callApi;
+    private final CallPeerFactory callPeerFactory;
+    private final SignalingTransportFactory signalingTransportFactory;
+    private final String displayName;
+    private final Scheduler scheduler;
+    private final Scheduler deliveryScheduler;
+    private final CallSessionListener callSessionListener;
+
+    private final PeerRegistry peerRegistry = new PeerRegistry();
+    private final BandwidthAllocator bandwidthAllocator = new BandwidthAllocator();
+    private final ParticipantTracker participantTracker;
+    private final SignalingTransport.SignalingTransportListener signalingTransportListener;
+
+    private volatile CallState callState = CallState.IDLE;
+    private volatile String callSessionId;
+    private volatile List<IceServer> iceServers = new ArrayList<>();
+    private SignalingTransport signalingTransport;
+
+    private CallSetupTimings callSetupTimings = new CallSetupTimings();
+    private long setupStartedAtMs;
+    private Disposable setupDisposable;
+    private Disposable pingDisposable;
+    private Disposable bandwidthDisposable;
+    private Disposable recoveryDisposable;
+    private long handoverStartedAtMs;
+    // set while a roster update adds or removes many peers, so that bandwidth is reallocated only once
+    private boolean updatingPeers;
+    // audio and video status changes that are sent with the next flush, only the last one of each counts
+    private DataChannelCodec.MessageType pendingAudioStatus;
+    private DataChannelCodec.MessageType pendingVideoStatus;
+    private boolean statusFlushScheduled;
+
+    public enum CallState {
+        IDLE,
+        CONNECTING,
+        IN_CALL,
+        RECONNECTING,
+        LEAVING,
+        ENDED
+    }
+
+    /**
+     * @param callSessionId our Nextcloud session if we're already in the room, "0" to join it first
+     */
+    public CallSession(CallApi callApi, CallPeerFactory callPeerFactory,
+                       SignalingTransportFactory signalingTransportFactory, String ownUserId, String displayName,
+                       String callSessionId, Scheduler scheduler, Scheduler deliveryScheduler,
+                       CallSessionListener callSessionListener) {
+        this.callApi = callApi;
+        this.callPeerFactory = callPeerFactory;
+        this.signalingTransportFactory = signalingTransportFactory;
+        this.displayName = displayName;
+        this.callSessionId = callSessionId;
+        this.scheduler = scheduler;
+        this.deliveryScheduler = deliveryScheduler;
+        this.callSessionListener = callSessionListener;
+
+        participantTracker = new ParticipantTracker(ownUserId);
+        signalingTransportListener = new SignalingTransport.SignalingTransportListener() {
+            @Override
+            public void onSignalingMessages(List<Signaling> signalings) {
+                if (callState == CallState.IN_CALL || callState == CallState.RECONNECTING) {
+                    for (int i = 0; i < signalings.size(); i++) {
+                        receivedSignalingMessage(signalings.get(i));
+                    }
+                }
+            }
+
+            @Override
+            public void onTransportError(Throwable throwable, int consecutiveErrors) {
+                Log.d(TAG, "Signaling failed " + consecutiveErrors + " times in a row");
+            }
+        };
+    }
+
+    /**
+     * Fetches the signaling settings and joins the room (if needed) at the same time, joins the call
+     * once both are done, then starts pinging and receiving signaling messages.
+     */
+    public void start() {
+        if (callState != CallState.IDLE) {
+            return;
+        }
+
+        setCallState(CallState.CONNECTING);
+        callSetupTimings = new CallSetupTimings();
+        setupStartedAtMs = now();
+
+        Observable<SignalingSettingsOverall> signalingSettings = callApi.getSignalingSettings()
+                .subscribeOn(scheduler)
+                .doOnNext(signalingSettingsOverall -> callSetupTimings.setSignalingSettingsMs(elapsedSinceSetup()))
+                .observeOn(deliveryScheduler)
+                .doOnNext(this::applySignalingSettings);
+
+        Observable<String> roomSession = joinRoomIfNeeded()
+                .subscribeOn(scheduler);
+
+        setupDisposable = Observable.zip(signalingSettings, roomSession,
+                (signalingSettingsOverall, sessionId) -> sessionId)
+                .observeOn(scheduler)
+                .doOnNext(sessionId -> callSetupTimings.joinCallStarted(elapsedSinceSetup()))
+                .flatMap(sessionId -> callApi.joinCall().retry(3).map(genericOverall -> sessionId))
+                .observeOn(deliveryScheduler)
+                .subscribe(this::onCallJoined, this::onSetupFailed);
+    }
+
+    /**
+     * Recovers the call after the network changed: restarts ICE on every peer, keeping the peers and
+     * their data channels, and reconnects the signaling. The state goes back to IN_CALL once every peer
+     * is connected again, or after RECOVERY_TIMEOUT_MS; either way the listener is told how long it took.
+     */
+    public void restart() {
+        if (!isInCall()) {
+            return;
+        }
+
+        // a handover while still recovering from the last one is part of the same outage
+        if (callState == CallState.IN_CALL) {
+            handoverStartedAtMs = now();
+        }
+        setCallState(CallState.RECONNECTING);
+        dispose(setupDisposable);
+        dispose(recoveryDisposable);
+
+        // the cached servers are fine for most handovers, so the peers don't wait for the refresh
+        List<IceServer> cachedIceServers = iceServers;
+        for (CallPeer callPeer : peerRegistry.getAll()) {
+            callPeer.restartIce(cachedIceServers);
+        }
+        signalingTransport.reconnect();
+        // pings that failed while there was no network gave up
+        if (pingDisposable.isDisposed()) {
+            startPinging();
+        }
+
+        // TURN credentials might have expired though, don't use cached settings here
+        setupDisposable = callApi.refreshSignalingSettings()
+                .subscribeOn(scheduler)
+                .observeOn(deliveryScheduler)
+                .subscribe(signalingSettingsOverall -> {
+                    if (callState != CallState.RECONNECTING) {
+                        return;
+                    }
+
+                    applySignalingSettings(signalingSettingsOverall);
+                    if (iceServers.equals(cachedIceServers)) {
+                        return;
+                    }
+
+                    for (CallPeer callPeer : peerRegistry.getAll()) {
+                        if (!callPeer.isConnected()) {
+                            callPeer.restartIce(iceServers);
+                        }
+                    }
+                }, throwable -> Log.e(TAG, "Failed to fetch signaling settings while reconnecting"));
+
+        recoveryDisposable = Observable.interval(RECOVERY_CHECK_MS, TimeUnit.MILLISECONDS, scheduler)
+                .observeOn(deliveryScheduler)
+                .subscribe(tick -> checkRecovery());
+    }
+
+    /**
+     * Closes every peer and the signaling, then leaves the call and the room. The state becomes ENDED
+     * once the server has been told, or the requests failed.
+     */
+    public void hangup() {
+        if (callState == CallState.LEAVING || callState == CallState.ENDED) {
+            return;
+        }
+
+        boolean neverStarted = callState == CallState.IDLE;
+        setCallState(CallState.LEAVING);
+
+        dispose(setupDisposable);
+        dispose(pingDisposable);
+        dispose(bandwidthDisposable);
+        dispose(recoveryDisposable);
+
+        for (String sessionId : peerRegistry.getSessionIds()) {
+            endPeer(sessionId);
+        }
+        participantTracker.clear();
+
+        if (signalingTransport != null) {
+            signalingTransport.close();
+        }
+
+        if (neverStarted && NO_CALL_SESSION.equals(callSessionId)) {
+            setCallState(CallState.ENDED);
+            return;
+        }
+
+        callApi.leaveCall()
+                .subscribeOn(scheduler)
+                .flatMap(genericOverall -> callApi.leaveRoom())
+                .observeOn(deliveryScheduler)
+                .subscribe(genericOverall -> setCallState(CallState.ENDED), throwable -> {
+                    Log.e(TAG, "Failed to leave the call");
+                    setCallState(CallState.ENDED);
+                });
+    }
+
+    public void sendSignalingMessage(String to, String type, @Nullable String sdp,
+                                     @Nullable NCIceCandidate ncIceCandidate) {
+        if (signalingTransport == null) {
+            return;
+        }
+
+        NCSignalingMessage ncSignalingMessage = new NCSignalingMessage();
+        ncSignalingMessage.setTo(to);
+        ncSignalingMessage.setRoomType("video");
+        ncSignalingMessage.setType(type);
+        NCMessagePayload ncMessagePayload = new NCMessagePayload();
+        ncMessagePayload.setType(type);
+
+        if (!"candidate".equals(type)) {
+            ncMessagePayload.setSdp(sdp);
+            ncMessagePayload.setNick(displayName);
+        } else {
+            ncMessagePayload.setIceCandidate(ncIceCandidate);
+        }
+
+        ncSignalingMessage.setPayload(ncMessagePayload);
+        signalingTransport.send(ncSignalingMessage);
+    }
+
+    /**
+     * Sends a message (e.g. "audioOn") over the data channel of every peer.
+     */
+    public void sendChannelDataToAll(DataChannelMessage dataChannelMessage) {
+        if (!isInCall()) {
+            return;
+        }
+
+        for (CallPeer callPeer : peerRegistry.getAll()) {
+            callPeer.sendChannelData(dataChannelMessage);
+        }
+    }
+
+    /**
+     * Tells every peer that our microphone was muted or unmuted. Changes made until the scheduler's next
+     * tick are merged, so toggling back and forth only sends the final state, if it changed at all.
+     */
+    public void sendAudioStatus(boolean audioOn) {
+        synchronized (this) {
+            pendingAudioStatus = DataChannelCodec.MessageType.audio(audioOn);
+        }
+        scheduleStatusFlush();
+    }
+
+    public void sendVideoStatus(boolean videoOn) {
+        synchronized (this) {
+            pendingVideoStatus = DataChannelCodec.MessageType.video(videoOn);
+        }
+        scheduleStatusFlush();
+    }
+
+    private synchronized void scheduleStatusFlush() {
+        if (!statusFlushScheduled) {
+            statusFlushScheduled = true;
+            scheduler.scheduleDirect(this::flushStatus);
+        }
+    }
+
+    private void flushStatus() {
+        DataChannelCodec.MessageType audioStatus;
+        DataChannelCodec.MessageType videoStatus;
+        synchronized (this) {
+            audioStatus = pendingAudioStatus;
+            videoStatus = pendingVideoStatus;
+            pendingAudioStatus = null;
+            pendingVideoStatus = null;
+            statusFlushScheduled = false;
+        }
+
+        if (!isInCall()) {
+            return;
+        }
+
+        for (CallPeer callPeer : peerRegistry.getAll()) {
+            if (videoStatus != null) {
+                callPeer.sendStatus(videoStatus);
+            }
+            if (audioStatus != null) {
+                callPeer.sendStatus(audioStatus);
+            }
+        }
+    }
+
+    public void endPeer(String sessionId) {
+        CallPeer callPeer = peerRegistry.remove(sessionId);
+        if (callPeer != null) {
+            callPeer.close();
+            callSessionListener.onPeerRemoved(sessionId);
+            reallocateBandwidth();
+        }
+    }
+
+    @Nullable
+    public CallPeer getPeer(String sessionId) {
+        return peerRegistry.get(sessionId);
+    }
+
+    public List<CallPeer> getPeers() {
+        return peerRegistry.getAll();
+    }
+
+    public CallState getCallState() {
+        return callState;
+    }
+
+    public boolean isInCall() {
+        return callState == CallState.IN_CALL || callState == CallState.RECONNECTING;
+    }
+
+    public String getCallSessionId() {
+        return callSessionId;
+    }
+
+    @Nullable
+    public SignalingTransport getSignalingTransport() {
+        return signalingTransport;
+    }
+
+    public List<IceServer> getIceServers() {
+        return iceServers;
+    }
+
+    public BandwidthAllocator.Allocation getBandwidthAllocation() {
+        return bandwidthAllocator.getAllocation();
+    }
+
+    /**
+     * The stage timings of the last start(), complete once the call has been joined.
+     */
+    public CallSetupTimings getCallSetupTimings() {
+        return callSetupTimings;
+    }
+
+    /**
+     * The session other participants know us by.
+     */
+    public String getLocalSessionId() {
+        if (signalingTransport != null && signalingTransport.getSessionId() != null) {
+            return signalingTransport.getSessionId();
+        }
+
+        return callSessionId;
+    }
+
+    private Observable<String> joinRoomIfNeeded() {
+        if (!NO_CALL_SESSION.equals(callSessionId)) {
+            return Observable.just(callSessionId);
+        }
+
+        return callApi.joinRoom()
+                .retry(3)
+                .doOnNext(callOverall -> callSetupTimings.setJoinRoomMs(elapsedSinceSetup()))
+                .map(callOverall -> callOverall.getOcs().getData().getSessionId());
+    }
+
+    private void applySignalingSettings(SignalingSettingsOverall signalingSettingsOverall) {
+        Settings settings = signalingSettingsOverall.getOcs().getSettings();
+        iceServers = getIceServers(settings);
+
+        if (signalingTransport == null) {
+            signalingTransport = signalingTransportFactory.createSignalingTransport(settings);
+        }
+    }
+
+    /**
+     * Flattens STUN and TURN servers into a list with one url per entry.
+     */
+    static List<IceServer> getIceServers(Settings settings) {
+        List<IceServer> iceServers = new ArrayList<>();
+
+        if (settings.getStunServers() != null) {
+            for (IceServer stunServer : settings.getStunServers()) {
+                iceServers.add(stunServer);
+            }
+        }
+
+        if (settings.getTurnServers() != null) {
+            for (IceServer turnServer : settings.getTurnServers()) {
+                if (turnServer.getUrls() == null) {
+                    continue;
+                }
+
+                for (String url : turnServer.getUrls()) {
+                    IceServer iceServer = new IceServer();
+                    iceServer.setUrl(url);
+                    iceServer.setUsername(turnServer.getUsername());
+                    iceServer.setCredential(turnServer.getCredential());
+                    iceServers.add(iceServer);
+                }
+            }
+        }
+
+        return iceServers;
+    }
+
+    private void onCallJoined(String sessionId) {
+        if (callState != CallState.CONNECTING) {
+            return;
+        }
+
+        callSessionId = sessionId;
+        callSetupTimings.joinCallFinished(elapsedSinceSetup());
+        Log.d(TAG, "Joined the call: " + callSetupTimings);
+        setCallState(CallState.IN_CALL);
+
+        startPinging();
+        bandwidthDisposable = Observable.interval(BANDWIDTH_INTERVAL_MS, TimeUnit.MILLISECONDS, scheduler)
+                .observeOn(deliveryScheduler)
+                .subscribe(tick -> measureSendBandwidth());
+
+        signalingTransport.connect(callSessionId, signalingTransportListener);
+    }
+
+    private void startPinging() {
+        pingDisposable = callApi.pingCall()
+                .subscribeOn(scheduler)
+                .repeatWhen(observable -> observable.delay(PING_INTERVAL_MS, TimeUnit.MILLISECONDS, scheduler))
+                .takeWhile(genericOverall -> isInCall())
+                .retry(3, throwable -> isInCall())
+                .subscribe(genericOverall -> {
+                }, throwable -> Log.e(TAG, "Pinging the call failed"));
+    }
+
+    private long now() {
+        return scheduler.now(TimeUnit.MILLISECONDS);
+    }
+
+    private long elapsedSinceSetup() {
+        return now() - setupStartedAtMs;
+    }
+
+    private void checkRecovery() {
+        if (callState != CallState.RECONNECTING) {
+            return;
+        }
+
+        boolean recovered = true;
+        for (CallPeer callPeer : peerRegistry.getAll()) {
+            if (!callPeer.isConnected()) {
+                recovered = false;
+                break;
+            }
+        }
+
+        long elapsedMs = now() - handoverStartedAtMs;
+        if (!recovered && elapsedMs < RECOVERY_TIMEOUT_MS) {
+            return;
+        }
+
+        dispose(recoveryDisposable);
+        if (recovered) {
+            Log.d(TAG, "Recovered from the network handover in " + elapsedMs + " ms");
+        } else {
+            Log.d(TAG, "Gave up waiting for the peers after the network handover");
+        }
+
+        setCallState(CallState.IN_CALL);
+        callSessionListener.onHandoverFinished(recovered, elapsedMs);
+    }
+
+    private void onSetupFailed(Throwable throwable) {
+        Log.e(TAG, "Failed to join the call");
+        if (callState == CallState.CONNECTING) {
+            setCallState(CallState.IDLE);
+        }
+    }
+
+    private void receivedSignalingMessage(Signaling signaling) {
+        String messageType = signaling.getType();
+
+        if (SignalingListConverter.TYPE_USERS_IN_ROOM.equals(messageType) && signaling.getUsersInRoom() != null) {
+            processUsersInRoom(signaling.getUsersInRoom());
+        } else if (SignalingListConverter.TYPE_MESSAGE.equals(messageType) && signaling.getSignalingMessage() != null) {
+            NCSignalingMessage ncSignalingMessage = signaling.getSignalingMessage();
+            if (!"video".equals(ncSignalingMessage.getRoomType()) || ncSignalingMessage.getFrom() == null) {
+                return;
+            }
+
+            String type = null;
+            if (ncSignalingMessage.getPayload() != null && ncSignalingMessage.getPayload().getType() != null) {
+                type = ncSignalingMessage.getPayload().getType();
+            } else if (ncSignalingMessage.getType() != null) {
+                type = ncSignalingMessage.getType();
+            }
+
+            if (type == null) {
+                return;
+            }
+
+            CallPeer callPeer = getOrCreatePeer(ncSignalingMessage.getFrom());
+            switch (type) {
+                case "offer":
+                case "answer":
+                    callPeer.setNick(ncSignalingMessage.getPayload().getNick());
+                    callPeer.setRemoteDescription(type, ncSignalingMessage.getPayload().getSdp());
+                    break;
+                case "candidate":
+                    callPeer.addCandidate(ncSignalingMessage.getPayload().getIceCandidate());
+                    break;
+                case "endOfCandidates":
+                    callPeer.drainIceCandidates();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void processUsersInRoom(List<Participant> users) {
+        ParticipantTracker.Delta delta = participantTracker.update(users, getLocalSessionId());
+
+        if (delta.isEmpty()) {
+            return;
+        }
+
+        updatingPeers = true;
+        try {
+            for (Participant participant : delta.getJoined()) {
+                updatePeerForParticipant(participant);
+            }
+
+            for (Participant participant : delta.getChanged()) {
+                updatePeerForParticipant(participant);
+            }
+
+            for (Participant participant : delta.getLeft()) {
+                endPeer(participant.getSessionId());
+            }
+        } finally {
+            updatingPeers = false;
+        }
+
+        reallocateBandwidth();
+    }
+
+    /**
+     * Splits the uplink again after peers were added or removed.
+     */
+    private void reallocateBandwidth() {
+        if (updatingPeers || !isInCall()) {
+            return;
+        }
+
+        BandwidthAllocator.Allocation allocation = bandwidthAllocator.setPeerCount(peerRegistry.size());
+        if (allocation != null) {
+            applyBandwidthAllocation(allocation);
+        }
+    }
+
+    private void measureSendBandwidth() {
+        long totalEstimateBps = 0;
+        int reportingPeers = 0;
+
+        for (CallPeer callPeer : peerRegistry.getAll()) {
+            long estimateBps = callPeer.getSendBandwidthEstimateBps();
+            if (estimateBps > 0) {
+                totalEstimateBps += estimateBps;
+                reportingPeers++;
+            }
+        }
+
+        BandwidthAllocator.Allocation allocation = bandwidthAllocator.setSendBandwidthEstimate(totalEstimateBps,
+                reportingPeers);
+        if (allocation != null) {
+            applyBandwidthAllocation(allocation);
+        }
+    }
+
+    private void applyBandwidthAllocation(BandwidthAllocator.Allocation allocation) {
+        Log.d(TAG, "Bandwidth allocation changed: " + allocation);
+
+        for (CallPeer callPeer : peerRegistry.getAll()) {
+            callPeer.setSendBitrates(allocation.getVideoBitrateBps(), allocation.getAudioBitrateBps());
+        }
+
+        callSessionListener.onBandwidthAllocationChanged(allocation);
+    }
+
+    private void updatePeerForParticipant(Participant participant) {
+        if (participant.isInCall()) {
+            getOrCreatePeer(participant.getSessionId());
+        } else {
+            endPeer(participant.getSessionId());
+        }
+    }
+
+    private CallPeer getOrCreatePeer(String sessionId) {
+        CallPeer callPeer = peerRegistry.get(sessionId);
+        if (callPeer != null) {
+            return callPeer;
+        }
+
+        boolean[] created = new boolean[1];
+        callPeer = peerRegistry.getOrCreate(sessionId, newSessionId -> {
+            created[0] = true;
+            return callPeerFactory.createPeer(newSessionId, getLocalSessionId(), iceServers);
+        });
+
+        if (created[0]) {
+            BandwidthAllocator.Allocation allocation = bandwidthAllocator.getAllocation();
+            callPeer.setSendBitrates(allocation.getVideoBitrateBps(), allocation.getAudioBitrateBps());
+            callSessionListener.onPeerAdded(callPeer);
+            reallocateBandwidth();
+        }
+
+        return callPeer;
+    }
+
+    private void setCallState(CallState callState) {
+        if (this.callState != callState) {
+            this.callState = callState;
+            callSessionListener.onCallStateChanged(callState);
+        }
+    }
+
+    private void dispose(@Nullable Disposable disposable) {
+        if (disposable != null && !disposable.isDisposed()) {
+            disposable.dispose();
+        }
+    }
+
+    public interface SignalingTransportFactory {
+        SignalingTransport createSignalingTransport(Settings settings);
+    }
+
+    public interface CallSessionListener {
+        void onCallStateChanged(CallState callState);
+
+        void onPeerAdded(CallPeer callPeer);
+
+        void onPeerRemoved(String sessionId);
+
+        /**
+         * The per peer send bitrates have already been applied; the frame rate is up to the capturer.
+         */
+        void onBandwidthAllocationChanged(BandwidthAllocator.Allocation allocation);
+
+        /**
+         * A restart() is over.
+         *
+         * @param recovered whether every peer is connected again, if not the call goes on with those that are
+         * @param elapsedMs time from the handover until then
+         */
+        void onHandoverFinished(boolean recovered, long elapsedMs);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+/**
+ * How long each stage of starting a call took, in milliseconds since CallSession.start().
+ * Fetching the signaling settings and joining the room run in parallel, joining the call waits for both.
+ * A stage that didn't run (e.g. the room had already been joined) stays at -1.
+ */
+public class CallSetupTimings {
+    private volatile long signalingSettingsMs = -1;
+    private volatile long joinRoomMs = -1;
+    private volatile long joinCallStartedMs = -1;
+    private volatile long joinCallMs = -1;
+    private volatile long totalMs = -1;
+
+    public long getSignalingSettingsMs() {
+        return signalingSettingsMs;
+    }
+
+    void setSignalingSettingsMs(long signalingSettingsMs) {
+        this.signalingSettingsMs = signalingSettingsMs;
+    }
+
+    public long getJoinRoomMs() {
+        return joinRoomMs;
+    }
+
+    void setJoinRoomMs(long joinRoomMs) {
+        this.joinRoomMs = joinRoomMs;
+    }
+
+    /**
+     * The time it took to join the call once settings and room were both ready.
+     */
+    public long getJoinCallMs() {
+        return joinCallMs;
+    }
+
+    void joinCallStarted(long elapsedMs) {
+        joinCallStartedMs = elapsedMs;
+    }
+
+    void joinCallFinished(long elapsedMs) {
+        if (joinCallStartedMs >= 0) {
+            joinCallMs = elapsedMs - joinCallStartedMs;
+        }
+        totalMs = elapsedMs;
+    }
+
+    public long getTotalMs() {
+        return totalMs;
+    }
+
+    public boolean isComplete() {
+        return totalMs >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "CallSetupTimings{signalingSettingsMs=" + signalingSettingsMs +
+                ", joinRoomMs=" + joinRoomMs +
+                ", joinCallMs=" + joinCallMs +
+                ", totalMs=" + totalMs + "}";
+    }
+}
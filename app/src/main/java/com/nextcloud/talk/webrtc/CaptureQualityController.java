@@ -0,0 +1,296 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Picks the camera capture format. The bigger the mesh, the smaller the format, because every peer gets
+ * its own encoder. On top of that, the format steps down while the LoadSignal reports overuse and steps
+ * back up (never above what the peer count allows) once the load has been low for a while.
+ * Going down reacts after OVERUSE_SAMPLES samples, going up only after UNDERUSE_SAMPLES, so that the
+ * format doesn't flap.
+ * From THUMBNAIL_PEER_COUNT peers on, the others show whoever speaks large and everybody else as a
+ * thumbnail, so while we aren't the active speaker the format is one level smaller.
+ */
+public class CaptureQualityController {
+    private static final String TAG = "CaptureQualityController";
+
+    static final long SAMPLE_INTERVAL_MS = 2000;
+    static final float OVERUSE_LOAD = 0.75f;
+    static final float UNDERUSE_LOAD = 0.45f;
+    static final int OVERUSE_SAMPLES = 2;
+    static final int UNDERUSE_SAMPLES = 5;
+    static final int THUMBNAIL_PEER_COUNT = 3;
+
+    static final CaptureFormat[] LEVELS = {
+            new CaptureFormat(1280, 720, 30),
+            new CaptureFormat(960, 540, 30),
+            new CaptureFormat(640, 360, 24),
+            new CaptureFormat(480, 270, 20),
+            new CaptureFormat(320, 180, 15)
+    };
+
+    private final LoadSignal loadSignal;
+    private final CaptureFormatListener captureFormatListener;
+    // the listener is called outside of the state's lock, but with this one, so that changes made on different
+    // threads reach it one at a time and a change can't overtake a newer one
+    private final Object notifyLock = new Object();
+    private long notifiedGeneration;
+
+    private int peerCount;
+    private int maxFramerate = Integer.MAX_VALUE;
+    private boolean activeSpeaker = true;
+    // levels below what the peer count allows because of CPU load
+    private int loadSteps;
+    private int overuseSamples;
+    private int underuseSamples;
+    private CaptureFormat captureFormat = LEVELS[0];
+    // bumped on every change of the format
+    private long generation;
+
+    private Disposable samplingDisposable;
+
+    public CaptureQualityController(LoadSignal loadSignal, CaptureFormatListener captureFormatListener) {
+        this.loadSignal = loadSignal;
+        this.captureFormatListener = captureFormatListener;
+    }
+
+    /**
+     * Samples the load every SAMPLE_INTERVAL_MS on the given scheduler until stop() is called.
+     */
+    public synchronized void start(Scheduler scheduler) {
+        if (samplingDisposable != null && !samplingDisposable.isDisposed()) {
+            return;
+        }
+
+        samplingDisposable = Observable.interval(SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS, scheduler)
+                .subscribe(tick -> sampleLoad());
+    }
+
+    public synchronized void stop() {
+        if (samplingDisposable != null && !samplingDisposable.isDisposed()) {
+            samplingDisposable.dispose();
+        }
+
+        samplingDisposable = null;
+    }
+
+    public void setPeerCount(int peerCount) {
+        CaptureFormat changedFormat;
+        long changedGeneration;
+        synchronized (this) {
+            this.peerCount = peerCount;
+            changedFormat = updateCaptureFormat();
+            changedGeneration = generation;
+        }
+
+        notifyIfChanged(changedFormat, changedGeneration);
+    }
+
+    /**
+     * An upper bound for the frame rate, e.g. from the BandwidthAllocator.
+     */
+    public void setMaxFramerate(int maxFramerate) {
+        CaptureFormat changedFormat;
+        long changedGeneration;
+        synchronized (this) {
+            this.maxFramerate = maxFramerate;
+            changedFormat = updateCaptureFormat();
+            changedGeneration = generation;
+        }
+
+        notifyIfChanged(changedFormat, changedGeneration);
+    }
+
+    /**
+     * Whether we are the active speaker of the call, which we are until told otherwise.
+     */
+    public void setActiveSpeaker(boolean activeSpeaker) {
+        CaptureFormat changedFormat;
+        long changedGeneration;
+        synchronized (this) {
+            this.activeSpeaker = activeSpeaker;
+            changedFormat = updateCaptureFormat();
+            changedGeneration = generation;
+        }
+
+        notifyIfChanged(changedFormat, changedGeneration);
+    }
+
+    public void sampleLoad() {
+        float load = loadSignal.getLoad();
+        CaptureFormat changedFormat = null;
+        long changedGeneration;
+
+        synchronized (this) {
+            if (load < 0) {
+                return;
+            }
+
+            if (load > OVERUSE_LOAD) {
+                underuseSamples = 0;
+                if (++overuseSamples >= OVERUSE_SAMPLES && getPeerLevel() + loadSteps < LEVELS.length - 1) {
+                    overuseSamples = 0;
+                    loadSteps++;
+                    changedFormat = updateCaptureFormat();
+                }
+            } else if (load < UNDERUSE_LOAD) {
+                overuseSamples = 0;
+                if (++underuseSamples >= UNDERUSE_SAMPLES && loadSteps > 0) {
+                    underuseSamples = 0;
+                    loadSteps--;
+                    changedFormat = updateCaptureFormat();
+                }
+            } else {
+                overuseSamples = 0;
+                underuseSamples = 0;
+            }
+
+            changedGeneration = generation;
+        }
+
+        notifyIfChanged(changedFormat, changedGeneration);
+    }
+
+    public synchronized CaptureFormat getCaptureFormat() {
+        return captureFormat;
+    }
+
+    /**
+     * @return the new format if it changed, null otherwise
+     */
+    @Nullable
+    private CaptureFormat updateCaptureFormat() {
+        CaptureFormat levelFormat = LEVELS[Math.min(LEVELS.length - 1, getPeerLevel() + loadSteps)];
+        CaptureFormat newFormat = levelFormat.framerate <= maxFramerate ? levelFormat :
+                new CaptureFormat(levelFormat.width, levelFormat.height, maxFramerate);
+
+        if (newFormat.equals(captureFormat)) {
+            return null;
+        }
+
+        captureFormat = newFormat;
+        generation++;
+        return newFormat;
+    }
+
+    private int getPeerLevel() {
+        int thumbnailSteps = !activeSpeaker && peerCount >= THUMBNAIL_PEER_COUNT ? 1 : 0;
+        return Math.min(LEVELS.length - 1, getMeshLevel() + thumbnailSteps);
+    }
+
+    private int getMeshLevel() {
+        if (peerCount <= 1) {
+            return 0;
+        } else if (peerCount == 2) {
+            return 1;
+        } else if (peerCount <= 4) {
+            return 2;
+        } else if (peerCount <= 6) {
+            return 3;
+        }
+
+        return 4;
+    }
+
+    private void notifyIfChanged(@Nullable CaptureFormat changedFormat, long changedGeneration) {
+        if (changedFormat == null) {
+            return;
+        }
+
+        synchronized (notifyLock) {
+            // a newer format has already been passed on
+            if (changedGeneration <= notifiedGeneration) {
+                return;
+            }
+
+            notifiedGeneration = changedGeneration;
+            Log.d(TAG, "Capturing " + changedFormat);
+            captureFormatListener.onCaptureFormatChanged(changedFormat);
+        }
+    }
+
+    /**
+     * How busy the video encoding is, from 0 (idle) to 1 (just keeping up) or more; negative while unknown.
+     */
+    public interface LoadSignal {
+        float getLoad();
+    }
+
+    public interface CaptureFormatListener {
+        void onCaptureFormatChanged(CaptureFormat captureFormat);
+    }
+
+    public static class CaptureFormat {
+        private final int width;
+        private final int height;
+        private final int framerate;
+
+        public CaptureFormat(int width, int height, int framerate) {
+            this.width = width;
+            this.height = height;
+            this.framerate = framerate;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getFramerate() {
+            return framerate;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CaptureFormat)) {
+                return false;
+            }
+
+            CaptureFormat that = (CaptureFormat) o;
+            return width == that.width && height == that.height && framerate == that.framerate;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * width + height) + framerate;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height + "@" + framerate;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Tells when the default network has been handed over to another one, e.g. from Wi-Fi to LTE, or came
+ * back after it was lost. Network callbacks come in bursts while a handover is going on, so the default
+ * network is only looked at once they have settled for SETTLE_MS.
+ */
+public class ConnectivityMonitor {
+    private static final String TAG = "ConnectivityMonitor";
+
+    static final long SETTLE_MS = 500;
+
+    private final NetworkSource networkSource;
+    private final Scheduler scheduler;
+    private final HandoverListener handoverListener;
+
+    private boolean started;
+    // the last default network that was seen, null while there is none
+    private String networkId;
+    private boolean lost;
+    private Disposable settleDisposable;
+
+    /**
+     * @param scheduler used to wait for the network to settle; the listener is called on it as well
+     */
+    public ConnectivityMonitor(NetworkSource networkSource, Scheduler scheduler, HandoverListener handoverListener) {
+        this.networkSource = networkSource;
+        this.scheduler = scheduler;
+        this.handoverListener = handoverListener;
+    }
+
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+
+        started = true;
+        networkId = networkSource.getDefaultNetworkId();
+        lost = networkId == null;
+        networkSource.start(this::onNetworkChanged);
+    }
+
+    public synchronized void stop() {
+        if (!started) {
+            return;
+        }
+
+        started = false;
+        networkSource.stop();
+        if (settleDisposable != null) {
+            settleDisposable.dispose();
+            settleDisposable = null;
+        }
+    }
+
+    /**
+     * Called by the NetworkSource whenever something about the networks changed, on any thread.
+     */
+    void onNetworkChanged() {
+        synchronized (this) {
+            if (!started) {
+                return;
+            }
+
+            if (settleDisposable != null) {
+                settleDisposable.dispose();
+            }
+            settleDisposable = scheduler.scheduleDirect(this::checkDefaultNetwork, SETTLE_MS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void checkDefaultNetwork() {
+        String newNetworkId = networkSource.getDefaultNetworkId();
+
+        synchronized (this) {
+            if (!started) {
+                return;
+            }
+
+            if (newNetworkId == null) {
+                // nothing to restart on, wait for the next network
+                lost = true;
+                return;
+            }
+
+            boolean handover = lost || !newNetworkId.equals(networkId);
+            lost = false;
+            networkId = newNetworkId;
+            if (!handover) {
+                return;
+            }
+        }
+
+        Log.d(TAG, "Default network is now " + newNetworkId);
+        handoverListener.onNetworkHandover(newNetworkId);
+    }
+
+    /**
+     * Where the default network comes from, ConnectivityNetworkSource in the app.
+     */
+    public interface NetworkSource {
+        /**
+         * Identifies the default network and its addresses, null if there is none.
+         */
+        @Nullable
+        String getDefaultNetworkId();
+
+        /**
+         * Calls onChange, on any thread, whenever a network or its addresses change, until stop().
+         */
+        void start(Runnable onChange);
+
+        void stop();
+    }
+
+    public interface HandoverListener {
+        void onNetworkHandover(String networkId);
+    }
+}
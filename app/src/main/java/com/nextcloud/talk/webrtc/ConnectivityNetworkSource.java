@@ -0,0 +1,149 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.LinkAddress;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.support.annotation.Nullable;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tells ConnectivityMonitor about the default network of the device. The id includes the stable addresses
+ * of the network, so that getting a new address on the same network counts as a handover as well.
+ * Link-local addresses and IPv6 temporary (privacy) or deprecated addresses are left out: they come and
+ * go on their own while the network, and the ICE candidates on it, keep working.
+ */
+public class ConnectivityNetworkSource implements ConnectivityMonitor.NetworkSource {
+    // address flags from linux/if_addr.h
+    static final int IFA_F_TEMPORARY = 0x01;
+    static final int IFA_F_DEPRECATED = 0x20;
+
+    private final ConnectivityManager connectivityManager;
+    private ConnectivityManager.NetworkCallback networkCallback;
+
+    public ConnectivityNetworkSource(Context context) {
+        connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+
+    @Nullable
+    @Override
+    public String getDefaultNetworkId() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            Network network = connectivityManager.getActiveNetwork();
+            if (network == null) {
+                return null;
+            }
+
+            List<InetAddress> stableAddresses = new ArrayList<>();
+            LinkProperties linkProperties = connectivityManager.getLinkProperties(network);
+            if (linkProperties != null) {
+                for (LinkAddress linkAddress : linkProperties.getLinkAddresses()) {
+                    if (isStableAddress(linkAddress.getAddress(), linkAddress.getFlags())) {
+                        stableAddresses.add(linkAddress.getAddress());
+                    }
+                }
+            }
+            return getNetworkId(network.toString(), stableAddresses);
+        }
+
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            return null;
+        }
+
+        return networkInfo.getTypeName() + " " + networkInfo.getExtraInfo();
+    }
+
+    static boolean isStableAddress(InetAddress inetAddress, int flags) {
+        if (inetAddress.isLinkLocalAddress() || inetAddress.isLoopbackAddress()) {
+            return false;
+        }
+
+        // for IPv4 the same bit marks secondary addresses, which are as stable as the primary one
+        return !(inetAddress instanceof Inet6Address) || (flags & (IFA_F_TEMPORARY | IFA_F_DEPRECATED)) == 0;
+    }
+
+    /**
+     * @param stableAddresses in any order
+     */
+    static String getNetworkId(String network, List<InetAddress> stableAddresses) {
+        List<String> hostAddresses = new ArrayList<>();
+        for (InetAddress inetAddress : stableAddresses) {
+            hostAddresses.add(inetAddress.getHostAddress());
+        }
+        Collections.sort(hostAddresses);
+
+        StringBuilder networkId = new StringBuilder(network);
+        for (String hostAddress : hostAddresses) {
+            networkId.append(' ').append(hostAddress);
+        }
+        return networkId.toString();
+    }
+
+    @Override
+    public synchronized void start(Runnable onChange) {
+        if (networkCallback != null) {
+            return;
+        }
+
+        networkCallback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                onChange.run();
+            }
+
+            @Override
+            public void onLost(Network network) {
+                onChange.run();
+            }
+
+            @Override
+            public void onLinkPropertiesChanged(Network network, LinkProperties linkProperties) {
+                onChange.run();
+            }
+        };
+
+        NetworkRequest networkRequest = new NetworkRequest.Builder()
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build();
+        connectivityManager.registerNetworkCallback(networkRequest, networkCallback);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (networkCallback != null) {
+            connectivityManager.unregisterNetworkCallback(networkCallback);
+            networkCallback = null;
+        }
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.support.annotation.Nullable;
+
+import com.nextcloud.talk.api.models.json.signaling.DataChannelMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Reads and writes the JSON messages exchanged over the "status" data channel, e.g. {"type":"audioOn"} or
+ * {"type":"nickChanged","payload":"Alice"}. Web clients send one object per message, so that is kept on
+ * the wire. Decoding works on the received buffer in place: the type is matched byte by byte against the
+ * known names without creating any objects, only a nick allocates its string.
+ */
+public final class DataChannelCodec {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte[] TYPE_KEY = "type".getBytes(UTF_8);
+    private static final byte[] PAYLOAD_KEY = "payload".getBytes(UTF_8);
+    private static final byte[] NAME_KEY = "name".getBytes(UTF_8);
+
+    public enum MessageType {
+        AUDIO_ON("audioOn"),
+        AUDIO_OFF("audioOff"),
+        VIDEO_ON("videoOn"),
+        VIDEO_OFF("videoOff"),
+        NICK_CHANGED("nickChanged"),
+        // asks the peer to stop or resume sending its video to us, e.g. while our downlink to it is too poor
+        PAUSE_VIDEO("pauseVideo"),
+        RESUME_VIDEO("resumeVideo"),
+        UNKNOWN(null);
+
+        // values() copies the array on every call
+        private static final MessageType[] MESSAGE_TYPES = values();
+
+        private final String name;
+        private final byte[] nameBytes;
+        private final byte[] encoded;
+
+        MessageType(String name) {
+            this.name = name;
+            this.nameBytes = name != null ? name.getBytes(UTF_8) : null;
+            this.encoded = name != null ? ("{\"type\":\"" + name + "\"}").getBytes(UTF_8) : null;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public static MessageType audio(boolean on) {
+            return on ? AUDIO_ON : AUDIO_OFF;
+        }
+
+        public static MessageType video(boolean on) {
+            return on ? VIDEO_ON : VIDEO_OFF;
+        }
+
+        public static MessageType videoPaused(boolean paused) {
+            return paused ? PAUSE_VIDEO : RESUME_VIDEO;
+        }
+    }
+
+    private DataChannelCodec() {
+    }
+
+    /**
+     * The type of the message between the position and the limit of the buffer, which are left untouched.
+     * Anything that is not one of the known types, or not a JSON object at all, is UNKNOWN.
+     */
+    public static MessageType decodeType(ByteBuffer buffer) {
+        int index = findValue(buffer, buffer.position(), TYPE_KEY);
+        if (index < 0 || buffer.get(index) != '"') {
+            return MessageType.UNKNOWN;
+        }
+
+        int end = skipString(buffer, index);
+        if (end < 0) {
+            return MessageType.UNKNOWN;
+        }
+
+        // without the quotes
+        int start = index + 1;
+        int length = end - 1 - start;
+        for (MessageType messageType : MessageType.MESSAGE_TYPES) {
+            if (messageType.nameBytes != null && regionEquals(buffer, start, length, messageType.nameBytes)) {
+                return messageType;
+            }
+        }
+
+        return MessageType.UNKNOWN;
+    }
+
+    /**
+     * The nick of a "nickChanged" message. Older web clients send it as the payload itself, newer ones as
+     * the "name" of a payload object.
+     */
+    @Nullable
+    public static String decodeNick(ByteBuffer buffer) {
+        int index = findValue(buffer, buffer.position(), PAYLOAD_KEY);
+        if (index >= 0 && buffer.get(index) == '{') {
+            index = findValue(buffer, index, NAME_KEY);
+        }
+
+        if (index < 0 || buffer.get(index) != '"') {
+            return null;
+        }
+
+        return readString(buffer, index);
+    }
+
+    /**
+     * A status message without payload. The returned buffer wraps a shared array and must not be written to.
+     */
+    public static ByteBuffer encode(MessageType messageType) {
+        if (messageType.encoded == null) {
+            throw new IllegalArgumentException("Can't encode " + messageType);
+        }
+
+        return ByteBuffer.wrap(messageType.encoded).asReadOnlyBuffer();
+    }
+
+    public static ByteBuffer encode(DataChannelMessage dataChannelMessage) {
+        if (dataChannelMessage.getPayload() == null) {
+            for (MessageType messageType : MessageType.MESSAGE_TYPES) {
+                if (messageType.encoded != null && messageType.name.equals(dataChannelMessage.getType())) {
+                    return encode(messageType);
+                }
+            }
+        }
+
+        StringBuilder stringBuilder = new StringBuilder(64);
+        stringBuilder.append("{\"type\":");
+        appendString(stringBuilder, dataChannelMessage.getType());
+        if (dataChannelMessage.getPayload() != null) {
+            stringBuilder.append(",\"payload\":");
+            appendString(stringBuilder, dataChannelMessage.getPayload());
+        }
+        stringBuilder.append('}');
+
+        return ByteBuffer.wrap(stringBuilder.toString().getBytes(UTF_8));
+    }
+
+    /**
+     * Index of the first byte of the value of the given key in the object starting at objectStart, -1 if
+     * there is no such key or the object is malformed. Nested values are skipped, not searched.
+     */
+    private static int findValue(ByteBuffer buffer, int objectStart, byte[] key) {
+        int limit = buffer.limit();
+        int index = skipWhitespace(buffer, objectStart);
+        if (index >= limit || buffer.get(index) != '{') {
+            return -1;
+        }
+
+        index = skipWhitespace(buffer, index + 1);
+        while (index < limit && buffer.get(index) == '"') {
+            int keyEnd = skipString(buffer, index);
+            if (keyEnd < 0) {
+                return -1;
+            }
+
+            boolean matches = regionEquals(buffer, index + 1, keyEnd - index - 2, key);
+
+            index = skipWhitespace(buffer, keyEnd);
+            if (index >= limit || buffer.get(index) != ':') {
+                return -1;
+            }
+
+            index = skipWhitespace(buffer, index + 1);
+            if (index >= limit) {
+                return -1;
+            }
+
+            if (matches) {
+                return index;
+            }
+
+            index = skipValue(buffer, index);
+            if (index < 0) {
+                return -1;
+            }
+
+            index = skipWhitespace(buffer, index);
+            if (index >= limit || buffer.get(index) != ',') {
+                return -1;
+            }
+
+            index = skipWhitespace(buffer, index + 1);
+        }
+
+        return -1;
+    }
+
+    private static int skipWhitespace(ByteBuffer buffer, int index) {
+        int limit = buffer.limit();
+        while (index < limit) {
+            byte b = buffer.get(index);
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                break;
+            }
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * @return the index after the closing quote of the string starting at index, -1 if it isn't closed
+     */
+    private static int skipString(ByteBuffer buffer, int index) {
+        int limit = buffer.limit();
+        index++;
+        while (index < limit) {
+            byte b = buffer.get(index);
+            if (b == '\\') {
+                index += 2;
+            } else if (b == '"') {
+                return index + 1;
+            } else {
+                index++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index after the value starting at index, -1 if it isn't complete
+     */
+    private static int skipValue(ByteBuffer buffer, int index) {
+        int limit = buffer.limit();
+        byte first = buffer.get(index);
+        if (first == '"') {
+            return skipString(buffer, index);
+        }
+
+        if (first == '{' || first == '[') {
+            int depth = 0;
+            while (index < limit) {
+                byte b = buffer.get(index);
+                if (b == '"') {
+                    index = skipString(buffer, index);
+                    if (index < 0) {
+                        return -1;
+                    }
+                    continue;
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    depth--;
+                    if (depth == 0) {
+                        return index + 1;
+                    }
+                }
+                index++;
+            }
+            return -1;
+        }
+
+        // numbers, true, false and null
+        while (index < limit) {
+            byte b = buffer.get(index);
+            if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                return index;
+            }
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean regionEquals(ByteBuffer buffer, int start, int length, byte[] bytes) {
+        if (length != bytes.length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private static String readString(ByteBuffer buffer, int index) {
+        int end = skipString(buffer, index);
+        if (end < 0) {
+            return null;
+        }
+
+        int start = index + 1;
+        int length = end - 1 - start;
+        byte[] bytes = new byte[length];
+        boolean escaped = false;
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(start + i);
+            escaped |= bytes[i] == '\\';
+        }
+
+        String raw = new String(bytes, UTF_8);
+        return escaped ? unescape(raw) : raw;
+    }
+
+    private static String unescape(String raw) {
+        StringBuilder stringBuilder = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c != '\\' || i + 1 >= raw.length()) {
+                stringBuilder.append(c);
+                continue;
+            }
+
+            char escape = raw.charAt(++i);
+            switch (escape) {
+                case 'b':
+                    stringBuilder.append('\b');
+                    break;
+                case 'f':
+                    stringBuilder.append('\f');
+                    break;
+                case 'n':
+                    stringBuilder.append('\n');
+                    break;
+                case 'r':
+                    stringBuilder.append('\r');
+                    break;
+                case 't':
+                    stringBuilder.append('\t');
+                    break;
+                case 'u':
+                    if (i + 4 < raw.length()) {
+                        try {
+                            stringBuilder.append((char) Integer.parseInt(raw.substring(i + 1, i + 5), 16));
+                            i += 4;
+                            break;
+                        } catch (NumberFormatException e) {
+                            // not an escape after all, keep it as it is
+                        }
+                    }
+                    stringBuilder.append(escape);
+                    break;
+                default:
+                    stringBuilder.append(escape);
+                    break;
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    private static void appendString(StringBuilder stringBuilder, @Nullable String value) {
+        if (value == null) {
+            stringBuilder.append("null");
+            return;
+        }
+
+        stringBuilder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    stringBuilder.append("\\\"");
+                    break;
+                case '\\':
+                    stringBuilder.append("\\\\");
+                    break;
+                case '\n':
+                    stringBuilder.append("\\n");
+                    break;
+                case '\r':
+                    stringBuilder.append("\\r");
+                    break;
+                case '\t':
+                    stringBuilder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        stringBuilder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        stringBuilder.append(c);
+                    }
+                    break;
+            }
+        }
+        stringBuilder.append('"');
+    }
+}
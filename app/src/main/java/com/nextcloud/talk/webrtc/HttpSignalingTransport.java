@@ -0,0 +1,169 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.util.Log;
+
+import com.bluelinelabs.logansquare.LoganSquare;
+import com.nextcloud.talk.api.NcApi;
+import com.nextcloud.talk.api.models.json.signaling.NCSignalingMessage;
+import com.nextcloud.talk.api.models.json.signaling.Signaling;
+import com.nextcloud.talk.api.models.json.signaling.SignalingOverall;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import java.io.IOException;
+import java.util.List;
+
+import io.reactivex.Scheduler;
+
+/**
+ * The internal signaling of the Nextcloud server: messages are pulled with an adaptive long-poll and
+ * sent in batches.
+ */
+public class HttpSignalingTransport implements SignalingTransport {
+    private static final String TAG = "HttpSignalingTransport";
+
+    private final SignalingMessageQueue signalingMessageQueue;
+    private final SignalingPollScheduler signalingPollScheduler;
+    private final Scheduler deliveryScheduler;
+
+    private volatile String callSessionId;
+    private volatile SignalingTransportListener signalingTransportListener;
+
+    /**
+     * @param scheduler         scheduler the requests run on
+     * @param deliveryScheduler scheduler on which the listener gets the received messages
+     */
+    public HttpSignalingTransport(NcApi ncApi, String credentials, String signalingUrl, Scheduler scheduler,
+                                  Scheduler deliveryScheduler) {
+        this.deliveryScheduler = deliveryScheduler;
+
+        signalingMessageQueue = new SignalingMessageQueue(ncApi, credentials, signalingUrl,
+                SignalingMessageQueue.DEFAULT_FLUSH_WINDOW_MS, SignalingMessageQueue.DEFAULT_MAX_MESSAGES_PER_REQUEST,
+                scheduler, this::onSendResponse);
+
+        signalingPollScheduler = new SignalingPollScheduler(ncApi.pullSignalingMessages(credentials, signalingUrl),
+                scheduler, deliveryScheduler, new SignalingPollScheduler.PollListener() {
+            @Override
+            public void onSignalingMessages(SignalingOverall signalingOverall) {
+                deliver(signalingOverall);
+            }
+
+            @Override
+            public void onPollError(Throwable throwable, int consecutiveErrors) {
+                SignalingTransportListener listener = signalingTransportListener;
+                if (listener != null) {
+                    listener.onTransportError(throwable, consecutiveErrors);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void connect(String callSessionId, SignalingTransportListener signalingTransportListener) {
+        this.callSessionId = callSessionId;
+        this.signalingTransportListener = signalingTransportListener;
+        signalingPollScheduler.start();
+    }
+
+    @Override
+    public void send(NCSignalingMessage ncSignalingMessage) {
+        try {
+            signalingMessageQueue.enqueue(encode(ncSignalingMessage, callSessionId));
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to serialize signaling message for " + ncSignalingMessage.getTo());
+        }
+    }
+
+    @Override
+    public void reconnect() {
+        if (signalingTransportListener != null) {
+            signalingPollScheduler.restart();
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        signalingPollScheduler.stop();
+    }
+
+    @Override
+    public void close() {
+        disconnect();
+        signalingMessageQueue.close();
+        signalingTransportListener = null;
+        Log.d(TAG, signalingMessageQueue.toString());
+    }
+
+    @Override
+    public boolean isConnected() {
+        return signalingPollScheduler.isRunning();
+    }
+
+    @Override
+    public String getSessionId() {
+        return callSessionId;
+    }
+
+    public SignalingMessageQueue getSignalingMessageQueue() {
+        return signalingMessageQueue;
+    }
+
+    public SignalingPollScheduler getSignalingPollScheduler() {
+        return signalingPollScheduler;
+    }
+
+    /**
+     * One entry of the "messages" array the signaling endpoint expects; the signaling message itself is
+     * sent as an escaped JSON string in "fn".
+     */
+    static String encode(NCSignalingMessage ncSignalingMessage, String callSessionId) throws IOException {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("{");
+        stringBuilder.append("\"fn\":\"");
+        stringBuilder.append(StringEscapeUtils.escapeJson(LoganSquare.serialize(ncSignalingMessage))).append("\"");
+        stringBuilder.append(",");
+        stringBuilder.append("\"sessionId\":");
+        stringBuilder.append("\"").append(StringEscapeUtils.escapeJson(callSessionId)).append("\"");
+        stringBuilder.append(",");
+        stringBuilder.append("\"ev\":\"message\"");
+        stringBuilder.append("}");
+        return stringBuilder.toString();
+    }
+
+    private void onSendResponse(SignalingOverall signalingOverall) {
+        // responses to sends come in on the request scheduler
+        deliveryScheduler.scheduleDirect(() -> deliver(signalingOverall));
+    }
+
+    private void deliver(SignalingOverall signalingOverall) {
+        SignalingTransportListener listener = signalingTransportListener;
+        if (listener == null || signalingOverall.getOcs() == null) {
+            return;
+        }
+
+        List<Signaling> signalings = signalingOverall.getOcs().getSignalings();
+        if (signalings != null && !signalings.isEmpty()) {
+            listener.onSignalingMessages(signalings);
+        }
+    }
+}
@@ -43,7 +43,6 @@ import android.util.Log;
 
 import com.nextcloud.talk.events.PeerConnectionEvent;
 
-import org.greenrobot.eventbus.EventBus;
 import org.webrtc.ThreadUtils;
 
 import java.util.Collections;
@@ -59,6 +58,8 @@ public class MagicAudioManager {
     private static final String SPEAKERPHONE_TRUE = "true";
     private static final String SPEAKERPHONE_FALSE = "false";
     private final Context magicContext;
+    // Gets the proximity sensor changes.
+    private final CallEventDispatcher callEventDispatcher;
     // Contains speakerphone setting: auto, true or false
     private final String useSpeakerphone;
     // Handles all tasks related to Bluetooth headset devices.
@@ -97,10 +98,11 @@ public class MagicAudioManager {
     // Callback method for changes in audio focus.
     private AudioManager.OnAudioFocusChangeListener audioFocusChangeListener;
 
-    private MagicAudioManager(Context context) {
+    private MagicAudioManager(Context context, CallEventDispatcher callEventDispatcher) {
         Log.d(TAG, "ctor");
         ThreadUtils.checkIsOnMainThread();
         magicContext = context;
+        this.callEventDispatcher = callEventDispatcher;
         audioManager = ((AudioManager) context.getSystemService(Context.AUDIO_SERVICE));
         bluetoothManager = MagicBluetoothManager.create(context, this);
         wiredHeadsetReceiver = new WiredHeadsetReceiver();
@@ -131,8 +133,8 @@ public class MagicAudioManager {
     /**
      * Construction.
      */
-    public static MagicAudioManager create(Context context) {
-        return new MagicAudioManager(context);
+    public static MagicAudioManager create(Context context, CallEventDispatcher callEventDispatcher) {
+        return new MagicAudioManager(context, callEventDispatcher);
     }
 
     /**
@@ -142,11 +144,11 @@ public class MagicAudioManager {
     private void onProximitySensorChangedState() {
 
         if (proximitySensor.sensorReportsNearState()) {
-            EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
-                    .SENSOR_NEAR, null, null, null));
+            callEventDispatcher.post(CallEventDispatcher.PEER_CONNECTION, new PeerConnectionEvent(
+                    PeerConnectionEvent.PeerConnectionEventType.SENSOR_NEAR, null, null, null));
         } else {
-            EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
-                    .SENSOR_FAR, null, null, null));
+            callEventDispatcher.post(CallEventDispatcher.PEER_CONNECTION, new PeerConnectionEvent(
+                    PeerConnectionEvent.PeerConnectionEventType.SENSOR_FAR, null, null, null));
         }
 
         if (!useSpeakerphone.equals(SPEAKERPHONE_AUTO)) {
@@ -0,0 +1,77 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.text.TextUtils;
+
+import com.nextcloud.talk.api.models.json.signaling.settings.IceServer;
+
+import org.webrtc.MediaConstraints;
+import org.webrtc.MediaStream;
+import org.webrtc.PeerConnection;
+import org.webrtc.PeerConnectionFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates WebRTC backed peers that share one factory, one set of SDP constraints, one SdpRewriter,
+ * our local stream and the event dispatcher of the call.
+ */
+public class MagicCallPeerFactory implements CallPeerFactory {
+    private final PeerConnectionFactory peerConnectionFactory;
+    private final MediaConstraints sdpConstraints;
+    private final SdpRewriter sdpRewriter;
+    private final MediaStream localMediaStream;
+    private final CallEventDispatcher callEventDispatcher;
+
+    public MagicCallPeerFactory(PeerConnectionFactory peerConnectionFactory, MediaConstraints sdpConstraints,
+                                SdpRewriter sdpRewriter, MediaStream localMediaStream,
+                                CallEventDispatcher callEventDispatcher) {
+        this.peerConnectionFactory = peerConnectionFactory;
+        this.sdpConstraints = sdpConstraints;
+        this.sdpRewriter = sdpRewriter;
+        this.localMediaStream = localMediaStream;
+        this.callEventDispatcher = callEventDispatcher;
+    }
+
+    @Override
+    public CallPeer createPeer(String sessionId, String localSessionId, List<IceServer> iceServers) {
+        return new MagicPeerConnectionWrapper(peerConnectionFactory, getPeerConnectionIceServers(iceServers),
+                sdpConstraints, sdpRewriter, sessionId, localSessionId, localMediaStream, callEventDispatcher);
+    }
+
+    /**
+     * Every IceServer is expected to carry a single url, see CallSession.
+     */
+    static List<PeerConnection.IceServer> getPeerConnectionIceServers(List<IceServer> iceServers) {
+        List<PeerConnection.IceServer> peerConnectionIceServers = new ArrayList<>();
+        for (IceServer iceServer : iceServers) {
+            if (TextUtils.isEmpty(iceServer.getUsername()) || TextUtils.isEmpty(iceServer.getCredential())) {
+                peerConnectionIceServers.add(new PeerConnection.IceServer(iceServer.getUrl()));
+            } else {
+                peerConnectionIceServers.add(new PeerConnection.IceServer(iceServer.getUrl(),
+                        iceServer.getUsername(), iceServer.getCredential()));
+            }
+        }
+        return peerConnectionIceServers;
+    }
+}
@@ -24,42 +24,70 @@ package com.nextcloud.talk.webrtc;
 import android.text.TextUtils;
 import android.util.Log;
 
-import com.bluelinelabs.logansquare.LoganSquare;
 import com.nextcloud.talk.R;
 import com.nextcloud.talk.api.models.json.signaling.DataChannelMessage;
 import com.nextcloud.talk.api.models.json.signaling.NCIceCandidate;
+import com.nextcloud.talk.api.models.json.signaling.settings.IceServer;
 import com.nextcloud.talk.application.NextcloudTalkApplication;
 import com.nextcloud.talk.events.MediaStreamEvent;
 import com.nextcloud.talk.events.PeerConnectionEvent;
 import com.nextcloud.talk.events.SessionDescriptionSendEvent;
 
-import org.greenrobot.eventbus.EventBus;
 import org.webrtc.DataChannel;
 import org.webrtc.IceCandidate;
 import org.webrtc.MediaConstraints;
 import org.webrtc.MediaStream;
+import org.webrtc.MediaStreamTrack;
 import org.webrtc.PeerConnection;
 import org.webrtc.PeerConnectionFactory;
+import org.webrtc.RtpParameters;
 import org.webrtc.RtpReceiver;
+import org.webrtc.RtpSender;
 import org.webrtc.SdpObserver;
 import org.webrtc.SessionDescription;
+import org.webrtc.StatsObserver;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
-public class MagicPeerConnectionWrapper {
+public class MagicPeerConnectionWrapper implements CallPeer {
     private static String TAG = "MagicPeerConnectionWrapper";
+    private static final MediaConstraints.KeyValuePair ICE_RESTART_CONSTRAINT =
+            new MediaConstraints.KeyValuePair("IceRestart", "true");
     List<IceCandidate> iceCandidates = new ArrayList<>();
-    private PeerConnection peerConnection;
+    // CallSession closes the peer on another thread than the one bitrates, stats and signaling use it on.
+    // A closed PeerConnection that isn't disposed can still be called safely, so the lock only guards the
+    // closed flag and the candidates and is never held while calling into it: the observers run on the
+    // WebRTC signaling thread, which close() waits for.
+    private final Object peerConnectionLock = new Object();
+    private final PeerConnection peerConnection;
+    private boolean closed;
+    // getSenders() disposes the senders it returned the time before, so it is only called once; our stream
+    // and its tracks are complete before the peers are created and don't change during the call
+    private final List<RtpSender> rtpSenders;
     private List<PeerConnection.IceServer> iceServers;
     private String sessionId;
     private String localSession;
     private String nick;
+    private volatile String videoCodec;
+    private volatile int videoSendBitrateBps;
+    private volatile int audioSendBitrateBps;
+    private volatile long sendBandwidthEstimateBps;
+    private volatile boolean iceConnected;
     private MediaConstraints mediaConstraints;
+    private SdpRewriter sdpRewriter;
     private DataChannel magicDataChannel;
+    private volatile DataChannelCodec.MessageType sentAudioStatus;
+    private volatile DataChannelCodec.MessageType sentVideoStatus;
+    private volatile DataChannelCodec.MessageType sentVideoPauseStatus;
+    // we asked the peer to stop sending its video to us
+    private volatile boolean videoPauseRequested;
+    // the peer asked us to stop sending our video to it
+    private volatile boolean videoSendPaused;
     private MagicSdpObserver magicSdpObserver;
+    private final CallEventDispatcher callEventDispatcher;
 
     private boolean remoteVideoOn;
     private boolean remoteAudioOn;
@@ -67,11 +95,13 @@ public class MagicPeerConnectionWrapper {
     private boolean hasInitiated;
 
     private MediaStream localMediaStream;
+    private volatile MediaStreamTrack remoteAudioTrack;
 
     public MagicPeerConnectionWrapper(PeerConnectionFactory peerConnectionFactory,
                                       List<PeerConnection.IceServer> iceServerList,
-                                      MediaConstraints mediaConstraints,
-                                      String sessionId, String localSession, MediaStream mediaStream) {
+                                      MediaConstraints mediaConstraints, SdpRewriter sdpRewriter,
+                                      String sessionId, String localSession, MediaStream mediaStream,
+                                      CallEventDispatcher callEventDispatcher) {
 
         this.iceServers = iceServerList;
         this.localSession = localSession;
@@ -79,6 +109,8 @@ public class MagicPeerConnectionWrapper {
 
         this.sessionId = sessionId;
         this.mediaConstraints = mediaConstraints;
+        this.sdpRewriter = sdpRewriter;
+        this.callEventDispatcher = callEventDispatcher;
 
         magicSdpObserver = new MagicSdpObserver();
         hasInitiated = sessionId.compareTo(localSession) < 0;
@@ -88,6 +120,7 @@ public class MagicPeerConnectionWrapper {
 
         if (peerConnection != null) {
             peerConnection.addStream(localMediaStream);
+            rtpSenders = peerConnection.getSenders();
 
             if (hasInitiated) {
                 DataChannel.Init init = new DataChannel.Init();
@@ -96,69 +129,272 @@ public class MagicPeerConnectionWrapper {
                 magicDataChannel.registerObserver(new MagicDataChannelObserver());
                 peerConnection.createOffer(magicSdpObserver, mediaConstraints);
             }
+        } else {
+            rtpSenders = Collections.emptyList();
         }
     }
 
+    @Override
+    public void close() {
+        removePeerConnection();
+    }
+
     public void removePeerConnection() {
+        synchronized (peerConnectionLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+
         if (magicDataChannel != null) {
             magicDataChannel.dispose();
             magicDataChannel = null;
         }
 
+        remoteAudioTrack = null;
         if (peerConnection != null) {
             peerConnection.removeStream(localMediaStream);
             peerConnection.close();
-            peerConnection = null;
         }
     }
 
-    public void drainIceCandidates() {
+    /**
+     * The peer connection, or null once it has been closed.
+     */
+    private PeerConnection getOpenPeerConnection() {
+        synchronized (peerConnectionLock) {
+            return closed ? null : peerConnection;
+        }
+    }
 
-        if (peerConnection != null) {
-            for (IceCandidate iceCandidate : iceCandidates) {
-                peerConnection.addIceCandidate(iceCandidate);
-            }
+    @Override
+    public void drainIceCandidates() {
+        PeerConnection currentPeerConnection = getOpenPeerConnection();
+        if (currentPeerConnection == null) {
+            return;
+        }
 
+        List<IceCandidate> pendingIceCandidates;
+        synchronized (peerConnectionLock) {
+            pendingIceCandidates = iceCandidates;
             iceCandidates = new ArrayList<>();
         }
+
+        for (IceCandidate iceCandidate : pendingIceCandidates) {
+            currentPeerConnection.addIceCandidate(iceCandidate);
+        }
     }
 
     public MagicSdpObserver getMagicSdpObserver() {
         return magicSdpObserver;
     }
 
+    @Override
+    public void setRemoteDescription(String type, String sdp) {
+        PeerConnection currentPeerConnection = getOpenPeerConnection();
+        if (currentPeerConnection == null) {
+            return;
+        }
+
+        String sessionDescriptionStringWithPreferredCodec = sdpRewriter.rewrite(sdp);
+        SessionDescription sessionDescriptionWithPreferredCodec = new SessionDescription(
+                SessionDescription.Type.fromCanonicalForm(type), sessionDescriptionStringWithPreferredCodec);
+        updateVideoCodec(sessionDescriptionWithPreferredCodec);
+        currentPeerConnection.setRemoteDescription(magicSdpObserver, sessionDescriptionWithPreferredCodec);
+    }
+
+    @Override
+    public void addCandidate(NCIceCandidate ncIceCandidate) {
+        addCandidate(new IceCandidate(ncIceCandidate.getSdpMid(), ncIceCandidate.getSdpMLineIndex(),
+                ncIceCandidate.getCandidate()));
+    }
+
+    @Override
+    public void restartIce(List<IceServer> iceServers) {
+        PeerConnection currentPeerConnection = getOpenPeerConnection();
+        if (currentPeerConnection == null) {
+            return;
+        }
+
+        this.iceServers = MagicCallPeerFactory.getPeerConnectionIceServers(iceServers);
+        currentPeerConnection.setConfiguration(new PeerConnection.RTCConfiguration(this.iceServers));
+
+        // new credentials and candidates only reach the other side with a fresh offer; the peer connection,
+        // its streams and the data channel stay as they are. An offer that's already going on will do.
+        if (currentPeerConnection.signalingState() == PeerConnection.SignalingState.STABLE) {
+            MediaConstraints iceRestartConstraints = new MediaConstraints();
+            iceRestartConstraints.mandatory.addAll(mediaConstraints.mandatory);
+            iceRestartConstraints.mandatory.add(ICE_RESTART_CONSTRAINT);
+            iceRestartConstraints.optional.addAll(mediaConstraints.optional);
+            currentPeerConnection.createOffer(magicSdpObserver, iceRestartConstraints);
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return iceConnected;
+    }
+
+    @Override
+    public void setSendBitrates(int videoBitrateBps, int audioBitrateBps) {
+        videoSendBitrateBps = videoBitrateBps;
+        audioSendBitrateBps = audioBitrateBps;
+
+        PeerConnection currentPeerConnection = getOpenPeerConnection();
+        if (isNegotiated(currentPeerConnection)) {
+            applySenderParameters();
+        }
+    }
+
+    /**
+     * Limits the bitrates and stops or resumes encoding our video for this peer only, the other peers share
+     * the same tracks. Both are written every time, so that two threads updating the same sender can't undo
+     * each other's change.
+     */
+    private void applySenderParameters() {
+        for (RtpSender rtpSender : rtpSenders) {
+            MediaStreamTrack mediaStreamTrack = rtpSender.track();
+            if (mediaStreamTrack == null) {
+                continue;
+            }
+
+            RtpParameters rtpParameters = rtpSender.getParameters();
+            if (rtpParameters == null || rtpParameters.encodings.isEmpty()) {
+                continue;
+            }
+
+            boolean video = "video".equals(mediaStreamTrack.kind());
+            int maxBitrateBps = video ? videoSendBitrateBps : audioSendBitrateBps;
+            for (RtpParameters.Encoding encoding : rtpParameters.encodings) {
+                if (videoSendBitrateBps > 0) {
+                    encoding.maxBitrateBps = maxBitrateBps;
+                }
+                if (video) {
+                    encoding.active = !videoSendPaused;
+                }
+            }
+
+            if (!rtpSender.setParameters(rtpParameters)) {
+                Log.d(TAG, "Failed to update the " + mediaStreamTrack.kind() + " sender for " + sessionId);
+            }
+        }
+    }
+
+    private boolean isNegotiated(PeerConnection currentPeerConnection) {
+        return currentPeerConnection != null && currentPeerConnection.getLocalDescription() != null &&
+                currentPeerConnection.getRemoteDescription() != null;
+    }
+
+    @Override
+    public void getStats(StatsObserver statsObserver) {
+        PeerConnection currentPeerConnection = getOpenPeerConnection();
+        if (currentPeerConnection != null) {
+            currentPeerConnection.getStats(statsObserver, null);
+        }
+    }
+
+    @Override
+    public void getAudioStats(boolean local, StatsObserver statsObserver) {
+        PeerConnection currentPeerConnection = getOpenPeerConnection();
+        MediaStreamTrack audioTrack = local ? (localMediaStream.audioTracks.isEmpty() ? null :
+                localMediaStream.audioTracks.get(0)) : remoteAudioTrack;
+        if (currentPeerConnection != null && audioTrack != null) {
+            currentPeerConnection.getStats(statsObserver, audioTrack);
+        }
+    }
+
+    @Override
+    public long getSendBandwidthEstimateBps() {
+        return sendBandwidthEstimateBps;
+    }
+
+    @Override
+    public void setSendBandwidthEstimateBps(long sendBandwidthEstimateBps) {
+        this.sendBandwidthEstimateBps = sendBandwidthEstimateBps;
+    }
+
     public void addCandidate(IceCandidate iceCandidate) {
-        if (peerConnection != null && peerConnection.getRemoteDescription() != null) {
-            peerConnection.addIceCandidate(iceCandidate);
+        PeerConnection currentPeerConnection = getOpenPeerConnection();
+        if (currentPeerConnection != null && currentPeerConnection.getRemoteDescription() != null) {
+            currentPeerConnection.addIceCandidate(iceCandidate);
         } else {
-            iceCandidates.add(iceCandidate);
+            synchronized (peerConnectionLock) {
+                iceCandidates.add(iceCandidate);
+            }
         }
     }
 
+    @Override
     public void sendChannelData(DataChannelMessage dataChannelMessage) {
-        ByteBuffer buffer;
-        if (magicDataChannel != null) {
-            try {
-                buffer = ByteBuffer.wrap(LoganSquare.serialize(dataChannelMessage).getBytes());
-                magicDataChannel.send(new DataChannel.Buffer(buffer, false));
-            } catch (IOException e) {
-                Log.d(TAG, "Failed to send channel data");
+        DataChannel dataChannel = magicDataChannel;
+        if (dataChannel != null) {
+            dataChannel.send(new DataChannel.Buffer(DataChannelCodec.encode(dataChannelMessage), false));
+        }
+    }
+
+    /**
+     * Sends an audio, video or video pause status unless the remote side already got the same one over
+     * this channel.
+     */
+    @Override
+    public void sendStatus(DataChannelCodec.MessageType messageType) {
+        boolean video = messageType == DataChannelCodec.MessageType.VIDEO_ON ||
+                messageType == DataChannelCodec.MessageType.VIDEO_OFF;
+        boolean videoPause = messageType == DataChannelCodec.MessageType.PAUSE_VIDEO ||
+                messageType == DataChannelCodec.MessageType.RESUME_VIDEO;
+        if (messageType == (video ? sentVideoStatus : videoPause ? sentVideoPauseStatus : sentAudioStatus)) {
+            return;
+        }
+
+        DataChannel dataChannel = magicDataChannel;
+        if (dataChannel != null && dataChannel.send(new DataChannel.Buffer(DataChannelCodec.encode(messageType),
+                false))) {
+            if (video) {
+                sentVideoStatus = messageType;
+            } else if (videoPause) {
+                sentVideoPauseStatus = messageType;
+            } else {
+                sentAudioStatus = messageType;
             }
         }
     }
 
+    @Override
+    public void requestVideoPaused(boolean paused) {
+        videoPauseRequested = paused;
+        sendStatus(DataChannelCodec.MessageType.videoPaused(paused));
+    }
+
     public PeerConnection getPeerConnection() {
-        return peerConnection;
+        return getOpenPeerConnection();
     }
 
+    @Override
     public String getSessionId() {
         return sessionId;
     }
 
+    @Override
+    public String getVideoCodec() {
+        return videoCodec;
+    }
+
+    /**
+     * The first video payload type of the answer, no matter who sent it, is what both sides encode with.
+     */
+    private void updateVideoCodec(SessionDescription sessionDescription) {
+        if (sessionDescription.type == SessionDescription.Type.ANSWER) {
+            videoCodec = SdpRewriter.getVideoCodec(sessionDescription.description);
+            Log.d(TAG, "Negotiated " + videoCodec + " with " + sessionId);
+        }
+    }
+
     public void setSessionId(String sessionId) {
         this.sessionId = sessionId;
     }
 
+    @Override
     public String getNick() {
         if (!TextUtils.isEmpty(nick)) {
             return nick;
@@ -167,21 +403,18 @@ public class MagicPeerConnectionWrapper {
         }
     }
 
+    @Override
     public void setNick(String nick) {
         this.nick = nick;
     }
 
     private void sendInitialMediaStatus() {
-        if (localMediaStream.videoTracks.size() == 1 && localMediaStream.videoTracks.get(0).enabled()) {
-            sendChannelData(new DataChannelMessage("videoOn"));
-        } else {
-            sendChannelData(new DataChannelMessage("videoOff"));
-        }
-
-        if (localMediaStream.audioTracks.size() == 1 && localMediaStream.audioTracks.get(0).enabled()) {
-            sendChannelData(new DataChannelMessage("audioOn"));
-        } else {
-            sendChannelData(new DataChannelMessage("audioOff"));
+        sendStatus(DataChannelCodec.MessageType.video(localMediaStream.videoTracks.size() == 1 &&
+                localMediaStream.videoTracks.get(0).enabled()));
+        sendStatus(DataChannelCodec.MessageType.audio(localMediaStream.audioTracks.size() == 1 &&
+                localMediaStream.audioTracks.get(0).enabled()));
+        if (videoPauseRequested) {
+            sendStatus(DataChannelCodec.MessageType.PAUSE_VIDEO);
         }
     }
 
@@ -196,6 +429,10 @@ public class MagicPeerConnectionWrapper {
         public void onStateChange() {
             if (magicDataChannel != null && magicDataChannel.state().equals(DataChannel.State.OPEN) &&
                     magicDataChannel.label().equals("status")) {
+                // a new channel, nothing has been sent over it yet
+                sentAudioStatus = null;
+                sentVideoStatus = null;
+                sentVideoPauseStatus = null;
                 sendInitialMediaStatus();
             }
         }
@@ -208,37 +445,37 @@ public class MagicPeerConnectionWrapper {
             }
 
             ByteBuffer data = buffer.data;
-            final byte[] bytes = new byte[data.capacity()];
-            data.get(bytes);
-            String strData = new String(bytes);
-            Log.d(TAG, "Got msg: " + strData + " over " + TAG + " " + sessionId);
-
-            try {
-                DataChannelMessage dataChannelMessage = LoganSquare.parse(strData, DataChannelMessage.class);
-
-                if ("nickChanged".equals(dataChannelMessage.getType())) {
-                    nick = dataChannelMessage.getPayload();
-                    EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
-                            .NICK_CHANGE, sessionId, nick, null));
-                } else if ("audioOn".equals(dataChannelMessage.getType())) {
-                    remoteAudioOn = true;
-                    EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
-                            .AUDIO_CHANGE, sessionId, null, remoteAudioOn));
-                } else if ("audioOff".equals(dataChannelMessage.getType())) {
-                    remoteAudioOn = false;
-                    EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
-                            .AUDIO_CHANGE, sessionId, null, remoteAudioOn));
-                } else if ("videoOn".equals(dataChannelMessage.getType())) {
-                    remoteVideoOn = true;
-                    EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
-                            .VIDEO_CHANGE, sessionId, null, remoteVideoOn));
-                } else if ("videoOff".equals(dataChannelMessage.getType())) {
-                    remoteVideoOn = false;
-                    EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
-                            .VIDEO_CHANGE, sessionId, null, remoteVideoOn));
-                }
-            } catch (IOException e) {
-                Log.d(TAG, "Failed to parse data channel message");
+            DataChannelCodec.MessageType messageType = DataChannelCodec.decodeType(data);
+            switch (messageType) {
+                case NICK_CHANGED:
+                    nick = DataChannelCodec.decodeNick(data);
+                    callEventDispatcher.post(CallEventDispatcher.PEER_CONNECTION, new PeerConnectionEvent(
+                            PeerConnectionEvent.PeerConnectionEventType.NICK_CHANGE, sessionId, nick, null));
+                    break;
+                case AUDIO_ON:
+                case AUDIO_OFF:
+                    remoteAudioOn = messageType == DataChannelCodec.MessageType.AUDIO_ON;
+                    callEventDispatcher.post(CallEventDispatcher.PEER_CONNECTION, new PeerConnectionEvent(
+                            PeerConnectionEvent.PeerConnectionEventType.AUDIO_CHANGE, sessionId, null, remoteAudioOn));
+                    break;
+                case VIDEO_ON:
+                case VIDEO_OFF:
+                    remoteVideoOn = messageType == DataChannelCodec.MessageType.VIDEO_ON;
+                    callEventDispatcher.post(CallEventDispatcher.PEER_CONNECTION, new PeerConnectionEvent(
+                            PeerConnectionEvent.PeerConnectionEventType.VIDEO_CHANGE, sessionId, null, remoteVideoOn));
+                    break;
+                case PAUSE_VIDEO:
+                case RESUME_VIDEO:
+                    videoSendPaused = messageType == DataChannelCodec.MessageType.PAUSE_VIDEO;
+                    Log.d(TAG, (videoSendPaused ? "Pausing" : "Resuming") + " our video for " + sessionId);
+                    PeerConnection currentPeerConnection = getOpenPeerConnection();
+                    if (isNegotiated(currentPeerConnection)) {
+                        applySenderParameters();
+                    }
+                    break;
+                default:
+                    Log.d(TAG, "Got unknown msg over " + TAG + " " + sessionId);
+                    break;
             }
         }
     }
@@ -252,11 +489,14 @@ public class MagicPeerConnectionWrapper {
 
         @Override
         public void onIceConnectionChange(PeerConnection.IceConnectionState iceConnectionState) {
+            iceConnected = iceConnectionState.equals(PeerConnection.IceConnectionState.CONNECTED) ||
+                    iceConnectionState.equals(PeerConnection.IceConnectionState.COMPLETED);
+
             if (iceConnectionState.equals(PeerConnection.IceConnectionState.CONNECTED) && hasInitiated) {
                 sendInitialMediaStatus();
             } else if (iceConnectionState.equals(PeerConnection.IceConnectionState.CLOSED)) {
-                EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
-                        .CLOSE_PEER, sessionId, null, null));
+                callEventDispatcher.post(CallEventDispatcher.PEER_CONNECTION, new PeerConnectionEvent(
+                        PeerConnectionEvent.PeerConnectionEventType.CLOSE_PEER, sessionId, null, null));
             }
         }
 
@@ -276,8 +516,8 @@ public class MagicPeerConnectionWrapper {
             ncIceCandidate.setSdpMid(iceCandidate.sdpMid);
             ncIceCandidate.setSdpMLineIndex(iceCandidate.sdpMLineIndex);
             ncIceCandidate.setCandidate(iceCandidate.sdp);
-            EventBus.getDefault().post(new SessionDescriptionSendEvent(null, sessionId,
-                    "candidate", ncIceCandidate));
+            callEventDispatcher.post(CallEventDispatcher.SESSION_DESCRIPTION_SEND,
+                    new SessionDescriptionSendEvent(null, sessionId, "candidate", ncIceCandidate));
         }
 
         @Override
@@ -287,12 +527,14 @@ public class MagicPeerConnectionWrapper {
 
         @Override
         public void onAddStream(MediaStream mediaStream) {
-            EventBus.getDefault().post(new MediaStreamEvent(mediaStream, sessionId));
+            remoteAudioTrack = mediaStream.audioTracks.isEmpty() ? null : mediaStream.audioTracks.get(0);
+            callEventDispatcher.post(CallEventDispatcher.MEDIA_STREAM, new MediaStreamEvent(mediaStream, sessionId));
         }
 
         @Override
         public void onRemoveStream(MediaStream mediaStream) {
-            EventBus.getDefault().post(new MediaStreamEvent(null, sessionId));
+            remoteAudioTrack = null;
+            callEventDispatcher.post(CallEventDispatcher.MEDIA_STREAM, new MediaStreamEvent(null, sessionId));
         }
 
         @Override
@@ -328,31 +570,38 @@ public class MagicPeerConnectionWrapper {
 
         @Override
         public void onCreateSuccess(SessionDescription sessionDescription) {
-            String sessionDescriptionStringWithPreferredCodec = MagicWebRTCUtils.preferCodec
-                    (sessionDescription.description,
-                            "VP8", false);
+            String sessionDescriptionStringWithPreferredCodec = sdpRewriter.rewrite(sessionDescription.description);
 
             SessionDescription sessionDescriptionWithPreferredCodec = new SessionDescription(
                     sessionDescription.type,
                     sessionDescriptionStringWithPreferredCodec);
-
-            EventBus.getDefault().post(new SessionDescriptionSendEvent(sessionDescriptionWithPreferredCodec, sessionId,
-                    sessionDescription.type.canonicalForm().toLowerCase(), null));
-            if (peerConnection != null) {
-                peerConnection.setLocalDescription(magicSdpObserver, sessionDescriptionWithPreferredCodec);
+            updateVideoCodec(sessionDescriptionWithPreferredCodec);
+
+            callEventDispatcher.post(CallEventDispatcher.SESSION_DESCRIPTION_SEND,
+                    new SessionDescriptionSendEvent(sessionDescriptionWithPreferredCodec, sessionId,
+                            sessionDescription.type.canonicalForm().toLowerCase(), null));
+            PeerConnection currentPeerConnection = getOpenPeerConnection();
+            if (currentPeerConnection != null) {
+                currentPeerConnection.setLocalDescription(magicSdpObserver, sessionDescriptionWithPreferredCodec);
             }
         }
 
         @Override
         public void onSetSuccess() {
-            if (peerConnection != null) {
-                if (peerConnection.getLocalDescription() == null) {
-                    peerConnection.createAnswer(magicSdpObserver, mediaConstraints);
+            PeerConnection currentPeerConnection = getOpenPeerConnection();
+            if (currentPeerConnection != null) {
+                // also true for offers that renegotiate, e.g. after the other side restarted ICE
+                if (currentPeerConnection.signalingState() == PeerConnection.SignalingState.HAVE_REMOTE_OFFER) {
+                    currentPeerConnection.createAnswer(magicSdpObserver, mediaConstraints);
                 }
 
-                if (peerConnection.getRemoteDescription() != null) {
+                if (currentPeerConnection.getRemoteDescription() != null) {
                     drainIceCandidates();
                 }
+
+                if (isNegotiated(currentPeerConnection)) {
+                    applySenderParameters();
+                }
             }
         }
     }
@@ -0,0 +1,243 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Splits the participants with video into pages of tiles. Only the tiles of the current page are
+ * rendered; the video tracks of everybody else are detached and disabled. Participants keep the order in
+ * which they were added, so that tiles don't jump around when somebody else joins or leaves.
+ * The active speaker, once set, is taken out of that order and shown first on every page.
+ */
+public class ParticipantPager {
+    // smallest tile that is still worth rendering, in dp
+    static final int MIN_TILE_SIZE_DP = 180;
+    static final int MAX_TILES_PER_PAGE = 9;
+
+    private final List<String> sessionIds = new ArrayList<>();
+    private int tilesPerPage;
+    private int currentPage;
+    private String activeSpeaker;
+
+    public ParticipantPager(int tilesPerPage) {
+        this.tilesPerPage = Math.max(1, tilesPerPage);
+    }
+
+    /**
+     * How many tiles fit on a screen of the given size.
+     */
+    public static int getTilesPerPage(int widthDp, int heightDp) {
+        int columns = Math.max(1, widthDp / MIN_TILE_SIZE_DP);
+        int rows = Math.max(1, heightDp / MIN_TILE_SIZE_DP);
+        return Math.min(columns * rows, MAX_TILES_PER_PAGE);
+    }
+
+    /**
+     * Number of columns of a grid with the given number of tiles: as square as possible, with the longer
+     * side along the longer side of the screen.
+     */
+    public static int getColumns(int tiles, boolean landscape) {
+        if (tiles <= 1) {
+            return 1;
+        }
+
+        int columns = (int) Math.ceil(Math.sqrt(tiles));
+        int rows = (tiles + columns - 1) / columns;
+        return landscape ? Math.max(columns, rows) : Math.min(columns, rows);
+    }
+
+    public static int getRows(int tiles, boolean landscape) {
+        int columns = getColumns(tiles, landscape);
+        return Math.max(1, (tiles + columns - 1) / columns);
+    }
+
+    /**
+     * @return true if the participant was added to the current page
+     */
+    public boolean add(String sessionId) {
+        if (sessionIds.contains(sessionId)) {
+            return false;
+        }
+
+        sessionIds.add(sessionId);
+        return isVisible(sessionId);
+    }
+
+    /**
+     * @return true if the participant was visible, i.e. the current page changed
+     */
+    public boolean remove(String sessionId) {
+        boolean visible = isVisible(sessionId);
+        if (!sessionIds.remove(sessionId)) {
+            return false;
+        }
+
+        if (sessionId.equals(activeSpeaker)) {
+            activeSpeaker = null;
+        }
+
+        // the last page might be gone now
+        boolean pageChanged = clampCurrentPage();
+        return visible || pageChanged;
+    }
+
+    public void clear() {
+        sessionIds.clear();
+        currentPage = 0;
+        activeSpeaker = null;
+    }
+
+    /**
+     * @return true if the active speaker changed
+     */
+    public boolean setActiveSpeaker(@Nullable String sessionId) {
+        if (sessionId == null ? activeSpeaker == null : sessionId.equals(activeSpeaker)) {
+            return false;
+        }
+
+        activeSpeaker = sessionId;
+        clampCurrentPage();
+        return true;
+    }
+
+    /**
+     * Whether the first visible tile is the active speaker, shown on every page.
+     */
+    public boolean hasActiveSpeakerTile() {
+        return activeSpeaker != null && tilesPerPage > 1 && sessionIds.size() > 1 &&
+                sessionIds.contains(activeSpeaker);
+    }
+
+    @Nullable
+    public String getActiveSpeaker() {
+        return activeSpeaker;
+    }
+
+    /**
+     * @return true if the current page changed
+     */
+    public boolean setTilesPerPage(int tilesPerPage) {
+        tilesPerPage = Math.max(1, tilesPerPage);
+        if (tilesPerPage == this.tilesPerPage) {
+            return false;
+        }
+
+        // stay on the page that shows the first participant of the current one
+        int firstIndex = currentPage * getPagedTilesPerPage();
+        this.tilesPerPage = tilesPerPage;
+        currentPage = firstIndex / getPagedTilesPerPage();
+        clampCurrentPage();
+        return true;
+    }
+
+    /**
+     * @return true if the page changed
+     */
+    public boolean setPage(int page) {
+        int clamped = Math.max(0, Math.min(page, getPageCount() - 1));
+        if (clamped == currentPage) {
+            return false;
+        }
+
+        currentPage = clamped;
+        return true;
+    }
+
+    public boolean nextPage() {
+        return setPage(currentPage + 1);
+    }
+
+    public boolean previousPage() {
+        return setPage(currentPage - 1);
+    }
+
+    private boolean clampCurrentPage() {
+        int lastPage = getPageCount() - 1;
+        if (currentPage > lastPage) {
+            currentPage = lastPage;
+            return true;
+        }
+        return false;
+    }
+
+    public int getPageCount() {
+        int pagedTilesPerPage = getPagedTilesPerPage();
+        return Math.max(1, (getPagedSessionIds().size() + pagedTilesPerPage - 1) / pagedTilesPerPage);
+    }
+
+    public int getCurrentPage() {
+        return currentPage;
+    }
+
+    public int getTilesPerPage() {
+        return tilesPerPage;
+    }
+
+    /**
+     * The participants of the current page, starting with the active speaker if there is a tile for it.
+     */
+    public List<String> getVisibleSessionIds() {
+        List<String> pagedSessionIds = getPagedSessionIds();
+        int pagedTilesPerPage = getPagedTilesPerPage();
+        int start = currentPage * pagedTilesPerPage;
+        if (start >= pagedSessionIds.size()) {
+            return Collections.emptyList();
+        }
+
+        List<String> visibleSessionIds = new ArrayList<>(tilesPerPage);
+        if (hasActiveSpeakerTile()) {
+            visibleSessionIds.add(activeSpeaker);
+        }
+        visibleSessionIds.addAll(pagedSessionIds.subList(start,
+                Math.min(start + pagedTilesPerPage, pagedSessionIds.size())));
+        return visibleSessionIds;
+    }
+
+    public boolean isVisible(String sessionId) {
+        return getVisibleSessionIds().contains(sessionId);
+    }
+
+    /**
+     * Everybody who is paged through, i.e. everybody but the active speaker if it has its own tile.
+     */
+    private List<String> getPagedSessionIds() {
+        if (!hasActiveSpeakerTile()) {
+            return sessionIds;
+        }
+
+        List<String> pagedSessionIds = new ArrayList<>(sessionIds);
+        pagedSessionIds.remove(activeSpeaker);
+        return pagedSessionIds;
+    }
+
+    private int getPagedTilesPerPage() {
+        return hasActiveSpeakerTile() ? tilesPerPage - 1 : tilesPerPage;
+    }
+
+    public int size() {
+        return sessionIds.size();
+    }
+}
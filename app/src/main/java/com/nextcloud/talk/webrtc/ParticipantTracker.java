@@ -0,0 +1,139 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import com.nextcloud.talk.api.models.json.participants.Participant;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the last "usersInRoom" roster, keyed by session id, and turns every new roster into the
+ * participants that joined, left or changed their inCall flag since the previous one. Each update is a
+ * single pass over the roster with hash lookups, instead of removeAll across two lists.
+ * Our own session (and our other sessions, same user id) are never reported.
+ */
+public class ParticipantTracker {
+    private final String ownUserId;
+
+    private Map<String, Participant> knownParticipants = new HashMap<>();
+    // reused between updates, swapped with knownParticipants
+    private Map<String, Participant> nextParticipants = new HashMap<>();
+
+    public ParticipantTracker(String ownUserId) {
+        this.ownUserId = ownUserId;
+    }
+
+    public synchronized Delta update(List<Participant> participants, String ownSessionId) {
+        Delta delta = new Delta();
+
+        if (participants != null) {
+            for (Participant participant : participants) {
+                String sessionId = participant.getSessionId();
+                if (sessionId == null || sessionId.equals(ownSessionId) ||
+                        (ownUserId != null && ownUserId.equals(participant.getUserId()))) {
+                    continue;
+                }
+
+                Participant previous = knownParticipants.remove(sessionId);
+                if (previous == null) {
+                    // a session listed twice in the same roster is only reported once
+                    previous = nextParticipants.get(sessionId);
+                }
+
+                if (previous == null) {
+                    delta.joined.add(participant);
+                } else if (previous.isInCall() != participant.isInCall()) {
+                    delta.changed.add(participant);
+                }
+
+                nextParticipants.put(sessionId, participant);
+            }
+        }
+
+        // whatever wasn't matched is not in the room anymore
+        delta.left.addAll(knownParticipants.values());
+
+        Map<String, Participant> swap = knownParticipants;
+        knownParticipants = nextParticipants;
+        nextParticipants = swap;
+        nextParticipants.clear();
+
+        return delta;
+    }
+
+    public synchronized Participant get(String sessionId) {
+        return knownParticipants.get(sessionId);
+    }
+
+    public synchronized boolean isInCall(String sessionId) {
+        Participant participant = knownParticipants.get(sessionId);
+        return participant != null && participant.isInCall();
+    }
+
+    public synchronized int size() {
+        return knownParticipants.size();
+    }
+
+    public synchronized void clear() {
+        knownParticipants.clear();
+        nextParticipants.clear();
+    }
+
+    public static class Delta {
+        private final List<Participant> joined = new ArrayList<>();
+        private final List<Participant> left = new ArrayList<>();
+        private final List<Participant> changed = new ArrayList<>();
+
+        /**
+         * Participants whose session wasn't in the previous roster.
+         */
+        public List<Participant> getJoined() {
+            return Collections.unmodifiableList(joined);
+        }
+
+        /**
+         * Participants of the previous roster that are missing from the new one, as last seen.
+         */
+        public List<Participant> getLeft() {
+            return Collections.unmodifiableList(left);
+        }
+
+        /**
+         * Participants that were already known and whose inCall flag flipped.
+         */
+        public List<Participant> getChanged() {
+            return Collections.unmodifiableList(changed);
+        }
+
+        public boolean isEmpty() {
+            return joined.isEmpty() && left.isEmpty() && changed.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "Delta{joined=" + joined.size() + ", left=" + left.size() + ", changed=" + changed.size() + "}";
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the peer connections of a call, keyed by the remote session id.
+ * Lookups are lock free; creation is serialized so that a session never ends up with two peer
+ * connections when signaling (main thread) and peer events (WebRTC / call event threads) race.
+ */
+public class PeerRegistry {
+    private final ConcurrentHashMap<String, CallPeer> peers = new ConcurrentHashMap<>();
+    private final Object creationLock = new Object();
+
+    @Nullable
+    public CallPeer get(String sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+
+        return peers.get(sessionId);
+    }
+
+    /**
+     * Returns the peer connection for the session, creating it with the given factory if it doesn't
+     * exist yet. The factory is called at most once per session.
+     */
+    public CallPeer getOrCreate(String sessionId, PeerFactory peerFactory) {
+        CallPeer callPeer = peers.get(sessionId);
+        if (callPeer != null) {
+            return callPeer;
+        }
+
+        synchronized (creationLock) {
+            callPeer = peers.get(sessionId);
+            if (callPeer == null) {
+                callPeer = peerFactory.create(sessionId);
+                peers.put(sessionId, callPeer);
+            }
+        }
+
+        return callPeer;
+    }
+
+    /**
+     * Removes the peer connection for the session. Only one caller gets a non null result, so only one
+     * caller ends up tearing the connection down.
+     */
+    @Nullable
+    public CallPeer remove(String sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+
+        return peers.remove(sessionId);
+    }
+
+    public boolean contains(String sessionId) {
+        return sessionId != null && peers.containsKey(sessionId);
+    }
+
+    /**
+     * A snapshot of the current peers, safe to iterate while the registry changes.
+     */
+    public List<CallPeer> getAll() {
+        return new ArrayList<>(peers.values());
+    }
+
+    public List<String> getSessionIds() {
+        return new ArrayList<>(peers.keySet());
+    }
+
+    public int size() {
+        return peers.size();
+    }
+
+    public boolean isEmpty() {
+        return peers.isEmpty();
+    }
+
+    public interface PeerFactory {
+        CallPeer create(String sessionId);
+    }
+}
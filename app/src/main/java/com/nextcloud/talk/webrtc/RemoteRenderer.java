@@ -0,0 +1,99 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.support.annotation.Nullable;
+import android.view.ViewGroup;
+
+import com.nextcloud.talk.webrtc.compositor.CompositingRenderer;
+
+import org.webrtc.VideoRenderer;
+import org.webrtc.VideoTrack;
+
+/**
+ * A remote participant's tile: the layout with its nick and status icons, and the video track that the
+ * CompositingRenderer currently draws underneath it. Handed out by a RendererPool.
+ */
+public class RemoteRenderer {
+    private final ViewGroup layout;
+    private final CompositingRenderer compositingRenderer;
+
+    private String sessionId;
+    private VideoTrack videoTrack;
+    private VideoRenderer videoRenderer;
+
+    public RemoteRenderer(ViewGroup layout, CompositingRenderer compositingRenderer) {
+        this.layout = layout;
+        this.compositingRenderer = compositingRenderer;
+    }
+
+    public ViewGroup getLayout() {
+        return layout;
+    }
+
+    @Nullable
+    public VideoTrack getVideoTrack() {
+        return videoTrack;
+    }
+
+    /**
+     * Shows the given track of the session, instead of the previous one if there was one. Without a track,
+     * e.g. in an audio-only call, only the tile itself is shown.
+     */
+    public void attach(String sessionId, @Nullable VideoTrack videoTrack) {
+        if (videoTrack == this.videoTrack && sessionId.equals(this.sessionId)) {
+            return;
+        }
+
+        detach();
+        this.sessionId = sessionId;
+        this.videoTrack = videoTrack;
+        if (videoTrack != null) {
+            videoRenderer = new VideoRenderer(compositingRenderer.getSink(sessionId));
+            videoTrack.addRenderer(videoRenderer);
+        }
+    }
+
+    /**
+     * Stops showing the current track and clears the last frame it left behind.
+     */
+    public void detach() {
+        // remote tracks stay valid after their peer connection has been closed, it is never disposed
+        if (videoTrack != null) {
+            // also disposes the renderer
+            videoTrack.removeRenderer(videoRenderer);
+        }
+        if (sessionId != null) {
+            compositingRenderer.removeSession(sessionId);
+        }
+
+        sessionId = null;
+        videoTrack = null;
+        videoRenderer = null;
+    }
+
+    public void removeFromParent() {
+        ViewGroup parent = (ViewGroup) layout.getParent();
+        if (parent != null) {
+            parent.removeView(layout);
+        }
+    }
+}
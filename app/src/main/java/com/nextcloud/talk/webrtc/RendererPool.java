@@ -0,0 +1,191 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps remote video renderers, together with their layouts, alive between streams. Instead of
+ * releasing a renderer and inflating a new one when a stream goes away, it is recycled and handed to
+ * the next stream, of the same or of another peer.
+ * At most maxIdle renderers are kept around unused; trim() releases them, e.g. when the call ends.
+ * All methods are meant to be called on the main thread.
+ */
+public class RendererPool<T> {
+    public static final int DEFAULT_MAX_IDLE = 4;
+
+    private final Allocator<T> allocator;
+    private final int maxIdle;
+
+    private final Map<String, T> inUse = new HashMap<>();
+    private final Deque<T> idle = new ArrayDeque<>();
+
+    private int createdCount;
+    private int reusedCount;
+    private int releasedCount;
+
+    public RendererPool(Allocator<T> allocator) {
+        this(allocator, DEFAULT_MAX_IDLE);
+    }
+
+    public RendererPool(Allocator<T> allocator, int maxIdle) {
+        this.allocator = allocator;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * The renderer of the session, taken from the idle ones or created if there are none.
+     */
+    public T acquire(String sessionId) {
+        T renderer = inUse.get(sessionId);
+        if (renderer != null) {
+            return renderer;
+        }
+
+        renderer = idle.pollFirst();
+        if (renderer != null) {
+            reusedCount++;
+        } else {
+            renderer = allocator.create();
+            createdCount++;
+        }
+
+        inUse.put(sessionId, renderer);
+        return renderer;
+    }
+
+    @Nullable
+    public T get(String sessionId) {
+        return inUse.get(sessionId);
+    }
+
+    /**
+     * Recycles the renderer of the session. It is kept for the next stream unless there are maxIdle
+     * unused renderers already.
+     *
+     * @return the renderer that the session had, null if there was none
+     */
+    @Nullable
+    public T recycle(String sessionId) {
+        T renderer = inUse.remove(sessionId);
+        if (renderer == null) {
+            return null;
+        }
+
+        allocator.recycle(renderer);
+        if (idle.size() < maxIdle) {
+            // the most recently used one is reused first, it is the most likely to still be warm
+            idle.offerFirst(renderer);
+        } else {
+            release(renderer);
+        }
+
+        return renderer;
+    }
+
+    /**
+     * Releases the unused renderers until at most maxIdle are left.
+     */
+    public void trim(int maxIdle) {
+        while (idle.size() > Math.max(0, maxIdle)) {
+            release(idle.pollLast());
+        }
+    }
+
+    public void trim() {
+        trim(0);
+    }
+
+    /**
+     * Recycles the renderers that are in use and releases everything.
+     */
+    public void clear() {
+        for (String sessionId : new ArrayList<>(inUse.keySet())) {
+            T renderer = inUse.remove(sessionId);
+            allocator.recycle(renderer);
+            release(renderer);
+        }
+
+        trim();
+    }
+
+    private void release(T renderer) {
+        allocator.release(renderer);
+        releasedCount++;
+    }
+
+    public List<String> getSessionIds() {
+        return new ArrayList<>(inUse.keySet());
+    }
+
+    public int getInUseCount() {
+        return inUse.size();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getCreatedCount() {
+        return createdCount;
+    }
+
+    public int getReusedCount() {
+        return reusedCount;
+    }
+
+    public int getReleasedCount() {
+        return releasedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "RendererPool{inUse=" + inUse.size() +
+                ", idle=" + idle.size() +
+                ", created=" + createdCount +
+                ", reused=" + reusedCount +
+                ", released=" + releasedCount + "}";
+    }
+
+    public interface Allocator<T> {
+        /**
+         * Creates and initialises a renderer.
+         */
+        T create();
+
+        /**
+         * Detaches the renderer from its stream and resets it so that it can show another one.
+         */
+        void recycle(T renderer);
+
+        /**
+         * Frees the renderer for good, it is never used again.
+         */
+        void release(T renderer);
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reorders the payload types of every audio and video section of an SDP so that the preferred codecs
+ * come first, in the order in which they are listed.
+ * The description is walked once by line offsets; rtpmap lines are parsed in place and only the m= lines
+ * that actually change are written again. If nothing changes the original string is returned.
+ * Instances are immutable and can be shared between peers.
+ */
+public class SdpRewriter {
+    public static final String OPUS = "opus";
+    public static final String VP8 = "VP8";
+    public static final String VP9 = "VP9";
+    public static final String H264 = "H264";
+
+    public static final SdpRewriter DEFAULT = new SdpRewriter(Collections.singletonList(OPUS),
+            Collections.singletonList(VP8));
+
+    private static final String MEDIA_AUDIO = "m=audio ";
+    private static final String MEDIA_VIDEO = "m=video ";
+    private static final String MEDIA = "m=";
+    private static final String RTPMAP = "a=rtpmap:";
+    private static final int MAX_PAYLOAD_TYPE = 127;
+
+    private final String[] audioCodecs;
+    private final String[] videoCodecs;
+
+    /**
+     * @param audioCodecs encoding names (as in a=rtpmap, case is ignored), most preferred first
+     * @param videoCodecs same for video, e.g. [H264, VP8]
+     */
+    public SdpRewriter(List<String> audioCodecs, List<String> videoCodecs) {
+        this.audioCodecs = audioCodecs.toArray(new String[audioCodecs.size()]);
+        this.videoCodecs = videoCodecs.toArray(new String[videoCodecs.size()]);
+    }
+
+    public List<String> getAudioCodecs() {
+        return Collections.unmodifiableList(Arrays.asList(audioCodecs));
+    }
+
+    public List<String> getVideoCodecs() {
+        return Collections.unmodifiableList(Arrays.asList(videoCodecs));
+    }
+
+    public String rewrite(String sdp) {
+        if (sdp == null || (audioCodecs.length == 0 && videoCodecs.length == 0)) {
+            return sdp;
+        }
+
+        Pass pass = new Pass(sdp);
+        int length = sdp.length();
+        int lineStart = 0;
+
+        while (lineStart < length) {
+            int newLine = sdp.indexOf('\n', lineStart);
+            int nextLine = newLine == -1 ? length : newLine + 1;
+            int lineEnd = newLine == -1 ? length : newLine;
+            if (lineEnd > lineStart && sdp.charAt(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+
+            if (sdp.startsWith(MEDIA, lineStart)) {
+                pass.finishSection();
+
+                if (sdp.startsWith(MEDIA_AUDIO, lineStart)) {
+                    pass.startSection(lineStart, lineEnd, audioCodecs);
+                } else if (sdp.startsWith(MEDIA_VIDEO, lineStart)) {
+                    pass.startSection(lineStart, lineEnd, videoCodecs);
+                }
+            } else if (pass.inSection() && sdp.startsWith(RTPMAP, lineStart)) {
+                pass.rtpMap(lineStart + RTPMAP.length(), lineEnd);
+            }
+
+            lineStart = nextLine;
+        }
+
+        pass.finishSection();
+        return pass.result();
+    }
+
+    /**
+     * The codec of the first payload type of the first video section, which is the one that gets used
+     * when the description is an answer. Null if there is no video or the description is malformed.
+     */
+    @Nullable
+    public static String getVideoCodec(String sdp) {
+        if (sdp == null) {
+            return null;
+        }
+
+        int mediaLineStart = sdp.startsWith(MEDIA_VIDEO) ? 0 : sdp.indexOf("\n" + MEDIA_VIDEO);
+        if (mediaLineStart == -1) {
+            return null;
+        }
+        if (sdp.charAt(mediaLineStart) == '\n') {
+            mediaLineStart++;
+        }
+
+        int sectionEnd = sdp.indexOf("\n" + MEDIA, mediaLineStart);
+        if (sectionEnd == -1) {
+            sectionEnd = sdp.length();
+        }
+
+        int formatsStart = mediaLineStart;
+        for (int i = 0; i < 3; i++) {
+            formatsStart = sdp.indexOf(' ', formatsStart) + 1;
+            if (formatsStart == 0 || formatsStart >= sectionEnd) {
+                return null;
+            }
+        }
+
+        int formatsEnd = formatsStart;
+        while (formatsEnd < sectionEnd && sdp.charAt(formatsEnd) >= '0' && sdp.charAt(formatsEnd) <= '9') {
+            formatsEnd++;
+        }
+        if (formatsEnd == formatsStart) {
+            return null;
+        }
+
+        String rtpMap = RTPMAP + sdp.substring(formatsStart, formatsEnd) + " ";
+        int rtpMapStart = sdp.indexOf(rtpMap, formatsEnd);
+        if (rtpMapStart == -1 || rtpMapStart >= sectionEnd) {
+            return null;
+        }
+
+        int nameStart = rtpMapStart + rtpMap.length();
+        int nameEnd = nameStart;
+        while (nameEnd < sectionEnd && sdp.charAt(nameEnd) != '/' && sdp.charAt(nameEnd) != '\r' &&
+                sdp.charAt(nameEnd) != '\n') {
+            nameEnd++;
+        }
+
+        return sdp.substring(nameStart, nameEnd);
+    }
+
+    /**
+     * State of one rewrite; created per call so that a shared SdpRewriter is thread safe.
+     */
+    private static final class Pass {
+        private final String sdp;
+
+        private StringBuilder rewritten;
+        private int copiedUpTo;
+
+        // rank + 1 of every payload type of the current section, 0 if it isn't a preferred codec
+        private int[] payloadRanks;
+        private boolean hasRankedPayloads;
+        private String[] codecs;
+        private int mediaLineStart = -1;
+        private int mediaLineEnd;
+
+        Pass(String sdp) {
+            this.sdp = sdp;
+        }
+
+        boolean inSection() {
+            return codecs != null;
+        }
+
+        void startSection(int lineStart, int lineEnd, String[] sectionCodecs) {
+            if (sectionCodecs.length == 0) {
+                return;
+            }
+
+            mediaLineStart = lineStart;
+            mediaLineEnd = lineEnd;
+            codecs = sectionCodecs;
+        }
+
+        /**
+         * Parses "<payload type> <encoding name>/<clock rate>[/<channels>]" between start and end.
+         */
+        void rtpMap(int start, int end) {
+            int position = start;
+            int payloadType = 0;
+            while (position < end && sdp.charAt(position) >= '0' && sdp.charAt(position) <= '9') {
+                payloadType = payloadType * 10 + (sdp.charAt(position) - '0');
+                position++;
+            }
+
+            if (position == start || position >= end || sdp.charAt(position) != ' ' ||
+                    payloadType > MAX_PAYLOAD_TYPE) {
+                return;
+            }
+
+            int nameStart = position + 1;
+            int nameEnd = sdp.indexOf('/', nameStart);
+            if (nameEnd == -1 || nameEnd > end) {
+                nameEnd = end;
+            }
+
+            int nameLength = nameEnd - nameStart;
+            for (int rank = 0; rank < codecs.length; rank++) {
+                String codec = codecs[rank];
+                if (codec.length() == nameLength && sdp.regionMatches(true, nameStart, codec, 0, nameLength)) {
+                    if (payloadRanks == null) {
+                        payloadRanks = new int[MAX_PAYLOAD_TYPE + 1];
+                    }
+
+                    payloadRanks[payloadType] = rank + 1;
+                    hasRankedPayloads = true;
+                    return;
+                }
+            }
+        }
+
+        void finishSection() {
+            if (codecs != null && hasRankedPayloads) {
+                reorderMediaLine();
+            }
+
+            if (hasRankedPayloads) {
+                Arrays.fill(payloadRanks, 0);
+                hasRankedPayloads = false;
+            }
+
+            codecs = null;
+            mediaLineStart = -1;
+        }
+
+        String result() {
+            if (rewritten == null) {
+                return sdp;
+            }
+
+            rewritten.append(sdp, copiedUpTo, sdp.length());
+            return rewritten.toString();
+        }
+
+        /**
+         * m=<media> <port> <proto> <fmt> ... gets its fmt list sorted by rank, a stable sort that
+         * keeps the server's order within a rank and for the payload types that aren't preferred.
+         */
+        private void reorderMediaLine() {
+            int formatsStart = mediaLineStart;
+            for (int i = 0; i < 3; i++) {
+                formatsStart = sdp.indexOf(' ', formatsStart) + 1;
+                if (formatsStart == 0 || formatsStart >= mediaLineEnd) {
+                    return;
+                }
+            }
+
+            if (isSorted(formatsStart)) {
+                return;
+            }
+
+            if (rewritten == null) {
+                rewritten = new StringBuilder(sdp.length());
+            }
+            rewritten.append(sdp, copiedUpTo, formatsStart);
+
+            boolean first = true;
+            for (int rank = 1; rank <= codecs.length + 1; rank++) {
+                // unranked payload types go last
+                int wantedRank = rank <= codecs.length ? rank : 0;
+                int tokenStart = formatsStart;
+                while (tokenStart < mediaLineEnd) {
+                    int tokenEnd = tokenEnd(tokenStart);
+                    if (tokenEnd > tokenStart && rankOf(tokenStart, tokenEnd) == wantedRank) {
+                        if (!first) {
+                            rewritten.append(' ');
+                        }
+                        rewritten.append(sdp, tokenStart, tokenEnd);
+                        first = false;
+                    }
+                    tokenStart = tokenEnd + 1;
+                }
+            }
+
+            copiedUpTo = mediaLineEnd;
+        }
+
+        private boolean isSorted(int formatsStart) {
+            int previousRank = 1;
+            int tokenStart = formatsStart;
+            while (tokenStart < mediaLineEnd) {
+                int tokenEnd = tokenEnd(tokenStart);
+                if (tokenEnd > tokenStart) {
+                    int rank = rankOf(tokenStart, tokenEnd);
+                    int sortKey = rank == 0 ? Integer.MAX_VALUE : rank;
+                    if (sortKey < previousRank) {
+                        return false;
+                    }
+                    previousRank = sortKey;
+                }
+                tokenStart = tokenEnd + 1;
+            }
+            return true;
+        }
+
+        private int tokenEnd(int tokenStart) {
+            int tokenEnd = sdp.indexOf(' ', tokenStart);
+            return tokenEnd == -1 || tokenEnd > mediaLineEnd ? mediaLineEnd : tokenEnd;
+        }
+
+        private int rankOf(int tokenStart, int tokenEnd) {
+            int payloadType = 0;
+            for (int i = tokenStart; i < tokenEnd; i++) {
+                char c = sdp.charAt(i);
+                if (c < '0' || c > '9') {
+                    return 0;
+                }
+                payloadType = payloadType * 10 + (c - '0');
+                if (payloadType > MAX_PAYLOAD_TYPE) {
+                    return 0;
+                }
+            }
+            return payloadRanks[payloadType];
+        }
+    }
+}
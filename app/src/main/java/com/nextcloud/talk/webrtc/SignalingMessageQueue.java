@@ -0,0 +1,229 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.util.Log;
+
+import com.nextcloud.talk.api.NcApi;
+import com.nextcloud.talk.api.models.json.signaling.SignalingOverall;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Observer;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+
+/**
+ * Collects outgoing signaling messages (offers, answers, candidates) that are produced within a short
+ * window and sends them with a single sendSignalingMessages request. The server already accepts a JSON
+ * array in the "messages" field, so a batch is just the serialized messages joined in the order in which
+ * they were enqueued. Batches themselves are sent one after another, so ordering is kept across requests.
+ */
+public class SignalingMessageQueue {
+    private static final String TAG = "SignalingMessageQueue";
+
+    public static final long DEFAULT_FLUSH_WINDOW_MS = 100;
+    public static final int DEFAULT_MAX_MESSAGES_PER_REQUEST = 50;
+
+    private final long flushWindowMs;
+    private final int maxMessagesPerRequest;
+    private final Scheduler scheduler;
+
+    private final Subject<List<String>> batchSubject = PublishSubject.<List<String>>create().toSerialized();
+    private Disposable batchDisposable;
+
+    private List<String> pendingMessages = new ArrayList<>();
+    private boolean flushScheduled;
+    private boolean closed;
+
+    private long requestCount;
+    private long messageCount;
+    private int maxMessagesInRequest;
+    private int lastMessagesInRequest;
+
+    public SignalingMessageQueue(NcApi ncApi, String credentials, String url,
+                                 SignalingResponseListener signalingResponseListener) {
+        this(ncApi, credentials, url, DEFAULT_FLUSH_WINDOW_MS, DEFAULT_MAX_MESSAGES_PER_REQUEST,
+                Schedulers.io(), signalingResponseListener);
+    }
+
+    public SignalingMessageQueue(NcApi ncApi, String credentials, String url, long flushWindowMs,
+                                 int maxMessagesPerRequest, Scheduler scheduler,
+                                 SignalingResponseListener signalingResponseListener) {
+        this.flushWindowMs = flushWindowMs;
+        this.maxMessagesPerRequest = maxMessagesPerRequest;
+        this.scheduler = scheduler;
+
+        batchSubject
+                .concatMap(batch -> ncApi.sendSignalingMessages(credentials, url, batch.toString())
+                        .subscribeOn(scheduler)
+                        .retry(3)
+                        .doOnError(throwable -> Log.e(TAG, "Failed to send " + batch.size() +
+                                " signaling messages"))
+                        .onErrorResumeNext(Observable.<SignalingOverall>empty()))
+                .subscribe(new Observer<SignalingOverall>() {
+                    @Override
+                    public void onSubscribe(Disposable d) {
+                        batchDisposable = d;
+                    }
+
+                    @Override
+                    public void onNext(SignalingOverall signalingOverall) {
+                        if (signalingResponseListener != null) {
+                            signalingResponseListener.onSignalingResponse(signalingOverall);
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                    }
+
+                    @Override
+                    public void onComplete() {
+                    }
+                });
+    }
+
+    /**
+     * Adds an already serialized message to the queue. The first message in an empty queue opens the
+     * flush window; reaching the per request limit flushes right away.
+     */
+    public void enqueue(String message) {
+        boolean flushNow = false;
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            pendingMessages.add(message);
+
+            if (pendingMessages.size() >= maxMessagesPerRequest || flushWindowMs <= 0) {
+                flushNow = true;
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                scheduler.scheduleDirect(this::flush, flushWindowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (flushNow) {
+            flush();
+        }
+    }
+
+    public void flush() {
+        List<String> batch;
+
+        synchronized (this) {
+            flushScheduled = false;
+
+            if (pendingMessages.isEmpty()) {
+                return;
+            }
+
+            batch = pendingMessages;
+            pendingMessages = new ArrayList<>();
+
+            requestCount++;
+            messageCount += batch.size();
+            lastMessagesInRequest = batch.size();
+            if (batch.size() > maxMessagesInRequest) {
+                maxMessagesInRequest = batch.size();
+            }
+
+            // emitted while holding the lock so that concurrent flushes can't swap batches
+            batchSubject.onNext(batch);
+        }
+    }
+
+    /**
+     * Sends whatever is still pending and stops accepting new messages.
+     */
+    public void close() {
+        flush();
+
+        synchronized (this) {
+            closed = true;
+        }
+
+        batchSubject.onComplete();
+    }
+
+    /**
+     * Drops pending messages and cancels the request in flight, if any.
+     */
+    public void dispose() {
+        synchronized (this) {
+            closed = true;
+            pendingMessages.clear();
+        }
+
+        if (batchDisposable != null && !batchDisposable.isDisposed()) {
+            batchDisposable.dispose();
+        }
+    }
+
+    public long getFlushWindowMs() {
+        return flushWindowMs;
+    }
+
+    public synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    public synchronized long getMessageCount() {
+        return messageCount;
+    }
+
+    public synchronized int getMaxMessagesInRequest() {
+        return maxMessagesInRequest;
+    }
+
+    public synchronized int getLastMessagesInRequest() {
+        return lastMessagesInRequest;
+    }
+
+    public synchronized float getAverageMessagesPerRequest() {
+        if (requestCount == 0) {
+            return 0;
+        }
+
+        return (float) messageCount / requestCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SignalingMessageQueue{requests=" + requestCount +
+                ", messages=" + messageCount +
+                ", avgMessagesPerRequest=" + (requestCount == 0 ? 0 : (float) messageCount / requestCount) +
+                ", maxMessagesInRequest=" + maxMessagesInRequest + "}";
+    }
+
+    public interface SignalingResponseListener {
+        void onSignalingResponse(SignalingOverall signalingOverall);
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.util.Log;
+
+import com.nextcloud.talk.api.models.json.signaling.SignalingOverall;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Observer;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Drives the signaling long-poll. Instead of re-subscribing as soon as a request finishes, the next
+ * request is scheduled depending on how the previous one ended:
+ * - a non-empty batch reconnects immediately, more messages are likely to follow
+ * - an empty batch that the server held open (a real long-poll) also reconnects immediately
+ * - an empty batch that came back quickly increases the interval up to MAX_EMPTY_INTERVAL_MS
+ * - an error backs off exponentially, with jitter, up to MAX_ERROR_BACKOFF_MS
+ */
+public class SignalingPollScheduler {
+    private static final String TAG = "SignalingPollScheduler";
+
+    // an empty response faster than this means the server did not hold the long-poll open
+    static final long FAST_RESPONSE_THRESHOLD_MS = 2000;
+    static final long INITIAL_EMPTY_INTERVAL_MS = 500;
+    static final long MAX_EMPTY_INTERVAL_MS = 5000;
+    static final long INITIAL_ERROR_BACKOFF_MS = 1000;
+    static final long MAX_ERROR_BACKOFF_MS = 30000;
+
+    private final Observable<SignalingOverall> pullObservable;
+    private final Scheduler scheduler;
+    private final Scheduler deliveryScheduler;
+    private final PollListener pollListener;
+    private final Random random = new Random();
+
+    private Disposable timerDisposable;
+    private Disposable pollDisposable;
+    private boolean running;
+    // bumped on every start so that callbacks of an earlier loop can't schedule polls in the new one
+    private int generation;
+
+    private long currentIntervalMs;
+    private int consecutiveErrors;
+    private long lastLatencyMs;
+    private long totalLatencyMs;
+    private long pollCount;
+    private long emptyResponses;
+    private long nonEmptyResponses;
+    private long errorCount;
+
+    /**
+     * @param pullObservable    a cold observable that performs one pull request per subscription
+     * @param scheduler         scheduler used to wait between requests, to run and to time them
+     * @param deliveryScheduler scheduler on which the listener gets the results
+     */
+    public SignalingPollScheduler(Observable<SignalingOverall> pullObservable, Scheduler scheduler,
+                                  Scheduler deliveryScheduler, PollListener pollListener) {
+        this.pullObservable = pullObservable;
+        this.scheduler = scheduler;
+        this.deliveryScheduler = deliveryScheduler;
+        this.pollListener = pollListener;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        running = true;
+        generation++;
+        currentIntervalMs = 0;
+        consecutiveErrors = 0;
+        scheduleNextPoll(generation, 0);
+    }
+
+    public synchronized void stop() {
+        running = false;
+
+        if (timerDisposable != null && !timerDisposable.isDisposed()) {
+            timerDisposable.dispose();
+        }
+
+        if (pollDisposable != null && !pollDisposable.isDisposed()) {
+            pollDisposable.dispose();
+        }
+
+        timerDisposable = null;
+        pollDisposable = null;
+    }
+
+    /**
+     * Cancels whatever is in flight or waiting and polls right away, e.g. after a network change.
+     */
+    public synchronized void restart() {
+        stop();
+        start();
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    private synchronized void scheduleNextPoll(int pollGeneration, long delayMs) {
+        if (!running || pollGeneration != generation) {
+            return;
+        }
+
+        if (delayMs <= 0) {
+            timerDisposable = scheduler.scheduleDirect(() -> poll(pollGeneration));
+        } else {
+            timerDisposable = scheduler.scheduleDirect(() -> poll(pollGeneration), delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void poll(int pollGeneration) {
+        final long startTime = scheduler.now(TimeUnit.MILLISECONDS);
+
+        synchronized (this) {
+            if (!running || pollGeneration != generation) {
+                return;
+            }
+        }
+
+        pullObservable
+                .subscribeOn(scheduler)
+                .observeOn(deliveryScheduler)
+                .subscribe(new Observer<SignalingOverall>() {
+                    private boolean gotResponse;
+
+                    @Override
+                    public void onSubscribe(Disposable d) {
+                        synchronized (SignalingPollScheduler.this) {
+                            pollDisposable = d;
+                        }
+                    }
+
+                    @Override
+                    public void onNext(SignalingOverall signalingOverall) {
+                        gotResponse = true;
+                        boolean empty = signalingOverall.getOcs() == null ||
+                                signalingOverall.getOcs().getSignalings() == null ||
+                                signalingOverall.getOcs().getSignalings().isEmpty();
+
+                        long nextDelay = recordResponse(scheduler.now(TimeUnit.MILLISECONDS) - startTime, empty);
+
+                        if (!empty && isRunning()) {
+                            pollListener.onSignalingMessages(signalingOverall);
+                        }
+
+                        scheduleNextPoll(pollGeneration, nextDelay);
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        long nextDelay = recordError();
+                        Log.d(TAG, "Pulling signaling messages failed, retrying in " + nextDelay + " ms");
+                        pollListener.onPollError(e, getConsecutiveErrors());
+                        scheduleNextPoll(pollGeneration, nextDelay);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        if (!gotResponse) {
+                            long nextDelay = recordResponse(scheduler.now(TimeUnit.MILLISECONDS) - startTime, true);
+                            scheduleNextPoll(pollGeneration, nextDelay);
+                        }
+                    }
+                });
+    }
+
+    synchronized long recordResponse(long latencyMs, boolean empty) {
+        lastLatencyMs = latencyMs;
+        totalLatencyMs += latencyMs;
+        pollCount++;
+        consecutiveErrors = 0;
+
+        if (!empty) {
+            nonEmptyResponses++;
+            currentIntervalMs = 0;
+        } else {
+            emptyResponses++;
+            if (latencyMs >= FAST_RESPONSE_THRESHOLD_MS) {
+                currentIntervalMs = 0;
+            } else if (currentIntervalMs == 0) {
+                currentIntervalMs = INITIAL_EMPTY_INTERVAL_MS;
+            } else {
+                currentIntervalMs = Math.min(currentIntervalMs * 2, MAX_EMPTY_INTERVAL_MS);
+            }
+        }
+
+        return currentIntervalMs;
+    }
+
+    synchronized long recordError() {
+        errorCount++;
+        consecutiveErrors++;
+
+        long backoff = INITIAL_ERROR_BACKOFF_MS << Math.min(consecutiveErrors - 1, 16);
+        backoff = Math.min(backoff, MAX_ERROR_BACKOFF_MS);
+
+        // "equal jitter": keep half of the backoff, randomize the other half
+        currentIntervalMs = backoff / 2 + (long) (random.nextDouble() * (backoff / 2));
+        return currentIntervalMs;
+    }
+
+    public synchronized long getCurrentIntervalMs() {
+        return currentIntervalMs;
+    }
+
+    public synchronized int getConsecutiveErrors() {
+        return consecutiveErrors;
+    }
+
+    public synchronized long getLastLatencyMs() {
+        return lastLatencyMs;
+    }
+
+    public synchronized long getAverageLatencyMs() {
+        if (pollCount == 0) {
+            return 0;
+        }
+
+        return totalLatencyMs / pollCount;
+    }
+
+    public synchronized long getEmptyResponses() {
+        return emptyResponses;
+    }
+
+    public synchronized long getNonEmptyResponses() {
+        return nonEmptyResponses;
+    }
+
+    public synchronized long getErrorCount() {
+        return errorCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SignalingPollScheduler{running=" + running +
+                ", currentIntervalMs=" + currentIntervalMs +
+                ", consecutiveErrors=" + consecutiveErrors +
+                ", lastLatencyMs=" + lastLatencyMs +
+                ", averageLatencyMs=" + getAverageLatencyMs() +
+                ", empty=" + emptyResponses +
+                ", nonEmpty=" + nonEmptyResponses +
+                ", errors=" + errorCount + "}";
+    }
+
+    public interface PollListener {
+        void onSignalingMessages(SignalingOverall signalingOverall);
+
+        void onPollError(Throwable throwable, int consecutiveErrors);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import com.nextcloud.talk.api.models.json.signaling.NCSignalingMessage;
+import com.nextcloud.talk.api.models.json.signaling.Signaling;
+
+import java.util.List;
+
+/**
+ * Moves signaling messages between us and the other participants of a call.
+ * HttpSignalingTransport talks to the Nextcloud server itself (long-poll + batched POSTs),
+ * WebSocketSignalingTransport to an external signaling server announced in the signaling settings.
+ * Received messages are handed over already decoded, in the same shape regardless of the transport.
+ */
+public interface SignalingTransport {
+
+    /**
+     * Starts receiving messages for the given Nextcloud session of the call.
+     */
+    void connect(String callSessionId, SignalingTransportListener signalingTransportListener);
+
+    void send(NCSignalingMessage ncSignalingMessage);
+
+    /**
+     * Drops the current connection (or request) and opens a new one right away, e.g. after a network change.
+     */
+    void reconnect();
+
+    /**
+     * Stops receiving messages. The transport can be connected again afterwards.
+     */
+    void disconnect();
+
+    /**
+     * Sends whatever is still pending where the transport allows it and releases the transport for good.
+     */
+    void close();
+
+    boolean isConnected();
+
+    /**
+     * The session id other participants know us by. It's the Nextcloud session for the internal signaling
+     * and the session handed out by the signaling server for the external one.
+     */
+    String getSessionId();
+
+    interface SignalingTransportListener {
+        void onSignalingMessages(List<Signaling> signalings);
+
+        void onTransportError(Throwable throwable, int consecutiveErrors);
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.os.Build;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Which video codecs this device can encode in hardware, probed once with MediaCodecList when the
+ * application starts. In a mesh call every peer gets its own encoder, so a hardware codec saves far more
+ * than in a one to one call.
+ * Only encoders that the WebRTC library itself is willing to use count, see MediaCodecVideoEncoder.
+ * VP8 is always kept as the last preference because every client supports it.
+ */
+public class VideoCodecCapabilities {
+    private static final String TAG = "VideoCodecCapabilities";
+
+    static final String MIME_TYPE_H264 = "video/avc";
+    static final String MIME_TYPE_VP8 = "video/x-vnd.on2.vp8";
+    static final String MIME_TYPE_VP9 = "video/x-vnd.on2.vp9";
+
+    private static final String QCOM_PREFIX = "OMX.qcom.";
+    private static final String EXYNOS_PREFIX = "OMX.Exynos.";
+    private static final String INTEL_PREFIX = "OMX.Intel.";
+
+    private final boolean hardwareAccelerationEnabled;
+    // SDP codec name -> name of the hardware encoder
+    private final Map<String, String> hardwareEncoders = new HashMap<>();
+    private final List<String> preferredVideoCodecs;
+
+    /**
+     * @param encodersByMimeType names of the available encoders for every mime type
+     */
+    VideoCodecCapabilities(Map<String, List<String>> encodersByMimeType, int sdkInt,
+                           boolean hardwareAccelerationEnabled) {
+        this.hardwareAccelerationEnabled = hardwareAccelerationEnabled;
+
+        if (hardwareAccelerationEnabled) {
+            findHardwareEncoder(SdpRewriter.H264, encodersByMimeType.get(MIME_TYPE_H264), sdkInt, false);
+            findHardwareEncoder(SdpRewriter.VP9, encodersByMimeType.get(MIME_TYPE_VP9), sdkInt, false);
+            findHardwareEncoder(SdpRewriter.VP8, encodersByMimeType.get(MIME_TYPE_VP8), sdkInt, true);
+        }
+
+        List<String> videoCodecs = new ArrayList<>();
+        if (hardwareEncoders.containsKey(SdpRewriter.H264)) {
+            videoCodecs.add(SdpRewriter.H264);
+        }
+        if (hardwareEncoders.containsKey(SdpRewriter.VP9)) {
+            videoCodecs.add(SdpRewriter.VP9);
+        }
+        videoCodecs.add(SdpRewriter.VP8);
+        preferredVideoCodecs = Collections.unmodifiableList(videoCodecs);
+    }
+
+    public static VideoCodecCapabilities probe(boolean hardwareAccelerationEnabled) {
+        Map<String, List<String>> encodersByMimeType = new HashMap<>();
+
+        try {
+            for (MediaCodecInfo mediaCodecInfo : new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos()) {
+                if (!mediaCodecInfo.isEncoder()) {
+                    continue;
+                }
+
+                for (String mimeType : mediaCodecInfo.getSupportedTypes()) {
+                    List<String> encoders = encodersByMimeType.get(mimeType);
+                    if (encoders == null) {
+                        encoders = new ArrayList<>();
+                        encodersByMimeType.put(mimeType, encoders);
+                    }
+                    encoders.add(mediaCodecInfo.getName());
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to list the media codecs, staying with VP8");
+        }
+
+        VideoCodecCapabilities videoCodecCapabilities = new VideoCodecCapabilities(encodersByMimeType,
+                Build.VERSION.SDK_INT, hardwareAccelerationEnabled);
+        Log.d(TAG, videoCodecCapabilities.toString());
+        return videoCodecCapabilities;
+    }
+
+    /**
+     * Codecs in the order in which they should be offered, always ending with VP8.
+     */
+    public List<String> getPreferredVideoCodecs() {
+        return preferredVideoCodecs;
+    }
+
+    public boolean hasHardwareEncoder(String codec) {
+        return hardwareEncoders.containsKey(codec);
+    }
+
+    @Nullable
+    public String getHardwareEncoderName(String codec) {
+        return hardwareEncoders.get(codec);
+    }
+
+    public boolean isHardwareAccelerationEnabled() {
+        return hardwareAccelerationEnabled;
+    }
+
+    @Override
+    public String toString() {
+        return "VideoCodecCapabilities{hardwareAcceleration=" + hardwareAccelerationEnabled +
+                ", hardwareEncoders=" + hardwareEncoders +
+                ", preferredVideoCodecs=" + preferredVideoCodecs + "}";
+    }
+
+    private void findHardwareEncoder(String codec, @Nullable List<String> encoders, int sdkInt, boolean isVp8) {
+        if (encoders == null) {
+            return;
+        }
+
+        for (String encoder : encoders) {
+            if (isSupportedHardwareEncoder(encoder, sdkInt, isVp8)) {
+                hardwareEncoders.put(codec, encoder);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Qualcomm encoders always work, Exynos ones from Marshmallow on; Intel only has a usable VP8 encoder.
+     */
+    private static boolean isSupportedHardwareEncoder(String encoder, int sdkInt, boolean isVp8) {
+        return encoder.startsWith(QCOM_PREFIX) ||
+                (encoder.startsWith(EXYNOS_PREFIX) && sdkInt >= Build.VERSION_CODES.M) ||
+                (isVp8 && encoder.startsWith(INTEL_PREFIX));
+    }
+}
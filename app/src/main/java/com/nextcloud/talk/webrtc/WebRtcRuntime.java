@@ -0,0 +1,154 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.content.ComponentCallbacks2;
+import android.util.Log;
+
+import org.webrtc.EglBase;
+import org.webrtc.PeerConnectionFactory;
+
+import io.reactivex.Scheduler;
+
+/**
+ * The EGL context and PeerConnectionFactory that every call shares. Creating them takes a noticeable while,
+ * so they are created once, ahead of the call where possible through warmUp(), and kept around between
+ * calls. They are only released again when the system runs low on memory and no call is using them.
+ * The video encoders of the device are probed the same way, on first use or by warmUp().
+ */
+public class WebRtcRuntime {
+    private static final String TAG = "WebRtcRuntime";
+
+    private final Scheduler warmUpScheduler;
+    private final boolean hardwareAccelerationEnabled;
+    private final Object videoCodecCapabilitiesLock = new Object();
+
+    private EglBase rootEglBase;
+    private PeerConnectionFactory peerConnectionFactory;
+    // how many calls use the runtime right now, it must not be released while there are any
+    private int users;
+    private volatile VideoCodecCapabilities videoCodecCapabilities;
+
+    /**
+     * @param warmUpScheduler             a background scheduler the runtime is created on by warmUp()
+     * @param hardwareAccelerationEnabled whether hardware video encoders may be used on this device at all
+     */
+    public WebRtcRuntime(Scheduler warmUpScheduler, boolean hardwareAccelerationEnabled) {
+        this.warmUpScheduler = warmUpScheduler;
+        this.hardwareAccelerationEnabled = hardwareAccelerationEnabled;
+    }
+
+    /**
+     * Creates the runtime in the background if it isn't there yet, e.g. when a call is likely to start soon.
+     */
+    public void warmUp() {
+        warmUpScheduler.scheduleDirect(() -> {
+            getVideoCodecCapabilities();
+
+            try {
+                ensureCreated();
+            } catch (RuntimeException | UnsatisfiedLinkError e) {
+                // the call creates it again and reports the failure
+                Log.w(TAG, "Failed to warm up", e);
+            }
+        });
+    }
+
+    /**
+     * Makes sure the runtime is there and keeps it from being released until release() is called.
+     * Waits for a warm up that is going on.
+     */
+    public synchronized void acquire() {
+        ensureCreated();
+        users++;
+    }
+
+    public synchronized void release() {
+        if (users > 0) {
+            users--;
+        }
+    }
+
+    public synchronized EglBase getEglBase() {
+        ensureCreated();
+        return rootEglBase;
+    }
+
+    public EglBase.Context getEglBaseContext() {
+        return getEglBase().getEglBaseContext();
+    }
+
+    public synchronized PeerConnectionFactory getPeerConnectionFactory() {
+        ensureCreated();
+        return peerConnectionFactory;
+    }
+
+    /**
+     * Probes the video encoders the first time it is called, which lists all media codecs of the device.
+     */
+    public VideoCodecCapabilities getVideoCodecCapabilities() {
+        VideoCodecCapabilities capabilities = videoCodecCapabilities;
+        if (capabilities != null) {
+            return capabilities;
+        }
+
+        // not under the runtime's lock, a warm up creating the factory doesn't have to wait for it
+        synchronized (videoCodecCapabilitiesLock) {
+            if (videoCodecCapabilities == null) {
+                videoCodecCapabilities = VideoCodecCapabilities.probe(hardwareAccelerationEnabled);
+            }
+            return videoCodecCapabilities;
+        }
+    }
+
+    /**
+     * Releases the runtime if memory is getting low and no call is using it; the next call creates it again.
+     * Meant to be called from Application.onTrimMemory().
+     */
+    public synchronized void onTrimMemory(int level) {
+        // UI_HIDDEN only means the app went to the background, that alone is no reason to let go of it
+        if (level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN ||
+                level < ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return;
+        }
+
+        if (users > 0 || peerConnectionFactory == null) {
+            return;
+        }
+
+        Log.d(TAG, "Releasing on memory trim level " + level);
+        peerConnectionFactory.dispose();
+        peerConnectionFactory = null;
+        rootEglBase.release();
+        rootEglBase = null;
+    }
+
+    private synchronized void ensureCreated() {
+        if (peerConnectionFactory != null) {
+            return;
+        }
+
+        rootEglBase = EglBase.create();
+        peerConnectionFactory = new PeerConnectionFactory(new PeerConnectionFactory.Options());
+        peerConnectionFactory.setVideoHwAccelerationOptions(rootEglBase.getEglBaseContext(),
+                rootEglBase.getEglBaseContext());
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.util.Log;
+
+import com.bluelinelabs.logansquare.LoganSquare;
+import com.nextcloud.talk.api.models.json.converters.SignalingListConverter;
+import com.nextcloud.talk.api.models.json.signaling.NCSignalingMessage;
+import com.nextcloud.talk.api.models.json.signaling.Signaling;
+import com.nextcloud.talk.api.models.json.websocket.ActorWebSocketMessage;
+import com.nextcloud.talk.api.models.json.websocket.AuthParametersWebSocketMessage;
+import com.nextcloud.talk.api.models.json.websocket.AuthWebSocketMessage;
+import com.nextcloud.talk.api.models.json.websocket.CallWebSocketMessage;
+import com.nextcloud.talk.api.models.json.websocket.HelloWebSocketMessage;
+import com.nextcloud.talk.api.models.json.websocket.RoomWebSocketMessage;
+import com.nextcloud.talk.api.models.json.websocket.WebSocketMessage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+/**
+ * Signaling over a WebSocket to an external (standalone) signaling server. After connecting we say
+ * "hello" with the ticket from the signaling settings, join the room with our Nextcloud session and from
+ * then on messages and participant updates are pushed to us.
+ * Outgoing messages are held back until the room is joined. Lost connections are re-established with
+ * the same backoff as the HTTP long-poll, resuming the previous session when the server still knows it.
+ */
+public class WebSocketSignalingTransport implements SignalingTransport {
+    private static final String TAG = "WebSocketSignaling";
+
+    static final String HELLO_VERSION = "1.0";
+    static final int NORMAL_CLOSURE = 1000;
+
+    private final OkHttpClient okHttpClient;
+    private final String serverUrl;
+    private final String backendUrl;
+    private final String userId;
+    private final String ticket;
+    private final String roomToken;
+    private final Scheduler scheduler;
+    private final Scheduler deliveryScheduler;
+    private final Random random = new Random();
+
+    private WebSocket webSocket;
+    private Disposable reconnectDisposable;
+    // bumped for every socket so that callbacks of an abandoned one are ignored
+    private int generation;
+    private int messageId;
+
+    private String callSessionId;
+    private SignalingTransportListener signalingTransportListener;
+    private boolean wanted;
+    private boolean joined;
+    private String signalingSessionId;
+    private String resumeId;
+    private int consecutiveErrors;
+    private final List<String> pendingMessages = new ArrayList<>();
+
+    /**
+     * @param serverUrl         ws(s):// url of the signaling server
+     * @param backendUrl        the url of our Nextcloud signaling backend, the server validates the ticket with it
+     * @param scheduler         scheduler used to wait before reconnecting
+     * @param deliveryScheduler scheduler on which the listener gets the received messages
+     */
+    public WebSocketSignalingTransport(OkHttpClient okHttpClient, String serverUrl, String backendUrl,
+                                       String userId, String ticket, String roomToken, Scheduler scheduler,
+                                       Scheduler deliveryScheduler) {
+        this.okHttpClient = okHttpClient;
+        this.serverUrl = serverUrl;
+        this.backendUrl = backendUrl;
+        this.userId = userId;
+        this.ticket = ticket;
+        this.roomToken = roomToken;
+        this.scheduler = scheduler;
+        this.deliveryScheduler = deliveryScheduler;
+    }
+
+    @Override
+    public synchronized void connect(String callSessionId, SignalingTransportListener signalingTransportListener) {
+        this.callSessionId = callSessionId;
+        this.signalingTransportListener = signalingTransportListener;
+
+        if (!wanted) {
+            wanted = true;
+            openWebSocket();
+        }
+    }
+
+    @Override
+    public void send(NCSignalingMessage ncSignalingMessage) {
+        ActorWebSocketMessage recipient = new ActorWebSocketMessage();
+        recipient.setType("session");
+        recipient.setSessionId(ncSignalingMessage.getTo());
+
+        CallWebSocketMessage callWebSocketMessage = new CallWebSocketMessage();
+        callWebSocketMessage.setRecipientWebSocketMessage(recipient);
+        callWebSocketMessage.setNcSignalingMessage(ncSignalingMessage);
+
+        WebSocketMessage webSocketMessage = new WebSocketMessage();
+        webSocketMessage.setType("message");
+        webSocketMessage.setCallWebSocketMessage(callWebSocketMessage);
+
+        String text;
+        try {
+            text = LoganSquare.serialize(webSocketMessage);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to serialize signaling message for " + ncSignalingMessage.getTo());
+            return;
+        }
+
+        synchronized (this) {
+            if (joined && webSocket != null) {
+                webSocket.send(text);
+            } else if (wanted) {
+                pendingMessages.add(text);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void reconnect() {
+        if (!wanted) {
+            return;
+        }
+
+        closeWebSocket();
+        openWebSocket();
+    }
+
+    @Override
+    public synchronized void disconnect() {
+        wanted = false;
+        pendingMessages.clear();
+        closeWebSocket();
+    }
+
+    @Override
+    public synchronized void close() {
+        disconnect();
+        signalingTransportListener = null;
+        resumeId = null;
+    }
+
+    @Override
+    public synchronized boolean isConnected() {
+        return joined;
+    }
+
+    @Override
+    public synchronized String getSessionId() {
+        return signalingSessionId;
+    }
+
+    public synchronized int getConsecutiveErrors() {
+        return consecutiveErrors;
+    }
+
+    private void openWebSocket() {
+        generation++;
+        joined = false;
+
+        Request request = new Request.Builder().url(serverUrl).build();
+        webSocket = okHttpClient.newWebSocket(request, new SignalingWebSocketListener(generation));
+    }
+
+    private void closeWebSocket() {
+        generation++;
+        joined = false;
+
+        if (reconnectDisposable != null && !reconnectDisposable.isDisposed()) {
+            reconnectDisposable.dispose();
+        }
+        reconnectDisposable = null;
+
+        if (webSocket != null) {
+            webSocket.close(NORMAL_CLOSURE, null);
+            webSocket = null;
+        }
+    }
+
+    private void scheduleReconnect(Throwable throwable) {
+        long delay;
+        SignalingTransportListener listener;
+        int errors;
+
+        synchronized (this) {
+            joined = false;
+            webSocket = null;
+            generation++;
+
+            if (!wanted) {
+                return;
+            }
+
+            consecutiveErrors++;
+            errors = consecutiveErrors;
+            listener = signalingTransportListener;
+
+            long backoff = SignalingPollScheduler.INITIAL_ERROR_BACKOFF_MS << Math.min(consecutiveErrors - 1, 16);
+            backoff = Math.min(backoff, SignalingPollScheduler.MAX_ERROR_BACKOFF_MS);
+            delay = backoff / 2 + (long) (random.nextDouble() * (backoff / 2));
+
+            reconnectDisposable = scheduler.scheduleDirect(() -> {
+                synchronized (WebSocketSignalingTransport.this) {
+                    if (wanted && webSocket == null) {
+                        openWebSocket();
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        Log.d(TAG, "Signaling connection lost, reconnecting in " + delay + " ms");
+
+        if (listener != null) {
+            deliveryScheduler.scheduleDirect(() -> listener.onTransportError(throwable, errors));
+        }
+    }
+
+    private synchronized void sendHello(WebSocket webSocket) throws IOException {
+        HelloWebSocketMessage helloWebSocketMessage = new HelloWebSocketMessage();
+        helloWebSocketMessage.setVersion(HELLO_VERSION);
+
+        if (resumeId != null) {
+            helloWebSocketMessage.setResumeId(resumeId);
+        } else {
+            AuthParametersWebSocketMessage authParametersWebSocketMessage = new AuthParametersWebSocketMessage();
+            authParametersWebSocketMessage.setUserid(userId);
+            authParametersWebSocketMessage.setTicket(ticket);
+
+            AuthWebSocketMessage authWebSocketMessage = new AuthWebSocketMessage();
+            authWebSocketMessage.setUrl(backendUrl);
+            authWebSocketMessage.setAuthParametersWebSocketMessage(authParametersWebSocketMessage);
+            helloWebSocketMessage.setAuthWebSocketMessage(authWebSocketMessage);
+        }
+
+        WebSocketMessage webSocketMessage = new WebSocketMessage();
+        webSocketMessage.setId(String.valueOf(++messageId));
+        webSocketMessage.setType("hello");
+        webSocketMessage.setHelloWebSocketMessage(helloWebSocketMessage);
+        webSocket.send(LoganSquare.serialize(webSocketMessage));
+    }
+
+    private synchronized void sendJoinRoom(WebSocket webSocket) throws IOException {
+        RoomWebSocketMessage roomWebSocketMessage = new RoomWebSocketMessage();
+        roomWebSocketMessage.setRoomId(roomToken);
+        roomWebSocketMessage.setSessionId(callSessionId);
+
+        WebSocketMessage webSocketMessage = new WebSocketMessage();
+        webSocketMessage.setId(String.valueOf(++messageId));
+        webSocketMessage.setType("room");
+        webSocketMessage.setRoomWebSocketMessage(roomWebSocketMessage);
+        webSocket.send(LoganSquare.serialize(webSocketMessage));
+    }
+
+    private void onWebSocketMessage(WebSocket webSocket, WebSocketMessage webSocketMessage) throws IOException {
+        if (webSocketMessage.getType() == null) {
+            return;
+        }
+
+        switch (webSocketMessage.getType()) {
+            case "hello":
+                synchronized (this) {
+                    if (webSocketMessage.getHelloWebSocketMessage() != null) {
+                        signalingSessionId = webSocketMessage.getHelloWebSocketMessage().getSessionId();
+                        resumeId = webSocketMessage.getHelloWebSocketMessage().getResumeId();
+                    }
+                    consecutiveErrors = 0;
+                }
+                sendJoinRoom(webSocket);
+                break;
+            case "room":
+                synchronized (this) {
+                    joined = true;
+                    for (String pendingMessage : pendingMessages) {
+                        webSocket.send(pendingMessage);
+                    }
+                    pendingMessages.clear();
+                }
+                break;
+            case "message":
+                CallWebSocketMessage callWebSocketMessage = webSocketMessage.getCallWebSocketMessage();
+                if (callWebSocketMessage != null && callWebSocketMessage.getNcSignalingMessage() != null) {
+                    NCSignalingMessage ncSignalingMessage = callWebSocketMessage.getNcSignalingMessage();
+                    if (ncSignalingMessage.getFrom() == null && callWebSocketMessage.getSenderWebSocketMessage() != null) {
+                        ncSignalingMessage.setFrom(callWebSocketMessage.getSenderWebSocketMessage().getSessionId());
+                    }
+
+                    Signaling signaling = new Signaling();
+                    signaling.setType(SignalingListConverter.TYPE_MESSAGE);
+                    signaling.setSignalingMessage(ncSignalingMessage);
+                    deliver(signaling);
+                }
+                break;
+            case "event":
+                if (webSocketMessage.getEventWebSocketMessage() != null &&
+                        "participants".equals(webSocketMessage.getEventWebSocketMessage().getTarget()) &&
+                        "update".equals(webSocketMessage.getEventWebSocketMessage().getType()) &&
+                        webSocketMessage.getEventWebSocketMessage().getEventUpdateWebSocketMessage() != null) {
+                    Signaling signaling = new Signaling();
+                    signaling.setType(SignalingListConverter.TYPE_USERS_IN_ROOM);
+                    signaling.setUsersInRoom(webSocketMessage.getEventWebSocketMessage()
+                            .getEventUpdateWebSocketMessage().getUsers());
+                    deliver(signaling);
+                }
+                break;
+            case "error":
+                String code = webSocketMessage.getErrorWebSocketMessage() != null ?
+                        webSocketMessage.getErrorWebSocketMessage().getCode() : null;
+                Log.e(TAG, "Signaling server error: " + code);
+                if ("no_such_session".equals(code)) {
+                    // the session we tried to resume expired, start over with a fresh hello
+                    synchronized (this) {
+                        resumeId = null;
+                    }
+                    reconnect();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void deliver(Signaling signaling) {
+        SignalingTransportListener listener;
+        synchronized (this) {
+            listener = signalingTransportListener;
+        }
+
+        if (listener != null) {
+            deliveryScheduler.scheduleDirect(() -> listener.onSignalingMessages(Collections.singletonList(signaling)));
+        }
+    }
+
+    private synchronized boolean isCurrent(int socketGeneration) {
+        return wanted && socketGeneration == generation;
+    }
+
+    private class SignalingWebSocketListener extends WebSocketListener {
+        private final int socketGeneration;
+
+        SignalingWebSocketListener(int socketGeneration) {
+            this.socketGeneration = socketGeneration;
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            if (!isCurrent(socketGeneration)) {
+                return;
+            }
+
+            try {
+                sendHello(webSocket);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to send hello to the signaling server");
+            }
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            if (!isCurrent(socketGeneration)) {
+                return;
+            }
+
+            try {
+                onWebSocketMessage(webSocket, LoganSquare.parse(text, WebSocketMessage.class));
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to parse message from the signaling server");
+            }
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(NORMAL_CLOSURE, null);
+        }
+
+        @Override
+        public void onClosed(WebSocket webSocket, int code, String reason) {
+            if (isCurrent(socketGeneration)) {
+                scheduleReconnect(new IOException("Signaling server closed the connection: " + code));
+            }
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            if (isCurrent(socketGeneration)) {
+                scheduleReconnect(t);
+            }
+        }
+    }
+}
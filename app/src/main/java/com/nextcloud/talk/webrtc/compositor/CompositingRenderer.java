@@ -0,0 +1,387 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc.compositor;
+
+import android.graphics.Rect;
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import org.webrtc.EglBase;
+import org.webrtc.GlRectDrawer;
+import org.webrtc.GlTextureFrameBuffer;
+import org.webrtc.RendererCommon;
+import org.webrtc.ThreadUtils;
+import org.webrtc.VideoRenderer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Draws the video of all remote participants into one surface, each frame as a quad at the place the
+ * CompositorLayout gave its tile, instead of giving every participant a SurfaceViewRenderer with its own
+ * surface, EGL context and render thread.
+ * Frames are handed in through the sink of their session and only the newest one of every session is
+ * kept. The surface is redrawn at most MAX_FPS times a second, thumbnails take at most THUMBNAIL_FPS
+ * frames a second. Frames are uploaded or copied into textures of the compositor right away and given
+ * back, so tiles without a new frame are redrawn from those and decoders never wait for the compositor.
+ */
+public class CompositingRenderer implements SurfaceHolder.Callback {
+    private static final String TAG = "CompositingRenderer";
+
+    static final int MAX_FPS = 30;
+    static final int THUMBNAIL_FPS = 15;
+
+    private final Handler renderHandler;
+
+    private final Object frameLock = new Object();
+    // guarded by frameLock
+    private final Map<String, VideoRenderer.I420Frame> pendingFrames = new HashMap<>();
+    private final Map<String, Long> lastFrameTimesMs = new HashMap<>();
+    private boolean renderPosted;
+    private boolean released;
+
+    // replaced as a whole from the main thread, read by the sinks and the render thread
+    private volatile Map<String, CompositorLayout.Tile> tiles = Collections.emptyMap();
+    private volatile long lastRenderMs;
+
+    // render thread only
+    private final Map<String, VideoRenderer.I420Frame> renderFrames = new HashMap<>();
+    private final Map<String, TileTexture> tileTextures = new HashMap<>();
+    private EglBase eglBase;
+    private GlRectDrawer drawer;
+    private int surfaceWidth;
+    private int surfaceHeight;
+
+    public CompositingRenderer(EglBase.Context sharedContext) {
+        HandlerThread renderThread = new HandlerThread(TAG);
+        renderThread.start();
+        renderHandler = new Handler(renderThread.getLooper());
+        renderHandler.post(() -> {
+            eglBase = EglBase.create(sharedContext, EglBase.CONFIG_PLAIN);
+            drawer = new GlRectDrawer();
+        });
+    }
+
+    /**
+     * Draws into the surface of the holder from now on, including if it exists already.
+     */
+    public void init(SurfaceHolder surfaceHolder) {
+        surfaceHolder.addCallback(this);
+
+        Surface surface = surfaceHolder.getSurface();
+        if (surface != null && surface.isValid()) {
+            Rect surfaceFrame = surfaceHolder.getSurfaceFrame();
+            surfaceCreated(surfaceHolder);
+            surfaceChanged(surfaceHolder, 0, surfaceFrame.width(), surfaceFrame.height());
+        }
+    }
+
+    /**
+     * Which sessions are drawn where, replacing the previous tiles. Frames of everybody else are dropped.
+     */
+    public void setTiles(List<CompositorLayout.Tile> tileList) {
+        Map<String, CompositorLayout.Tile> newTiles = new LinkedHashMap<>();
+        for (CompositorLayout.Tile tile : tileList) {
+            newTiles.put(tile.getSessionId(), tile);
+        }
+        tiles = newTiles;
+
+        requestRender();
+    }
+
+    /**
+     * Where the video of the session goes, to be wrapped in a VideoRenderer and added to its track.
+     */
+    public VideoRenderer.Callbacks getSink(String sessionId) {
+        return frame -> onFrame(sessionId, frame);
+    }
+
+    /**
+     * Forgets the last frame of the session, once its sink has been removed from the track.
+     */
+    public void removeSession(String sessionId) {
+        synchronized (frameLock) {
+            lastFrameTimesMs.remove(sessionId);
+            VideoRenderer.I420Frame pendingFrame = pendingFrames.remove(sessionId);
+            if (pendingFrame != null) {
+                VideoRenderer.renderFrameDone(pendingFrame);
+            }
+            if (released) {
+                return;
+            }
+        }
+
+        renderHandler.post(() -> {
+            TileTexture tileTexture = tileTextures.remove(sessionId);
+            if (tileTexture != null) {
+                tileTexture.release();
+            }
+        });
+        requestRender();
+    }
+
+    /**
+     * Releases the textures and the EGL context and stops the render thread.
+     */
+    public void release() {
+        synchronized (frameLock) {
+            if (released) {
+                return;
+            }
+
+            released = true;
+            for (VideoRenderer.I420Frame pendingFrame : pendingFrames.values()) {
+                VideoRenderer.renderFrameDone(pendingFrame);
+            }
+            pendingFrames.clear();
+        }
+
+        renderHandler.post(() -> {
+            if (eglBase != null) {
+                if (!eglBase.hasSurface()) {
+                    // the drawer's shaders can only be deleted with a current context
+                    eglBase.createDummyPbufferSurface();
+                }
+                eglBase.makeCurrent();
+                releaseTileTextures();
+                drawer.release();
+                eglBase.release();
+                eglBase = null;
+            }
+            renderHandler.getLooper().quitSafely();
+        });
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        Surface surface = holder.getSurface();
+        renderHandler.post(() -> {
+            if (eglBase != null && !eglBase.hasSurface()) {
+                eglBase.createSurface(surface);
+                eglBase.makeCurrent();
+                // the planes of YUV frames aren't padded
+                GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 1);
+            }
+        });
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        renderHandler.post(() -> {
+            surfaceWidth = width;
+            surfaceHeight = height;
+        });
+        requestRender();
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        // the surface must not be drawn into anymore once this returns
+        CountDownLatch surfaceReleased = new CountDownLatch(1);
+        boolean posted = renderHandler.post(() -> {
+            if (eglBase != null && eglBase.hasSurface()) {
+                // textures only exist while there is a surface, new frames upload them again
+                releaseTileTextures();
+                eglBase.detachCurrent();
+                eglBase.releaseSurface();
+            }
+            surfaceReleased.countDown();
+        });
+
+        if (posted) {
+            ThreadUtils.awaitUninterruptibly(surfaceReleased);
+        }
+    }
+
+    private void onFrame(String sessionId, VideoRenderer.I420Frame frame) {
+        CompositorLayout.Tile tile = tiles.get(sessionId);
+        boolean accepted = false;
+
+        synchronized (frameLock) {
+            if (tile != null && !released) {
+                long nowMs = SystemClock.elapsedRealtime();
+                Long lastFrameMs = lastFrameTimesMs.get(sessionId);
+                accepted = !tile.isThumbnail() || lastFrameMs == null || nowMs - lastFrameMs >= 1000 / THUMBNAIL_FPS;
+
+                if (accepted) {
+                    lastFrameTimesMs.put(sessionId, nowMs);
+                    VideoRenderer.I420Frame droppedFrame = pendingFrames.put(sessionId, frame);
+                    if (droppedFrame != null) {
+                        VideoRenderer.renderFrameDone(droppedFrame);
+                    }
+                }
+            }
+        }
+
+        if (accepted) {
+            requestRender();
+        } else {
+            VideoRenderer.renderFrameDone(frame);
+        }
+    }
+
+    private void requestRender() {
+        synchronized (frameLock) {
+            if (renderPosted || released) {
+                return;
+            }
+            renderPosted = true;
+        }
+
+        long delayMs = lastRenderMs + 1000 / MAX_FPS - SystemClock.elapsedRealtime();
+        renderHandler.postDelayed(this::render, Math.max(0, delayMs));
+    }
+
+    private void render() {
+        synchronized (frameLock) {
+            renderPosted = false;
+            renderFrames.putAll(pendingFrames);
+            pendingFrames.clear();
+        }
+        lastRenderMs = SystemClock.elapsedRealtime();
+
+        boolean canDraw = eglBase != null && eglBase.hasSurface();
+        Map<String, CompositorLayout.Tile> currentTiles = tiles;
+        for (Map.Entry<String, VideoRenderer.I420Frame> entry : renderFrames.entrySet()) {
+            CompositorLayout.Tile tile = currentTiles.get(entry.getKey());
+            if (canDraw && tile != null) {
+                TileTexture tileTexture = tileTextures.get(entry.getKey());
+                if (tileTexture == null) {
+                    tileTexture = new TileTexture();
+                    tileTextures.put(entry.getKey(), tileTexture);
+                }
+                tileTexture.update(entry.getValue(), tile);
+            }
+            VideoRenderer.renderFrameDone(entry.getValue());
+        }
+        renderFrames.clear();
+
+        if (!canDraw) {
+            return;
+        }
+
+        GLES20.glClearColor(0, 0, 0, 1);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        for (CompositorLayout.Tile tile : currentTiles.values()) {
+            TileTexture tileTexture = tileTextures.get(tile.getSessionId());
+            if (tileTexture != null) {
+                tileTexture.draw(tile);
+            }
+        }
+
+        try {
+            eglBase.swapBuffers();
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to swap buffers", e);
+        }
+    }
+
+    private void releaseTileTextures() {
+        for (TileTexture tileTexture : tileTextures.values()) {
+            tileTexture.release();
+        }
+        tileTextures.clear();
+    }
+
+    /**
+     * The newest frame of a session, as YUV textures or as a copy of the decoder's texture.
+     */
+    private class TileTexture {
+        private RendererCommon.YuvUploader yuvUploader;
+        private int[] yuvTextures;
+        private GlTextureFrameBuffer frameBuffer;
+        private float[] texMatrix;
+        private int frameWidth;
+        private int frameHeight;
+
+        void update(VideoRenderer.I420Frame frame, CompositorLayout.Tile tile) {
+            frameWidth = frame.rotatedWidth();
+            frameHeight = frame.rotatedHeight();
+            float[] rotatedMatrix = RendererCommon.rotateTextureMatrix(frame.samplingMatrix, frame.rotationDegree);
+
+            if (frame.yuvFrame) {
+                if (yuvUploader == null) {
+                    yuvUploader = new RendererCommon.YuvUploader();
+                }
+                yuvTextures = yuvUploader.uploadYuvData(frame.width, frame.height, frame.yuvStrides,
+                        frame.yuvPlanes);
+                texMatrix = rotatedMatrix;
+                return;
+            }
+
+            // the decoder gets its texture back after this frame, so the copy is no larger than the tile needs
+            float scale = Math.min(1f, Math.max(tile.getWidth() / (float) frameWidth,
+                    tile.getHeight() / (float) frameHeight));
+            int copyWidth = Math.max(1, Math.round(frameWidth * scale));
+            int copyHeight = Math.max(1, Math.round(frameHeight * scale));
+            if (frameBuffer == null) {
+                frameBuffer = new GlTextureFrameBuffer(GLES20.GL_RGBA);
+            }
+            frameBuffer.setSize(copyWidth, copyHeight);
+
+            GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, frameBuffer.getFrameBufferId());
+            drawer.drawOes(frame.textureId, rotatedMatrix, frameWidth, frameHeight, 0, 0, copyWidth, copyHeight);
+            GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+
+            yuvTextures = null;
+            texMatrix = RendererCommon.identityMatrix();
+        }
+
+        void draw(CompositorLayout.Tile tile) {
+            CompositorLayout.Tile area = CompositorLayout.fit(tile, frameWidth, frameHeight);
+            if (area.getWidth() <= 0 || area.getHeight() <= 0) {
+                return;
+            }
+
+            float[] layoutMatrix = RendererCommon.getLayoutMatrix(false, frameWidth / (float) frameHeight,
+                    area.getWidth() / (float) area.getHeight());
+            float[] drawMatrix = RendererCommon.multiplyMatrices(texMatrix, layoutMatrix);
+            // GL counts from the bottom
+            int viewportY = surfaceHeight - area.getTop() - area.getHeight();
+
+            if (yuvTextures != null) {
+                drawer.drawYuv(yuvTextures, drawMatrix, frameWidth, frameHeight, area.getLeft(), viewportY,
+                        area.getWidth(), area.getHeight());
+            } else if (frameBuffer != null) {
+                drawer.drawRgb(frameBuffer.getTextureId(), drawMatrix, frameWidth, frameHeight, area.getLeft(),
+                        viewportY, area.getWidth(), area.getHeight());
+            }
+        }
+
+        void release() {
+            if (yuvUploader != null) {
+                yuvUploader.release();
+            }
+            if (frameBuffer != null) {
+                frameBuffer.release();
+            }
+        }
+    }
+}
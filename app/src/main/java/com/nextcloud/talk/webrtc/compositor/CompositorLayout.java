@@ -0,0 +1,174 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc.compositor;
+
+import com.nextcloud.talk.webrtc.ParticipantPager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Where the CompositingRenderer draws every participant of a page, in pixels of the shared surface with
+ * the origin at the top left, like the views laid out on top of it.
+ * The tiles form a grid as square as possible. If the first participant is the active speaker and
+ * there are at least SPEAKER_ROW_TILES tiles, the speaker gets a row of its own, SPEAKER_ROW_WEIGHT times
+ * as high as the others, and everybody else becomes a thumbnail.
+ */
+public final class CompositorLayout {
+    static final int SPEAKER_ROW_TILES = 3;
+    static final float SPEAKER_ROW_WEIGHT = 2f;
+    // thumbnails are filled as long as this much of the frame stays visible, like SCALE_ASPECT_BALANCED
+    static final float THUMBNAIL_VISIBLE_FRACTION = 0.5625f;
+
+    private CompositorLayout() {
+    }
+
+    /**
+     * @param speakerFirst whether the first session is the active speaker
+     */
+    public static List<Tile> layout(List<String> sessionIds, boolean speakerFirst, boolean landscape, int width,
+                                    int height) {
+        if (sessionIds.isEmpty() || width <= 0 || height <= 0) {
+            return Collections.emptyList();
+        }
+
+        boolean speakerRow = speakerFirst && sessionIds.size() >= SPEAKER_ROW_TILES;
+        int thumbnails = speakerRow ? sessionIds.size() - 1 : sessionIds.size();
+        int columns = ParticipantPager.getColumns(thumbnails, landscape);
+        int rows = ParticipantPager.getRows(thumbnails, landscape);
+        float totalWeight = rows + (speakerRow ? SPEAKER_ROW_WEIGHT : 0);
+
+        List<Tile> tiles = new ArrayList<>(sessionIds.size());
+        int top = 0;
+        if (speakerRow) {
+            int speakerHeight = Math.round(height * SPEAKER_ROW_WEIGHT / totalWeight);
+            tiles.add(new Tile(sessionIds.get(0), 0, 0, width, speakerHeight, false));
+            top = speakerHeight;
+        }
+
+        // row and column edges are rounded separately, so that neighbouring tiles neither overlap nor leave a gap
+        int rowsHeight = height - top;
+        for (int i = 0; i < thumbnails; i++) {
+            int row = i / columns;
+            int column = i % columns;
+            int tileTop = top + rowsHeight * row / rows;
+            int tileLeft = width * column / columns;
+            tiles.add(new Tile(sessionIds.get(speakerRow ? i + 1 : i), tileLeft, tileTop,
+                    width * (column + 1) / columns - tileLeft, top + rowsHeight * (row + 1) / rows - tileTop,
+                    speakerRow));
+        }
+
+        return tiles;
+    }
+
+    /**
+     * The part of the tile a frame of the given size is drawn into, centered. Thumbnails are filled and the
+     * frame is cropped, unless too much of it would be lost; everything else shows the whole frame.
+     */
+    public static Tile fit(Tile tile, int frameWidth, int frameHeight) {
+        if (frameWidth <= 0 || frameHeight <= 0) {
+            return tile;
+        }
+
+        float visibleFraction = tile.thumbnail ? THUMBNAIL_VISIBLE_FRACTION : 1f;
+        float frameAspectRatio = frameWidth / (float) frameHeight;
+        int width = Math.min(tile.width, Math.round(tile.height / visibleFraction * frameAspectRatio));
+        int height = Math.min(tile.height, Math.round(tile.width / visibleFraction / frameAspectRatio));
+
+        return new Tile(tile.sessionId, tile.left + (tile.width - width) / 2, tile.top + (tile.height - height) / 2,
+                width, height, tile.thumbnail);
+    }
+
+    public static class Tile {
+        private final String sessionId;
+        private final int left;
+        private final int top;
+        private final int width;
+        private final int height;
+        private final boolean thumbnail;
+
+        public Tile(String sessionId, int left, int top, int width, int height, boolean thumbnail) {
+            this.sessionId = sessionId;
+            this.left = left;
+            this.top = top;
+            this.width = width;
+            this.height = height;
+            this.thumbnail = thumbnail;
+        }
+
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        public int getLeft() {
+            return left;
+        }
+
+        public int getTop() {
+            return top;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * Whether the tile is shown small next to the active speaker.
+         */
+        public boolean isThumbnail() {
+            return thumbnail;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Tile)) {
+                return false;
+            }
+
+            Tile that = (Tile) o;
+            return left == that.left && top == that.top && width == that.width && height == that.height &&
+                    thumbnail == that.thumbnail && sessionId.equals(that.sessionId);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = sessionId.hashCode();
+            result = 31 * result + left;
+            result = 31 * result + top;
+            result = 31 * result + width;
+            result = 31 * result + height;
+            return 31 * result + (thumbnail ? 1 : 0);
+        }
+
+        @Override
+        public String toString() {
+            return sessionId + " " + width + "x" + height + "+" + left + "+" + top + (thumbnail ? " thumbnail" : "");
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.nextcloud.talk.webrtc.CallPeer;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Finds out who is speaking from the audio levels in the stats of every peer connection, including our
+ * own microphone (LOCAL_SESSION_ID). Levels are smoothed, and somebody only takes over once they have
+ * been the loudest, and clearly louder than the current speaker, for SWITCH_MS. Short interruptions
+ * and coughs therefore don't move the active speaker around. When everybody is quiet the last speaker
+ * stays active.
+ */
+public class ActiveSpeakerDetector {
+    private static final String TAG = "ActiveSpeakerDetector";
+
+    public static final String LOCAL_SESSION_ID = "local";
+
+    static final long POLL_INTERVAL_MS = 500;
+    static final long SWITCH_MS = 1000;
+    // weight of a new sample in the smoothed level
+    static final float SMOOTHING = 0.5f;
+    // levels below this are background noise
+    static final float SPEAKING_LEVEL = 0.05f;
+    // how much louder than the current speaker somebody has to be to take over
+    static final float DOMINANCE_RATIO = 1.5f;
+
+    private final CallStatsCollector.PeerSource peerSource;
+    private final Scheduler scheduler;
+    private final ActiveSpeakerListener activeSpeakerListener;
+
+    private final Map<String, Float> levels = new HashMap<>();
+    // our microphone as reported since the last poll
+    private float pendingLocalLevel = -1;
+    private String activeSpeaker;
+    private String candidate;
+    private long candidateSinceMs;
+
+    private volatile boolean running;
+    private Disposable pollDisposable;
+
+    /**
+     * @param scheduler used for the interval; the listener is called on it as well
+     */
+    public ActiveSpeakerDetector(CallStatsCollector.PeerSource peerSource, Scheduler scheduler,
+                                 ActiveSpeakerListener activeSpeakerListener) {
+        this.peerSource = peerSource;
+        this.scheduler = scheduler;
+        this.activeSpeakerListener = activeSpeakerListener;
+    }
+
+    public synchronized void start() {
+        if (pollDisposable != null && !pollDisposable.isDisposed()) {
+            return;
+        }
+
+        running = true;
+        pollDisposable = Observable.interval(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS, scheduler)
+                .subscribe(tick -> poll());
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (pollDisposable != null && !pollDisposable.isDisposed()) {
+            pollDisposable.dispose();
+        }
+
+        pollDisposable = null;
+        levels.clear();
+        pendingLocalLevel = -1;
+        activeSpeaker = null;
+        candidate = null;
+    }
+
+    @Nullable
+    public synchronized String getActiveSpeaker() {
+        return activeSpeaker;
+    }
+
+    /**
+     * Decides on the levels that arrived since the last poll, then asks every peer for new ones. Only the
+     * audio track reports are requested, and our microphone from one connection only, since every
+     * connection sends the same one.
+     */
+    void poll() {
+        List<CallPeer> callPeers = peerSource.getPeers();
+
+        Set<String> sessionIds = new HashSet<>();
+        sessionIds.add(LOCAL_SESSION_ID);
+        for (CallPeer callPeer : callPeers) {
+            sessionIds.add(callPeer.getSessionId());
+        }
+
+        notifyIfChanged(evaluate(sessionIds, scheduler.now(TimeUnit.MILLISECONDS)));
+
+        CallPeer localLevelPeer = null;
+        for (CallPeer callPeer : callPeers) {
+            String sessionId = callPeer.getSessionId();
+            callPeer.getAudioStats(false, statsReports -> {
+                if (running) {
+                    updateLevel(sessionId, StatsReportParser.getReceivedAudioLevel(statsReports));
+                }
+            });
+
+            if (localLevelPeer == null && callPeer.isConnected()) {
+                localLevelPeer = callPeer;
+            }
+        }
+
+        if (localLevelPeer != null) {
+            localLevelPeer.getAudioStats(true, statsReports -> {
+                if (running) {
+                    updateLevel(LOCAL_SESSION_ID, StatsReportParser.getSentAudioLevel(statsReports));
+                }
+            });
+        }
+    }
+
+    synchronized void updateLevel(String sessionId, float level) {
+        if (level < 0) {
+            return;
+        }
+
+        if (LOCAL_SESSION_ID.equals(sessionId)) {
+            pendingLocalLevel = Math.max(pendingLocalLevel, level);
+            return;
+        }
+
+        smooth(sessionId, level);
+    }
+
+    private void smooth(String sessionId, float level) {
+        Float previous = levels.get(sessionId);
+        levels.put(sessionId, previous == null ? level : previous + (level - previous) * SMOOTHING);
+    }
+
+    /**
+     * @param sessionIds the participants that are still in the call
+     * @return the new active speaker if it changed, null otherwise
+     */
+    @Nullable
+    synchronized String evaluate(Set<String> sessionIds, long nowMs) {
+        if (pendingLocalLevel >= 0) {
+            smooth(LOCAL_SESSION_ID, pendingLocalLevel);
+            pendingLocalLevel = -1;
+        }
+        levels.keySet().retainAll(sessionIds);
+
+        String loudest = null;
+        float loudestLevel = SPEAKING_LEVEL;
+        for (Map.Entry<String, Float> entry : levels.entrySet()) {
+            if (entry.getValue() >= loudestLevel) {
+                loudest = entry.getKey();
+                loudestLevel = entry.getValue();
+            }
+        }
+
+        if (activeSpeaker != null && !sessionIds.contains(activeSpeaker)) {
+            // left the call, whoever is loudest takes over right away
+            activeSpeaker = null;
+        }
+
+        if (loudest == null || loudest.equals(activeSpeaker)) {
+            candidate = null;
+            return null;
+        }
+
+        Float activeLevel = activeSpeaker != null ? levels.get(activeSpeaker) : null;
+        if (activeLevel != null && loudestLevel < activeLevel * DOMINANCE_RATIO) {
+            candidate = null;
+            return null;
+        }
+
+        if (!loudest.equals(candidate)) {
+            candidate = loudest;
+            candidateSinceMs = nowMs;
+        }
+
+        if (activeSpeaker == null || nowMs - candidateSinceMs >= SWITCH_MS) {
+            activeSpeaker = loudest;
+            candidate = null;
+            return activeSpeaker;
+        }
+
+        return null;
+    }
+
+    private void notifyIfChanged(@Nullable String changedSpeaker) {
+        if (changedSpeaker != null) {
+            Log.d(TAG, "Active speaker is now " + changedSpeaker);
+            activeSpeakerListener.onActiveSpeakerChanged(changedSpeaker);
+        }
+    }
+
+    public interface ActiveSpeakerListener {
+        /**
+         * @param sessionId the session of the remote participant, or LOCAL_SESSION_ID when it's us
+         */
+        void onActiveSpeakerChanged(String sessionId);
+    }
+}
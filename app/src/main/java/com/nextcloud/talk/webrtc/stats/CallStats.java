@@ -0,0 +1,95 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import com.bluelinelabs.logansquare.annotation.JsonField;
+import com.bluelinelabs.logansquare.annotation.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * The latest PeerStats of every peer of a call and what they add up to.
+ */
+@Data
+@JsonObject
+public class CallStats {
+    @JsonField(name = "timestamp")
+    long timestampMs;
+
+    @JsonField(name = "peerCount")
+    int peerCount;
+
+    @JsonField(name = "averageRtt")
+    long averageRttMs;
+
+    @JsonField(name = "maxRtt")
+    long maxRttMs;
+
+    @JsonField(name = "averagePacketsLostPercent")
+    float averagePacketsLostPercent;
+
+    @JsonField(name = "maxPacketsLostPercent")
+    float maxPacketsLostPercent;
+
+    @JsonField(name = "sendBitrate")
+    long sendBitrateBps;
+
+    @JsonField(name = "receiveBitrate")
+    long receiveBitrateBps;
+
+    @JsonField(name = "relayedPeers")
+    int relayedPeers;
+
+    @JsonField(name = "peers")
+    List<PeerStats> peers = new ArrayList<>();
+
+    public static CallStats aggregate(long timestampMs, List<PeerStats> peerStatsList) {
+        CallStats callStats = new CallStats();
+        callStats.timestampMs = timestampMs;
+        callStats.peerCount = peerStatsList.size();
+        callStats.peers = peerStatsList;
+
+        if (peerStatsList.isEmpty()) {
+            return callStats;
+        }
+
+        long totalRttMs = 0;
+        float totalPacketsLostPercent = 0;
+        for (PeerStats peerStats : peerStatsList) {
+            totalRttMs += peerStats.rttMs;
+            callStats.maxRttMs = Math.max(callStats.maxRttMs, peerStats.rttMs);
+            totalPacketsLostPercent += peerStats.packetsLostPercent;
+            callStats.maxPacketsLostPercent = Math.max(callStats.maxPacketsLostPercent, peerStats.packetsLostPercent);
+            callStats.sendBitrateBps += peerStats.sendBitrateBps;
+            callStats.receiveBitrateBps += peerStats.receiveBitrateBps;
+            if (peerStats.isRelayed()) {
+                callStats.relayedPeers++;
+            }
+        }
+
+        callStats.averageRttMs = totalRttMs / peerStatsList.size();
+        callStats.averagePacketsLostPercent = totalPacketsLostPercent / peerStatsList.size();
+        return callStats;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import com.nextcloud.talk.webrtc.CallPeer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Asks every peer for its stats on a fixed interval and reports the call as a whole.
+ * The peers answer asynchronously, so each CallStats is built from the latest sample of every peer,
+ * which is at most one interval old.
+ */
+public class CallStatsCollector {
+    public static final long DEFAULT_INTERVAL_MS = 2000;
+
+    private final PeerSource peerSource;
+    private final long intervalMs;
+    private final Scheduler scheduler;
+    private final CallStatsListener callStatsListener;
+
+    private final Map<String, PeerStats> latestPeerStats = new ConcurrentHashMap<>();
+    private volatile CallStats latestCallStats;
+    private volatile boolean running;
+    private Disposable pollDisposable;
+
+    /**
+     * @param scheduler used for the interval; the listener is called on it as well
+     */
+    public CallStatsCollector(PeerSource peerSource, long intervalMs, Scheduler scheduler,
+                              CallStatsListener callStatsListener) {
+        this.peerSource = peerSource;
+        this.intervalMs = intervalMs;
+        this.scheduler = scheduler;
+        this.callStatsListener = callStatsListener;
+    }
+
+    public synchronized void start() {
+        if (pollDisposable != null && !pollDisposable.isDisposed()) {
+            return;
+        }
+
+        running = true;
+        pollDisposable = Observable.interval(intervalMs, TimeUnit.MILLISECONDS, scheduler)
+                .subscribe(tick -> poll());
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (pollDisposable != null && !pollDisposable.isDisposed()) {
+            pollDisposable.dispose();
+        }
+
+        pollDisposable = null;
+        latestPeerStats.clear();
+    }
+
+    public CallStats getLatestCallStats() {
+        return latestCallStats;
+    }
+
+    void poll() {
+        List<CallPeer> callPeers = peerSource.getPeers();
+
+        Set<String> sessionIds = new HashSet<>();
+        for (CallPeer callPeer : callPeers) {
+            sessionIds.add(callPeer.getSessionId());
+        }
+        latestPeerStats.keySet().retainAll(sessionIds);
+
+        if (!latestPeerStats.isEmpty()) {
+            latestCallStats = CallStats.aggregate(now(), new ArrayList<>(latestPeerStats.values()));
+            callStatsListener.onCallStats(latestCallStats);
+        }
+
+        for (CallPeer callPeer : callPeers) {
+            String sessionId = callPeer.getSessionId();
+            callPeer.getStats(statsReports -> {
+                // peers that have left in the meantime are dropped again by the next poll
+                if (!running) {
+                    return;
+                }
+
+                PeerStats peerStats = StatsReportParser.parse(sessionId, statsReports, now(),
+                        latestPeerStats.get(sessionId));
+                latestPeerStats.put(sessionId, peerStats);
+                callPeer.setSendBandwidthEstimateBps(peerStats.getAvailableSendBandwidthBps());
+            });
+        }
+    }
+
+    private long now() {
+        return scheduler.now(TimeUnit.MILLISECONDS);
+    }
+
+    public interface PeerSource {
+        List<CallPeer> getPeers();
+    }
+
+    public interface CallStatsListener {
+        void onCallStats(CallStats callStats);
+    }
+}
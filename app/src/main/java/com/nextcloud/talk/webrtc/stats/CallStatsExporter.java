@@ -0,0 +1,124 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import android.util.Log;
+
+import com.bluelinelabs.logansquare.LoganSquare;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Appends every CallStats as one line of JSON to call-stats.jsonl in the given directory. Once the file
+ * grows beyond maxFileBytes it is rotated to call-stats.jsonl.1 (and so on up to maxFiles), so that the
+ * stats of the last calls can be collected from users without the files growing forever.
+ * CallService only exports while the setting for it is on, SettingsController shares the files.
+ */
+public class CallStatsExporter {
+    private static final String TAG = "CallStatsExporter";
+
+    // below getFilesDir(), also declared in res/xml/file_paths.xml
+    public static final String DIRECTORY_NAME = "call-stats";
+    public static final String FILE_NAME = "call-stats.jsonl";
+    public static final long DEFAULT_MAX_FILE_BYTES = 512 * 1024;
+    public static final int DEFAULT_MAX_FILES = 3;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] NEW_LINE = "\n".getBytes(UTF_8);
+
+    private final File directory;
+    private final long maxFileBytes;
+    private final int maxFiles;
+
+    public CallStatsExporter(File directory) {
+        this(directory, DEFAULT_MAX_FILE_BYTES, DEFAULT_MAX_FILES);
+    }
+
+    public CallStatsExporter(File directory, long maxFileBytes, int maxFiles) {
+        this.directory = directory;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+    }
+
+    public synchronized void export(CallStats callStats) {
+        try {
+            byte[] line = LoganSquare.serialize(callStats).getBytes(UTF_8);
+
+            if (!directory.exists() && !directory.mkdirs()) {
+                Log.w(TAG, "Failed to create " + directory);
+                return;
+            }
+
+            File file = new File(directory, FILE_NAME);
+            if (file.length() > 0 && file.length() + line.length + NEW_LINE.length > maxFileBytes) {
+                rotate();
+            }
+
+            OutputStream outputStream = new FileOutputStream(file, true);
+            try {
+                outputStream.write(line);
+                outputStream.write(NEW_LINE);
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to export call stats");
+        }
+    }
+
+    /**
+     * The current file first, then the rotated ones from newest to oldest.
+     */
+    public synchronized List<File> getFiles() {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < maxFiles; i++) {
+            File file = getFile(i);
+            if (file.exists()) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private void rotate() {
+        File oldest = getFile(maxFiles - 1);
+        if (oldest.exists() && !oldest.delete()) {
+            Log.w(TAG, "Failed to delete " + oldest);
+        }
+
+        for (int i = maxFiles - 2; i >= 0; i--) {
+            File file = getFile(i);
+            if (file.exists() && !file.renameTo(getFile(i + 1))) {
+                Log.w(TAG, "Failed to rotate " + file);
+            }
+        }
+    }
+
+    private File getFile(int index) {
+        return new File(directory, index == 0 ? FILE_NAME : FILE_NAME + "." + index);
+    }
+}
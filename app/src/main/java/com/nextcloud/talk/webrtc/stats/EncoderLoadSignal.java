@@ -0,0 +1,58 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import com.nextcloud.talk.webrtc.CaptureQualityController;
+
+/**
+ * The load of our video encoders as WebRTC measures it for the sent streams: googEncodeUsagePercent is
+ * the share of the time between two frames the encoder needs, so it reflects what the encoder can use
+ * rather than the whole device. Every peer has its own encoder, the busiest one counts. Once WebRTC has
+ * already lowered the sent resolution for CPU reasons (googCpuLimitedResolution) that counts as full load.
+ * Each CallStats sample is reported once; in between, and while no video is sent, the load is unknown.
+ */
+public class EncoderLoadSignal implements CaptureQualityController.LoadSignal {
+    private CallStats pendingCallStats;
+
+    public synchronized void update(CallStats callStats) {
+        pendingCallStats = callStats;
+    }
+
+    @Override
+    public synchronized float getLoad() {
+        CallStats callStats = pendingCallStats;
+        pendingCallStats = null;
+        if (callStats == null) {
+            return -1;
+        }
+
+        float load = -1;
+        for (PeerStats peerStats : callStats.getPeers()) {
+            if (peerStats.cpuLimitedResolution) {
+                load = Math.max(load, 1f);
+            } else if (peerStats.encodeUsagePercent > 0) {
+                load = Math.max(load, peerStats.encodeUsagePercent / 100f);
+            }
+        }
+
+        return load;
+    }
+}
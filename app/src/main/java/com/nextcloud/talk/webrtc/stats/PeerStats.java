@@ -0,0 +1,114 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import com.bluelinelabs.logansquare.annotation.JsonField;
+import com.bluelinelabs.logansquare.annotation.JsonObject;
+
+import lombok.Data;
+
+/**
+ * One sample of the connection to a peer. Rates and the packet loss are computed against the previous
+ * sample, the byte and packet counters are the totals since the connection was created.
+ */
+@Data
+@JsonObject
+public class PeerStats {
+    @JsonField(name = "sessionId")
+    String sessionId;
+
+    @JsonField(name = "timestamp")
+    long timestampMs;
+
+    @JsonField(name = "rtt")
+    long rttMs;
+
+    @JsonField(name = "audioJitter")
+    long audioJitterMs;
+
+    @JsonField(name = "packetsLostPercent")
+    float packetsLostPercent;
+
+    @JsonField(name = "sendBitrate")
+    long sendBitrateBps;
+
+    @JsonField(name = "receiveBitrate")
+    long receiveBitrateBps;
+
+    @JsonField(name = "availableSendBandwidth")
+    long availableSendBandwidthBps;
+
+    // what the peer is able to send us as estimated by our side, 0 if there is no estimate
+    @JsonField(name = "availableReceiveBandwidth")
+    long availableReceiveBandwidthBps;
+
+    @JsonField(name = "localCandidateType")
+    String localCandidateType;
+
+    @JsonField(name = "remoteCandidateType")
+    String remoteCandidateType;
+
+    @JsonField(name = "transport")
+    String transportType;
+
+    @JsonField(name = "videoCodec")
+    String videoCodec;
+
+    @JsonField(name = "frameWidthSent")
+    int frameWidthSent;
+
+    @JsonField(name = "frameHeightSent")
+    int frameHeightSent;
+
+    @JsonField(name = "framerateSent")
+    int framerateSent;
+
+    // how much of the time between two frames the video encoder needs, can be above 100
+    @JsonField(name = "encodeUsagePercent")
+    int encodeUsagePercent;
+
+    // whether WebRTC already lowered the sent resolution because the encoder doesn't keep up
+    @JsonField(name = "cpuLimitedResolution")
+    boolean cpuLimitedResolution;
+
+    @JsonField(name = "bytesSent")
+    long bytesSent;
+
+    @JsonField(name = "bytesReceived")
+    long bytesReceived;
+
+    @JsonField(name = "packetsReceived")
+    long packetsReceived;
+
+    @JsonField(name = "packetsLost")
+    long packetsLost;
+
+    // set by RemoteVideoPolicy when it has asked the peer to stop sending its video
+    @JsonField(name = "remoteVideoPaused")
+    boolean remoteVideoPaused;
+
+    /**
+     * Whether media goes through a TURN server.
+     */
+    public boolean isRelayed() {
+        return "relay".equals(localCandidateType) || "relay".equals(remoteCandidateType);
+    }
+}
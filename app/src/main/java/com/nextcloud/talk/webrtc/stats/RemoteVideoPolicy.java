@@ -0,0 +1,170 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pauses the video of a peer whose downlink to us has collapsed, so that its audio keeps the bandwidth,
+ * and resumes it once the connection has recovered. A downlink counts as collapsed when the receive
+ * bandwidth estimate drops below PAUSE_BANDWIDTH_BPS or PAUSE_LOSS_PERCENT of the packets are lost, for
+ * PAUSE_SAMPLES samples in a row. Video comes back after RESUME_SAMPLES good samples in a row, where good
+ * means clearly above the pause thresholds, but not before the peer has been paused for a while.
+ * While paused no video arrives to estimate the bandwidth with, so resuming is also a probe: a peer that
+ * collapses again right away stays paused twice as long the next time, up to MAX_PAUSE_MS.
+ */
+public class RemoteVideoPolicy {
+    private static final String TAG = "RemoteVideoPolicy";
+
+    static final long PAUSE_BANDWIDTH_BPS = 150000;
+    static final long RESUME_BANDWIDTH_BPS = 300000;
+    static final float PAUSE_LOSS_PERCENT = 10f;
+    static final float RESUME_LOSS_PERCENT = 3f;
+    static final int PAUSE_SAMPLES = 2;
+    static final int RESUME_SAMPLES = 3;
+    static final long MIN_PAUSE_MS = 10000;
+    static final long MAX_PAUSE_MS = 80000;
+
+    private final RemoteVideoListener remoteVideoListener;
+    private final Map<String, PeerState> peerStates = new HashMap<>();
+
+    /**
+     * @param remoteVideoListener called on the thread that calls update()
+     */
+    public RemoteVideoPolicy(RemoteVideoListener remoteVideoListener) {
+        this.remoteVideoListener = remoteVideoListener;
+    }
+
+    /**
+     * Decides on the latest sample of every peer and marks the samples of paused peers, so that the
+     * decisions show up wherever the stats go.
+     */
+    public void update(CallStats callStats) {
+        Set<String> sessionIds = new HashSet<>();
+        for (PeerStats peerStats : callStats.getPeers()) {
+            sessionIds.add(peerStats.sessionId);
+            Boolean paused = evaluate(peerStats);
+            if (paused != null) {
+                remoteVideoListener.onRemoteVideoPaused(peerStats.sessionId, paused);
+            }
+        }
+
+        synchronized (this) {
+            peerStates.keySet().retainAll(sessionIds);
+        }
+    }
+
+    public synchronized boolean isPaused(String sessionId) {
+        PeerState peerState = peerStates.get(sessionId);
+        return peerState != null && peerState.paused;
+    }
+
+    /**
+     * @return whether the video of the peer has to be paused or resumed now, null if nothing changes
+     */
+    synchronized Boolean evaluate(PeerStats peerStats) {
+        PeerState peerState = peerStates.get(peerStats.sessionId);
+        if (peerState == null) {
+            peerState = new PeerState();
+            peerStates.put(peerStats.sessionId, peerState);
+        }
+
+        // a peer that hasn't answered since the last poll is reported with the same sample again
+        if (peerStats.timestampMs <= peerState.lastTimestampMs) {
+            peerStats.remoteVideoPaused = peerState.paused;
+            return null;
+        }
+        peerState.lastTimestampMs = peerStats.timestampMs;
+
+        Boolean change = null;
+        if (!peerState.paused) {
+            peerState.badSamples = isCollapsed(peerStats) ? peerState.badSamples + 1 : 0;
+            if (peerState.badSamples >= PAUSE_SAMPLES) {
+                if (peerStats.timestampMs - peerState.resumedAtMs > MAX_PAUSE_MS) {
+                    // it has been fine for a long while, this is a new problem
+                    peerState.pauseCount = 0;
+                }
+
+                peerState.paused = true;
+                peerState.pauseCount++;
+                peerState.pausedAtMs = peerStats.timestampMs;
+                peerState.goodSamples = 0;
+                change = Boolean.TRUE;
+                Log.d(TAG, "Pausing the video of " + peerStats.sessionId + ": receive bandwidth " +
+                        peerStats.availableReceiveBandwidthBps + " bps, " + peerStats.packetsLostPercent + " % lost");
+            }
+        } else {
+            peerState.goodSamples = isRecovered(peerStats) ? peerState.goodSamples + 1 : 0;
+            if (peerState.goodSamples >= RESUME_SAMPLES &&
+                    peerStats.timestampMs - peerState.pausedAtMs >= getMinPauseMs(peerState.pauseCount)) {
+                peerState.paused = false;
+                peerState.resumedAtMs = peerStats.timestampMs;
+                peerState.badSamples = 0;
+                change = Boolean.FALSE;
+                Log.d(TAG, "Resuming the video of " + peerStats.sessionId + " after " +
+                        (peerStats.timestampMs - peerState.pausedAtMs) + " ms");
+            }
+        }
+
+        peerStats.remoteVideoPaused = peerState.paused;
+        return change;
+    }
+
+    static long getMinPauseMs(int pauseCount) {
+        long minPauseMs = MIN_PAUSE_MS;
+        for (int i = 1; i < pauseCount && minPauseMs < MAX_PAUSE_MS; i++) {
+            minPauseMs *= 2;
+        }
+        return Math.min(minPauseMs, MAX_PAUSE_MS);
+    }
+
+    private static boolean isCollapsed(PeerStats peerStats) {
+        // 0 means there is no estimate yet, e.g. before any video has arrived
+        return (peerStats.availableReceiveBandwidthBps > 0 &&
+                peerStats.availableReceiveBandwidthBps < PAUSE_BANDWIDTH_BPS) ||
+                peerStats.packetsLostPercent >= PAUSE_LOSS_PERCENT;
+    }
+
+    private static boolean isRecovered(PeerStats peerStats) {
+        return (peerStats.availableReceiveBandwidthBps == 0 ||
+                peerStats.availableReceiveBandwidthBps >= RESUME_BANDWIDTH_BPS) &&
+                peerStats.packetsLostPercent <= RESUME_LOSS_PERCENT;
+    }
+
+    private static class PeerState {
+        boolean paused;
+        int badSamples;
+        int goodSamples;
+        int pauseCount;
+        long pausedAtMs;
+        long resumedAtMs = Long.MIN_VALUE / 2;
+        long lastTimestampMs = Long.MIN_VALUE;
+    }
+
+    public interface RemoteVideoListener {
+        void onRemoteVideoPaused(String sessionId, boolean paused);
+    }
+}
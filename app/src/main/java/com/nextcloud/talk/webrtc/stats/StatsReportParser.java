@@ -0,0 +1,153 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import android.support.annotation.Nullable;
+
+import org.webrtc.StatsReport;
+
+/**
+ * Turns the legacy (goog*) stats reports of one peer connection into a PeerStats sample.
+ * Only the active candidate pair counts for RTT, transport and bytes; packet loss and jitter come from
+ * the incoming streams, frame size, frame rate, codec and encoder usage from the outgoing video stream.
+ */
+public class StatsReportParser {
+    private static final String TYPE_CANDIDATE_PAIR = "googCandidatePair";
+    private static final String TYPE_SSRC = "ssrc";
+    private static final String TYPE_VIDEO_BWE = "VideoBwe";
+    // audio levels are reported as 16 bit amplitudes
+    private static final float MAX_AUDIO_LEVEL = 32767f;
+
+    private StatsReportParser() {
+    }
+
+    /**
+     * @param previous the previous sample of the same peer, null for the first one
+     */
+    public static PeerStats parse(String sessionId, StatsReport[] statsReports, long timestampMs,
+                                  @Nullable PeerStats previous) {
+        PeerStats peerStats = new PeerStats();
+        peerStats.sessionId = sessionId;
+        peerStats.timestampMs = timestampMs;
+
+        for (StatsReport statsReport : statsReports) {
+            if (TYPE_CANDIDATE_PAIR.equals(statsReport.type)) {
+                if ("true".equals(getValue(statsReport, "googActiveConnection"))) {
+                    peerStats.rttMs = getLong(statsReport, "googRtt");
+                    peerStats.localCandidateType = getValue(statsReport, "googLocalCandidateType");
+                    peerStats.remoteCandidateType = getValue(statsReport, "googRemoteCandidateType");
+                    peerStats.transportType = getValue(statsReport, "googTransportType");
+                    peerStats.bytesSent = getLong(statsReport, "bytesSent");
+                    peerStats.bytesReceived = getLong(statsReport, "bytesReceived");
+                }
+            } else if (TYPE_SSRC.equals(statsReport.type)) {
+                boolean video = "video".equals(getValue(statsReport, "mediaType"));
+
+                if (statsReport.id.endsWith("_recv")) {
+                    peerStats.packetsReceived += getLong(statsReport, "packetsReceived");
+                    peerStats.packetsLost += getLong(statsReport, "packetsLost");
+                    if (!video) {
+                        peerStats.audioJitterMs = Math.max(peerStats.audioJitterMs,
+                                getLong(statsReport, "googJitterReceived"));
+                    }
+                } else if (statsReport.id.endsWith("_send") && video) {
+                    peerStats.frameWidthSent = (int) getLong(statsReport, "googFrameWidthSent");
+                    peerStats.frameHeightSent = (int) getLong(statsReport, "googFrameHeightSent");
+                    peerStats.framerateSent = (int) getLong(statsReport, "googFrameRateSent");
+                    peerStats.videoCodec = getValue(statsReport, "googCodecName");
+                    peerStats.encodeUsagePercent = (int) getLong(statsReport, "googEncodeUsagePercent");
+                    peerStats.cpuLimitedResolution = "true".equals(getValue(statsReport,
+                            "googCpuLimitedResolution"));
+                }
+            } else if (TYPE_VIDEO_BWE.equals(statsReport.type)) {
+                peerStats.availableSendBandwidthBps = getLong(statsReport, "googAvailableSendBandwidth");
+                peerStats.availableReceiveBandwidthBps = getLong(statsReport, "googAvailableReceiveBandwidth");
+            }
+        }
+
+        if (previous != null && timestampMs > previous.timestampMs) {
+            long elapsedMs = timestampMs - previous.timestampMs;
+            peerStats.sendBitrateBps = Math.max(0, peerStats.bytesSent - previous.bytesSent) * 8000 / elapsedMs;
+            peerStats.receiveBitrateBps = Math.max(0, peerStats.bytesReceived - previous.bytesReceived) * 8000 /
+                    elapsedMs;
+
+            long received = Math.max(0, peerStats.packetsReceived - previous.packetsReceived);
+            long lost = Math.max(0, peerStats.packetsLost - previous.packetsLost);
+            if (received + lost > 0) {
+                peerStats.packetsLostPercent = lost * 100f / (received + lost);
+            }
+        }
+
+        return peerStats;
+    }
+
+    /**
+     * The loudest audio level received from the peer, from 0 to 1, or -1 if the stats don't have any.
+     */
+    public static float getReceivedAudioLevel(StatsReport[] statsReports) {
+        return getAudioLevel(statsReports, "_recv", "audioOutputLevel");
+    }
+
+    /**
+     * The level of our own microphone as sent to the peer, from 0 to 1, or -1 if the stats don't have any.
+     */
+    public static float getSentAudioLevel(StatsReport[] statsReports) {
+        return getAudioLevel(statsReports, "_send", "audioInputLevel");
+    }
+
+    private static float getAudioLevel(StatsReport[] statsReports, String idSuffix, String name) {
+        float audioLevel = -1;
+        for (StatsReport statsReport : statsReports) {
+            if (TYPE_SSRC.equals(statsReport.type) && statsReport.id.endsWith(idSuffix)) {
+                String value = getValue(statsReport, name);
+                if (value != null) {
+                    audioLevel = Math.max(audioLevel, getLong(statsReport, name) / MAX_AUDIO_LEVEL);
+                }
+            }
+        }
+
+        return Math.min(audioLevel, 1f);
+    }
+
+    @Nullable
+    private static String getValue(StatsReport statsReport, String name) {
+        for (StatsReport.Value value : statsReport.values) {
+            if (name.equals(value.name)) {
+                return value.value;
+            }
+        }
+
+        return null;
+    }
+
+    private static long getLong(StatsReport statsReport, String name) {
+        String value = getValue(statsReport, name);
+        if (value == null) {
+            return 0;
+        }
+
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.api;
+
+import com.nextcloud.talk.api.models.json.signaling.settings.SignalingSettingsOverall;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SignalingSettingsCacheTest {
+    private static final long TTL_MS = 1000;
+    private static final String ACCOUNT = "alice@https://cloud.example.com";
+
+    private TestScheduler testScheduler;
+    private SignalingSettingsCache signalingSettingsCache;
+    private int requestCount;
+
+    @Before
+    public void setUp() {
+        testScheduler = new TestScheduler();
+        signalingSettingsCache = new SignalingSettingsCache(TTL_MS, testScheduler);
+        requestCount = 0;
+    }
+
+    @Test
+    public void answersFromCacheWithinTtl() {
+        SignalingSettingsOverall first = signalingSettingsCache.get(ACCOUNT, request()).blockingFirst();
+        testScheduler.advanceTimeBy(TTL_MS - 1, TimeUnit.MILLISECONDS);
+        SignalingSettingsOverall second = signalingSettingsCache.get(ACCOUNT, request()).blockingFirst();
+
+        assertSame(first, second);
+        assertEquals(1, requestCount);
+        assertEquals(1, signalingSettingsCache.getHits());
+        assertEquals(1, signalingSettingsCache.getMisses());
+    }
+
+    @Test
+    public void fetchesAgainAfterTtl() {
+        signalingSettingsCache.get(ACCOUNT, request()).blockingFirst();
+        testScheduler.advanceTimeBy(TTL_MS, TimeUnit.MILLISECONDS);
+
+        assertFalse(signalingSettingsCache.isFresh(ACCOUNT));
+        signalingSettingsCache.get(ACCOUNT, request()).blockingFirst();
+        assertEquals(2, requestCount);
+    }
+
+    @Test
+    public void keepsAccountsApart() {
+        signalingSettingsCache.get(ACCOUNT, request()).blockingFirst();
+        signalingSettingsCache.get("bob@https://cloud.example.com", request()).blockingFirst();
+
+        assertEquals(2, requestCount);
+        assertTrue(signalingSettingsCache.isFresh(ACCOUNT));
+    }
+
+    @Test
+    public void refreshIgnoresCache() {
+        signalingSettingsCache.get(ACCOUNT, request()).blockingFirst();
+        signalingSettingsCache.refresh(ACCOUNT, request()).blockingFirst();
+
+        assertEquals(2, requestCount);
+        assertTrue(signalingSettingsCache.isFresh(ACCOUNT));
+    }
+
+    @Test
+    public void sharesRequestInFlight() {
+        Observable<SignalingSettingsOverall> slowRequest = request().delay(100, TimeUnit.MILLISECONDS, testScheduler);
+
+        // a prefetch that nobody waits for and the call start right after it
+        signalingSettingsCache.get(ACCOUNT, slowRequest).subscribe().dispose();
+        SignalingSettingsOverall[] received = new SignalingSettingsOverall[1];
+        signalingSettingsCache.get(ACCOUNT, slowRequest).subscribe(settings -> received[0] = settings);
+
+        testScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+        assertEquals(1, requestCount);
+        assertTrue(received[0] != null);
+        assertTrue(signalingSettingsCache.isFresh(ACCOUNT));
+    }
+
+    @Test
+    public void doesNotCacheErrors() {
+        signalingSettingsCache.get(ACCOUNT, Observable.<SignalingSettingsOverall>error(new RuntimeException()))
+                .test()
+                .assertError(RuntimeException.class);
+
+        assertFalse(signalingSettingsCache.isFresh(ACCOUNT));
+        signalingSettingsCache.get(ACCOUNT, request()).test().assertValueCount(1);
+        assertEquals(1, requestCount);
+    }
+
+    private Observable<SignalingSettingsOverall> request() {
+        return Observable.fromCallable(() -> {
+            requestCount++;
+            return new SignalingSettingsOverall();
+        });
+    }
+}
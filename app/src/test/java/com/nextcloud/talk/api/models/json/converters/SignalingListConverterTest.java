@@ -0,0 +1,114 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.api.models.json.converters;
+
+import com.bluelinelabs.logansquare.LoganSquare;
+import com.fasterxml.jackson.core.JsonParser;
+import com.nextcloud.talk.api.models.json.signaling.Signaling;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SignalingListConverterTest {
+    private static final String OFFER = "{\"from\":\"a\",\"to\":\"b\",\"type\":\"offer\",\"roomType\":\"video\"}";
+
+    private static List<Signaling> parse(String json) throws IOException {
+        JsonParser jsonParser = LoganSquare.JSON_FACTORY.createParser(json);
+        jsonParser.nextToken();
+        return new SignalingListConverter().parse(jsonParser);
+    }
+
+    private static String quote(String json) {
+        return "\"" + json.replace("\"", "\\\"") + "\"";
+    }
+
+    @Test
+    public void decodesMessageSentAsString() throws IOException {
+        List<Signaling> signalings = parse("[{\"type\":\"message\",\"data\":" + quote(OFFER) + "}]");
+
+        assertEquals(1, signalings.size());
+        Signaling signaling = signalings.get(0);
+        assertEquals(SignalingListConverter.TYPE_MESSAGE, signaling.getType());
+        assertEquals("a", signaling.getSignalingMessage().getFrom());
+        assertEquals("offer", signaling.getSignalingMessage().getType());
+        assertNull(signaling.getUsersInRoom());
+    }
+
+    @Test
+    public void decodesMessageSentAsObject() throws IOException {
+        List<Signaling> signalings = parse("[{\"type\":\"message\",\"data\":" + OFFER + "}]");
+
+        assertEquals(1, signalings.size());
+        assertEquals("b", signalings.get(0).getSignalingMessage().getTo());
+        assertEquals("video", signalings.get(0).getSignalingMessage().getRoomType());
+    }
+
+    @Test
+    public void decodesDataThatComesBeforeType() throws IOException {
+        List<Signaling> signalings = parse("[{\"data\":" + quote(OFFER) + ",\"type\":\"message\"}," +
+                "{\"data\":[{\"sessionId\":\"s1\",\"inCall\":true}],\"type\":\"usersInRoom\"}]");
+
+        assertEquals(2, signalings.size());
+        assertEquals(SignalingListConverter.TYPE_MESSAGE, signalings.get(0).getType());
+        assertEquals("offer", signalings.get(0).getSignalingMessage().getType());
+        assertEquals(SignalingListConverter.TYPE_USERS_IN_ROOM, signalings.get(1).getType());
+        assertEquals("s1", signalings.get(1).getUsersInRoom().get(0).getSessionId());
+    }
+
+    @Test
+    public void decodesInCallAsBooleanOrNumber() throws IOException {
+        List<Signaling> signalings = parse("[{\"type\":\"usersInRoom\",\"data\":[" +
+                "{\"sessionId\":\"s1\",\"userId\":\"alice\",\"inCall\":true}," +
+                "{\"sessionId\":\"s2\",\"userId\":\"bob\",\"inCall\":1}," +
+                "{\"sessionId\":\"s3\",\"userId\":\"carol\",\"inCall\":0}," +
+                "{\"sessionId\":\"s4\",\"userId\":\"dave\",\"inCall\":false}]}]");
+
+        assertEquals(1, signalings.size());
+        assertEquals(4, signalings.get(0).getUsersInRoom().size());
+        assertTrue(signalings.get(0).getUsersInRoom().get(0).isInCall());
+        assertTrue(signalings.get(0).getUsersInRoom().get(1).isInCall());
+        assertFalse(signalings.get(0).getUsersInRoom().get(2).isInCall());
+        assertFalse(signalings.get(0).getUsersInRoom().get(3).isInCall());
+        assertEquals("bob", signalings.get(0).getUsersInRoom().get(1).getUserId());
+    }
+
+    @Test
+    public void skipsUnknownTypes() throws IOException {
+        List<Signaling> signalings = parse("[{\"type\":\"control\",\"data\":{\"action\":\"mute\"}}," +
+                "{\"type\":\"room\",\"data\":[\"token\"]}," +
+                "{\"type\":\"message\",\"data\":" + quote(OFFER) + "}]");
+
+        assertEquals(1, signalings.size());
+        assertEquals(SignalingListConverter.TYPE_MESSAGE, signalings.get(0).getType());
+    }
+
+    @Test
+    public void decodesEmptyList() throws IOException {
+        assertTrue(parse("[]").isEmpty());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BandwidthAllocatorTest {
+
+    @Test
+    public void splitsDefaultUplinkBetweenPeers() {
+        BandwidthAllocator bandwidthAllocator = new BandwidthAllocator();
+
+        BandwidthAllocator.Allocation one = bandwidthAllocator.setPeerCount(1);
+        assertEquals(BandwidthAllocator.MAX_VIDEO_BITRATE_BPS, one.getVideoBitrateBps());
+        assertEquals(30, one.getMaxFramerate());
+
+        BandwidthAllocator.Allocation five = bandwidthAllocator.setPeerCount(5);
+        // 2 Mbit/s * 0.85 / 5 peers - 40 kbit/s audio
+        assertEquals(300000, five.getVideoBitrateBps());
+        assertEquals(20, five.getMaxFramerate());
+        assertEquals(BandwidthAllocator.AUDIO_BITRATE_BPS, five.getAudioBitrateBps());
+    }
+
+    @Test
+    public void neverGoesBelowMinimumVideoBitrate() {
+        BandwidthAllocator bandwidthAllocator = new BandwidthAllocator();
+
+        BandwidthAllocator.Allocation allocation = bandwidthAllocator.setPeerCount(30);
+
+        assertEquals(BandwidthAllocator.MIN_VIDEO_BITRATE_BPS, allocation.getVideoBitrateBps());
+        assertEquals(15, allocation.getMaxFramerate());
+    }
+
+    @Test
+    public void unchangedPeerCountKeepsAllocation() {
+        BandwidthAllocator bandwidthAllocator = new BandwidthAllocator();
+        bandwidthAllocator.setPeerCount(3);
+
+        assertNull(bandwidthAllocator.setPeerCount(3));
+    }
+
+    @Test
+    public void congestedEstimatesBecomeTheUplink() {
+        BandwidthAllocator bandwidthAllocator = new BandwidthAllocator();
+        bandwidthAllocator.setPeerCount(4);
+
+        BandwidthAllocator.Allocation allocation = bandwidthAllocator.setSendBandwidthEstimate(800000, 4);
+
+        assertNotNull(allocation);
+        assertEquals(800000, bandwidthAllocator.getUplinkEstimateBps());
+        // 800 kbit/s * 0.85 / 4 peers - 40 kbit/s audio
+        assertEquals(130000, allocation.getVideoBitrateBps());
+    }
+
+    @Test
+    public void raisesUplinkWhileEstimatesKeepUp() {
+        BandwidthAllocator bandwidthAllocator = new BandwidthAllocator();
+        bandwidthAllocator.setPeerCount(4);
+        bandwidthAllocator.setSendBandwidthEstimate(800000, 4);
+
+        long uplinkBps = bandwidthAllocator.getUplinkEstimateBps();
+        for (int i = 0; i < 30; i++) {
+            BandwidthAllocator.Allocation allocation = bandwidthAllocator.getAllocation();
+            long keepingUpBps = 4L * (allocation.getVideoBitrateBps() + allocation.getAudioBitrateBps());
+            bandwidthAllocator.setSendBandwidthEstimate(keepingUpBps, 4);
+        }
+
+        assertTrue(bandwidthAllocator.getUplinkEstimateBps() > uplinkBps);
+        assertEquals(BandwidthAllocator.MAX_VIDEO_BITRATE_BPS, bandwidthAllocator.getAllocation().getVideoBitrateBps());
+    }
+
+    @Test
+    public void onlyReportsAllocationsThatChange() {
+        BandwidthAllocator bandwidthAllocator = new BandwidthAllocator();
+        bandwidthAllocator.setPeerCount(1);
+
+        // already at the maximum, a higher uplink doesn't change anything
+        assertNull(bandwidthAllocator.setSendBandwidthEstimate(BandwidthAllocator.MAX_VIDEO_BITRATE_BPS +
+                BandwidthAllocator.AUDIO_BITRATE_BPS, 1));
+        assertNull(bandwidthAllocator.setSendBandwidthEstimate(0, 0));
+    }
+}
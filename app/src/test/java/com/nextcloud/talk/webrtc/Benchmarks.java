@@ -0,0 +1,39 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import org.junit.Assume;
+
+/**
+ * Benchmarks are skipped unless the build is run with -Pbenchmarks, e.g.
+ * ./gradlew testDebugUnitTest -Pbenchmarks --tests '*Benchmark'. Every measured variant is a test of
+ * its own, so the timings can be compared in the test report.
+ */
+final class Benchmarks {
+    static final String PROPERTY = "talk.benchmarks";
+
+    private Benchmarks() {
+    }
+
+    static void assumeEnabled() {
+        Assume.assumeTrue("benchmarks only run with -Pbenchmarks", Boolean.getBoolean(PROPERTY));
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import com.nextcloud.talk.events.MediaStreamEvent;
+import com.nextcloud.talk.events.PeerConnectionEvent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CallEventDispatcherTest {
+    private final CallEventDispatcher callEventDispatcher = new CallEventDispatcher();
+    // tasks of the queued executor, run by hand
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    private static PeerConnectionEvent closePeer(String sessionId) {
+        return new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType.CLOSE_PEER, sessionId, null,
+                null);
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+
+    @Test
+    public void deliversToTheListenersOfTheType() {
+        List<PeerConnectionEvent> peerConnectionEvents = new ArrayList<>();
+        List<MediaStreamEvent> mediaStreamEvents = new ArrayList<>();
+        callEventDispatcher.register(CallEventDispatcher.PEER_CONNECTION, Runnable::run, peerConnectionEvents::add);
+        callEventDispatcher.register(CallEventDispatcher.MEDIA_STREAM, Runnable::run, mediaStreamEvents::add);
+
+        PeerConnectionEvent peerConnectionEvent = closePeer("peer-0");
+        callEventDispatcher.post(CallEventDispatcher.PEER_CONNECTION, peerConnectionEvent);
+        // nobody listens for these
+        callEventDispatcher.post(CallEventDispatcher.SESSION_DESCRIPTION_SEND, null);
+
+        assertEquals(Collections.singletonList(peerConnectionEvent), peerConnectionEvents);
+        assertTrue(mediaStreamEvents.isEmpty());
+    }
+
+    @Test
+    public void slowListenerDoesntHoldUpOthers() {
+        List<PeerConnectionEvent> queued = new ArrayList<>();
+        List<PeerConnectionEvent> direct = new ArrayList<>();
+        callEventDispatcher.register(CallEventDispatcher.PEER_CONNECTION, tasks::add, queued::add);
+        callEventDispatcher.register(CallEventDispatcher.PEER_CONNECTION, Runnable::run, direct::add);
+
+        callEventDispatcher.post(CallEventDispatcher.PEER_CONNECTION, closePeer("peer-0"));
+        callEventDispatcher.post(CallEventDispatcher.PEER_CONNECTION, closePeer("peer-1"));
+
+        assertEquals(2, direct.size());
+        assertTrue(queued.isEmpty());
+        // both events are drained by a single task
+        assertEquals(1, tasks.size());
+
+        runTasks();
+        assertEquals(direct, queued);
+    }
+
+    @Test
+    public void unregisteringDropsQueuedEvents() {
+        List<PeerConnectionEvent> events = new ArrayList<>();
+        CallEventDispatcher.Listener<PeerConnectionEvent> listener = events::add;
+        callEventDispatcher.register(CallEventDispatcher.PEER_CONNECTION, tasks::add, listener);
+
+        callEventDispatcher.post(CallEventDispatcher.PEER_CONNECTION, closePeer("peer-0"));
+        callEventDispatcher.unregister(CallEventDispatcher.PEER_CONNECTION, listener);
+        callEventDispatcher.post(CallEventDispatcher.PEER_CONNECTION, closePeer("peer-1"));
+        runTasks();
+
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void clearUnregistersEverybody() {
+        List<PeerConnectionEvent> events = new ArrayList<>();
+        callEventDispatcher.register(CallEventDispatcher.PEER_CONNECTION, Runnable::run, events::add);
+
+        callEventDispatcher.clear();
+        callEventDispatcher.post(CallEventDispatcher.PEER_CONNECTION, closePeer("peer-0"));
+
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void failingListenerKeepsGettingEvents() {
+        List<String> sessionIds = new ArrayList<>();
+        callEventDispatcher.register(CallEventDispatcher.PEER_CONNECTION, tasks::add, event -> {
+            sessionIds.add(event.getSessionId());
+            throw new IllegalStateException();
+        });
+
+        callEventDispatcher.post(CallEventDispatcher.PEER_CONNECTION, closePeer("peer-0"));
+        callEventDispatcher.post(CallEventDispatcher.PEER_CONNECTION, closePeer("peer-1"));
+        runTasks();
+
+        assertEquals(Arrays.asList("peer-0", "peer-1"), sessionIds);
+    }
+
+    @Test
+    public void eventsPostedByTheListenerComeAfterwards() {
+        List<String> sessionIds = new ArrayList<>();
+        callEventDispatcher.register(CallEventDispatcher.PEER_CONNECTION, Runnable::run, event -> {
+            if ("peer-0".equals(event.getSessionId())) {
+                callEventDispatcher.post(CallEventDispatcher.PEER_CONNECTION, closePeer("peer-1"));
+            }
+            sessionIds.add(event.getSessionId());
+        });
+
+        callEventDispatcher.post(CallEventDispatcher.PEER_CONNECTION, closePeer("peer-0"));
+
+        assertEquals(Arrays.asList("peer-0", "peer-1"), sessionIds);
+    }
+
+    @Test
+    public void keepsOrderOnAThreadPool() throws InterruptedException {
+        int count = 10000;
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        List<String> sessionIds = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch delivered = new CountDownLatch(count);
+        callEventDispatcher.register(CallEventDispatcher.PEER_CONNECTION, executorService, event -> {
+            sessionIds.add(event.getSessionId());
+            delivered.countDown();
+        });
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            expected.add("peer-" + i);
+            callEventDispatcher.post(CallEventDispatcher.PEER_CONNECTION, closePeer("peer-" + i));
+        }
+
+        assertTrue(delivered.await(10, TimeUnit.SECONDS));
+        executorService.shutdown();
+        assertEquals(expected, sessionIds);
+    }
+}
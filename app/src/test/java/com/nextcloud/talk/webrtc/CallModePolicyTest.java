@@ -0,0 +1,46 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CallModePolicyTest {
+
+    @Test
+    public void startsWithVideoWithEnoughBattery() {
+        assertFalse(CallModePolicy.isAudioOnlyPreferred(false, 80, false));
+        assertFalse(CallModePolicy.isAudioOnlyPreferred(false, CallModePolicy.LOW_BATTERY_PERCENT + 1, false));
+    }
+
+    @Test
+    public void startsAudioOnlyInBatterySaver() {
+        assertTrue(CallModePolicy.isAudioOnlyPreferred(true, 100, true));
+    }
+
+    @Test
+    public void startsAudioOnlyOnLowBatteryUnlessCharging() {
+        assertTrue(CallModePolicy.isAudioOnlyPreferred(false, CallModePolicy.LOW_BATTERY_PERCENT, false));
+        assertFalse(CallModePolicy.isAudioOnlyPreferred(false, CallModePolicy.LOW_BATTERY_PERCENT, true));
+    }
+}
@@ -0,0 +1,726 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import com.nextcloud.talk.api.CallApi;
+import com.nextcloud.talk.api.models.json.call.Call;
+import com.nextcloud.talk.api.models.json.call.CallOCS;
+import com.nextcloud.talk.api.models.json.call.CallOverall;
+import com.nextcloud.talk.api.models.json.converters.SignalingListConverter;
+import com.nextcloud.talk.api.models.json.generic.GenericOverall;
+import com.nextcloud.talk.api.models.json.participants.Participant;
+import com.nextcloud.talk.api.models.json.signaling.DataChannelMessage;
+import com.nextcloud.talk.api.models.json.signaling.NCIceCandidate;
+import com.nextcloud.talk.api.models.json.signaling.NCMessagePayload;
+import com.nextcloud.talk.api.models.json.signaling.NCSignalingMessage;
+import com.nextcloud.talk.api.models.json.signaling.Signaling;
+import com.nextcloud.talk.api.models.json.signaling.settings.IceServer;
+import com.nextcloud.talk.api.models.json.signaling.settings.Settings;
+import com.nextcloud.talk.api.models.json.signaling.settings.SignalingSettingsOcs;
+import com.nextcloud.talk.api.models.json.signaling.settings.SignalingSettingsOverall;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.webrtc.StatsObserver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class CallSessionTest {
+    private static final String OWN_SESSION = "own-session";
+
+    private TestScheduler testScheduler;
+    private FakeCallApi fakeCallApi;
+    private FakeSignalingTransport fakeSignalingTransport;
+    private FakeCallPeerFactory fakeCallPeerFactory;
+    private List<CallSession.CallState> callStates;
+    private List<String> removedPeers;
+    private List<BandwidthAllocator.Allocation> allocations;
+    private List<String> handovers;
+    private CallSession callSession;
+
+    @Before
+    public void setUp() {
+        testScheduler = new TestScheduler();
+        fakeCallApi = new FakeCallApi(testScheduler);
+        fakeSignalingTransport = new FakeSignalingTransport();
+        fakeCallPeerFactory = new FakeCallPeerFactory();
+        callStates = new ArrayList<>();
+        removedPeers = new ArrayList<>();
+        allocations = new ArrayList<>();
+        handovers = new ArrayList<>();
+
+        callSession = new CallSession(fakeCallApi, fakeCallPeerFactory, settings -> fakeSignalingTransport,
+                "me", "Me", CallSession.NO_CALL_SESSION, testScheduler, Schedulers.trampoline(),
+                new CallSession.CallSessionListener() {
+                    @Override
+                    public void onCallStateChanged(CallSession.CallState callState) {
+                        callStates.add(callState);
+                    }
+
+                    @Override
+                    public void onPeerAdded(CallPeer callPeer) {
+                    }
+
+                    @Override
+                    public void onPeerRemoved(String sessionId) {
+                        removedPeers.add(sessionId);
+                    }
+
+                    @Override
+                    public void onBandwidthAllocationChanged(BandwidthAllocator.Allocation allocation) {
+                        allocations.add(allocation);
+                    }
+
+                    @Override
+                    public void onHandoverFinished(boolean recovered, long elapsedMs) {
+                        handovers.add((recovered ? "recovered" : "timed out") + " after " + elapsedMs);
+                    }
+                });
+    }
+
+    @Test
+    public void startJoinsRoomAndCallThenConnectsSignaling() {
+        startCall();
+
+        assertEquals(Arrays.asList(CallSession.CallState.CONNECTING, CallSession.CallState.IN_CALL), callStates);
+        assertEquals(1, fakeCallApi.joinRoomCount);
+        assertEquals(1, fakeCallApi.joinCallCount);
+        assertEquals(1, fakeCallApi.pingCount);
+        assertEquals(OWN_SESSION, callSession.getCallSessionId());
+        assertEquals(OWN_SESSION, fakeSignalingTransport.connectedCallSessionId);
+        assertEquals(3, callSession.getIceServers().size());
+    }
+
+    @Test
+    public void fetchesSettingsWhileJoiningTheRoom() {
+        fakeCallApi.signalingSettingsLatencyMs = 300;
+        fakeCallApi.joinRoomLatencyMs = 200;
+        fakeCallApi.joinCallLatencyMs = 100;
+
+        callSession.start();
+        testScheduler.advanceTimeBy(200, TimeUnit.MILLISECONDS);
+        assertEquals(1, fakeCallApi.joinRoomCount);
+        assertEquals(0, fakeCallApi.signalingSettingsCount);
+        assertEquals(0, fakeCallApi.joinCallCount);
+
+        testScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        assertEquals(1, fakeCallApi.signalingSettingsCount);
+        assertFalse(callSession.getCallSetupTimings().isComplete());
+
+        testScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        assertEquals(CallSession.CallState.IN_CALL, callSession.getCallState());
+
+        CallSetupTimings callSetupTimings = callSession.getCallSetupTimings();
+        assertTrue(callSetupTimings.isComplete());
+        assertEquals(300, callSetupTimings.getSignalingSettingsMs());
+        assertEquals(200, callSetupTimings.getJoinRoomMs());
+        assertEquals(100, callSetupTimings.getJoinCallMs());
+        // sequential requests would have taken 600 ms
+        assertEquals(400, callSetupTimings.getTotalMs());
+    }
+
+    @Test
+    public void pingsWhileInCall() {
+        startCall();
+
+        testScheduler.advanceTimeBy(CallSession.PING_INTERVAL_MS * 3, TimeUnit.MILLISECONDS);
+        assertEquals(4, fakeCallApi.pingCount);
+
+        callSession.hangup();
+        testScheduler.triggerActions();
+        testScheduler.advanceTimeBy(CallSession.PING_INTERVAL_MS * 3, TimeUnit.MILLISECONDS);
+        assertEquals(4, fakeCallApi.pingCount);
+    }
+
+    @Test
+    public void createsAndClosesPeersOfLargeRoom() {
+        startCall();
+
+        List<Participant> roster = roster(50, true);
+        fakeSignalingTransport.deliverUsersInRoom(roster);
+        assertEquals(50, callSession.getPeers().size());
+        assertEquals(50, fakeCallPeerFactory.createdPeers.size());
+
+        // 20 participants leave the call, 10 leave the room altogether
+        List<Participant> updatedRoster = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            updatedRoster.add(ParticipantTrackerTest.participant("peer-" + i, "user-" + i, i >= 20));
+        }
+        fakeSignalingTransport.deliverUsersInRoom(updatedRoster);
+
+        assertEquals(20, callSession.getPeers().size());
+        assertEquals(30, removedPeers.size());
+        assertEquals(50, fakeCallPeerFactory.createdPeers.size());
+        for (int i = 0; i < 20; i++) {
+            assertTrue(fakeCallPeerFactory.createdPeers.get(i).closed);
+        }
+    }
+
+    @Test
+    public void reallocatesBandwidthOncePerRosterUpdate() {
+        startCall();
+
+        fakeSignalingTransport.deliverUsersInRoom(roster(5, true));
+
+        assertEquals(1, allocations.size());
+        assertEquals(5, allocations.get(0).getPeerCount());
+        for (FakeCallPeer fakeCallPeer : fakeCallPeerFactory.createdPeers) {
+            assertEquals(allocations.get(0).getVideoBitrateBps(), fakeCallPeer.videoBitrateBps);
+        }
+
+        fakeSignalingTransport.deliverUsersInRoom(roster(1, true));
+
+        assertEquals(2, allocations.size());
+        assertEquals(1, allocations.get(1).getPeerCount());
+        assertTrue(allocations.get(1).getVideoBitrateBps() > allocations.get(0).getVideoBitrateBps());
+        assertEquals(allocations.get(1).getVideoBitrateBps(), fakeCallPeerFactory.createdPeers.get(0).videoBitrateBps);
+    }
+
+    @Test
+    public void lowersBitrateWhenUplinkIsCongested() {
+        startCall();
+        fakeSignalingTransport.deliverUsersInRoom(roster(5, true));
+        int initialBitrateBps = callSession.getBandwidthAllocation().getVideoBitrateBps();
+
+        for (FakeCallPeer fakeCallPeer : fakeCallPeerFactory.createdPeers) {
+            fakeCallPeer.sendBandwidthEstimateBps = 150000;
+        }
+        testScheduler.advanceTimeBy(CallSession.BANDWIDTH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        BandwidthAllocator.Allocation allocation = callSession.getBandwidthAllocation();
+        assertTrue(allocation.getVideoBitrateBps() < initialBitrateBps);
+        assertEquals(BandwidthAllocator.MIN_VIDEO_BITRATE_BPS, allocation.getVideoBitrateBps());
+        for (FakeCallPeer fakeCallPeer : fakeCallPeerFactory.createdPeers) {
+            assertEquals(BandwidthAllocator.MIN_VIDEO_BITRATE_BPS, fakeCallPeer.videoBitrateBps);
+        }
+    }
+
+    @Test
+    public void routesSignalingMessagesToPeers() {
+        startCall();
+        fakeSignalingTransport.deliverUsersInRoom(roster(1, true));
+
+        NCSignalingMessage offer = message("peer-0", "offer");
+        offer.getPayload().setSdp("v=0");
+        offer.getPayload().setNick("Alice");
+        fakeSignalingTransport.deliverMessage(offer);
+
+        NCSignalingMessage candidate = message("peer-0", "candidate");
+        candidate.getPayload().setIceCandidate(new NCIceCandidate());
+        fakeSignalingTransport.deliverMessage(candidate);
+        fakeSignalingTransport.deliverMessage(message("peer-0", "endOfCandidates"));
+
+        FakeCallPeer fakeCallPeer = fakeCallPeerFactory.createdPeers.get(0);
+        assertEquals("offer:v=0", fakeCallPeer.remoteDescription);
+        assertEquals("Alice", fakeCallPeer.getNick());
+        assertEquals(1, fakeCallPeer.candidates);
+        assertTrue(fakeCallPeer.drained);
+    }
+
+    @Test
+    public void offerFromUnknownSessionCreatesPeer() {
+        startCall();
+
+        fakeSignalingTransport.deliverMessage(message("late-peer", "offer"));
+
+        assertNotNull(callSession.getPeer("late-peer"));
+        assertEquals(OWN_SESSION, fakeCallPeerFactory.createdPeers.get(0).localSessionId);
+    }
+
+    @Test
+    public void sendsOwnDescriptionsThroughTransport() {
+        startCall();
+
+        callSession.sendSignalingMessage("peer-0", "answer", "v=0", null);
+
+        NCSignalingMessage sent = fakeSignalingTransport.sentMessages.get(0);
+        assertEquals("peer-0", sent.getTo());
+        assertEquals("answer", sent.getType());
+        assertEquals("v=0", sent.getPayload().getSdp());
+        assertEquals("Me", sent.getPayload().getNick());
+    }
+
+    @Test
+    public void sendsChannelDataToEveryPeer() {
+        startCall();
+        fakeSignalingTransport.deliverUsersInRoom(roster(5, true));
+
+        callSession.sendChannelDataToAll(new DataChannelMessage("audioOn"));
+
+        for (FakeCallPeer fakeCallPeer : fakeCallPeerFactory.createdPeers) {
+            assertEquals(1, fakeCallPeer.channelMessages);
+        }
+    }
+
+    @Test
+    public void mergesStatusChangesWithinATick() {
+        startCall();
+        fakeSignalingTransport.deliverUsersInRoom(roster(3, true));
+
+        callSession.sendAudioStatus(false);
+        callSession.sendVideoStatus(false);
+        callSession.sendAudioStatus(true);
+        callSession.sendAudioStatus(false);
+        for (FakeCallPeer fakeCallPeer : fakeCallPeerFactory.createdPeers) {
+            assertTrue(fakeCallPeer.statuses.isEmpty());
+        }
+
+        testScheduler.triggerActions();
+        for (FakeCallPeer fakeCallPeer : fakeCallPeerFactory.createdPeers) {
+            assertEquals(Arrays.asList(DataChannelCodec.MessageType.VIDEO_OFF,
+                    DataChannelCodec.MessageType.AUDIO_OFF), fakeCallPeer.statuses);
+        }
+
+        callSession.sendVideoStatus(true);
+        testScheduler.triggerActions();
+        for (FakeCallPeer fakeCallPeer : fakeCallPeerFactory.createdPeers) {
+            assertEquals(3, fakeCallPeer.statuses.size());
+            assertEquals(DataChannelCodec.MessageType.VIDEO_ON, fakeCallPeer.statuses.get(2));
+        }
+    }
+
+    @Test
+    public void hangupClosesEverythingAndLeaves() {
+        startCall();
+        fakeSignalingTransport.deliverUsersInRoom(roster(50, true));
+
+        callSession.hangup();
+        testScheduler.triggerActions();
+
+        assertEquals(CallSession.CallState.ENDED, callSession.getCallState());
+        assertTrue(callSession.getPeers().isEmpty());
+        assertEquals(50, removedPeers.size());
+        assertTrue(fakeSignalingTransport.closed);
+        assertEquals(1, fakeCallApi.leaveCallCount);
+        assertEquals(1, fakeCallApi.leaveRoomCount);
+
+        // messages that still arrive are ignored
+        fakeSignalingTransport.deliverUsersInRoom(roster(3, true));
+        assertTrue(callSession.getPeers().isEmpty());
+    }
+
+    @Test
+    public void restartReconnectsAndRestartsIce() {
+        startCall();
+        fakeSignalingTransport.deliverUsersInRoom(roster(3, true));
+
+        callSession.restart();
+        assertEquals(CallSession.CallState.RECONNECTING, callSession.getCallState());
+        assertEquals(1, fakeSignalingTransport.reconnects);
+        // ICE doesn't wait for the settings to be refreshed
+        for (FakeCallPeer fakeCallPeer : fakeCallPeerFactory.createdPeers) {
+            assertEquals(1, fakeCallPeer.iceRestarts);
+        }
+
+        testScheduler.triggerActions();
+        assertEquals(1, fakeCallApi.refreshCount);
+        assertEquals(3, callSession.getPeers().size());
+        for (FakeCallPeer fakeCallPeer : fakeCallPeerFactory.createdPeers) {
+            assertEquals(1, fakeCallPeer.iceRestarts);
+            assertFalse(fakeCallPeer.closed);
+        }
+    }
+
+    @Test
+    public void reportsTimeToRecoverOnceEveryPeerIsConnected() {
+        startCall();
+        fakeSignalingTransport.deliverUsersInRoom(roster(2, true));
+
+        callSession.restart();
+        fakeCallPeerFactory.createdPeers.get(0).connected = true;
+        testScheduler.advanceTimeBy(CallSession.RECOVERY_CHECK_MS * 2, TimeUnit.MILLISECONDS);
+        assertEquals(CallSession.CallState.RECONNECTING, callSession.getCallState());
+        assertTrue(handovers.isEmpty());
+
+        fakeCallPeerFactory.createdPeers.get(1).connected = true;
+        testScheduler.advanceTimeBy(CallSession.RECOVERY_CHECK_MS, TimeUnit.MILLISECONDS);
+        assertEquals(CallSession.CallState.IN_CALL, callSession.getCallState());
+        assertEquals(Collections.singletonList("recovered after " + CallSession.RECOVERY_CHECK_MS * 3), handovers);
+
+        // the check stops once recovered
+        testScheduler.advanceTimeBy(CallSession.RECOVERY_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertEquals(1, handovers.size());
+    }
+
+    @Test
+    public void givesUpWaitingForPeersAfterTimeout() {
+        startCall();
+        fakeSignalingTransport.deliverUsersInRoom(roster(2, true));
+
+        callSession.restart();
+        testScheduler.advanceTimeBy(CallSession.RECOVERY_TIMEOUT_MS / 2, TimeUnit.MILLISECONDS);
+        // a second handover while recovering is timed from the first one
+        callSession.restart();
+        testScheduler.advanceTimeBy(CallSession.RECOVERY_TIMEOUT_MS / 2, TimeUnit.MILLISECONDS);
+
+        assertEquals(CallSession.CallState.IN_CALL, callSession.getCallState());
+        assertEquals(Collections.singletonList("timed out after " + CallSession.RECOVERY_TIMEOUT_MS), handovers);
+        assertEquals(2, callSession.getPeers().size());
+        for (FakeCallPeer fakeCallPeer : fakeCallPeerFactory.createdPeers) {
+            assertEquals(2, fakeCallPeer.iceRestarts);
+        }
+    }
+
+    @Test
+    public void manyRoomsSetUpAndTearDownCleanly() {
+        for (int room = 0; room < 100; room++) {
+            setUp();
+            startCall();
+            fakeSignalingTransport.deliverUsersInRoom(roster(50, true));
+            callSession.hangup();
+            testScheduler.triggerActions();
+
+            assertEquals(CallSession.CallState.ENDED, callSession.getCallState());
+            for (FakeCallPeer fakeCallPeer : fakeCallPeerFactory.createdPeers) {
+                assertTrue(fakeCallPeer.closed);
+            }
+        }
+    }
+
+    private void startCall() {
+        callSession.start();
+        testScheduler.triggerActions();
+    }
+
+    private static List<Participant> roster(int size, boolean inCall) {
+        List<Participant> participants = new ArrayList<>();
+        participants.add(ParticipantTrackerTest.participant(OWN_SESSION, "me", true));
+        for (int i = 0; i < size; i++) {
+            participants.add(ParticipantTrackerTest.participant("peer-" + i, "user-" + i, inCall));
+        }
+        return participants;
+    }
+
+    private static NCSignalingMessage message(String from, String type) {
+        NCMessagePayload ncMessagePayload = new NCMessagePayload();
+        ncMessagePayload.setType(type);
+
+        NCSignalingMessage ncSignalingMessage = new NCSignalingMessage();
+        ncSignalingMessage.setFrom(from);
+        ncSignalingMessage.setType(type);
+        ncSignalingMessage.setRoomType("video");
+        ncSignalingMessage.setPayload(ncMessagePayload);
+        return ncSignalingMessage;
+    }
+
+    private static class FakeCallApi implements CallApi {
+        private final TestScheduler testScheduler;
+
+        long signalingSettingsLatencyMs;
+        long joinRoomLatencyMs;
+        long joinCallLatencyMs;
+
+        int signalingSettingsCount;
+        int refreshCount;
+        int joinRoomCount;
+        int joinCallCount;
+        int pingCount;
+        int leaveCallCount;
+        int leaveRoomCount;
+
+        FakeCallApi(TestScheduler testScheduler) {
+            this.testScheduler = testScheduler;
+        }
+
+        @Override
+        public Observable<SignalingSettingsOverall> getSignalingSettings() {
+            return withLatency(Observable.fromCallable(() -> {
+                signalingSettingsCount++;
+                return signalingSettings();
+            }), signalingSettingsLatencyMs);
+        }
+
+        @Override
+        public Observable<SignalingSettingsOverall> refreshSignalingSettings() {
+            return Observable.fromCallable(() -> {
+                refreshCount++;
+                return signalingSettings();
+            });
+        }
+
+        private <T> Observable<T> withLatency(Observable<T> observable, long latencyMs) {
+            return observable.delaySubscription(latencyMs, TimeUnit.MILLISECONDS, testScheduler);
+        }
+
+        private static SignalingSettingsOverall signalingSettings() {
+            IceServer stunServer = new IceServer();
+            stunServer.setUrl("stun:stun.example.com:443");
+
+            IceServer turnServer = new IceServer();
+            turnServer.setUrls(Arrays.asList("turn:turn.example.com:3478?transport=udp",
+                    "turn:turn.example.com:3478?transport=tcp"));
+            turnServer.setUsername("user");
+            turnServer.setCredential("secret");
+
+            Settings settings = new Settings();
+            settings.setStunServers(Collections.singletonList(stunServer));
+            settings.setTurnServers(Collections.singletonList(turnServer));
+
+            SignalingSettingsOcs signalingSettingsOcs = new SignalingSettingsOcs();
+            signalingSettingsOcs.setSettings(settings);
+
+            SignalingSettingsOverall signalingSettingsOverall = new SignalingSettingsOverall();
+            signalingSettingsOverall.setOcs(signalingSettingsOcs);
+            return signalingSettingsOverall;
+        }
+
+        @Override
+        public Observable<CallOverall> joinRoom() {
+            return withLatency(Observable.fromCallable(() -> {
+                joinRoomCount++;
+                Call call = new Call();
+                call.setSessionId(OWN_SESSION);
+                CallOCS callOCS = new CallOCS();
+                callOCS.setData(call);
+                CallOverall callOverall = new CallOverall();
+                callOverall.setOcs(callOCS);
+                return callOverall;
+            }), joinRoomLatencyMs);
+        }
+
+        @Override
+        public Observable<GenericOverall> leaveRoom() {
+            return Observable.fromCallable(() -> {
+                leaveRoomCount++;
+                return new GenericOverall();
+            });
+        }
+
+        @Override
+        public Observable<GenericOverall> joinCall() {
+            return withLatency(Observable.fromCallable(() -> {
+                joinCallCount++;
+                return new GenericOverall();
+            }), joinCallLatencyMs);
+        }
+
+        @Override
+        public Observable<GenericOverall> leaveCall() {
+            return Observable.fromCallable(() -> {
+                leaveCallCount++;
+                return new GenericOverall();
+            });
+        }
+
+        @Override
+        public Observable<GenericOverall> pingCall() {
+            return Observable.fromCallable(() -> {
+                pingCount++;
+                return new GenericOverall();
+            });
+        }
+    }
+
+    private static class FakeSignalingTransport implements SignalingTransport {
+        final List<NCSignalingMessage> sentMessages = new ArrayList<>();
+        String connectedCallSessionId;
+        SignalingTransportListener signalingTransportListener;
+        boolean connected;
+        boolean closed;
+        int reconnects;
+
+        void deliverUsersInRoom(List<Participant> participants) {
+            Signaling signaling = new Signaling();
+            signaling.setType(SignalingListConverter.TYPE_USERS_IN_ROOM);
+            signaling.setUsersInRoom(participants);
+            signalingTransportListener.onSignalingMessages(Collections.singletonList(signaling));
+        }
+
+        void deliverMessage(NCSignalingMessage ncSignalingMessage) {
+            Signaling signaling = new Signaling();
+            signaling.setType(SignalingListConverter.TYPE_MESSAGE);
+            signaling.setSignalingMessage(ncSignalingMessage);
+            signalingTransportListener.onSignalingMessages(Collections.singletonList(signaling));
+        }
+
+        @Override
+        public void connect(String callSessionId, SignalingTransportListener signalingTransportListener) {
+            this.connectedCallSessionId = callSessionId;
+            this.signalingTransportListener = signalingTransportListener;
+            connected = true;
+        }
+
+        @Override
+        public void send(NCSignalingMessage ncSignalingMessage) {
+            sentMessages.add(ncSignalingMessage);
+        }
+
+        @Override
+        public void reconnect() {
+            reconnects++;
+        }
+
+        @Override
+        public void disconnect() {
+            connected = false;
+        }
+
+        @Override
+        public void close() {
+            connected = false;
+            closed = true;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public String getSessionId() {
+            return connectedCallSessionId;
+        }
+    }
+
+    private static class FakeCallPeerFactory implements CallPeerFactory {
+        final List<FakeCallPeer> createdPeers = new ArrayList<>();
+
+        @Override
+        public CallPeer createPeer(String sessionId, String localSessionId, List<IceServer> iceServers) {
+            FakeCallPeer fakeCallPeer = new FakeCallPeer(sessionId, localSessionId);
+            createdPeers.add(fakeCallPeer);
+            return fakeCallPeer;
+        }
+    }
+
+    private static class FakeCallPeer implements CallPeer {
+        final String sessionId;
+        final String localSessionId;
+        String nick;
+        String remoteDescription;
+        int candidates;
+        int channelMessages;
+        final List<DataChannelCodec.MessageType> statuses = new ArrayList<>();
+        int iceRestarts;
+        boolean connected = true;
+        boolean drained;
+        boolean closed;
+        int videoBitrateBps;
+        long sendBandwidthEstimateBps;
+
+        FakeCallPeer(String sessionId, String localSessionId) {
+            this.sessionId = sessionId;
+            this.localSessionId = localSessionId;
+        }
+
+        @Override
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        @Override
+        public String getNick() {
+            return nick;
+        }
+
+        @Override
+        public String getVideoCodec() {
+            return null;
+        }
+
+        @Override
+        public void setSendBitrates(int videoBitrateBps, int audioBitrateBps) {
+            this.videoBitrateBps = videoBitrateBps;
+        }
+
+        @Override
+        public long getSendBandwidthEstimateBps() {
+            return sendBandwidthEstimateBps;
+        }
+
+        @Override
+        public void setSendBandwidthEstimateBps(long sendBandwidthEstimateBps) {
+            this.sendBandwidthEstimateBps = sendBandwidthEstimateBps;
+        }
+
+        @Override
+        public void getStats(StatsObserver statsObserver) {
+        }
+
+        @Override
+        public void getAudioStats(boolean local, StatsObserver statsObserver) {
+        }
+
+        @Override
+        public void setNick(String nick) {
+            this.nick = nick;
+        }
+
+        @Override
+        public void setRemoteDescription(String type, String sdp) {
+            remoteDescription = type + ":" + sdp;
+        }
+
+        @Override
+        public void addCandidate(NCIceCandidate ncIceCandidate) {
+            candidates++;
+        }
+
+        @Override
+        public void drainIceCandidates() {
+            drained = true;
+        }
+
+        @Override
+        public void sendChannelData(DataChannelMessage dataChannelMessage) {
+            channelMessages++;
+        }
+
+        @Override
+        public void sendStatus(DataChannelCodec.MessageType messageType) {
+            statuses.add(messageType);
+        }
+
+        @Override
+        public void requestVideoPaused(boolean paused) {
+            statuses.add(DataChannelCodec.MessageType.videoPaused(paused));
+        }
+
+        @Override
+        public void restartIce(List<IceServer> iceServers) {
+            iceRestarts++;
+            connected = false;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CaptureQualityControllerTest {
+    private float load;
+    private List<CaptureQualityController.CaptureFormat> changes;
+    private CaptureQualityController captureQualityController;
+
+    @Before
+    public void setUp() {
+        load = 0.5f;
+        changes = new ArrayList<>();
+        captureQualityController = new CaptureQualityController(() -> load, changes::add);
+    }
+
+    @Test
+    public void stepsDownAsTheMeshGrows() {
+        captureQualityController.setPeerCount(1);
+        assertEquals(CaptureQualityController.LEVELS[0], captureQualityController.getCaptureFormat());
+        assertTrue(changes.isEmpty());
+
+        captureQualityController.setPeerCount(2);
+        captureQualityController.setPeerCount(4);
+        captureQualityController.setPeerCount(10);
+
+        assertEquals(3, changes.size());
+        assertEquals(CaptureQualityController.LEVELS[4], captureQualityController.getCaptureFormat());
+
+        captureQualityController.setPeerCount(1);
+        assertEquals(CaptureQualityController.LEVELS[0], captureQualityController.getCaptureFormat());
+    }
+
+    @Test
+    public void stepsDownOnOveruseAndBackUpAfterRecovery() {
+        captureQualityController.setPeerCount(2);
+        changes.clear();
+
+        load = 0.9f;
+        sample(CaptureQualityController.OVERUSE_SAMPLES - 1);
+        assertTrue(changes.isEmpty());
+        sample(1);
+        assertEquals(CaptureQualityController.LEVELS[2], captureQualityController.getCaptureFormat());
+
+        load = 0.2f;
+        sample(CaptureQualityController.UNDERUSE_SAMPLES - 1);
+        assertEquals(1, changes.size());
+        sample(1);
+        assertEquals(CaptureQualityController.LEVELS[1], captureQualityController.getCaptureFormat());
+
+        // never above what two peers allow
+        sample(CaptureQualityController.UNDERUSE_SAMPLES * 3);
+        assertEquals(CaptureQualityController.LEVELS[1], captureQualityController.getCaptureFormat());
+    }
+
+    @Test
+    public void moderateLoadKeepsFormat() {
+        load = 0.9f;
+        sample(1);
+        load = 0.6f;
+        sample(1);
+        load = 0.9f;
+        sample(1);
+
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void stopsAtLowestLevel() {
+        captureQualityController.setPeerCount(10);
+        load = 1f;
+        sample(CaptureQualityController.OVERUSE_SAMPLES * 5);
+
+        assertEquals(CaptureQualityController.LEVELS[CaptureQualityController.LEVELS.length - 1],
+                captureQualityController.getCaptureFormat());
+        assertEquals(1, changes.size());
+    }
+
+    @Test
+    public void capsFramerate() {
+        captureQualityController.setMaxFramerate(15);
+
+        CaptureQualityController.CaptureFormat captureFormat = captureQualityController.getCaptureFormat();
+        assertEquals(1280, captureFormat.getWidth());
+        assertEquals(15, captureFormat.getFramerate());
+        assertEquals(1, changes.size());
+    }
+
+    @Test
+    public void ignoresUnknownLoad() {
+        load = -1;
+        sample(CaptureQualityController.OVERUSE_SAMPLES * 3);
+
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void samplesPeriodicallyUntilStopped() {
+        TestScheduler testScheduler = new TestScheduler();
+        load = 0.9f;
+
+        captureQualityController.start(testScheduler);
+        testScheduler.advanceTimeBy(CaptureQualityController.SAMPLE_INTERVAL_MS *
+                CaptureQualityController.OVERUSE_SAMPLES, TimeUnit.MILLISECONDS);
+        assertEquals(1, changes.size());
+
+        captureQualityController.stop();
+        testScheduler.advanceTimeBy(CaptureQualityController.SAMPLE_INTERVAL_MS * 10, TimeUnit.MILLISECONDS);
+        assertEquals(1, changes.size());
+    }
+
+    @Test
+    public void thumbnailsCaptureLessInLargerCalls() {
+        captureQualityController.setPeerCount(2);
+        captureQualityController.setActiveSpeaker(false);
+        // nobody shows us as a thumbnail with two peers
+        assertEquals(CaptureQualityController.LEVELS[1], captureQualityController.getCaptureFormat());
+
+        captureQualityController.setPeerCount(3);
+        assertEquals(CaptureQualityController.LEVELS[3], captureQualityController.getCaptureFormat());
+
+        captureQualityController.setActiveSpeaker(true);
+        assertEquals(CaptureQualityController.LEVELS[2], captureQualityController.getCaptureFormat());
+
+        captureQualityController.setPeerCount(10);
+        captureQualityController.setActiveSpeaker(false);
+        assertEquals(CaptureQualityController.LEVELS[CaptureQualityController.LEVELS.length - 1],
+                captureQualityController.getCaptureFormat());
+    }
+
+    @Test
+    public void changesReachTheListenerInOrder() throws InterruptedException {
+        Thread[] newerChange = new Thread[1];
+        captureQualityController = new CaptureQualityController(() -> load, captureFormat -> {
+            if (newerChange[0] == null) {
+                // another thread changes the format while the listener is still busy with the first change
+                newerChange[0] = new Thread(() -> captureQualityController.setPeerCount(4));
+                newerChange[0].start();
+                try {
+                    newerChange[0].join(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            changes.add(captureFormat);
+        });
+
+        captureQualityController.setPeerCount(2);
+        newerChange[0].join();
+
+        assertEquals(Arrays.asList(CaptureQualityController.LEVELS[1], CaptureQualityController.LEVELS[2]), changes);
+    }
+
+    private void sample(int times) {
+        for (int i = 0; i < times; i++) {
+            captureQualityController.sampleLoad();
+        }
+    }
+}
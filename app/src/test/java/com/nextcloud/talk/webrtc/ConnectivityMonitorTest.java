@@ -0,0 +1,175 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectivityMonitorTest {
+    private TestScheduler testScheduler;
+    private FakeNetworkSource fakeNetworkSource;
+    private List<String> handovers;
+    private ConnectivityMonitor connectivityMonitor;
+
+    @Before
+    public void setUp() {
+        testScheduler = new TestScheduler();
+        fakeNetworkSource = new FakeNetworkSource();
+        fakeNetworkSource.networkId = "wifi";
+        handovers = new ArrayList<>();
+        connectivityMonitor = new ConnectivityMonitor(fakeNetworkSource, testScheduler, handovers::add);
+        connectivityMonitor.start();
+    }
+
+    @Test
+    public void reportsSwitchToAnotherNetwork() {
+        switchTo("lte");
+
+        assertEquals(Collections.singletonList("lte"), handovers);
+    }
+
+    @Test
+    public void ignoresChangesThatKeepTheNetwork() {
+        switchTo("wifi");
+
+        assertTrue(handovers.isEmpty());
+    }
+
+    @Test
+    public void waitsForChangesToSettle() {
+        fakeNetworkSource.networkId = null;
+        fakeNetworkSource.change();
+        testScheduler.advanceTimeBy(ConnectivityMonitor.SETTLE_MS / 2, TimeUnit.MILLISECONDS);
+        fakeNetworkSource.networkId = "lte";
+        fakeNetworkSource.change();
+        testScheduler.advanceTimeBy(ConnectivityMonitor.SETTLE_MS / 2, TimeUnit.MILLISECONDS);
+        assertTrue(handovers.isEmpty());
+
+        fakeNetworkSource.networkId = "wifi";
+        fakeNetworkSource.change();
+        testScheduler.advanceTimeBy(ConnectivityMonitor.SETTLE_MS, TimeUnit.MILLISECONDS);
+
+        // wifi was only gone for a moment
+        assertTrue(handovers.isEmpty());
+    }
+
+    @Test
+    public void reportsSameNetworkComingBackAfterLoss() {
+        switchTo(null);
+        assertTrue(handovers.isEmpty());
+
+        switchTo("wifi");
+        switchTo("lte");
+
+        assertEquals(Arrays.asList("wifi", "lte"), handovers);
+    }
+
+    @Test
+    public void ignoresAddressChangesThatKeepTheNetwork() throws UnknownHostException {
+        switchTo(networkId(new String[]{"192.168.1.20", "2001:db8::20", "2001:db8::9c1f:1", "fe80::20"},
+                new int[]{0, 0, ConnectivityNetworkSource.IFA_F_TEMPORARY, 0}));
+        handovers.clear();
+
+        // a new privacy address, the previous one deprecated, and another link-local address
+        switchTo(networkId(new String[]{"fe80::21", "2001:db8::20", "2001:db8::9c1f:1", "2001:db8::4e2a:7",
+                        "fe80::20", "192.168.1.20"},
+                new int[]{0, 0, ConnectivityNetworkSource.IFA_F_TEMPORARY | ConnectivityNetworkSource.IFA_F_DEPRECATED,
+                        ConnectivityNetworkSource.IFA_F_TEMPORARY, 0, 0}));
+        assertTrue(handovers.isEmpty());
+
+        // renumbered by the router
+        switchTo(networkId(new String[]{"192.168.1.20", "2001:db8:1::20"}, new int[]{0, 0}));
+        assertEquals(1, handovers.size());
+    }
+
+    @Test
+    public void stopsListening() {
+        fakeNetworkSource.networkId = "lte";
+        fakeNetworkSource.change();
+        connectivityMonitor.stop();
+        testScheduler.advanceTimeBy(ConnectivityMonitor.SETTLE_MS, TimeUnit.MILLISECONDS);
+
+        assertTrue(handovers.isEmpty());
+        assertFalse(fakeNetworkSource.started);
+    }
+
+    /**
+     * The id ConnectivityNetworkSource reports for network 100 with the given addresses and address flags.
+     */
+    private static String networkId(String[] addresses, int[] flags) throws UnknownHostException {
+        List<InetAddress> stableAddresses = new ArrayList<>();
+        for (int i = 0; i < addresses.length; i++) {
+            InetAddress inetAddress = InetAddress.getByName(addresses[i]);
+            if (ConnectivityNetworkSource.isStableAddress(inetAddress, flags[i])) {
+                stableAddresses.add(inetAddress);
+            }
+        }
+        return ConnectivityNetworkSource.getNetworkId("100", stableAddresses);
+    }
+
+    private void switchTo(String networkId) {
+        fakeNetworkSource.networkId = networkId;
+        fakeNetworkSource.change();
+        testScheduler.advanceTimeBy(ConnectivityMonitor.SETTLE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static class FakeNetworkSource implements ConnectivityMonitor.NetworkSource {
+        String networkId;
+        Runnable onChange;
+        boolean started;
+
+        void change() {
+            if (started) {
+                onChange.run();
+            }
+        }
+
+        @Override
+        public String getDefaultNetworkId() {
+            return networkId;
+        }
+
+        @Override
+        public void start(Runnable onChange) {
+            this.onChange = onChange;
+            started = true;
+        }
+
+        @Override
+        public void stop() {
+            started = false;
+        }
+    }
+}
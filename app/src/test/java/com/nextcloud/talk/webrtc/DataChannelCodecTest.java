@@ -0,0 +1,125 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import com.nextcloud.talk.api.models.json.signaling.DataChannelMessage;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DataChannelCodecTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static ByteBuffer buffer(String json) {
+        return ByteBuffer.wrap(json.getBytes(UTF_8));
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    @Test
+    public void decodesKnownTypes() {
+        for (DataChannelCodec.MessageType messageType : DataChannelCodec.MessageType.values()) {
+            if (messageType != DataChannelCodec.MessageType.UNKNOWN) {
+                assertEquals(messageType, DataChannelCodec.decodeType(
+                        buffer("{\"type\":\"" + messageType.getName() + "\"}")));
+            }
+        }
+    }
+
+    @Test
+    public void decodesRegardlessOfWhitespaceAndKeyOrder() {
+        assertEquals(DataChannelCodec.MessageType.VIDEO_OFF, DataChannelCodec.decodeType(
+                buffer(" {\n \"payload\" : {\"type\": \"audioOn\", \"list\": [1, \"}\"]},\t\"type\" : \"videoOff\"}")));
+        assertEquals(DataChannelCodec.MessageType.AUDIO_ON, DataChannelCodec.decodeType(
+                buffer("{\"id\":12,\"flag\":true,\"type\":\"audioOn\"}")));
+    }
+
+    @Test
+    public void doesNotMoveThePosition() {
+        ByteBuffer buffer = buffer("xx{\"type\":\"audioOff\"}");
+        buffer.position(2);
+
+        assertEquals(DataChannelCodec.MessageType.AUDIO_OFF, DataChannelCodec.decodeType(buffer));
+        assertEquals(2, buffer.position());
+    }
+
+    @Test
+    public void unknownAndMalformedMessages() {
+        String[] messages = {
+                "{\"type\":\"speaking\"}",
+                "{\"type\":\"audio",
+                "{\"type\" \"audioOn\"}",
+                "[\"audioOn\"]",
+                "",
+                "{\"type\":1}"
+        };
+
+        for (String message : messages) {
+            assertEquals(DataChannelCodec.MessageType.UNKNOWN, DataChannelCodec.decodeType(buffer(message)));
+        }
+    }
+
+    @Test
+    public void decodesNicks() {
+        assertEquals("Alice", DataChannelCodec.decodeNick(
+                buffer("{\"type\":\"nickChanged\",\"payload\":\"Alice\"}")));
+        assertEquals("Bob", DataChannelCodec.decodeNick(
+                buffer("{\"type\":\"nickChanged\",\"payload\":{\"userid\":\"bob\",\"name\":\"Bob\"}}")));
+        assertEquals("Zoë \"Z\"\n", DataChannelCodec.decodeNick(
+                buffer("{\"type\":\"nickChanged\",\"payload\":\"Zo\\u00eb \\\"Z\\\"\\n\"}")));
+        assertEquals("Zoë", DataChannelCodec.decodeNick(
+                buffer("{\"type\":\"nickChanged\",\"payload\":\"Zoë\"}")));
+        assertNull(DataChannelCodec.decodeNick(buffer("{\"type\":\"nickChanged\"}")));
+    }
+
+    @Test
+    public void encodesMessagesLikeWebClients() {
+        assertEquals("{\"type\":\"videoOn\"}",
+                string(DataChannelCodec.encode(DataChannelCodec.MessageType.VIDEO_ON)));
+        assertEquals("{\"type\":\"audioOff\"}", string(DataChannelCodec.encode(new DataChannelMessage("audioOff"))));
+
+        DataChannelMessage dataChannelMessage = new DataChannelMessage("nickChanged");
+        dataChannelMessage.setPayload("A \"quoted\" \\ nick");
+        ByteBuffer encoded = DataChannelCodec.encode(dataChannelMessage);
+        assertEquals("{\"type\":\"nickChanged\",\"payload\":\"A \\\"quoted\\\" \\\\ nick\"}", string(encoded));
+        assertEquals(DataChannelCodec.MessageType.NICK_CHANGED, DataChannelCodec.decodeType(encoded));
+        assertEquals("A \"quoted\" \\ nick", DataChannelCodec.decodeNick(encoded));
+    }
+
+    @Test
+    public void sharedStatusBuffersAreReadOnly() {
+        ByteBuffer first = DataChannelCodec.encode(DataChannelCodec.MessageType.AUDIO_ON);
+        first.get(new byte[first.remaining()]);
+
+        assertEquals("{\"type\":\"audioOn\"}",
+                string(DataChannelCodec.encode(DataChannelCodec.MessageType.AUDIO_ON)));
+        assertEquals(true, first.isReadOnly());
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import com.github.aurae.retrofit2.LoganSquareConverterFactory;
+import com.nextcloud.talk.api.NcApi;
+
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.OkHttpClient;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+
+public class HttpSignalingTransportTest extends SignalingTransportConformanceTest {
+
+    @Override
+    SignalingStandInServer createStandInServer() {
+        return new SignalingStandInServer.Http();
+    }
+
+    @Override
+    SignalingTransport createTransport(SignalingStandInServer signalingStandInServer) {
+        NcApi ncApi = new Retrofit.Builder()
+                .client(new OkHttpClient())
+                .baseUrl(signalingStandInServer.mockWebServer.url("/"))
+                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                .addConverterFactory(LoganSquareConverterFactory.create())
+                .build()
+                .create(NcApi.class);
+
+        return new HttpSignalingTransport(ncApi, "credentials",
+                ((SignalingStandInServer.Http) signalingStandInServer).getSignalingUrl(), Schedulers.io(),
+                Schedulers.single());
+    }
+}
@@ -40,10 +40,17 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-public class MagicWebRTCUtils {
-    private static final String TAG = "MagicWebRTCUtils";
+/**
+ * A copy of MagicWebRTCUtils.preferCodec as it was before SdpRewriter replaced it, kept as the baseline
+ * for SdpRewriterBenchmark.
+ */
+class LegacyPreferCodec {
+    private static final String TAG = "LegacyPreferCodec";
+
+    private LegacyPreferCodec() {
+    }
 
-    public static String preferCodec(String sdpDescription, String codec, boolean isAudio) {
+    static String preferCodec(String sdpDescription, String codec, boolean isAudio) {
         final String[] lines = sdpDescription.split("\r\n");
         final int mLineIndex = findMediaDescriptionLine(isAudio, lines);
         if (mLineIndex == -1) {
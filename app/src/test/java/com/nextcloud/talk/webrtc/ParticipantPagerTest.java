@@ -0,0 +1,180 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ParticipantPagerTest {
+
+    private static ParticipantPager pager(int tilesPerPage, int participants) {
+        ParticipantPager participantPager = new ParticipantPager(tilesPerPage);
+        for (int i = 0; i < participants; i++) {
+            participantPager.add("peer-" + i);
+        }
+        return participantPager;
+    }
+
+    @Test
+    public void tilesPerPageFollowScreenSize() {
+        // phone in portrait and landscape
+        assertEquals(6, ParticipantPager.getTilesPerPage(360, 640));
+        assertEquals(6, ParticipantPager.getTilesPerPage(640, 360));
+        // small phone
+        assertEquals(2, ParticipantPager.getTilesPerPage(320, 400));
+        // tablet
+        assertEquals(ParticipantPager.MAX_TILES_PER_PAGE, ParticipantPager.getTilesPerPage(800, 1280));
+        assertEquals(1, ParticipantPager.getTilesPerPage(100, 100));
+    }
+
+    @Test
+    public void gridFollowsOrientation() {
+        assertEquals(1, ParticipantPager.getColumns(1, false));
+        assertEquals(1, ParticipantPager.getColumns(2, false));
+        assertEquals(2, ParticipantPager.getRows(2, false));
+        assertEquals(2, ParticipantPager.getColumns(2, true));
+        assertEquals(1, ParticipantPager.getRows(2, true));
+        assertEquals(2, ParticipantPager.getColumns(6, false));
+        assertEquals(3, ParticipantPager.getRows(6, false));
+        assertEquals(3, ParticipantPager.getColumns(6, true));
+        assertEquals(3, ParticipantPager.getColumns(9, false));
+        assertEquals(3, ParticipantPager.getRows(9, true));
+    }
+
+    @Test
+    public void onlyTheCurrentPageIsVisible() {
+        ParticipantPager participantPager = pager(4, 10);
+
+        assertEquals(3, participantPager.getPageCount());
+        assertEquals(Arrays.asList("peer-0", "peer-1", "peer-2", "peer-3"), participantPager.getVisibleSessionIds());
+        assertFalse(participantPager.isVisible("peer-4"));
+
+        assertTrue(participantPager.nextPage());
+        assertTrue(participantPager.nextPage());
+        assertFalse(participantPager.nextPage());
+        assertEquals(Arrays.asList("peer-8", "peer-9"), participantPager.getVisibleSessionIds());
+        assertTrue(participantPager.isVisible("peer-9"));
+        assertFalse(participantPager.isVisible("peer-0"));
+        assertFalse(participantPager.isVisible("nobody"));
+    }
+
+    @Test
+    public void addingReportsVisibility() {
+        ParticipantPager participantPager = pager(2, 1);
+
+        assertTrue(participantPager.add("second"));
+        assertFalse(participantPager.add("third"));
+        assertFalse(participantPager.add("second"));
+        assertEquals(3, participantPager.size());
+    }
+
+    @Test
+    public void removingFromTheLastPageMovesBack() {
+        ParticipantPager participantPager = pager(4, 5);
+        participantPager.setPage(1);
+
+        // peer-0 was not visible, but the second page is gone now
+        assertTrue(participantPager.remove("peer-0"));
+        assertEquals(0, participantPager.getCurrentPage());
+        assertEquals(1, participantPager.getPageCount());
+        assertFalse(participantPager.remove("nobody"));
+    }
+
+    @Test
+    public void removingAHiddenParticipantKeepsThePage() {
+        ParticipantPager participantPager = pager(4, 10);
+
+        assertFalse(participantPager.remove("peer-9"));
+        assertTrue(participantPager.remove("peer-1"));
+        assertEquals(Arrays.asList("peer-0", "peer-2", "peer-3", "peer-4"), participantPager.getVisibleSessionIds());
+    }
+
+    @Test
+    public void resizingKeepsTheFirstTileInView() {
+        ParticipantPager participantPager = pager(4, 10);
+        participantPager.setPage(2);
+
+        assertTrue(participantPager.setTilesPerPage(6));
+        assertEquals(1, participantPager.getCurrentPage());
+        assertTrue(participantPager.isVisible("peer-8"));
+        assertFalse(participantPager.setTilesPerPage(6));
+    }
+
+    @Test
+    public void emptyPager() {
+        ParticipantPager participantPager = new ParticipantPager(0);
+
+        assertEquals(1, participantPager.getTilesPerPage());
+        assertEquals(1, participantPager.getPageCount());
+        assertEquals(Collections.<String>emptyList(), participantPager.getVisibleSessionIds());
+        assertFalse(participantPager.nextPage());
+    }
+
+    @Test
+    public void activeSpeakerIsFirstOnEveryPage() {
+        ParticipantPager participantPager = pager(4, 10);
+
+        assertTrue(participantPager.setActiveSpeaker("peer-7"));
+        assertFalse(participantPager.setActiveSpeaker("peer-7"));
+        assertTrue(participantPager.hasActiveSpeakerTile());
+        assertEquals(Arrays.asList("peer-7", "peer-0", "peer-1", "peer-2"), participantPager.getVisibleSessionIds());
+        // nine others, three per page
+        assertEquals(3, participantPager.getPageCount());
+
+        participantPager.setPage(2);
+        assertEquals(Arrays.asList("peer-7", "peer-6", "peer-8", "peer-9"), participantPager.getVisibleSessionIds());
+        assertTrue(participantPager.isVisible("peer-7"));
+    }
+
+    @Test
+    public void activeSpeakerNeedsATileToSpare() {
+        ParticipantPager participantPager = pager(1, 3);
+        participantPager.setActiveSpeaker("peer-2");
+        assertFalse(participantPager.hasActiveSpeakerTile());
+        assertEquals(Collections.singletonList("peer-0"), participantPager.getVisibleSessionIds());
+
+        participantPager = pager(4, 1);
+        participantPager.setActiveSpeaker("peer-0");
+        assertFalse(participantPager.hasActiveSpeakerTile());
+        assertEquals(Collections.singletonList("peer-0"), participantPager.getVisibleSessionIds());
+
+        // without video there is no tile to pin
+        participantPager.setActiveSpeaker("audio-only");
+        assertFalse(participantPager.hasActiveSpeakerTile());
+    }
+
+    @Test
+    public void removingTheActiveSpeaker() {
+        ParticipantPager participantPager = pager(4, 10);
+        participantPager.setActiveSpeaker("peer-9");
+
+        assertTrue(participantPager.remove("peer-9"));
+        assertNull(participantPager.getActiveSpeaker());
+        assertEquals(Arrays.asList("peer-0", "peer-1", "peer-2", "peer-3"), participantPager.getVisibleSessionIds());
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import com.nextcloud.talk.api.models.json.participants.Participant;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the removeAll based roster diff that CallActivity used to do with the ParticipantTracker, for
+ * rosters where a few participants change between updates. Both have to end up with the same peers, and
+ * the tracker has to report exactly the participants that changed. See Benchmarks for how to run it.
+ */
+@RunWith(Parameterized.class)
+public class ParticipantTrackerBenchmark {
+    private static final int UPDATES = 200;
+    private static final int WARMUP_UPDATES = 50;
+
+    private final int rosterSize;
+    private List<List<Participant>> rosters;
+    // updates in which the participant that flips inCall is the one that just joined
+    private int togglesOfNewParticipants;
+    private Set<String> expectedPeers;
+
+    public ParticipantTrackerBenchmark(int rosterSize) {
+        this.rosterSize = rosterSize;
+    }
+
+    @Parameterized.Parameters(name = "{0} participants")
+    public static Collection<Object[]> rosterSizes() {
+        return Arrays.asList(new Object[][]{{30}, {300}, {3000}});
+    }
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+
+        // warms up both code paths on rosters of the same size
+        buildRosters(WARMUP_UPDATES);
+        runRemoveAll();
+        runTracker();
+
+        buildRosters(UPDATES);
+        expectedPeers = new HashSet<>();
+        for (Participant participant : rosters.get(rosters.size() - 1)) {
+            if (participant.isInCall()) {
+                expectedPeers.add(participant.getSessionId());
+            }
+        }
+    }
+
+    @Test
+    public void removeAll() {
+        assertEquals(expectedPeers, runRemoveAll());
+    }
+
+    @Test
+    public void tracker() {
+        int[] counts = new int[3];
+        Set<String> peers = runTracker(counts);
+
+        assertEquals(expectedPeers, peers);
+        // everybody joins with the first roster, then one guest joins and one leaves per update
+        assertEquals(rosterSize + UPDATES - 1, counts[0]);
+        assertEquals(UPDATES - 1, counts[1]);
+        // one participant flips inCall per update, unless it's the guest that only just joined
+        assertEquals(UPDATES - 1 - togglesOfNewParticipants, counts[2]);
+    }
+
+    private Set<String> runRemoveAll() {
+        Set<String> peers = new HashSet<>();
+
+        for (List<Participant> roster : rosters) {
+            List<String> newSessions = new ArrayList<>();
+            Set<String> oldSessions = new HashSet<>();
+            for (Participant participant : roster) {
+                if (participant.isInCall()) {
+                    newSessions.add(participant.getSessionId());
+                } else {
+                    oldSessions.add(participant.getSessionId());
+                }
+            }
+            oldSessions.addAll(peers);
+            oldSessions.removeAll(newSessions);
+            newSessions.removeAll(oldSessions);
+
+            peers.addAll(newSessions);
+            peers.removeAll(oldSessions);
+        }
+
+        return peers;
+    }
+
+    private Set<String> runTracker() {
+        return runTracker(new int[3]);
+    }
+
+    /**
+     * @param counts receives the number of joined, left and changed participants over all updates
+     */
+    private Set<String> runTracker(int[] counts) {
+        ParticipantTracker participantTracker = new ParticipantTracker("me");
+        Set<String> peers = new HashSet<>();
+
+        for (List<Participant> roster : rosters) {
+            ParticipantTracker.Delta delta = participantTracker.update(roster, "own-session");
+            counts[0] += delta.getJoined().size();
+            counts[1] += delta.getLeft().size();
+            counts[2] += delta.getChanged().size();
+
+            for (Participant participant : delta.getJoined()) {
+                apply(peers, participant);
+            }
+            for (Participant participant : delta.getChanged()) {
+                apply(peers, participant);
+            }
+            for (Participant participant : delta.getLeft()) {
+                peers.remove(participant.getSessionId());
+            }
+        }
+
+        return peers;
+    }
+
+    private void apply(Set<String> peers, Participant participant) {
+        if (participant.isInCall()) {
+            peers.add(participant.getSessionId());
+        } else {
+            peers.remove(participant.getSessionId());
+        }
+    }
+
+    /**
+     * Every update a guest leaves, a new guest joins and one participant toggles inCall.
+     */
+    private void buildRosters(int count) {
+        rosters = new ArrayList<>(count);
+        togglesOfNewParticipants = 0;
+
+        List<Participant> roster = new ArrayList<>(rosterSize);
+        for (int i = 0; i < rosterSize; i++) {
+            roster.add(ParticipantTrackerTest.participant("s" + i, "user" + i, i % 2 == 0));
+        }
+
+        int nextSession = rosterSize;
+        for (int update = 0; update < count; update++) {
+            roster = new ArrayList<>(roster);
+            roster.remove(0);
+            roster.add(ParticipantTrackerTest.participant("s" + nextSession++, "", update % 2 == 0));
+
+            int toggled = update % roster.size();
+            if (update > 0 && toggled == roster.size() - 1) {
+                togglesOfNewParticipants++;
+            }
+            Participant participant = roster.get(toggled);
+            roster.set(toggled, ParticipantTrackerTest.participant(participant.getSessionId(),
+                    participant.getUserId(), !participant.isInCall()));
+
+            rosters.add(roster);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import com.nextcloud.talk.api.models.json.participants.Participant;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParticipantTrackerTest {
+    private static final String OWN_USER_ID = "me";
+    private static final String OWN_SESSION = "own-session";
+
+    private ParticipantTracker participantTracker;
+
+    @Before
+    public void setUp() {
+        participantTracker = new ParticipantTracker(OWN_USER_ID);
+    }
+
+    @Test
+    public void firstRosterReportsEveryoneAsJoined() {
+        ParticipantTracker.Delta delta = participantTracker.update(Arrays.asList(
+                participant("a", "alice", true),
+                participant("b", "", false)), OWN_SESSION);
+
+        assertEquals(2, delta.getJoined().size());
+        assertTrue(delta.getLeft().isEmpty());
+        assertTrue(delta.getChanged().isEmpty());
+        assertTrue(participantTracker.isInCall("a"));
+        assertFalse(participantTracker.isInCall("b"));
+    }
+
+    @Test
+    public void ownSessionAndOwnUserAreIgnored() {
+        ParticipantTracker.Delta delta = participantTracker.update(Arrays.asList(
+                participant(OWN_SESSION, "", true),
+                participant("other-device", OWN_USER_ID, true),
+                participant("a", "alice", true)), OWN_SESSION);
+
+        assertEquals(1, delta.getJoined().size());
+        assertEquals("a", delta.getJoined().get(0).getSessionId());
+        assertEquals(1, participantTracker.size());
+    }
+
+    @Test
+    public void unchangedRosterProducesEmptyDelta() {
+        participantTracker.update(Arrays.asList(participant("a", "alice", true),
+                participant("b", "bob", false)), OWN_SESSION);
+
+        ParticipantTracker.Delta delta = participantTracker.update(Arrays.asList(participant("b", "bob", false),
+                participant("a", "alice", true)), OWN_SESSION);
+
+        assertTrue(delta.isEmpty());
+    }
+
+    @Test
+    public void inCallFlipIsReportedAsChange() {
+        participantTracker.update(Collections.singletonList(participant("a", "alice", false)), OWN_SESSION);
+
+        ParticipantTracker.Delta delta = participantTracker.update(
+                Collections.singletonList(participant("a", "alice", true)), OWN_SESSION);
+
+        assertTrue(delta.getJoined().isEmpty());
+        assertEquals(1, delta.getChanged().size());
+        assertTrue(delta.getChanged().get(0).isInCall());
+        assertTrue(participantTracker.isInCall("a"));
+    }
+
+    @Test
+    public void missingSessionIsReportedAsLeft() {
+        participantTracker.update(Arrays.asList(participant("a", "alice", true),
+                participant("b", "bob", true)), OWN_SESSION);
+
+        ParticipantTracker.Delta delta = participantTracker.update(
+                Collections.singletonList(participant("b", "bob", true)), OWN_SESSION);
+
+        assertEquals(1, delta.getLeft().size());
+        assertEquals("a", delta.getLeft().get(0).getSessionId());
+        assertTrue(delta.getJoined().isEmpty());
+        assertEquals(1, participantTracker.size());
+    }
+
+    @Test
+    public void rejoinAfterLeavingIsReportedAsJoinedAgain() {
+        participantTracker.update(Collections.singletonList(participant("a", "alice", true)), OWN_SESSION);
+        participantTracker.update(Collections.<Participant>emptyList(), OWN_SESSION);
+
+        ParticipantTracker.Delta delta = participantTracker.update(
+                Collections.singletonList(participant("a", "alice", true)), OWN_SESSION);
+
+        assertEquals(1, delta.getJoined().size());
+    }
+
+    @Test
+    public void duplicateSessionInRosterIsReportedOnce() {
+        ParticipantTracker.Delta delta = participantTracker.update(Arrays.asList(participant("a", "alice", true),
+                participant("a", "alice", true)), OWN_SESSION);
+
+        assertEquals(1, delta.getJoined().size());
+        assertEquals(1, participantTracker.size());
+    }
+
+    @Test
+    public void clearForgetsRoster() {
+        participantTracker.update(Collections.singletonList(participant("a", "alice", true)), OWN_SESSION);
+        participantTracker.clear();
+
+        ParticipantTracker.Delta delta = participantTracker.update(
+                Collections.singletonList(participant("a", "alice", true)), OWN_SESSION);
+
+        assertEquals(1, delta.getJoined().size());
+        assertTrue(delta.getLeft().isEmpty());
+    }
+
+    @Test
+    public void guestChurnInLargeRoom() {
+        List<Participant> roster = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            roster.add(participant("s" + i, i % 3 == 0 ? "" : "user" + i, i % 2 == 0));
+        }
+        participantTracker.update(roster, OWN_SESSION);
+
+        // one guest leaves, a new one joins and someone starts calling
+        roster.remove(0);
+        roster.add(participant("guest-new", "", false));
+        roster.set(0, participant("s1", "user1", true));
+
+        ParticipantTracker.Delta delta = participantTracker.update(roster, OWN_SESSION);
+
+        assertEquals(1, delta.getJoined().size());
+        assertEquals("guest-new", delta.getJoined().get(0).getSessionId());
+        assertEquals(1, delta.getLeft().size());
+        assertEquals("s0", delta.getLeft().get(0).getSessionId());
+        assertEquals(1, delta.getChanged().size());
+        assertEquals("s1", delta.getChanged().get(0).getSessionId());
+    }
+
+    static Participant participant(String sessionId, String userId, boolean inCall) {
+        Participant participant = new Participant();
+        participant.setSessionId(sessionId);
+        participant.setUserId(userId);
+        participant.setInCall(inCall);
+        return participant;
+    }
+}
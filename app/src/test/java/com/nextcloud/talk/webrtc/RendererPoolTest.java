@@ -0,0 +1,145 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RendererPoolTest {
+    private FakeAllocator fakeAllocator;
+    private RendererPool<FakeRenderer> rendererPool;
+
+    @Before
+    public void setUp() {
+        fakeAllocator = new FakeAllocator();
+        rendererPool = new RendererPool<>(fakeAllocator, 2);
+    }
+
+    @Test
+    public void reusesRenderersAcrossStreams() {
+        FakeRenderer first = rendererPool.acquire("a");
+        assertSame(first, rendererPool.acquire("a"));
+
+        assertSame(first, rendererPool.recycle("a"));
+        assertTrue(first.recycled);
+        assertFalse(first.released);
+        assertNull(rendererPool.get("a"));
+
+        // another peer gets the same, still initialised renderer
+        assertSame(first, rendererPool.acquire("b"));
+        assertEquals(1, fakeAllocator.created.size());
+        assertEquals(1, rendererPool.getReusedCount());
+    }
+
+    @Test
+    public void churnDoesNotCreateRenderers() {
+        for (int i = 0; i < 100; i++) {
+            rendererPool.acquire("peer-" + i);
+            rendererPool.acquire("other-" + i);
+            rendererPool.recycle("peer-" + i);
+            rendererPool.recycle("other-" + i);
+        }
+
+        assertEquals(2, fakeAllocator.created.size());
+        assertEquals(0, rendererPool.getReleasedCount());
+        assertEquals(2, rendererPool.getIdleCount());
+    }
+
+    @Test
+    public void keepsAtMostMaxIdle() {
+        for (int i = 0; i < 5; i++) {
+            rendererPool.acquire("peer-" + i);
+        }
+        for (int i = 0; i < 5; i++) {
+            rendererPool.recycle("peer-" + i);
+        }
+
+        assertEquals(2, rendererPool.getIdleCount());
+        assertEquals(3, rendererPool.getReleasedCount());
+        for (FakeRenderer fakeRenderer : fakeAllocator.created) {
+            assertTrue(fakeRenderer.recycled);
+        }
+    }
+
+    @Test
+    public void recyclingAnUnknownSessionDoesNothing() {
+        assertNull(rendererPool.recycle("nobody"));
+        assertEquals(0, rendererPool.getIdleCount());
+    }
+
+    @Test
+    public void trimAndClearReleaseEverything() {
+        rendererPool.acquire("a");
+        rendererPool.acquire("b");
+        rendererPool.recycle("b");
+
+        rendererPool.trim();
+        assertEquals(0, rendererPool.getIdleCount());
+        assertEquals(1, rendererPool.getInUseCount());
+
+        rendererPool.clear();
+        assertEquals(0, rendererPool.getInUseCount());
+        for (FakeRenderer fakeRenderer : fakeAllocator.created) {
+            assertTrue(fakeRenderer.released);
+        }
+
+        // the pool can still be used afterwards
+        assertNotSame(fakeAllocator.created.get(0), rendererPool.acquire("a"));
+        assertEquals(3, fakeAllocator.created.size());
+    }
+
+    private static class FakeRenderer {
+        boolean recycled;
+        boolean released;
+    }
+
+    private static class FakeAllocator implements RendererPool.Allocator<FakeRenderer> {
+        final List<FakeRenderer> created = new ArrayList<>();
+
+        @Override
+        public FakeRenderer create() {
+            FakeRenderer fakeRenderer = new FakeRenderer();
+            created.add(fakeRenderer);
+            return fakeRenderer;
+        }
+
+        @Override
+        public void recycle(FakeRenderer renderer) {
+            renderer.recycled = true;
+        }
+
+        @Override
+        public void release(FakeRenderer renderer) {
+            assertFalse(renderer.released);
+            renderer.released = true;
+        }
+    }
+}
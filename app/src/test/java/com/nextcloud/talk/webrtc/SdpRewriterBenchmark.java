@@ -0,0 +1,97 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Compares the legacy preferCodec with SdpRewriter on a typical offer, once where VP8 has to be moved to
+ * the front and once where it already is (the common case for our own offers). Both have to produce the
+ * same description. See Benchmarks for how to run it.
+ */
+@RunWith(Parameterized.class)
+public class SdpRewriterBenchmark {
+    private static final int ITERATIONS = 20000;
+    private static final int WARMUP_ITERATIONS = 5000;
+    private static final String UNSORTED = SdpRewriterTest.OFFER.replace("96 97 98 99 100 101 102",
+            "100 98 99 96 97 101 102");
+
+    private final SdpRewriter sdpRewriter = new SdpRewriter(Collections.<String>emptyList(),
+            Collections.singletonList(SdpRewriter.VP8));
+    private final String sdp;
+    private String expected;
+
+    public SdpRewriterBenchmark(String name, String sdp) {
+        this.sdp = sdp;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> offers() {
+        return Arrays.asList(new Object[][]{{"unsorted", UNSORTED}, {"sorted", SdpRewriterTest.OFFER}});
+    }
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+
+        expected = LegacyPreferCodec.preferCodec(sdp, SdpRewriter.VP8, false);
+        assertEquals(expected, sdpRewriter.rewrite(sdp));
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            LegacyPreferCodec.preferCodec(sdp, SdpRewriter.VP8, false);
+            sdpRewriter.rewrite(sdp);
+        }
+    }
+
+    @Test
+    public void preferCodec() {
+        String result = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            result = LegacyPreferCodec.preferCodec(sdp, SdpRewriter.VP8, false);
+        }
+
+        assertEquals(expected, result);
+    }
+
+    @Test
+    public void rewriter() {
+        String result = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            result = sdpRewriter.rewrite(sdp);
+        }
+
+        assertEquals(expected, result);
+        if (sdp.equals(expected)) {
+            // nothing to move, so not even a copy
+            assertSame(sdp, result);
+        }
+    }
+}
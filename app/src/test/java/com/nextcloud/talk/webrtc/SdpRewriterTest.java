@@ -0,0 +1,156 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SdpRewriterTest {
+    static final String OFFER = "v=0\r\n" +
+            "o=- 4611731400430051336 2 IN IP4 127.0.0.1\r\n" +
+            "s=-\r\n" +
+            "t=0 0\r\n" +
+            "a=group:BUNDLE audio video data\r\n" +
+            "m=audio 9 UDP/TLS/RTP/SAVPF 111 103 104 9 0 8 106 105 13 110 112 113 126\r\n" +
+            "c=IN IP4 0.0.0.0\r\n" +
+            "a=rtcp:9 IN IP4 0.0.0.0\r\n" +
+            "a=mid:audio\r\n" +
+            "a=rtpmap:111 opus/48000/2\r\n" +
+            "a=rtcp-fb:111 transport-cc\r\n" +
+            "a=fmtp:111 minptime=10;useinbandfec=1\r\n" +
+            "a=rtpmap:103 ISAC/16000\r\n" +
+            "a=rtpmap:104 ISAC/32000\r\n" +
+            "a=rtpmap:9 G722/8000\r\n" +
+            "a=rtpmap:0 PCMU/8000\r\n" +
+            "a=rtpmap:8 PCMA/8000\r\n" +
+            "a=rtpmap:106 CN/32000\r\n" +
+            "a=rtpmap:105 CN/16000\r\n" +
+            "a=rtpmap:13 CN/8000\r\n" +
+            "a=rtpmap:110 telephone-event/48000\r\n" +
+            "a=rtpmap:112 telephone-event/32000\r\n" +
+            "a=rtpmap:113 telephone-event/16000\r\n" +
+            "a=rtpmap:126 telephone-event/8000\r\n" +
+            "m=video 9 UDP/TLS/RTP/SAVPF 96 97 98 99 100 101 102\r\n" +
+            "c=IN IP4 0.0.0.0\r\n" +
+            "a=mid:video\r\n" +
+            "a=rtpmap:96 VP8/90000\r\n" +
+            "a=rtcp-fb:96 nack\r\n" +
+            "a=rtpmap:97 rtx/90000\r\n" +
+            "a=fmtp:97 apt=96\r\n" +
+            "a=rtpmap:98 VP9/90000\r\n" +
+            "a=rtpmap:99 rtx/90000\r\n" +
+            "a=fmtp:99 apt=98\r\n" +
+            "a=rtpmap:100 H264/90000\r\n" +
+            "a=fmtp:100 level-asymmetry-allowed=1;packetization-mode=1;profile-level-id=42e01f\r\n" +
+            "a=rtpmap:101 red/90000\r\n" +
+            "a=rtpmap:102 ulpfec/90000\r\n" +
+            "m=application 9 DTLS/SCTP 5000\r\n" +
+            "c=IN IP4 0.0.0.0\r\n" +
+            "a=mid:data\r\n" +
+            "a=sctpmap:5000 webrtc-datachannel 1024\r\n";
+
+    @Test
+    public void returnsSameStringWhenAlreadyPreferred() {
+        assertSame(OFFER, SdpRewriter.DEFAULT.rewrite(OFFER));
+    }
+
+    @Test
+    public void appliesPreferenceListInOrder() {
+        SdpRewriter sdpRewriter = new SdpRewriter(Collections.singletonList(SdpRewriter.OPUS),
+                Arrays.asList(SdpRewriter.H264, SdpRewriter.VP9));
+
+        String rewritten = sdpRewriter.rewrite(OFFER);
+
+        assertEquals(OFFER.replace("m=video 9 UDP/TLS/RTP/SAVPF 96 97 98 99 100 101 102",
+                "m=video 9 UDP/TLS/RTP/SAVPF 100 98 96 97 99 101 102"), rewritten);
+    }
+
+    @Test
+    public void rewritesAudioSection() {
+        SdpRewriter sdpRewriter = new SdpRewriter(Arrays.asList("g722", "PCMA"),
+                Collections.<String>emptyList());
+
+        String rewritten = sdpRewriter.rewrite(OFFER);
+
+        assertEquals(OFFER.replace("m=audio 9 UDP/TLS/RTP/SAVPF 111 103 104 9 0 8 106 105 13 110 112 113 126",
+                "m=audio 9 UDP/TLS/RTP/SAVPF 9 8 111 103 104 0 106 105 13 110 112 113 126"), rewritten);
+    }
+
+    @Test
+    public void keepsEveryPayloadTypeWithTheSameCodec() {
+        SdpRewriter sdpRewriter = new SdpRewriter(Collections.singletonList("CN"),
+                Collections.<String>emptyList());
+
+        String rewritten = sdpRewriter.rewrite(OFFER);
+
+        assertEquals(OFFER.replace("m=audio 9 UDP/TLS/RTP/SAVPF 111 103 104 9 0 8 106 105 13 110 112 113 126",
+                "m=audio 9 UDP/TLS/RTP/SAVPF 106 105 13 111 103 104 9 0 8 110 112 113 126"), rewritten);
+    }
+
+    @Test
+    public void ignoresMissingCodecsAndOtherSections() {
+        SdpRewriter sdpRewriter = new SdpRewriter(Collections.singletonList("G729"),
+                Collections.singletonList("AV1"));
+
+        assertSame(OFFER, sdpRewriter.rewrite(OFFER));
+    }
+
+    @Test
+    public void movesPreferredCodecAheadOfEarlierPayloadTypes() {
+        String offer = OFFER.replace("96 97 98 99 100 101 102", "98 99 100 96 97 101 102");
+        SdpRewriter sdpRewriter = new SdpRewriter(Collections.<String>emptyList(),
+                Collections.singletonList(SdpRewriter.VP8));
+
+        assertEquals(OFFER.replace("96 97 98 99 100 101 102", "96 98 99 100 97 101 102"),
+                sdpRewriter.rewrite(offer));
+    }
+
+    @Test
+    public void handlesBareLineFeedsAndMissingTrailingNewLine() {
+        String sdp = "v=0\nm=video 9 RTP/SAVPF 96 100\na=rtpmap:96 VP8/90000\na=rtpmap:100 H264/90000";
+        SdpRewriter sdpRewriter = new SdpRewriter(Collections.<String>emptyList(),
+                Collections.singletonList(SdpRewriter.H264));
+
+        assertEquals("v=0\nm=video 9 RTP/SAVPF 100 96\na=rtpmap:96 VP8/90000\na=rtpmap:100 H264/90000",
+                sdpRewriter.rewrite(sdp));
+    }
+
+    @Test
+    public void findsVideoCodecOfAnswer() {
+        assertEquals(SdpRewriter.VP8, SdpRewriter.getVideoCodec(OFFER));
+        assertEquals(SdpRewriter.H264, SdpRewriter.getVideoCodec(OFFER.replace("96 97 98 99 100 101 102",
+                "100 96 97 98 99 101 102")));
+        assertNull(SdpRewriter.getVideoCodec("v=0\r\nm=audio 9 RTP/SAVPF 111\r\na=rtpmap:111 opus/48000/2\r\n"));
+    }
+
+    @Test
+    public void leavesMalformedMediaLinesAlone() {
+        String sdp = "v=0\r\nm=video 9\r\na=rtpmap:96 VP8/90000\r\n";
+
+        assertSame(sdp, SdpRewriter.DEFAULT.rewrite(sdp));
+    }
+}
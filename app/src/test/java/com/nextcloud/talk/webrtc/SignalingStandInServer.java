@@ -0,0 +1,297 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import com.bluelinelabs.logansquare.LoganSquare;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.nextcloud.talk.api.models.json.converters.SignalingListConverter;
+import com.nextcloud.talk.api.models.json.generic.GenericMeta;
+import com.nextcloud.talk.api.models.json.participants.Participant;
+import com.nextcloud.talk.api.models.json.signaling.NCSignalingMessage;
+import com.nextcloud.talk.api.models.json.signaling.Signaling;
+import com.nextcloud.talk.api.models.json.signaling.SignalingOCS;
+import com.nextcloud.talk.api.models.json.signaling.SignalingOverall;
+import com.nextcloud.talk.api.models.json.websocket.ActorWebSocketMessage;
+import com.nextcloud.talk.api.models.json.websocket.CallWebSocketMessage;
+import com.nextcloud.talk.api.models.json.websocket.EventUpdateWebSocketMessage;
+import com.nextcloud.talk.api.models.json.websocket.EventWebSocketMessage;
+import com.nextcloud.talk.api.models.json.websocket.HelloWebSocketMessage;
+import com.nextcloud.talk.api.models.json.websocket.RoomWebSocketMessage;
+import com.nextcloud.talk.api.models.json.websocket.WebSocketMessage;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * A local stand-in for the signaling side of a call, so that every transport can be run through the
+ * same tests. Messages pushed here end up at the transport under test; messages sent by it are recorded.
+ */
+abstract class SignalingStandInServer {
+    static final String SIGNALING_PATH = "/signaling";
+    static final String WEBSOCKET_PATH = "/spreed";
+
+    final MockWebServer mockWebServer = new MockWebServer();
+    final BlockingQueue<NCSignalingMessage> sentMessages = new LinkedBlockingQueue<>();
+
+    void start() throws IOException {
+        mockWebServer.start();
+    }
+
+    void shutdown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    NCSignalingMessage takeSentMessage(long timeoutMs) throws InterruptedException {
+        return sentMessages.poll(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    abstract void pushMessage(String fromSessionId, NCSignalingMessage ncSignalingMessage) throws IOException;
+
+    abstract void pushUsersInRoom(List<Participant> participants) throws IOException;
+
+    /**
+     * Speaks the Nextcloud internal signaling: GET long-polls for queued messages, POST carries a batch of
+     * messages in the "messages" form field.
+     */
+    static class Http extends SignalingStandInServer {
+        // held this long when there's nothing to deliver, like the real long-poll
+        private static final long HOLD_MS = 3000;
+
+        private final BlockingQueue<Signaling> pendingSignalings = new LinkedBlockingQueue<>();
+
+        Http() {
+            mockWebServer.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                    try {
+                        if ("POST".equals(request.getMethod())) {
+                            recordBatch(request.getBody().readUtf8());
+                            return signalingResponse(Collections.<Signaling>emptyList());
+                        }
+
+                        List<Signaling> signalings = new ArrayList<>();
+                        Signaling first = pendingSignalings.poll(HOLD_MS, TimeUnit.MILLISECONDS);
+                        if (first != null) {
+                            signalings.add(first);
+                            pendingSignalings.drainTo(signalings);
+                        }
+                        return signalingResponse(signalings);
+                    } catch (IOException e) {
+                        return new MockResponse().setResponseCode(500);
+                    }
+                }
+            });
+        }
+
+        String getSignalingUrl() {
+            return mockWebServer.url(SIGNALING_PATH).toString();
+        }
+
+        @Override
+        void pushMessage(String fromSessionId, NCSignalingMessage ncSignalingMessage) {
+            ncSignalingMessage.setFrom(fromSessionId);
+
+            Signaling signaling = new Signaling();
+            signaling.setType(SignalingListConverter.TYPE_MESSAGE);
+            signaling.setSignalingMessage(ncSignalingMessage);
+            pendingSignalings.add(signaling);
+        }
+
+        @Override
+        void pushUsersInRoom(List<Participant> participants) {
+            Signaling signaling = new Signaling();
+            signaling.setType(SignalingListConverter.TYPE_USERS_IN_ROOM);
+            signaling.setUsersInRoom(participants);
+            pendingSignalings.add(signaling);
+        }
+
+        private MockResponse signalingResponse(List<Signaling> signalings) throws IOException {
+            GenericMeta genericMeta = new GenericMeta();
+            genericMeta.setStatus("ok");
+            genericMeta.setStatusCode(200);
+
+            SignalingOCS signalingOCS = new SignalingOCS();
+            signalingOCS.setMeta(genericMeta);
+            signalingOCS.setSignalings(signalings);
+
+            SignalingOverall signalingOverall = new SignalingOverall();
+            signalingOverall.setOcs(signalingOCS);
+
+            return new MockResponse()
+                    .setHeader("Content-Type", "application/json")
+                    .setBody(LoganSquare.serialize(signalingOverall));
+        }
+
+        private void recordBatch(String body) throws IOException {
+            String messages = URLDecoder.decode(body.substring(body.indexOf('=') + 1), "UTF-8");
+
+            JsonParser jsonParser = LoganSquare.JSON_FACTORY.createParser(messages);
+            jsonParser.nextToken();
+            while (jsonParser.nextToken() == JsonToken.START_OBJECT) {
+                while (jsonParser.nextToken() != JsonToken.END_OBJECT) {
+                    String fieldName = jsonParser.getCurrentName();
+                    jsonParser.nextToken();
+                    if ("fn".equals(fieldName)) {
+                        sentMessages.add(LoganSquare.parse(jsonParser.getText(), NCSignalingMessage.class));
+                    } else {
+                        jsonParser.skipChildren();
+                    }
+                }
+            }
+            jsonParser.close();
+        }
+    }
+
+    /**
+     * Speaks the protocol of the external signaling server: hello, room join, then pushed messages and
+     * participant events.
+     */
+    static class WebSocketServer extends SignalingStandInServer {
+        static final String SESSION_ID = "stand-in-session";
+        static final String RESUME_ID = "stand-in-resume";
+
+        private volatile WebSocket serverWebSocket;
+        private volatile String joinedRoomId;
+        private volatile String joinedCallSessionId;
+
+        WebSocketServer() {
+            mockWebServer.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    return new MockResponse().withWebSocketUpgrade(new ServerWebSocketListener());
+                }
+            });
+        }
+
+        String getWebSocketUrl() {
+            return mockWebServer.url(WEBSOCKET_PATH).toString().replaceFirst("^http", "ws");
+        }
+
+        String getJoinedRoomId() {
+            return joinedRoomId;
+        }
+
+        String getJoinedCallSessionId() {
+            return joinedCallSessionId;
+        }
+
+        @Override
+        void pushMessage(String fromSessionId, NCSignalingMessage ncSignalingMessage) throws IOException {
+            ActorWebSocketMessage sender = new ActorWebSocketMessage();
+            sender.setType("session");
+            sender.setSessionId(fromSessionId);
+
+            CallWebSocketMessage callWebSocketMessage = new CallWebSocketMessage();
+            callWebSocketMessage.setSenderWebSocketMessage(sender);
+            callWebSocketMessage.setNcSignalingMessage(ncSignalingMessage);
+
+            WebSocketMessage webSocketMessage = new WebSocketMessage();
+            webSocketMessage.setType("message");
+            webSocketMessage.setCallWebSocketMessage(callWebSocketMessage);
+            serverWebSocket.send(LoganSquare.serialize(webSocketMessage));
+        }
+
+        @Override
+        void pushUsersInRoom(List<Participant> participants) throws IOException {
+            EventUpdateWebSocketMessage eventUpdateWebSocketMessage = new EventUpdateWebSocketMessage();
+            eventUpdateWebSocketMessage.setUsers(participants);
+
+            EventWebSocketMessage eventWebSocketMessage = new EventWebSocketMessage();
+            eventWebSocketMessage.setTarget("participants");
+            eventWebSocketMessage.setType("update");
+            eventWebSocketMessage.setEventUpdateWebSocketMessage(eventUpdateWebSocketMessage);
+
+            WebSocketMessage webSocketMessage = new WebSocketMessage();
+            webSocketMessage.setType("event");
+            webSocketMessage.setEventWebSocketMessage(eventWebSocketMessage);
+            serverWebSocket.send(LoganSquare.serialize(webSocketMessage));
+        }
+
+        private class ServerWebSocketListener extends WebSocketListener {
+            @Override
+            public void onMessage(WebSocket webSocket, String text) {
+                try {
+                    WebSocketMessage webSocketMessage = LoganSquare.parse(text, WebSocketMessage.class);
+                    WebSocketMessage reply = new WebSocketMessage();
+                    reply.setId(webSocketMessage.getId());
+                    reply.setType(webSocketMessage.getType());
+
+                    switch (webSocketMessage.getType()) {
+                        case "hello":
+                            HelloWebSocketMessage helloWebSocketMessage = new HelloWebSocketMessage();
+                            helloWebSocketMessage.setSessionId(SESSION_ID);
+                            helloWebSocketMessage.setResumeId(RESUME_ID);
+                            reply.setHelloWebSocketMessage(helloWebSocketMessage);
+                            webSocket.send(LoganSquare.serialize(reply));
+                            break;
+                        case "room":
+                            joinedRoomId = webSocketMessage.getRoomWebSocketMessage().getRoomId();
+                            joinedCallSessionId = webSocketMessage.getRoomWebSocketMessage().getSessionId();
+
+                            RoomWebSocketMessage roomWebSocketMessage = new RoomWebSocketMessage();
+                            roomWebSocketMessage.setRoomId(joinedRoomId);
+                            reply.setRoomWebSocketMessage(roomWebSocketMessage);
+
+                            // only now the client may be talked to
+                            serverWebSocket = webSocket;
+                            webSocket.send(LoganSquare.serialize(reply));
+                            break;
+                        case "message":
+                            NCSignalingMessage ncSignalingMessage = webSocketMessage.getCallWebSocketMessage()
+                                    .getNcSignalingMessage();
+                            ncSignalingMessage.setTo(webSocketMessage.getCallWebSocketMessage()
+                                    .getRecipientWebSocketMessage().getSessionId());
+                            sentMessages.add(ncSignalingMessage);
+                            break;
+                        default:
+                            break;
+                    }
+                } catch (IOException e) {
+                    webSocket.close(1002, "unparseable message");
+                }
+            }
+
+            @Override
+            public void onClosing(WebSocket webSocket, int code, String reason) {
+                webSocket.close(code, null);
+            }
+
+            @Override
+            public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import com.nextcloud.talk.api.models.json.converters.SignalingListConverter;
+import com.nextcloud.talk.api.models.json.participants.Participant;
+import com.nextcloud.talk.api.models.json.signaling.NCMessagePayload;
+import com.nextcloud.talk.api.models.json.signaling.NCSignalingMessage;
+import com.nextcloud.talk.api.models.json.signaling.Signaling;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Behaviour every SignalingTransport has to show, run against a local stand-in server.
+ */
+public abstract class SignalingTransportConformanceTest {
+    static final String CALL_SESSION_ID = "call-session";
+    static final String ROOM_TOKEN = "room-token";
+    private static final String PEER_SESSION_ID = "peer-session";
+    private static final long TIMEOUT_MS = 10000;
+
+    SignalingStandInServer signalingStandInServer;
+    SignalingTransport signalingTransport;
+
+    private final BlockingQueue<Signaling> receivedSignalings = new LinkedBlockingQueue<>();
+    private final SignalingTransport.SignalingTransportListener signalingTransportListener =
+            new SignalingTransport.SignalingTransportListener() {
+                @Override
+                public void onSignalingMessages(List<Signaling> signalings) {
+                    receivedSignalings.addAll(signalings);
+                }
+
+                @Override
+                public void onTransportError(Throwable throwable, int consecutiveErrors) {
+                }
+            };
+
+    abstract SignalingStandInServer createStandInServer();
+
+    abstract SignalingTransport createTransport(SignalingStandInServer signalingStandInServer);
+
+    @Before
+    public void setUp() throws Exception {
+        signalingStandInServer = createStandInServer();
+        signalingStandInServer.start();
+        signalingTransport = createTransport(signalingStandInServer);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        signalingTransport.close();
+        signalingStandInServer.shutdown();
+    }
+
+    @Test
+    public void deliversMessagesFromOtherParticipants() throws Exception {
+        connect();
+
+        NCSignalingMessage offer = message("offer");
+        offer.getPayload().setSdp("v=0");
+        signalingStandInServer.pushMessage(PEER_SESSION_ID, offer);
+
+        Signaling signaling = receivedSignalings.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(signaling);
+        assertEquals(SignalingListConverter.TYPE_MESSAGE, signaling.getType());
+        assertEquals(PEER_SESSION_ID, signaling.getSignalingMessage().getFrom());
+        assertEquals("offer", signaling.getSignalingMessage().getType());
+        assertEquals("v=0", signaling.getSignalingMessage().getPayload().getSdp());
+    }
+
+    @Test
+    public void deliversRosterUpdates() throws Exception {
+        connect();
+
+        signalingStandInServer.pushUsersInRoom(Arrays.asList(
+                ParticipantTrackerTest.participant(PEER_SESSION_ID, "alice", true),
+                ParticipantTrackerTest.participant("guest-session", "", false)));
+
+        Signaling signaling = receivedSignalings.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(signaling);
+        assertEquals(SignalingListConverter.TYPE_USERS_IN_ROOM, signaling.getType());
+        assertEquals(2, signaling.getUsersInRoom().size());
+
+        Participant participant = signaling.getUsersInRoom().get(0);
+        assertEquals(PEER_SESSION_ID, participant.getSessionId());
+        assertTrue(participant.isInCall());
+    }
+
+    @Test
+    public void sendsMessagesToTheirRecipient() throws Exception {
+        connect();
+
+        NCSignalingMessage candidate = message("candidate");
+        candidate.setTo(PEER_SESSION_ID);
+        signalingTransport.send(candidate);
+
+        NCSignalingMessage sent = signalingStandInServer.takeSentMessage(TIMEOUT_MS);
+        assertNotNull(sent);
+        assertEquals(PEER_SESSION_ID, sent.getTo());
+        assertEquals("candidate", sent.getType());
+        assertEquals("video", sent.getRoomType());
+    }
+
+    @Test
+    public void keepsOrderOfSentMessages() throws Exception {
+        connect();
+
+        for (String type : Arrays.asList("offer", "candidate", "endOfCandidates")) {
+            NCSignalingMessage ncSignalingMessage = message(type);
+            ncSignalingMessage.setTo(PEER_SESSION_ID);
+            signalingTransport.send(ncSignalingMessage);
+        }
+
+        assertEquals("offer", signalingStandInServer.takeSentMessage(TIMEOUT_MS).getType());
+        assertEquals("candidate", signalingStandInServer.takeSentMessage(TIMEOUT_MS).getType());
+        assertEquals("endOfCandidates", signalingStandInServer.takeSentMessage(TIMEOUT_MS).getType());
+    }
+
+    @Test
+    public void disconnectStopsTheTransport() throws Exception {
+        connect();
+
+        signalingTransport.disconnect();
+
+        assertFalse(signalingTransport.isConnected());
+    }
+
+    void connect() throws InterruptedException {
+        signalingTransport.connect(CALL_SESSION_ID, signalingTransportListener);
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!signalingTransport.isConnected() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(signalingTransport.isConnected());
+    }
+
+    private static NCSignalingMessage message(String type) {
+        NCMessagePayload ncMessagePayload = new NCMessagePayload();
+        ncMessagePayload.setType(type);
+
+        NCSignalingMessage ncSignalingMessage = new NCSignalingMessage();
+        ncSignalingMessage.setType(type);
+        ncSignalingMessage.setRoomType("video");
+        ncSignalingMessage.setPayload(ncMessagePayload);
+        return ncSignalingMessage;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VideoCodecCapabilitiesTest {
+    private static final int LOLLIPOP = 21;
+    private static final int MARSHMALLOW = 23;
+
+    @Test
+    public void prefersHardwareCodecsBeforeVp8() {
+        Map<String, List<String>> encoders = new HashMap<>();
+        encoders.put(VideoCodecCapabilities.MIME_TYPE_H264, Arrays.asList("OMX.google.h264.encoder",
+                "OMX.qcom.video.encoder.avc"));
+        encoders.put(VideoCodecCapabilities.MIME_TYPE_VP9, Collections.singletonList("OMX.qcom.video.encoder.vp9"));
+        encoders.put(VideoCodecCapabilities.MIME_TYPE_VP8, Collections.singletonList("OMX.qcom.video.encoder.vp8"));
+
+        VideoCodecCapabilities videoCodecCapabilities = new VideoCodecCapabilities(encoders, LOLLIPOP, true);
+
+        assertEquals(Arrays.asList(SdpRewriter.H264, SdpRewriter.VP9, SdpRewriter.VP8),
+                videoCodecCapabilities.getPreferredVideoCodecs());
+        assertEquals("OMX.qcom.video.encoder.avc", videoCodecCapabilities.getHardwareEncoderName(SdpRewriter.H264));
+        assertTrue(videoCodecCapabilities.hasHardwareEncoder(SdpRewriter.VP8));
+    }
+
+    @Test
+    public void ignoresSoftwareAndUnsupportedEncoders() {
+        Map<String, List<String>> encoders = new HashMap<>();
+        encoders.put(VideoCodecCapabilities.MIME_TYPE_H264, Arrays.asList("OMX.google.h264.encoder",
+                "OMX.MTK.VIDEO.ENCODER.AVC"));
+        encoders.put(VideoCodecCapabilities.MIME_TYPE_VP8, Collections.singletonList("OMX.google.vp8.encoder"));
+
+        VideoCodecCapabilities videoCodecCapabilities = new VideoCodecCapabilities(encoders, MARSHMALLOW, true);
+
+        assertEquals(Collections.singletonList(SdpRewriter.VP8), videoCodecCapabilities.getPreferredVideoCodecs());
+        assertFalse(videoCodecCapabilities.hasHardwareEncoder(SdpRewriter.H264));
+    }
+
+    @Test
+    public void exynosNeedsMarshmallow() {
+        Map<String, List<String>> encoders = new HashMap<>();
+        encoders.put(VideoCodecCapabilities.MIME_TYPE_H264, Collections.singletonList("OMX.Exynos.AVC.Encoder"));
+
+        assertEquals(Collections.singletonList(SdpRewriter.VP8),
+                new VideoCodecCapabilities(encoders, LOLLIPOP, true).getPreferredVideoCodecs());
+        assertEquals(Arrays.asList(SdpRewriter.H264, SdpRewriter.VP8),
+                new VideoCodecCapabilities(encoders, MARSHMALLOW, true).getPreferredVideoCodecs());
+    }
+
+    @Test
+    public void staysWithVp8WithoutHardwareAcceleration() {
+        Map<String, List<String>> encoders = new HashMap<>();
+        encoders.put(VideoCodecCapabilities.MIME_TYPE_H264, Collections.singletonList("OMX.qcom.video.encoder.avc"));
+
+        VideoCodecCapabilities videoCodecCapabilities = new VideoCodecCapabilities(encoders, MARSHMALLOW, false);
+
+        assertEquals(Collections.singletonList(SdpRewriter.VP8), videoCodecCapabilities.getPreferredVideoCodecs());
+        assertFalse(videoCodecCapabilities.hasHardwareEncoder(SdpRewriter.H264));
+    }
+
+    @Test
+    public void fallsBackToVp8WhenRemoteLacksPreferredCodec() {
+        Map<String, List<String>> encoders = new HashMap<>();
+        encoders.put(VideoCodecCapabilities.MIME_TYPE_H264, Collections.singletonList("OMX.qcom.video.encoder.avc"));
+        VideoCodecCapabilities videoCodecCapabilities = new VideoCodecCapabilities(encoders, MARSHMALLOW, true);
+        SdpRewriter sdpRewriter = new SdpRewriter(Collections.singletonList(SdpRewriter.OPUS),
+                videoCodecCapabilities.getPreferredVideoCodecs());
+
+        String withoutH264 = SdpRewriterTest.OFFER
+                .replace("96 97 98 99 100 101 102", "98 99 96 97 101 102")
+                .replace("a=rtpmap:100 H264/90000\r\n", "");
+
+        assertEquals(SdpRewriter.VP8, SdpRewriter.getVideoCodec(sdpRewriter.rewrite(withoutH264)));
+        assertEquals(SdpRewriter.H264, SdpRewriter.getVideoCodec(sdpRewriter.rewrite(SdpRewriterTest.OFFER)));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import org.junit.Test;
+
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.OkHttpClient;
+
+import static org.junit.Assert.assertEquals;
+
+public class WebSocketSignalingTransportTest extends SignalingTransportConformanceTest {
+
+    @Override
+    SignalingStandInServer createStandInServer() {
+        return new SignalingStandInServer.WebSocketServer();
+    }
+
+    @Override
+    SignalingTransport createTransport(SignalingStandInServer signalingStandInServer) {
+        return new WebSocketSignalingTransport(new OkHttpClient(),
+                ((SignalingStandInServer.WebSocketServer) signalingStandInServer).getWebSocketUrl(),
+                signalingStandInServer.mockWebServer.url("/signaling/backend").toString(), "alice", "ticket",
+                ROOM_TOKEN, Schedulers.io(), Schedulers.single());
+    }
+
+    @Test
+    public void joinsRoomWithCallSessionAndUsesServerSession() throws Exception {
+        connect();
+
+        SignalingStandInServer.WebSocketServer webSocketServer =
+                (SignalingStandInServer.WebSocketServer) signalingStandInServer;
+        assertEquals(ROOM_TOKEN, webSocketServer.getJoinedRoomId());
+        assertEquals(CALL_SESSION_ID, webSocketServer.getJoinedCallSessionId());
+        assertEquals(SignalingStandInServer.WebSocketServer.SESSION_ID, signalingTransport.getSessionId());
+    }
+}
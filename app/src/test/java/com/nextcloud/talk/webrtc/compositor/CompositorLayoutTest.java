@@ -0,0 +1,133 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc.compositor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompositorLayoutTest {
+
+    private static List<String> sessionIds(int count) {
+        List<String> sessionIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            sessionIds.add("peer-" + i);
+        }
+        return sessionIds;
+    }
+
+    @Test
+    public void nothingToDrawBeforeLayout() {
+        assertTrue(CompositorLayout.layout(Collections.emptyList(), false, false, 1080, 1920).isEmpty());
+        assertTrue(CompositorLayout.layout(sessionIds(2), false, false, 0, 0).isEmpty());
+    }
+
+    @Test
+    public void singleParticipantFillsTheSurface() {
+        assertEquals(Collections.singletonList(new CompositorLayout.Tile("peer-0", 0, 0, 1080, 1920, false)),
+                CompositorLayout.layout(sessionIds(1), true, false, 1080, 1920));
+    }
+
+    @Test
+    public void gridFollowsOrientation() {
+        assertEquals(Arrays.asList(
+                new CompositorLayout.Tile("peer-0", 0, 0, 1080, 960, false),
+                new CompositorLayout.Tile("peer-1", 0, 960, 1080, 960, false)),
+                CompositorLayout.layout(sessionIds(2), false, false, 1080, 1920));
+
+        assertEquals(Arrays.asList(
+                new CompositorLayout.Tile("peer-0", 0, 0, 960, 1080, false),
+                new CompositorLayout.Tile("peer-1", 960, 0, 960, 1080, false)),
+                CompositorLayout.layout(sessionIds(2), false, true, 1920, 1080));
+    }
+
+    @Test
+    public void tilesNeitherOverlapNorLeaveGaps() {
+        List<CompositorLayout.Tile> tiles = CompositorLayout.layout(sessionIds(9), false, false, 1001, 1001);
+
+        assertEquals(9, tiles.size());
+        int area = 0;
+        for (int i = 0; i < tiles.size(); i++) {
+            CompositorLayout.Tile tile = tiles.get(i);
+            area += tile.getWidth() * tile.getHeight();
+            if (i % 3 != 2) {
+                assertEquals(tile.getLeft() + tile.getWidth(), tiles.get(i + 1).getLeft());
+            } else {
+                assertEquals(1001, tile.getLeft() + tile.getWidth());
+            }
+            if (i < 6) {
+                assertEquals(tile.getTop() + tile.getHeight(), tiles.get(i + 3).getTop());
+            }
+        }
+        assertEquals(1001 * 1001, area);
+    }
+
+    @Test
+    public void activeSpeakerGetsTheFirstRow() {
+        assertEquals(Arrays.asList(
+                new CompositorLayout.Tile("peer-0", 0, 0, 900, 800, false),
+                new CompositorLayout.Tile("peer-1", 0, 800, 450, 400, true),
+                new CompositorLayout.Tile("peer-2", 450, 800, 450, 400, true),
+                new CompositorLayout.Tile("peer-3", 0, 1200, 450, 400, true)),
+                CompositorLayout.layout(sessionIds(4), true, false, 900, 1600));
+    }
+
+    @Test
+    public void noSpeakerRowForTwo() {
+        for (CompositorLayout.Tile tile : CompositorLayout.layout(sessionIds(2), true, false, 1080, 1920)) {
+            assertEquals(960, tile.getHeight());
+            assertEquals(false, tile.isThumbnail());
+        }
+    }
+
+    @Test
+    public void largeTilesShowTheWholeFrame() {
+        CompositorLayout.Tile tile = new CompositorLayout.Tile("peer-0", 100, 0, 400, 300, false);
+
+        assertEquals(new CompositorLayout.Tile("peer-0", 100, 37, 400, 225, false),
+                CompositorLayout.fit(tile, 1280, 720));
+        assertEquals(new CompositorLayout.Tile("peer-0", 215, 0, 169, 300, false),
+                CompositorLayout.fit(tile, 720, 1280));
+    }
+
+    @Test
+    public void thumbnailsAreFilledWithinLimits() {
+        CompositorLayout.Tile tile = new CompositorLayout.Tile("peer-0", 0, 0, 400, 300, true);
+
+        // cropping 16:9 to 4:3 keeps 75% of the frame
+        assertEquals(tile, CompositorLayout.fit(tile, 1280, 720));
+        // a portrait frame would lose too much
+        assertEquals(new CompositorLayout.Tile("peer-0", 50, 0, 300, 300, true),
+                CompositorLayout.fit(tile, 720, 1280));
+    }
+
+    @Test
+    public void unknownFrameSizeUsesTheTile() {
+        CompositorLayout.Tile tile = new CompositorLayout.Tile("peer-0", 0, 0, 400, 300, false);
+        assertEquals(tile, CompositorLayout.fit(tile, 0, 0));
+    }
+}
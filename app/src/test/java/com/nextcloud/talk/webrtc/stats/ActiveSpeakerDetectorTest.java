@@ -0,0 +1,266 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import com.nextcloud.talk.api.models.json.signaling.DataChannelMessage;
+import com.nextcloud.talk.api.models.json.signaling.NCIceCandidate;
+import com.nextcloud.talk.api.models.json.signaling.settings.IceServer;
+import com.nextcloud.talk.webrtc.CallPeer;
+import com.nextcloud.talk.webrtc.DataChannelCodec;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.webrtc.StatsObserver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ActiveSpeakerDetectorTest {
+    private static final long STEP_MS = ActiveSpeakerDetector.POLL_INTERVAL_MS;
+
+    private final Set<String> participants = new HashSet<>(Arrays.asList("a", "b",
+            ActiveSpeakerDetector.LOCAL_SESSION_ID));
+
+    private ActiveSpeakerDetector activeSpeakerDetector;
+    private long nowMs;
+
+    @Before
+    public void setUp() {
+        activeSpeakerDetector = new ActiveSpeakerDetector(Collections::emptyList, new TestScheduler(),
+                sessionId -> {
+                });
+    }
+
+    /**
+     * Feeds one poll worth of levels and returns the speaker change, if any.
+     */
+    private String step(float a, float b, float local) {
+        activeSpeakerDetector.updateLevel("a", a);
+        activeSpeakerDetector.updateLevel("b", b);
+        activeSpeakerDetector.updateLevel(ActiveSpeakerDetector.LOCAL_SESSION_ID, local);
+        nowMs += STEP_MS;
+        return activeSpeakerDetector.evaluate(participants, nowMs);
+    }
+
+    @Test
+    public void firstSpeakerIsPickedRightAway() {
+        assertNull(step(0.01f, 0.02f, 0.01f));
+        assertNull(activeSpeakerDetector.getActiveSpeaker());
+
+        assertEquals("a", step(0.4f, 0.02f, 0.01f));
+        assertEquals("a", activeSpeakerDetector.getActiveSpeaker());
+    }
+
+    @Test
+    public void shortInterruptionsDontSwitch() {
+        step(0.4f, 0, 0);
+
+        // b is louder for less than SWITCH_MS
+        assertNull(step(0.1f, 0.5f, 0));
+        assertNull(step(0.3f, 0.1f, 0));
+        assertNull(step(0.1f, 0.5f, 0));
+        assertEquals("a", activeSpeakerDetector.getActiveSpeaker());
+    }
+
+    @Test
+    public void sustainedSpeechSwitches() {
+        step(0.4f, 0, 0);
+
+        String changed = null;
+        int steps = 0;
+        while (changed == null && steps < 10) {
+            changed = step(0, 0.5f, 0);
+            steps++;
+        }
+
+        assertEquals("b", changed);
+        // smoothing plus SWITCH_MS
+        assertEquals(true, steps * STEP_MS >= ActiveSpeakerDetector.SWITCH_MS);
+        assertEquals(true, steps <= 5);
+    }
+
+    @Test
+    public void similarLevelsKeepTheCurrentSpeaker() {
+        step(0.4f, 0, 0);
+
+        for (int i = 0; i < 10; i++) {
+            assertNull(step(0.4f, 0.45f, 0));
+        }
+        assertEquals("a", activeSpeakerDetector.getActiveSpeaker());
+    }
+
+    @Test
+    public void silenceKeepsTheLastSpeaker() {
+        step(0, 0, 0.3f);
+        assertEquals(ActiveSpeakerDetector.LOCAL_SESSION_ID, activeSpeakerDetector.getActiveSpeaker());
+
+        for (int i = 0; i < 10; i++) {
+            assertNull(step(0, 0, 0));
+        }
+        assertEquals(ActiveSpeakerDetector.LOCAL_SESSION_ID, activeSpeakerDetector.getActiveSpeaker());
+    }
+
+    @Test
+    public void loudestLocalReportCounts() {
+        activeSpeakerDetector.updateLevel(ActiveSpeakerDetector.LOCAL_SESSION_ID, 0.01f);
+        activeSpeakerDetector.updateLevel(ActiveSpeakerDetector.LOCAL_SESSION_ID, 0.3f);
+        activeSpeakerDetector.updateLevel(ActiveSpeakerDetector.LOCAL_SESSION_ID, 0.02f);
+
+        assertEquals(ActiveSpeakerDetector.LOCAL_SESSION_ID, activeSpeakerDetector.evaluate(participants, STEP_MS));
+    }
+
+    @Test
+    public void speakerLeavingHandsOverRightAway() {
+        step(0.4f, 0, 0);
+        step(0.4f, 0.2f, 0);
+
+        participants.remove("a");
+        assertEquals("b", step(0, 0.2f, 0));
+    }
+
+    @Test
+    public void pollAsksForAudioTracksOnly() {
+        List<AudioPeer> audioPeers = Arrays.asList(new AudioPeer("a", false), new AudioPeer("b", true),
+                new AudioPeer("c", true));
+        activeSpeakerDetector = new ActiveSpeakerDetector(() -> new ArrayList<CallPeer>(audioPeers),
+                new TestScheduler(), sessionId -> {
+                });
+
+        activeSpeakerDetector.poll();
+
+        for (AudioPeer audioPeer : audioPeers) {
+            assertEquals(0, audioPeer.statsRequests);
+            assertEquals(1, audioPeer.remoteAudioRequests);
+        }
+        // our microphone only from the first connected peer
+        assertEquals(0, audioPeers.get(0).localAudioRequests);
+        assertEquals(1, audioPeers.get(1).localAudioRequests);
+        assertEquals(0, audioPeers.get(2).localAudioRequests);
+    }
+
+    /**
+     * Counts the stats requests and never answers them.
+     */
+    private static class AudioPeer implements CallPeer {
+        private final String sessionId;
+        private final boolean connected;
+        int statsRequests;
+        int remoteAudioRequests;
+        int localAudioRequests;
+
+        AudioPeer(String sessionId, boolean connected) {
+            this.sessionId = sessionId;
+            this.connected = connected;
+        }
+
+        @Override
+        public void getStats(StatsObserver statsObserver) {
+            statsRequests++;
+        }
+
+        @Override
+        public void getAudioStats(boolean local, StatsObserver statsObserver) {
+            if (local) {
+                localAudioRequests++;
+            } else {
+                remoteAudioRequests++;
+            }
+        }
+
+        @Override
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        @Override
+        public String getNick() {
+            return null;
+        }
+
+        @Override
+        public void setNick(String nick) {
+        }
+
+        @Override
+        public String getVideoCodec() {
+            return null;
+        }
+
+        @Override
+        public void setRemoteDescription(String type, String sdp) {
+        }
+
+        @Override
+        public void addCandidate(NCIceCandidate ncIceCandidate) {
+        }
+
+        @Override
+        public void drainIceCandidates() {
+        }
+
+        @Override
+        public void sendChannelData(DataChannelMessage dataChannelMessage) {
+        }
+
+        @Override
+        public void sendStatus(DataChannelCodec.MessageType messageType) {
+        }
+
+        @Override
+        public void requestVideoPaused(boolean paused) {
+        }
+
+        @Override
+        public void restartIce(List<IceServer> iceServers) {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public void setSendBitrates(int videoBitrateBps, int audioBitrateBps) {
+        }
+
+        @Override
+        public long getSendBandwidthEstimateBps() {
+            return 0;
+        }
+
+        @Override
+        public void setSendBandwidthEstimateBps(long sendBandwidthEstimateBps) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import com.nextcloud.talk.api.models.json.signaling.DataChannelMessage;
+import com.nextcloud.talk.api.models.json.signaling.NCIceCandidate;
+import com.nextcloud.talk.api.models.json.signaling.settings.IceServer;
+import com.nextcloud.talk.webrtc.CallPeer;
+import com.nextcloud.talk.webrtc.DataChannelCodec;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.webrtc.StatsObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CallStatsCollectorTest {
+    private static final long INTERVAL_MS = 1000;
+
+    private TestScheduler testScheduler;
+    private List<CallPeer> peers;
+    private List<CallStats> reported;
+    private CallStatsCollector callStatsCollector;
+
+    @Before
+    public void setUp() {
+        testScheduler = new TestScheduler();
+        peers = new ArrayList<>();
+        reported = new ArrayList<>();
+        callStatsCollector = new CallStatsCollector(() -> peers, INTERVAL_MS, testScheduler, reported::add);
+    }
+
+    @Test
+    public void reportsEveryPeerOnInterval() {
+        for (int i = 0; i < 10; i++) {
+            peers.add(new StatsPeer("peer-" + i));
+        }
+        callStatsCollector.start();
+
+        testScheduler.advanceTimeBy(INTERVAL_MS, TimeUnit.MILLISECONDS);
+        assertTrue(reported.isEmpty());
+
+        testScheduler.advanceTimeBy(INTERVAL_MS * 2, TimeUnit.MILLISECONDS);
+        assertEquals(2, reported.size());
+
+        CallStats callStats = callStatsCollector.getLatestCallStats();
+        assertEquals(10, callStats.getPeerCount());
+        assertEquals(85, callStats.getAverageRttMs());
+        assertTrue(callStats.getSendBitrateBps() > 0);
+    }
+
+    @Test
+    public void passesSendBandwidthEstimateToPeers() {
+        StatsPeer statsPeer = new StatsPeer("a");
+        peers.add(statsPeer);
+        assertEquals(0, statsPeer.getSendBandwidthEstimateBps());
+
+        callStatsCollector.start();
+        testScheduler.advanceTimeBy(INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        assertEquals(300000, statsPeer.getSendBandwidthEstimateBps());
+        assertEquals(1, statsPeer.requests);
+    }
+
+    @Test
+    public void dropsPeersThatLeft() {
+        peers.add(new StatsPeer("a"));
+        peers.add(new StatsPeer("b"));
+        callStatsCollector.start();
+        testScheduler.advanceTimeBy(INTERVAL_MS * 2, TimeUnit.MILLISECONDS);
+        assertEquals(2, callStatsCollector.getLatestCallStats().getPeerCount());
+
+        peers.remove(1);
+        testScheduler.advanceTimeBy(INTERVAL_MS, TimeUnit.MILLISECONDS);
+        assertEquals(1, callStatsCollector.getLatestCallStats().getPeerCount());
+    }
+
+    @Test
+    public void stopsPolling() {
+        peers.add(new StatsPeer("a"));
+        callStatsCollector.start();
+        testScheduler.advanceTimeBy(INTERVAL_MS * 2, TimeUnit.MILLISECONDS);
+        callStatsCollector.stop();
+
+        int count = reported.size();
+        testScheduler.advanceTimeBy(INTERVAL_MS * 10, TimeUnit.MILLISECONDS);
+        assertEquals(count, reported.size());
+    }
+
+    /**
+     * Answers right away with stats whose byte counters grow with every request.
+     */
+    private static class StatsPeer implements CallPeer {
+        private final String sessionId;
+        private int requests;
+        private long sendBandwidthEstimateBps;
+
+        StatsPeer(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        public void getStats(StatsObserver statsObserver) {
+            requests++;
+            statsObserver.onComplete(StatsReportParserTest.reports(requests * 25000, requests * 50000,
+                    requests * 100, 0));
+        }
+
+        @Override
+        public void getAudioStats(boolean local, StatsObserver statsObserver) {
+        }
+
+        @Override
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        @Override
+        public String getNick() {
+            return null;
+        }
+
+        @Override
+        public void setNick(String nick) {
+        }
+
+        @Override
+        public String getVideoCodec() {
+            return null;
+        }
+
+        @Override
+        public void setRemoteDescription(String type, String sdp) {
+        }
+
+        @Override
+        public void addCandidate(NCIceCandidate ncIceCandidate) {
+        }
+
+        @Override
+        public void drainIceCandidates() {
+        }
+
+        @Override
+        public void sendChannelData(DataChannelMessage dataChannelMessage) {
+        }
+
+        @Override
+        public void sendStatus(DataChannelCodec.MessageType messageType) {
+        }
+
+        @Override
+        public void requestVideoPaused(boolean paused) {
+        }
+
+        @Override
+        public void restartIce(List<IceServer> iceServers) {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public void setSendBitrates(int videoBitrateBps, int audioBitrateBps) {
+        }
+
+        @Override
+        public long getSendBandwidthEstimateBps() {
+            return sendBandwidthEstimateBps;
+        }
+
+        @Override
+        public void setSendBandwidthEstimateBps(long sendBandwidthEstimateBps) {
+            this.sendBandwidthEstimateBps = sendBandwidthEstimateBps;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
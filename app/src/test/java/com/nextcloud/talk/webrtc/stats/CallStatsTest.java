@@ -0,0 +1,102 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import com.bluelinelabs.logansquare.LoganSquare;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CallStatsTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static PeerStats peerStats(String sessionId, long rttMs, float packetsLostPercent, String remoteType) {
+        PeerStats peerStats = new PeerStats();
+        peerStats.setSessionId(sessionId);
+        peerStats.setRttMs(rttMs);
+        peerStats.setPacketsLostPercent(packetsLostPercent);
+        peerStats.setSendBitrateBps(300000);
+        peerStats.setReceiveBitrateBps(500000);
+        peerStats.setRemoteCandidateType(remoteType);
+        return peerStats;
+    }
+
+    @Test
+    public void aggregatesPeers() {
+        CallStats callStats = CallStats.aggregate(1000, Arrays.asList(peerStats("a", 50, 1, "host"),
+                peerStats("b", 150, 3, "relay")));
+
+        assertEquals(2, callStats.getPeerCount());
+        assertEquals(100, callStats.getAverageRttMs());
+        assertEquals(150, callStats.getMaxRttMs());
+        assertEquals(2f, callStats.getAveragePacketsLostPercent(), 0.01f);
+        assertEquals(3f, callStats.getMaxPacketsLostPercent(), 0.01f);
+        assertEquals(600000, callStats.getSendBitrateBps());
+        assertEquals(1000000, callStats.getReceiveBitrateBps());
+        assertEquals(1, callStats.getRelayedPeers());
+    }
+
+    @Test
+    public void exportsOneLinePerSample() throws IOException {
+        File directory = new File(temporaryFolder.getRoot(), "call-stats");
+        CallStatsExporter callStatsExporter = new CallStatsExporter(directory);
+
+        callStatsExporter.export(CallStats.aggregate(1000, Collections.singletonList(peerStats("a", 50, 1, "host"))));
+        callStatsExporter.export(CallStats.aggregate(3000, Collections.singletonList(peerStats("a", 60, 0, "host"))));
+
+        List<String> lines = Files.readAllLines(new File(directory, CallStatsExporter.FILE_NAME).toPath(),
+                Charset.forName("UTF-8"));
+        assertEquals(2, lines.size());
+
+        CallStats parsed = LoganSquare.parse(lines.get(1), CallStats.class);
+        assertEquals(3000, parsed.getTimestampMs());
+        assertEquals(60, parsed.getPeers().get(0).getRttMs());
+    }
+
+    @Test
+    public void rotatesFiles() {
+        File directory = temporaryFolder.getRoot();
+        CallStatsExporter callStatsExporter = new CallStatsExporter(directory, 1024, 3);
+
+        for (int i = 0; i < 100; i++) {
+            callStatsExporter.export(CallStats.aggregate(i, Collections.singletonList(peerStats("a", i, 0, "host"))));
+        }
+
+        List<File> files = callStatsExporter.getFiles();
+        assertEquals(3, files.size());
+        for (File file : files) {
+            assertEquals(true, file.length() <= 1024);
+        }
+        assertEquals(3, directory.listFiles().length);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import com.nextcloud.talk.webrtc.CaptureQualityController;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EncoderLoadSignalTest {
+    private EncoderLoadSignal encoderLoadSignal;
+    private List<CaptureQualityController.CaptureFormat> changes;
+    private CaptureQualityController captureQualityController;
+    private long nowMs;
+
+    @Before
+    public void setUp() {
+        encoderLoadSignal = new EncoderLoadSignal();
+        changes = new ArrayList<>();
+        captureQualityController = new CaptureQualityController(encoderLoadSignal, changes::add);
+    }
+
+    private PeerStats sample(String sessionId, int encodeUsagePercent, boolean cpuLimitedResolution) {
+        PeerStats peerStats = new PeerStats();
+        peerStats.sessionId = sessionId;
+        peerStats.timestampMs = nowMs;
+        peerStats.encodeUsagePercent = encodeUsagePercent;
+        peerStats.cpuLimitedResolution = cpuLimitedResolution;
+        return peerStats;
+    }
+
+    private void update(PeerStats... peerStats) {
+        nowMs += CallStatsCollector.DEFAULT_INTERVAL_MS;
+        encoderLoadSignal.update(CallStats.aggregate(nowMs, Arrays.asList(peerStats)));
+    }
+
+    @Test
+    public void overloadedEncoderStepsCaptureDown() {
+        // two peers at 960x540; on an 8 core phone the whole process stays around a quarter of the CPU
+        // while one of the two encoders no longer keeps up with the frame rate
+        captureQualityController.setPeerCount(2);
+        changes.clear();
+
+        for (int i = 0; i < 2; i++) {
+            update(sample("a", 92, false), sample("b", 61, false));
+            captureQualityController.sampleLoad();
+        }
+
+        assertEquals(1, changes.size());
+        assertEquals(640, captureQualityController.getCaptureFormat().getWidth());
+        assertEquals(360, captureQualityController.getCaptureFormat().getHeight());
+    }
+
+    @Test
+    public void cpuLimitedResolutionCountsAsFullLoad() {
+        update(sample("a", 40, true));
+
+        assertEquals(1f, encoderLoadSignal.getLoad(), 0.001f);
+    }
+
+    @Test
+    public void busiestEncoderCounts() {
+        update(sample("a", 30, false), sample("b", 80, false));
+
+        assertEquals(0.8f, encoderLoadSignal.getLoad(), 0.001f);
+    }
+
+    @Test
+    public void unknownWithoutNewSampleOrVideo() {
+        assertTrue(encoderLoadSignal.getLoad() < 0);
+
+        update(sample("a", 50, false));
+        assertEquals(0.5f, encoderLoadSignal.getLoad(), 0.001f);
+        // the same sample isn't counted twice
+        assertTrue(encoderLoadSignal.getLoad() < 0);
+
+        // audio only peers have no encoder usage
+        update(sample("a", 0, false));
+        assertTrue(encoderLoadSignal.getLoad() < 0);
+        encoderLoadSignal.update(CallStats.aggregate(nowMs, Collections.<PeerStats>emptyList()));
+        assertTrue(encoderLoadSignal.getLoad() < 0);
+    }
+}
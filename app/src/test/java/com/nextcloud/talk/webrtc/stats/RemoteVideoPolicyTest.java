@@ -0,0 +1,157 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RemoteVideoPolicyTest {
+    private static final long STEP_MS = CallStatsCollector.DEFAULT_INTERVAL_MS;
+    private static final long GOOD_BPS = 1000000;
+    private static final long POOR_BPS = 100000;
+
+    private final List<String> decisions = new ArrayList<>();
+    private RemoteVideoPolicy remoteVideoPolicy;
+    private long nowMs;
+
+    @Before
+    public void setUp() {
+        remoteVideoPolicy = new RemoteVideoPolicy((sessionId, paused) ->
+                decisions.add(sessionId + (paused ? " paused" : " resumed")));
+    }
+
+    private PeerStats sample(String sessionId, long availableReceiveBandwidthBps, float packetsLostPercent) {
+        PeerStats peerStats = new PeerStats();
+        peerStats.sessionId = sessionId;
+        peerStats.timestampMs = nowMs;
+        peerStats.availableReceiveBandwidthBps = availableReceiveBandwidthBps;
+        peerStats.packetsLostPercent = packetsLostPercent;
+        return peerStats;
+    }
+
+    /**
+     * Moves one stats interval ahead and feeds a sample of peer "a".
+     */
+    private Boolean step(long availableReceiveBandwidthBps, float packetsLostPercent) {
+        nowMs += STEP_MS;
+        return remoteVideoPolicy.evaluate(sample("a", availableReceiveBandwidthBps, packetsLostPercent));
+    }
+
+    private void pause() {
+        for (int i = 0; i < RemoteVideoPolicy.PAUSE_SAMPLES; i++) {
+            step(POOR_BPS, 0);
+        }
+        assertTrue(remoteVideoPolicy.isPaused("a"));
+    }
+
+    @Test
+    public void pausesOnlyOnceTheDownlinkStaysPoor() {
+        assertNull(step(GOOD_BPS, 0));
+        assertNull(step(POOR_BPS, 0));
+        // a single good sample starts over
+        assertNull(step(GOOD_BPS, 0));
+        assertNull(step(POOR_BPS, 0));
+        assertEquals(Boolean.TRUE, step(POOR_BPS, 0));
+        assertNull(step(POOR_BPS, 0));
+    }
+
+    @Test
+    public void pausesOnPacketLossWithoutAnEstimate() {
+        assertNull(step(0, 0));
+        assertNull(step(0, RemoteVideoPolicy.PAUSE_LOSS_PERCENT));
+        assertEquals(Boolean.TRUE, step(0, 25f));
+    }
+
+    @Test
+    public void resumesWithHysteresis() {
+        pause();
+
+        // between the thresholds is neither poor enough to pause nor good enough to resume
+        long inBetweenBps = (RemoteVideoPolicy.PAUSE_BANDWIDTH_BPS + RemoteVideoPolicy.RESUME_BANDWIDTH_BPS) / 2;
+        for (int i = 0; i < 10; i++) {
+            assertNull(step(inBetweenBps, 0));
+        }
+
+        for (int i = 1; i < RemoteVideoPolicy.RESUME_SAMPLES; i++) {
+            assertNull(step(GOOD_BPS, 0));
+        }
+        assertEquals(Boolean.FALSE, step(GOOD_BPS, 0));
+        assertFalse(remoteVideoPolicy.isPaused("a"));
+    }
+
+    @Test
+    public void staysPausedLongerEveryTimeItCollapsesAgain() {
+        pause();
+        long pausedAtMs = nowMs;
+        while (step(0, 0) == null) {
+            assertTrue(nowMs - pausedAtMs < RemoteVideoPolicy.MIN_PAUSE_MS);
+        }
+        assertEquals(RemoteVideoPolicy.MIN_PAUSE_MS, nowMs - pausedAtMs);
+
+        pause();
+        pausedAtMs = nowMs;
+        while (step(0, 0) == null) {
+            assertTrue(nowMs - pausedAtMs < 2 * RemoteVideoPolicy.MIN_PAUSE_MS);
+        }
+        assertEquals(2 * RemoteVideoPolicy.MIN_PAUSE_MS, nowMs - pausedAtMs);
+
+        assertEquals(RemoteVideoPolicy.MAX_PAUSE_MS, RemoteVideoPolicy.getMinPauseMs(10));
+    }
+
+    @Test
+    public void ignoresARepeatedSample() {
+        nowMs += STEP_MS;
+        PeerStats peerStats = sample("a", POOR_BPS, 0);
+        assertNull(remoteVideoPolicy.evaluate(peerStats));
+        assertNull(remoteVideoPolicy.evaluate(peerStats));
+        assertFalse(remoteVideoPolicy.isPaused("a"));
+    }
+
+    @Test
+    public void marksSamplesAndForgetsPeersThatLeft() {
+        for (int i = 0; i < RemoteVideoPolicy.PAUSE_SAMPLES; i++) {
+            nowMs += STEP_MS;
+            List<PeerStats> peers = new ArrayList<>();
+            peers.add(sample("a", POOR_BPS, 0));
+            peers.add(sample("b", GOOD_BPS, 0));
+            CallStats callStats = CallStats.aggregate(nowMs, peers);
+            remoteVideoPolicy.update(callStats);
+
+            boolean last = i == RemoteVideoPolicy.PAUSE_SAMPLES - 1;
+            assertEquals(last, callStats.getPeers().get(0).isRemoteVideoPaused());
+            assertFalse(callStats.getPeers().get(1).isRemoteVideoPaused());
+        }
+        assertEquals(Collections.singletonList("a paused"), decisions);
+
+        nowMs += STEP_MS;
+        remoteVideoPolicy.update(CallStats.aggregate(nowMs, Collections.singletonList(sample("b", GOOD_BPS, 0))));
+        assertFalse(remoteVideoPolicy.isPaused("a"));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import org.junit.Test;
+import org.webrtc.StatsReport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StatsReportParserTest {
+
+    static StatsReport[] reports(long bytesSent, long bytesReceived, long packetsReceived, long packetsLost) {
+        return new StatsReport[]{
+                report("Conn-audio-1-0", "googCandidatePair",
+                        "googActiveConnection", "true",
+                        "googRtt", "85",
+                        "googLocalCandidateType", "local",
+                        "googRemoteCandidateType", "relay",
+                        "googTransportType", "udp",
+                        "bytesSent", String.valueOf(bytesSent),
+                        "bytesReceived", String.valueOf(bytesReceived)),
+                report("Conn-audio-1-1", "googCandidatePair",
+                        "googActiveConnection", "false",
+                        "googRtt", "500"),
+                report("ssrc_1_recv", "ssrc",
+                        "mediaType", "audio",
+                        "packetsReceived", String.valueOf(packetsReceived / 2),
+                        "packetsLost", String.valueOf(packetsLost),
+                        "googJitterReceived", "12"),
+                report("ssrc_4_recv", "ssrc",
+                        "mediaType", "audio",
+                        "audioOutputLevel", "16384"),
+                report("ssrc_5_send", "ssrc",
+                        "mediaType", "audio",
+                        "audioInputLevel", "3276"),
+                report("ssrc_2_recv", "ssrc",
+                        "mediaType", "video",
+                        "packetsReceived", String.valueOf(packetsReceived - packetsReceived / 2),
+                        "packetsLost", "0"),
+                report("ssrc_3_send", "ssrc",
+                        "mediaType", "video",
+                        "googFrameWidthSent", "640",
+                        "googFrameHeightSent", "360",
+                        "googFrameRateSent", "24",
+                        "googCodecName", "VP8",
+                        "googEncodeUsagePercent", "68",
+                        "googCpuLimitedResolution", "false"),
+                report("bweforvideo", "VideoBwe",
+                        "googAvailableSendBandwidth", "300000",
+                        "googAvailableReceiveBandwidth", "450000")
+        };
+    }
+
+    private static StatsReport report(String id, String type, String... namesAndValues) {
+        StatsReport.Value[] values = new StatsReport.Value[namesAndValues.length / 2];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new StatsReport.Value(namesAndValues[i * 2], namesAndValues[i * 2 + 1]);
+        }
+        return new StatsReport(id, type, 0, values);
+    }
+
+    @Test
+    public void readsActiveCandidatePairAndStreams() {
+        PeerStats peerStats = StatsReportParser.parse("peer", reports(1000, 2000, 100, 0), 1000, null);
+
+        assertEquals("peer", peerStats.getSessionId());
+        assertEquals(85, peerStats.getRttMs());
+        assertEquals("relay", peerStats.getRemoteCandidateType());
+        assertEquals("udp", peerStats.getTransportType());
+        assertTrue(peerStats.isRelayed());
+        assertEquals(12, peerStats.getAudioJitterMs());
+        assertEquals(640, peerStats.getFrameWidthSent());
+        assertEquals(24, peerStats.getFramerateSent());
+        assertEquals("VP8", peerStats.getVideoCodec());
+        assertEquals(68, peerStats.getEncodeUsagePercent());
+        assertFalse(peerStats.isCpuLimitedResolution());
+        assertEquals(300000, peerStats.getAvailableSendBandwidthBps());
+        assertEquals(450000, peerStats.getAvailableReceiveBandwidthBps());
+        assertEquals(100, peerStats.getPacketsReceived());
+        // rates need a previous sample
+        assertEquals(0, peerStats.getSendBitrateBps());
+    }
+
+    @Test
+    public void computesRatesAgainstPreviousSample() {
+        PeerStats first = StatsReportParser.parse("peer", reports(1000, 2000, 100, 0), 1000, null);
+        PeerStats second = StatsReportParser.parse("peer", reports(26000, 102000, 290, 10), 3000, first);
+
+        // 25000 bytes in 2 seconds
+        assertEquals(100000, second.getSendBitrateBps());
+        assertEquals(400000, second.getReceiveBitrateBps());
+        // 10 of 200 packets
+        assertEquals(5f, second.getPacketsLostPercent(), 0.01f);
+    }
+
+    @Test
+    public void readsAudioLevels() {
+        StatsReport[] statsReports = reports(0, 0, 0, 0);
+
+        assertEquals(0.5f, StatsReportParser.getReceivedAudioLevel(statsReports), 0.01f);
+        assertEquals(0.1f, StatsReportParser.getSentAudioLevel(statsReports), 0.01f);
+        assertEquals(-1f, StatsReportParser.getReceivedAudioLevel(new StatsReport[0]), 0.01f);
+    }
+}